@@ -0,0 +1,186 @@
+import java.io.File;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * ActivationValidation.java:
+ * Checks the approximate sigmoid activations (see Activation) against the exact one. For every
+ * mode it measures:
+ * - the largest error of the transfer against Math.exp over inputs from -40 to 40, which must be
+ *   within the mode's documented maximum error;
+ * - the time to apply the transfer to hidden layers of weighted sums;
+ * - how many test rows the exact mode's trained MLPs categorise differently when only their
+ *   transfer is swapped for the mode's (the error of the approximation on its own);
+ * - the end-to-end result of the two fold test with the MLP, trained from the same seed in every
+ *   mode: the accuracy, how many test rows were categorised differently from the exact mode, and
+ *   the training time. The MLP only learns from rows it gets wrong, so a tiny difference in an
+ *   output can change which rows it learns from and the training takes a different path; this
+ *   count shows how far that goes, rather than the error of the approximation.
+ *
+ * Usage: java ActivationValidation, with optional -Dactivation.modes (default exact,table,rational)
+ * and any -Dmlp.* property (-Dmlp.seed defaults to 1 here, so every mode starts from the same weights)
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ActivationValidation {
+
+	private static final double GRID_RANGE = 40.0; /* the transfer is checked from -GRID_RANGE to GRID_RANGE */
+	private static final int GRID_STEPS_PER_UNIT = 10_000;
+
+	/**
+	 * Measures the largest absolute difference between a mode's transfer and the exact sigmoid
+	 *
+	 * @param activation, the mode to check
+	 * @return the largest error found on the grid
+	 */
+	static double maxError(Activation activation) {
+		double[] inputs = new double[(int) (2 * GRID_RANGE * GRID_STEPS_PER_UNIT) + 1];
+		for (int pos = 0; pos < inputs.length; pos++)
+			inputs[pos] = -GRID_RANGE + (double) pos / GRID_STEPS_PER_UNIT;
+
+		double[] approximate = inputs.clone();
+		double[] exact = inputs.clone();
+		activation.transfer(approximate, approximate.length);
+		new Activation.Exact().transfer(exact, exact.length);
+
+		double maxError = 0.0;
+		for (int pos = 0; pos < inputs.length; pos++)
+			maxError = Math.max(maxError, Math.abs(approximate[pos] - exact[pos]));
+		return maxError;
+	}
+
+	/**
+	 * Times the transfer over layers of 60 weighted sums (the default hidden layer), spread like those of a trained MLP
+	 *
+	 * @param activation, the mode to time
+	 * @return the mean time per node, in nanoseconds
+	 */
+	static double nanosPerNode(Activation activation) {
+		Random random = new Random(1);
+		double[][] layers = new double[1024][60];
+		for (double[] layer : layers)
+			for (int node = 0; node < layer.length; node++)
+				layer[node] = random.nextGaussian() * 4;
+
+		double[] layer = new double[60];
+		double sink = 0.0;
+		long elapsed = 0, numNodes = 0;
+		for (int repetition = 0; repetition < 400; repetition++) {
+			long startTime = System.nanoTime();
+			for (double[] sums : layers) {
+				System.arraycopy(sums, 0, layer, 0, layer.length);
+				activation.transfer(layer, layer.length);
+				sink += layer[0];
+			}
+			/* the first half of the repetitions warm up the JIT */
+			if (repetition >= 200) {
+				elapsed += System.nanoTime() - startTime;
+				numNodes += layers.length * layer.length;
+			}
+		}
+		if (sink == Double.MIN_VALUE)
+			System.out.println(); /* uses the results, so the JIT cannot remove the work */
+		return (double) elapsed / numNodes;
+	}
+
+	/**
+	 * Categorises a row with a trained MLP's weights and the given transfer
+	 *
+	 * @param multilayerPerceptron, the trained MLP
+	 * @param activation, the transfer to use in place of the MLP's own
+	 * @param row, the row to categorise
+	 * @return the index of the output node with the highest value
+	 */
+	static int categorise(MultilayerPerceptron multilayerPerceptron, Activation activation, int[] row) {
+		double[] input = multilayerPerceptron.input(row);
+		double[][] inputToHiddenWeights = multilayerPerceptron.inputToHiddenWeights;
+		double[][] hiddenToOutputWeights = multilayerPerceptron.hiddenToOutputWeights;
+
+		double[] hidden = multilayerPerceptron.hiddenBias.clone();
+		for (int inputNode = 0; inputNode < input.length; inputNode++)
+			for (int hiddenNode = 0; hiddenNode < hidden.length; hiddenNode++)
+				hidden[hiddenNode] += inputToHiddenWeights[inputNode][hiddenNode] * input[inputNode];
+		activation.transfer(hidden, hidden.length);
+
+		double[] output = multilayerPerceptron.outputBias.clone();
+		for (int hiddenNode = 0; hiddenNode < hidden.length; hiddenNode++)
+			for (int outputNode = 0; outputNode < output.length; outputNode++)
+				output[outputNode] += hiddenToOutputWeights[hiddenNode][outputNode] * hidden[hiddenNode];
+		activation.transfer(output, output.length);
+
+		int outputIndex = 0;
+		for (int outputNode = 1; outputNode < output.length; outputNode++)
+			if (output[outputNode] > output[outputIndex])
+				outputIndex = outputNode;
+		return outputIndex;
+	}
+
+	public static void main(String[] args) {
+
+		/* the datasets are read from the current directory, the same as Main */
+		int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+		int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+		if (dataset1.length == 0 || dataset2.length == 0)
+			return;
+
+		Properties props = new Properties();
+		props.putAll(System.getProperties());
+		if (props.getProperty("mlp.seed") == null)
+			props.setProperty("mlp.seed", "1");
+
+		String[] modes = System.getProperty("activation.modes", "exact,table,rational").split(",");
+
+		/* the exact mode is trained first, as the reference for the others */
+		MultilayerPerceptronConfig exactConfig = MultilayerPerceptronConfig.fromProperties(props);
+		MultilayerPerceptron[] exactModels = new MultilayerPerceptron[2];
+		int[][] exactPredictions = new int[2][];
+		for (int fold = 0; fold < 2; fold++) {
+			exactModels[fold] = new MultilayerPerceptron(exactConfig);
+			exactModels[fold].trainModel(fold == 0 ? dataset1 : dataset2);
+			exactPredictions[fold] = exactModels[fold].scoreBatch(fold == 0 ? dataset2 : dataset1);
+		}
+
+		System.out.println("MLP: " + MultilayerPerceptronConfig.fromProperties(props) + ", seed=" + props.getProperty("mlp.seed"));
+		for (String mode : modes) {
+			Activation activation = Activation.forName(mode);
+			double maxError = maxError(activation);
+
+			props.setProperty("mlp.activation", mode);
+			MultilayerPerceptronConfig config = MultilayerPerceptronConfig.fromProperties(props);
+
+			/* the exact weights with only the transfer swapped */
+			int numChangedByTransfer = 0;
+			for (int fold = 0; fold < 2; fold++) {
+				int[][] testSet = fold == 0 ? dataset2 : dataset1;
+				for (int pos = 0; pos < testSet.length; pos++)
+					if (categorise(exactModels[fold], activation, testSet[pos]) != exactPredictions[fold][pos])
+						numChangedByTransfer++;
+			}
+
+			/* both folds trained with this mode */
+			int correct = 0, numDifferent = 0;
+			long startTime = System.nanoTime();
+			for (int fold = 0; fold < 2; fold++) {
+				int[][] trainSet = fold == 0 ? dataset1 : dataset2, testSet = fold == 0 ? dataset2 : dataset1;
+				MultilayerPerceptron multilayerPerceptron = new MultilayerPerceptron(config);
+				multilayerPerceptron.trainModel(trainSet);
+				int[] predictions = multilayerPerceptron.scoreBatch(testSet);
+				for (int pos = 0; pos < testSet.length; pos++) {
+					if (predictions[pos] == testSet[pos][testSet[pos].length - 1])
+						correct++;
+					if (predictions[pos] != exactPredictions[fold][pos])
+						numDifferent++;
+				}
+			}
+			long millis = (System.nanoTime() - startTime) / 1_000_000;
+
+			System.out.println(String.format("%-9s max error %.2e (documented %.0e, %s), %.2f ns/node", mode, maxError,
+					activation.maxError(), maxError <= activation.maxError() ? "ok" : "EXCEEDED", nanosPerNode(activation)));
+			System.out.println(String.format(
+					"          exact weights: %d rows changed; trained: accuracy %.2f%%, %d rows differ from exact, two folds in %d ms",
+					numChangedByTransfer, 100.0 * correct / (dataset1.length + dataset2.length), numDifferent, millis));
+		}
+	}
+}
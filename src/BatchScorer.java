@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BatchScorer.java:
+ * Categorises every row of many input files (e.g. the shard files of a nightly job) with one
+ * model. Each file goes through its own read, categorise and write pipeline (see
+ * StreamingClassifier), and a fixed number of files are processed at the same time on a
+ * bounded executor, so the machine stays busy while any one file is being read or written.
+ * The model is built once and shared by every file. A summary of the rows, time and throughput
+ * of each file is printed as it finishes, followed by the totals; a file that fails is reported
+ * and the others carry on.
+ *
+ * The inputs are a directory (every file in it matching -Dbatch.pattern, default *.csv) or a
+ * glob such as shards/part-*.csv. Each output file has the name of its input file followed by
+ * -Dbatch.suffix (default .out) and holds one line per row, the same as StreamingClassifier.
+ *
+ * The model is built from -Dbatch.reference, a dataset CSV file, or from cw2DataSet1.csv and
+ * cw2DataSet2.csv in the current directory if it is not set. For nn, the reference set can also
+ * be a binary file written by "java OutOfCoreNearestNeighbour convert", which is searched from disk.
+ * A seeded MLP with -Dmlp.checkpoint keeps its trained weights (see Checkpoint), so later runs
+ * load them instead of training again.
+ *
+ * Usage: java BatchScorer [nn|mlp|cascade] [input directory or glob] [output directory]
+ * with optional -Dbatch.reference, -Dbatch.parallelism (files at once, default one per core),
+ * -Dbatch.pattern, -Dbatch.suffix and -Dstream.chunkSize (rows per chunk, default 1024, or 65536
+ * for a binary reference file)
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class BatchScorer {
+
+	/**
+	 * The outcome of categorising one input file
+	 */
+	public static class FileResult {
+		final Path input;
+		final long numRows;
+		final long nanos; /* time from opening the input to closing the output */
+		final Throwable failure; /* null if the file was categorised */
+
+		FileResult(Path input, long numRows, long nanos, Throwable failure) {
+			this.input = input;
+			this.numRows = numRows;
+			this.nanos = nanos;
+			this.failure = failure;
+		}
+
+		/**
+		 * @return a one line summary of the file: rows, time and rows per second, or why it failed
+		 */
+		public String summary() {
+			if (failure != null)
+				return input + ": FAILED (" + (failure.getCause() != null ? failure.getCause() : failure) + ")";
+			double seconds = nanos / 1e9;
+			return String.format("%s: %d rows in %.2fs (%d rows/s)", input, numRows, seconds,
+					Math.round(numRows / Math.max(seconds, 1e-9)));
+		}
+	}
+
+	private final Scorer scorer;
+	private final int parallelism; /* files processed at the same time */
+	private final int chunkSize; /* rows in each chunk of a file's pipeline */
+
+	/**
+	 * @param scorer, the trained model, shared by every file
+	 * @param parallelism, the number of files to process at the same time
+	 * @param chunkSize, the number of rows in each chunk (see StreamingClassifier)
+	 */
+	public BatchScorer(Scorer scorer, int parallelism, int chunkSize) {
+		if (parallelism < 1 || chunkSize < 1)
+			throw new IllegalArgumentException("Parallelism and chunk size must be at least 1");
+
+		this.scorer = scorer;
+		this.parallelism = parallelism;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Categorises every input file, writing the results for each to the output directory
+	 *
+	 * @param inputs, the files to categorise
+	 * @param outputDirectory, the directory to write the results to (created if needed)
+	 * @param suffix, added to the name of each input file to name its output file
+	 * @return the result of each file, in the same order as the inputs
+	 */
+	public List<FileResult> run(List<Path> inputs, Path outputDirectory, String suffix)
+			throws IOException, InterruptedException {
+		Files.createDirectories(outputDirectory);
+
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			List<Future<FileResult>> futures = new ArrayList<>();
+			for (Path input : inputs) {
+				Path output = outputDirectory.resolve(input.getFileName() + suffix);
+				futures.add(executor.submit(() -> {
+					FileResult result = categorise(input, output);
+					System.out.println(result.summary()); /* reported as soon as each file finishes */
+					return result;
+				}));
+			}
+
+			List<FileResult> results = new ArrayList<>();
+			for (Future<FileResult> future : futures)
+				results.add(future.get());
+			return results;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Batch scoring failed", e.getCause()); /* categorise catches the file's own errors */
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Helper function that categorises one file through its own StreamingClassifier pipeline
+	 */
+	private FileResult categorise(Path input, Path output) {
+		long startTime = System.nanoTime();
+		try (InputStream in = Files.newInputStream(input); OutputStream out = Files.newOutputStream(output)) {
+			long numRows = new StreamingClassifier(scorer, chunkSize).run(in, out);
+			return new FileResult(input, numRows, System.nanoTime() - startTime, null);
+		} catch (IOException e) {
+			return failed(input, output, startTime, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return failed(input, output, startTime, e);
+		}
+	}
+
+	/**
+	 * Helper function that deletes the partly written output of a file that failed, so it is not mistaken for a result
+	 */
+	private static FileResult failed(Path input, Path output, long startTime, Exception failure) {
+		try {
+			Files.deleteIfExists(output);
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+		return new FileResult(input, 0, System.nanoTime() - startTime, failure);
+	}
+
+	/**
+	 * Finds the input files: every file in a directory that matches the pattern, or every file matching a glob
+	 *
+	 * @param location, a directory, or a glob whose last part holds the wildcards (e.g. shards/part-*.csv)
+	 * @param pattern, the glob that files in a directory must match
+	 * @return the matching files, in order of name
+	 */
+	public static List<Path> findInputs(String location, String pattern) throws IOException {
+		Path directory = Paths.get(location);
+		if (!Files.isDirectory(directory)) {
+			Path parent = directory.getParent();
+			pattern = directory.getFileName().toString();
+			directory = parent == null ? Paths.get(".") : parent;
+		}
+
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		List<Path> inputs = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files)
+				if (Files.isRegularFile(file) && matcher.matches(file.getFileName()))
+					inputs.add(file);
+		}
+		Collections.sort(inputs);
+		return inputs;
+	}
+
+	/**
+	 * Builds the model from the reference set
+	 *
+	 * @param model, "nn", "mlp" or "cascade" (see Scorer.forName)
+	 * @param reference, a dataset CSV file or, for nn, a binary reference file; null for the two datasets in the current directory
+	 * @return the trained model, or null if the reference set could not be read
+	 */
+	static Scorer buildScorer(String model, String reference) throws IOException {
+		if (reference != null && model.equals("nn") && OutOfCoreNearestNeighbour.isBinary(Paths.get(reference)))
+			return new OutOfCoreNearestNeighbour(Paths.get(reference), Integer.getInteger("ooc.blockRows", 4096));
+
+		int[][] trainSet;
+		if (reference != null)
+			trainSet = Utility.readFile(reference);
+		else {
+			int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+			int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+			trainSet = dataset1.length == 0 || dataset2.length == 0 ? new int[0][]
+					: Utility.combineDatasets(dataset1, dataset2);
+		}
+		return trainSet.length == 0 ? null : Scorer.forName(model, trainSet);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.out.println("Usage: java BatchScorer [nn|mlp|cascade] [input directory or glob] [output directory]");
+			return;
+		}
+
+		List<Path> inputs = findInputs(args[1], System.getProperty("batch.pattern", "*.csv"));
+		if (inputs.isEmpty()) {
+			System.out.println("No input files match " + args[1]);
+			return;
+		}
+
+		long buildStart = System.nanoTime();
+		Scorer scorer = buildScorer(args[0], System.getProperty("batch.reference"));
+		if (scorer == null)
+			return;
+		System.out.println("Built " + args[0] + " model in " + (System.nanoTime() - buildStart) / 1_000_000 + " ms");
+
+		int parallelism = Integer.getInteger("batch.parallelism", Runtime.getRuntime().availableProcessors());
+		/* the out-of-core search reads the whole reference file for every chunk, so it gets larger chunks */
+		int chunkSize = Integer.getInteger("stream.chunkSize", scorer instanceof OutOfCoreNearestNeighbour ? 65536 : 1024);
+		BatchScorer batchScorer = new BatchScorer(scorer, parallelism, chunkSize);
+
+		long startTime = System.nanoTime();
+		List<FileResult> results = batchScorer.run(inputs, Paths.get(args[2]), System.getProperty("batch.suffix", ".out"));
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+
+		long numRows = 0;
+		int numFailed = 0;
+		for (FileResult result : results) {
+			numRows += result.numRows;
+			if (result.failure != null)
+				numFailed++;
+		}
+
+		System.out.println("-------------------");
+		System.out.println(String.format("Categorised %d rows from %d files in %.2fs (%d rows/s) with %d files at once%s",
+				numRows, results.size() - numFailed, seconds, Math.round(numRows / seconds), parallelism,
+				numFailed > 0 ? ", " + numFailed + " files FAILED" : ""));
+	}
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark.java:
+ * Micro-benchmark suite for the hot paths of the project: Euclidean distance, nearest
+ * neighbour categorisation, the MLP forward and backward steps, one GA generation and
+ * reading a dataset file. Every benchmark runs on synthetic UCI-shaped data at several
+ * sizes. Each one is warmed up first so that the JIT has compiled it, then measured over
+ * several timed iterations; the mean time per operation is reported with its standard
+ * deviation and a 99.9% confidence interval, so regressions and optimisations can be told
+ * apart from noise.
+ *
+ * Benchmarks are selected by a regex over their keys: distance, nn.categorise, mlp.forward, mlp.backward,
+ * ga.generation, ga.packedGeneration and readFile.
+ * Usage: java Benchmark [regex to select benchmarks] with optional -Dbench.sizes=500,2810,10000,
+ * -Dbench.warmup (iterations), -Dbench.iterations, -Dbench.time (ms per iteration) and -Dbench.output (csv file).
+ * For the most reliable numbers run each benchmark in its own JVM by passing its name as the regex.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class Benchmark {
+
+	/**
+	 * The operation being measured. It returns a value that depends on its work, which is
+	 * consumed so that the JIT cannot remove the work as dead code.
+	 */
+	interface Operation {
+		long run() throws Exception;
+	}
+
+	/**
+	 * The measurements from one benchmark at one size
+	 */
+	static class Result {
+		final String name;
+		final int size;
+		final double[] nanosPerOp; /* average time per operation in each measurement iteration */
+
+		Result(String name, int size, double[] nanosPerOp) {
+			this.name = name;
+			this.size = size;
+			this.nanosPerOp = nanosPerOp;
+		}
+
+		double mean() {
+			double sum = 0.0;
+			for (double value : nanosPerOp)
+				sum += value;
+			return sum / nanosPerOp.length;
+		}
+
+		double standardDeviation() {
+			if (nanosPerOp.length < 2)
+				return 0.0;
+			double mean = mean(), sum = 0.0;
+			for (double value : nanosPerOp)
+				sum += (value - mean) * (value - mean);
+			return Math.sqrt(sum / (nanosPerOp.length - 1));
+		}
+
+		/**
+		 * @return half the width of the 99.9% confidence interval of the mean (Student's t distribution)
+		 */
+		double confidenceInterval() {
+			return studentT999(nanosPerOp.length - 1) * standardDeviation() / Math.sqrt(nanosPerOp.length);
+		}
+	}
+
+	/* two-sided 99.9% critical values of Student's t distribution for 1 to 30 degrees of freedom */
+	private static final double[] T_999 = { 636.62, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+			4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725,
+			3.707, 3.690, 3.674, 3.659, 3.646 };
+
+	private static double studentT999(int degreesOfFreedom) {
+		if (degreesOfFreedom < 1)
+			return 0.0;
+		/* above 30 degrees of freedom the normal distribution is a close enough approximation */
+		return degreesOfFreedom <= T_999.length ? T_999[degreesOfFreedom - 1] : 3.291;
+	}
+
+	static volatile long blackhole; /* results of every operation are consumed here */
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+
+	Benchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1_000_000L;
+	}
+
+	/**
+	 * Warms up and then measures an operation
+	 *
+	 * @param name, the name of the benchmark
+	 * @param size, the size of the data the operation runs on
+	 * @param operation, the operation to measure
+	 * @return the measurements
+	 */
+	Result measure(String name, int size, Operation operation) throws Exception {
+		for (int iteration = 0; iteration < warmupIterations; iteration++)
+			runIteration(operation);
+
+		double[] nanosPerOp = new double[measurementIterations];
+		for (int iteration = 0; iteration < measurementIterations; iteration++)
+			nanosPerOp[iteration] = runIteration(operation);
+
+		Result result = new Result(name, size, nanosPerOp);
+		System.out.println(String.format("%-36s %8d %16.1f +- %-12.1f (sd %.1f) ns/op", name, size, result.mean(),
+				result.confidenceInterval(), result.standardDeviation()));
+		return result;
+	}
+
+	/**
+	 * Helper function that runs the operation repeatedly for one iteration's worth of time
+	 *
+	 * @return the average time per operation in nanoseconds
+	 */
+	private double runIteration(Operation operation) throws Exception {
+		long sink = 0, numOps = 0;
+		long startTime = System.nanoTime(), elapsed;
+
+		do {
+			sink += operation.run();
+			numOps++;
+			elapsed = System.nanoTime() - startTime;
+		} while (elapsed < iterationNanos);
+
+		blackhole += sink;
+		return (double) elapsed / numOps;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+		String[] sizeValues = System.getProperty("bench.sizes", "500,2810,10000").split(",");
+
+		Benchmark benchmark = new Benchmark(Integer.getInteger("bench.warmup", 3),
+				Integer.getInteger("bench.iterations", 5), Long.getLong("bench.time", 1000L));
+		List<Result> results = new ArrayList<>();
+
+		System.out.println(String.format("%-36s %8s %16s", "Benchmark", "Size", "Mean"));
+
+		for (String sizeValue : sizeValues) {
+			int size = Integer.parseInt(sizeValue.trim());
+			int[][] trainSet = SyntheticData.generate(size, 1);
+			int[][] testSet = SyntheticData.generate(Math.min(size, 100), 2);
+
+			if (filter.matcher("distance").find()) {
+				int[] pos = { 0 };
+				results.add(benchmark.measure("Utility.euclideanDistance", size, () -> {
+					int current = pos[0];
+					pos[0] = current + 1 == trainSet.length ? 0 : current + 1;
+					return (long) Utility.euclideanDistance(trainSet[current], trainSet[pos[0]]);
+				}));
+			}
+
+			if (filter.matcher("nn.categorise").find()) {
+				/* categorise 100 test rows against a reference set of the given size */
+				NearestNeighbour nearestNeighbour = new NearestNeighbour();
+				results.add(benchmark.measure("NearestNeighbour.categorise (100)", size,
+						() -> nearestNeighbour.categorise(testSet, trainSet)));
+			}
+
+			if (filter.matcher("mlp.forward").find() || filter.matcher("mlp.backward").find()) {
+				MultilayerPerceptron multilayerPerceptron = new MultilayerPerceptron();
+				multilayerPerceptron.initialise(trainSet.length);
+				double[][] inputs = multilayerPerceptron.inputs(trainSet);
+				int[] pos = { 0 };
+
+				/* one row forward through the hidden and output layers */
+				if (filter.matcher("mlp.forward").find())
+					results.add(benchmark.measure("MultilayerPerceptron.forward", size, () -> {
+						pos[0] = pos[0] + 1 == trainSet.length ? 0 : pos[0] + 1;
+						multilayerPerceptron.forwardPropagation(inputs, pos[0]);
+						return (long) (multilayerPerceptron.outputLayer[pos[0]][0] * 1000);
+					}));
+
+				/* error gradients and weight update for one row that has already been forwarded */
+				if (filter.matcher("mlp.backward").find()) {
+					for (int row = 0; row < trainSet.length; row++)
+						multilayerPerceptron.forwardPropagation(inputs, row);
+
+					results.add(benchmark.measure("MultilayerPerceptron.backward", size, () -> {
+						pos[0] = pos[0] + 1 == trainSet.length ? 0 : pos[0] + 1;
+						double[][] gradients = multilayerPerceptron.calculateErrorGradients(trainSet, pos[0]);
+						multilayerPerceptron.weightUpdate(inputs, pos[0], gradients);
+						return gradients.length;
+					}));
+				}
+			}
+
+			if (filter.matcher("ga.generation").find()) {
+				GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm();
+				geneticAlgorithm.initialisePopulation(trainSet);
+				results.add(benchmark.measure("GeneticAlgorithm.generation", size, () -> {
+					geneticAlgorithm.nextGeneration(trainSet);
+					return geneticAlgorithm.fitnesses[0];
+				}));
+			}
+
+			if (filter.matcher("ga.packedGeneration").find()) {
+				PackedGeneticAlgorithm packedGeneticAlgorithm = new PackedGeneticAlgorithm(new GeneticAlgorithmConfig());
+				PackedGeneticAlgorithm.PackedDataset packedTrainSet = new PackedGeneticAlgorithm.PackedDataset(trainSet);
+				packedGeneticAlgorithm.initialisePopulation(trainSet, packedTrainSet);
+				results.add(benchmark.measure("PackedGeneticAlgorithm.generation", size, () -> {
+					packedGeneticAlgorithm.nextGeneration(packedTrainSet);
+					return packedGeneticAlgorithm.fitnesses[0];
+				}));
+			}
+
+			if (filter.matcher("readFile").find()) {
+				File file = writeTempDataset(trainSet);
+				results.add(benchmark.measure("Utility.readFile", size,
+						() -> Utility.readFile(file.getPath()).length));
+				file.delete();
+			}
+		}
+
+		String outputPath = System.getProperty("bench.output");
+		if (outputPath != null)
+			writeResults(results, outputPath);
+	}
+
+	/**
+	 * Helper function that writes a dataset to a temporary CSV file
+	 */
+	private static File writeTempDataset(int[][] dataset) throws IOException {
+		File file = File.createTempFile("benchmark", ".csv");
+		file.deleteOnExit();
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			for (int[] row : dataset) {
+				for (int pos = 0; pos < row.length; pos++)
+					writer.write((pos == 0 ? "" : ",") + row[pos]);
+				writer.newLine();
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Helper function that writes every result as a row of a CSV file
+	 */
+	private static void writeResults(List<Result> results, String outputPath) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.UTF_8)) {
+			writer.write("benchmark,size,meanNsPerOp,ci999,stdDev,iterations");
+			writer.newLine();
+			for (Result result : results) {
+				writer.write(result.name + "," + result.size + "," + result.mean() + "," + result.confidenceInterval()
+						+ "," + result.standardDeviation() + "," + result.nanosPerOp.length);
+				writer.newLine();
+			}
+		}
+	}
+}
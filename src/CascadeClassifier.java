@@ -0,0 +1,331 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CascadeClassifier.java:
+ * Two stage classifier. A cheap first stage (nearest class centroid or an MLP forward pass)
+ * categorises every row and measures how sure it is; only rows where it is unsure are passed
+ * on to the exact nearest neighbour search, which scans the whole reference set. Most digits
+ * are far from every category but their own, so most rows are answered by the first stage in
+ * microseconds, while the accuracy stays close to that of the nearest neighbour search alone.
+ *
+ * The first stage's confidence is its margin: for the centroids, how much farther the second
+ * nearest centroid is than the nearest ((d2 - d1) / d2); for the MLP, the difference between
+ * its two highest outputs. Unless a margin is set, the threshold is calibrated on rows held out
+ * from the training set: it is the lowest margin at which the first stage's answers on those rows
+ * still reach the target accuracy. The centroids are then recomputed from the whole training set;
+ * the MLP is kept as trained on the rest, rather than being trained a second time. The fraction
+ * of rows escalated to the nearest neighbour search and the latency of answered and escalated
+ * rows are reported for every fold.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class CascadeClassifier implements FoldEvaluator, Scorer {
+
+	private static final int NUM_CATEGORIES = MultilayerPerceptron.NUM_OUTPUT;
+
+	private final CascadeConfig config;
+	private final Random random; /* random number generator used to choose the held-out rows */
+
+	/**
+	 * The first stage's category for a row and how sure it is of it
+	 */
+	private static class Answer {
+		final int category;
+		final double margin;
+
+		Answer(int category, double margin) {
+			this.category = category;
+			this.margin = margin;
+		}
+	}
+
+	private double threshold; /* smallest margin at which the first stage's answer is kept */
+	private String calibrationSummary; /* how the threshold was calibrated, if it was */
+
+	private double[][] centroids; /* mean row of each category, for the centroid stage */
+	private MultilayerPerceptron multilayerPerceptron; /* the MLP, for the mlp stage */
+	private NearestNeighbour nearestNeighbour; /* the exact second stage */
+
+	private final LongAdder numRows = new LongAdder();
+	private final LongAdder numEscalated = new LongAdder();
+	private final LatencyHistogram answeredLatency = new LatencyHistogram(); /* rows answered by the first stage */
+	private final LatencyHistogram escalatedLatency = new LatencyHistogram(); /* rows passed on to the nearest neighbour */
+
+	private String summary;
+
+	private EvaluationSink sink; /* records the prediction for each test row, if set */
+	private int sinkFirstRow;
+
+	/**
+	 * @param config, the first stage and its margin
+	 */
+	public CascadeClassifier(CascadeConfig config) {
+		this.config = config;
+		this.random = config.seed == null ? new Random() : new Random(config.seed);
+	}
+
+	/**
+	 * Builds both stages from a training set, calibrating the margin threshold if it is not set
+	 *
+	 * @param trainSet, the rows to train with
+	 */
+	public void train(int[][] trainSet) {
+		if (config.margin != null) {
+			fitFirstStage(trainSet);
+			threshold = config.margin;
+		} else {
+			int[][] shuffled = PrototypeReduction.shuffled(trainSet, random);
+			int numHeldOut = Math.max(1, (int) (shuffled.length * config.validationFraction));
+			int[][] heldOut = Arrays.copyOfRange(shuffled, 0, numHeldOut);
+
+			fitFirstStage(Arrays.copyOfRange(shuffled, numHeldOut, shuffled.length));
+			threshold = calibrate(heldOut);
+
+			/* the centroids are cheap, so they are recomputed from every training row */
+			if (centroids != null)
+				centroids = centroids(trainSet);
+		}
+
+		nearestNeighbour = new NearestNeighbour(config.nnConfig, trainSet);
+		numRows.reset();
+		numEscalated.reset();
+		answeredLatency.reset();
+		escalatedLatency.reset();
+	}
+
+	/**
+	 * Helper function that trains the first stage
+	 */
+	private void fitFirstStage(int[][] rows) {
+		if (config.stage.equals("mlp")) {
+			multilayerPerceptron = new MultilayerPerceptron(config.mlpConfig);
+			multilayerPerceptron.trainModel(rows);
+		} else
+			centroids = centroids(rows);
+	}
+
+	/**
+	 * Helper function that finds the lowest threshold at which the first stage's answers on the
+	 * held-out rows are at least the target accuracy. The rows are sorted from the highest margin
+	 * down, and the threshold is the margin of the last row at which the accuracy of the rows
+	 * so far is still high enough.
+	 *
+	 * @param heldOut, rows that the first stage was not trained on
+	 * @return the threshold; above 1 (every row is escalated) if no threshold reaches the target
+	 */
+	private double calibrate(int[][] heldOut) {
+		int lastIndex = heldOut[0].length - 1;
+		Answer[] answers = new Answer[heldOut.length];
+		Integer[] order = new Integer[heldOut.length];
+		for (int pos = 0; pos < heldOut.length; pos++) {
+			answers[pos] = firstStage(heldOut[pos]);
+			order[pos] = pos;
+		}
+		Arrays.sort(order, (first, second) -> Double.compare(answers[second].margin, answers[first].margin));
+
+		double calibrated = Double.POSITIVE_INFINITY;
+		int numCorrect = 0, numAnswered = 0;
+		for (int rank = 0; rank < order.length; rank++) {
+			Answer answer = answers[order[rank]];
+			if (answer.category == heldOut[order[rank]][lastIndex])
+				numCorrect++;
+
+			/* rows with the same margin are answered or escalated together */
+			boolean lastOfMargin = rank + 1 == order.length || answers[order[rank + 1]].margin < answer.margin;
+			if (lastOfMargin && 100.0 * numCorrect >= config.targetAccuracy * (rank + 1)) {
+				calibrated = answer.margin;
+				numAnswered = rank + 1;
+			}
+		}
+
+		calibrationSummary = String.format("margin %.3f calibrated to answer %.1f%% of %d held-out rows at %.1f%% target",
+				calibrated, 100.0 * numAnswered / heldOut.length, heldOut.length, config.targetAccuracy);
+		return calibrated;
+	}
+
+	/**
+	 * Helper function that works out the mean row of each category
+	 */
+	private static double[][] centroids(int[][] trainSet) {
+		int numFeatures = trainSet[0].length - 1;
+		double[][] sums = new double[NUM_CATEGORIES][numFeatures];
+		int[] counts = new int[NUM_CATEGORIES];
+
+		for (int[] row : trainSet) {
+			int category = row[numFeatures];
+			counts[category]++;
+			for (int pos = 0; pos < numFeatures; pos++)
+				sums[category][pos] += row[pos];
+		}
+
+		for (int category = 0; category < NUM_CATEGORIES; category++)
+			for (int pos = 0; pos < numFeatures; pos++)
+				sums[category][pos] /= Math.max(1, counts[category]);
+		return sums;
+	}
+
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		train(trainSet);
+
+		int numCorrect = 0;
+		int lastIndex = testSet[0].length - 1;
+
+		/* rows are scored one at a time so that the latency of each row is measured */
+		for (int pos = 0; pos < testSet.length; pos++) {
+			int category = score(testSet[pos]);
+			if (category == testSet[pos][lastIndex])
+				numCorrect++;
+			if (sink != null)
+				sink.record(sinkFirstRow + pos, category, testSet[pos][lastIndex]);
+		}
+
+		summary = summary();
+		return numCorrect;
+	}
+
+	@Override
+	public String foldSummary() {
+		return summary;
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		this.sink = sink;
+		this.sinkFirstRow = firstRow;
+	}
+
+	/**
+	 * Categorises a row with the first stage, passing it on to the nearest neighbour search if the first stage is unsure
+	 *
+	 * @param row, the row to categorise
+	 * @return the predicted category
+	 */
+	@Override
+	public int score(int[] row) {
+		long startTime = System.nanoTime();
+		Answer answer = firstStage(row);
+		numRows.increment();
+
+		if (answer.margin >= threshold) {
+			answeredLatency.record(System.nanoTime() - startTime);
+			return answer.category;
+		}
+
+		int category = nearestNeighbour.score(row);
+		numEscalated.increment();
+		escalatedLatency.record(System.nanoTime() - startTime);
+		return category;
+	}
+
+	/**
+	 * Categorises a batch; the rows the first stage is unsure of are passed on to the nearest
+	 * neighbour search together, as one batch. Latencies are only recorded by score.
+	 */
+	@Override
+	public int[] scoreBatch(int[][] rows) {
+		int[] categories = new int[rows.length];
+		int[] escalatedPositions = new int[rows.length];
+		int numUnsure = 0;
+
+		for (int pos = 0; pos < rows.length; pos++) {
+			Answer answer = firstStage(rows[pos]);
+			categories[pos] = answer.category;
+			if (answer.margin < threshold)
+				escalatedPositions[numUnsure++] = pos;
+		}
+
+		if (numUnsure > 0) {
+			int[][] unsureRows = new int[numUnsure][];
+			for (int pos = 0; pos < numUnsure; pos++)
+				unsureRows[pos] = rows[escalatedPositions[pos]];
+
+			int[] unsureCategories = nearestNeighbour.scoreBatch(unsureRows);
+			for (int pos = 0; pos < numUnsure; pos++)
+				categories[escalatedPositions[pos]] = unsureCategories[pos];
+		}
+
+		numRows.add(rows.length);
+		numEscalated.add(numUnsure);
+		return categories;
+	}
+
+	/**
+	 * Helper function that runs the first stage on a row
+	 */
+	private Answer firstStage(int[] row) {
+		return multilayerPerceptron != null ? mlpStage(row) : centroidStage(row);
+	}
+
+	/**
+	 * Helper function that finds the nearest and second nearest centroids
+	 */
+	private Answer centroidStage(int[] row) {
+		double nearest = Double.MAX_VALUE, secondNearest = Double.MAX_VALUE;
+		int nearestCategory = 0;
+
+		for (int category = 0; category < NUM_CATEGORIES; category++) {
+			double[] centroid = centroids[category];
+			double sum = 0.0;
+			for (int pos = 0; pos < centroid.length; pos++) {
+				double difference = row[pos] - centroid[pos];
+				sum += difference * difference;
+			}
+
+			if (sum < nearest) {
+				secondNearest = nearest;
+				nearest = sum;
+				nearestCategory = category;
+			} else if (sum < secondNearest)
+				secondNearest = sum;
+		}
+
+		return new Answer(nearestCategory, secondNearest == 0.0 ? 0.0 : 1.0 - Math.sqrt(nearest / secondNearest));
+	}
+
+	/**
+	 * Helper function that finds the two highest outputs of the MLP
+	 */
+	private Answer mlpStage(int[] row) {
+		double[] output = multilayerPerceptron.outputs(row);
+		int highest = output[1] > output[0] ? 1 : 0, second = 1 - highest;
+
+		for (int outputNode = 2; outputNode < output.length; outputNode++) {
+			if (output[outputNode] > output[highest]) {
+				second = highest;
+				highest = outputNode;
+			} else if (output[outputNode] > output[second])
+				second = outputNode;
+		}
+
+		return new Answer(highest, output[highest] - output[second]);
+	}
+
+	/**
+	 * @return the fraction of rows scored so far that were passed on to the nearest neighbour search
+	 */
+	public double escalatedFraction() {
+		long rows = numRows.sum();
+		return rows == 0 ? 0.0 : (double) numEscalated.sum() / rows;
+	}
+
+	/**
+	 * @return the fraction of rows escalated and the median and p99 latency of answered and escalated rows
+	 */
+	public String summary() {
+		long answered = answeredLatency.count(), escalated = escalatedLatency.count();
+		long total = answered + escalated;
+		return String.format(
+				"%s cascade (%s) escalated %d of %d rows (%.1f%%); latency p50/p99 %.1f/%.1f us answered, "
+						+ "%.1f/%.1f us escalated, %.1f us mean overall",
+				config.stage, calibrationSummary == null ? String.format("margin %.3f", threshold) : calibrationSummary,
+				numEscalated.sum(), numRows.sum(), escalatedFraction() * 100.0,
+				answeredLatency.percentile(50) / 1000.0, answeredLatency.percentile(99) / 1000.0,
+				escalatedLatency.percentile(50) / 1000.0, escalatedLatency.percentile(99) / 1000.0,
+				total == 0 ? 0.0 : (answeredLatency.mean() * answered + escalatedLatency.mean() * escalated) / total / 1000.0);
+	}
+}
@@ -0,0 +1,74 @@
+import java.util.Properties;
+
+/**
+ * CascadeConfig.java:
+ * Runtime configuration for the cascade classifier. The first stage is either the nearest
+ * class centroid ("centroid", a handful of distances per row) or the MLP ("mlp", one forward
+ * pass). Its answer is kept when its confidence margin is at least the threshold; any other
+ * row is passed on to the nearest neighbour search, which is configured by the -Dnn.*
+ * properties (and, for the MLP, -Dmlp.*) as usual. By default the threshold is calibrated on
+ * a held-out part of the training set, as the lowest margin at which the first stage's answers
+ * are still at least the target accuracy.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class CascadeConfig {
+
+	String stage = "centroid"; /* "centroid" or "mlp" */
+	Double margin = null; /* smallest margin that is trusted (0-1), null to calibrate it */
+	double targetAccuracy = 99.0; /* accuracy (%) the first stage must keep on the rows it answers when calibrating */
+	double validationFraction = 0.2; /* part of the training set held out to calibrate the margin */
+
+	Long seed = null; /* seed for choosing the held-out rows, null for different ones every run */
+
+	MultilayerPerceptronConfig mlpConfig = new MultilayerPerceptronConfig();
+	NearestNeighbourConfig nnConfig = new NearestNeighbourConfig();
+
+	/**
+	 * Creates a configuration from properties; any property that is not set keeps its default value.
+	 * Recognised keys are cascade.stage, cascade.margin (a number, or "auto" to calibrate it),
+	 * cascade.targetAccuracy, cascade.validationFraction and cascade.seed, as well as the mlp.* and nn.* keys
+	 *
+	 * @param props, the properties to read (usually System.getProperties())
+	 * @return the new configuration
+	 */
+	public static CascadeConfig fromProperties(Properties props) {
+		CascadeConfig config = new CascadeConfig();
+
+		config.stage = props.getProperty("cascade.stage", config.stage);
+		String margin = props.getProperty("cascade.margin", "auto");
+		config.margin = margin.equals("auto") ? null : Double.parseDouble(margin);
+		config.targetAccuracy = Double
+				.parseDouble(props.getProperty("cascade.targetAccuracy", "" + config.targetAccuracy));
+		config.validationFraction = Double
+				.parseDouble(props.getProperty("cascade.validationFraction", "" + config.validationFraction));
+
+		if (props.getProperty("cascade.seed") != null)
+			config.seed = Long.parseLong(props.getProperty("cascade.seed"));
+
+		config.mlpConfig = MultilayerPerceptronConfig.fromProperties(props);
+		config.nnConfig = NearestNeighbourConfig.fromProperties(props);
+
+		config.validate();
+		return config;
+	}
+
+	/**
+	 * Checks that the first stage and its parameters are valid
+	 */
+	void validate() {
+		if (!stage.equals("centroid") && !stage.equals("mlp"))
+			throw new IllegalArgumentException("Unknown cascade stage: " + stage);
+		if (margin != null && (margin < 0.0 || margin > 1.0))
+			throw new IllegalArgumentException("Cascade margin must be between 0 and 1: " + margin);
+		if (validationFraction <= 0.0 || validationFraction >= 1.0)
+			throw new IllegalArgumentException("Validation fraction must be between 0 and 1: " + validationFraction);
+	}
+
+	@Override
+	public String toString() {
+		return "stage=" + stage + ", margin=" + (margin == null ? "auto (target " + targetAccuracy + "%)" : margin);
+	}
+}
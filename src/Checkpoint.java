@@ -0,0 +1,333 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint.java:
+ * Periodic checkpoints of a long training run (the MLP's epochs or the GA's generations), so
+ * that a run whose process dies can carry on from its last checkpoint instead of starting
+ * again. A checkpoint is a small binary file: a header (magic number, version, kind, the run's
+ * fingerprint and the epoch or generation it was written at), the state written by the
+ * algorithm, and a CRC32 of everything before it.
+ *
+ * Each checkpoint is written to a temporary file, forced to disk and then renamed over the
+ * previous one in a single atomic move, so the file on disk is always a whole checkpoint; a
+ * crash while writing leaves the previous checkpoint as it was. The file name includes a
+ * fingerprint of the training set and the configuration, so each fold of each run has its own
+ * file and a run only resumes from a checkpoint that was written by the same run.
+ *
+ * Writing takes time away from training, so the interval grows (doubles) whenever the last
+ * write took longer than the allowed fraction of the training time since the checkpoint before
+ * it. The overhead therefore stays below that fraction however fast the training steps are.
+ *
+ * Usage: java Checkpoint file, prints the header of a checkpoint file
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class Checkpoint {
+
+	static final int MAGIC = 0x55434943; /* "UCIC" */
+	static final int VERSION = 1;
+
+	static final byte MLP = 1;
+	static final byte GA = 2;
+
+	/**
+	 * Writes the algorithm's part of a checkpoint
+	 */
+	public interface State {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private final Path path; /* the checkpoint file for this run */
+	private final byte kind; /* MLP or GA */
+	private final long fingerprint; /* identifies the training set and configuration of the run */
+	private final double maxOverhead; /* largest fraction of the training time to spend writing checkpoints */
+
+	private int interval; /* epochs or generations between checkpoints; grows if writing takes too long */
+	private int lastStep = 0; /* epoch or generation of the last checkpoint */
+	private long lastWriteEnd = System.nanoTime(); /* when the last checkpoint was written (or the run started) */
+
+	private int numWrites = 0;
+	private long writeNanos = 0; /* total time spent writing checkpoints */
+
+	/**
+	 * @param prefix, the start of the checkpoint file's path; the kind and fingerprint are added to it
+	 * @param kind, MLP or GA
+	 * @param fingerprint, the fingerprint of the run (see fingerprint)
+	 * @param interval, the number of epochs or generations between checkpoints, at least
+	 * @param maxOverhead, the largest fraction of the training time to spend writing checkpoints
+	 */
+	public Checkpoint(String prefix, byte kind, long fingerprint, int interval, double maxOverhead) {
+		if (interval < 1)
+			throw new IllegalArgumentException("Checkpoint interval must be at least 1: " + interval);
+		if (maxOverhead <= 0.0)
+			throw new IllegalArgumentException("Checkpoint overhead must be positive: " + maxOverhead);
+
+		this.kind = kind;
+		this.fingerprint = fingerprint;
+		this.interval = interval;
+		this.maxOverhead = maxOverhead;
+		this.path = Paths.get(prefix + "-" + (kind == MLP ? "mlp" : "ga") + "-" + Long.toHexString(fingerprint)
+				+ ".ckpt");
+	}
+
+	/**
+	 * Works out the fingerprint of a run from its training set and a description of its configuration (FNV-1a)
+	 *
+	 * @param trainSet, the training set of the fold
+	 * @param description, everything else that makes the run different (parameters and seed)
+	 * @return the fingerprint
+	 */
+	public static long fingerprint(int[][] trainSet, String description) {
+		long hash = 0xcbf29ce484222325L;
+		for (int[] row : trainSet)
+			for (int value : row)
+				hash = (hash ^ value) * 0x100000001b3L;
+		for (int pos = 0; pos < description.length(); pos++)
+			hash = (hash ^ description.charAt(pos)) * 0x100000001b3L;
+		return hash;
+	}
+
+	/**
+	 * @return the checkpoint file for this run
+	 */
+	public Path path() {
+		return path;
+	}
+
+	/**
+	 * @param step, the epoch or generation that has just finished
+	 * @return true if a checkpoint should be written now
+	 */
+	public boolean due(int step) {
+		return step - lastStep >= interval;
+	}
+
+	/**
+	 * Writes a checkpoint, replacing the previous one
+	 *
+	 * @param step, the epoch or generation that has just finished
+	 * @param finished, true if the run has finished training
+	 * @param state, writes the algorithm's state
+	 */
+	public void write(int step, boolean finished, State state) throws IOException {
+		long startTime = System.nanoTime();
+		Path temp = Paths.get(path + ".tmp");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeByte(kind);
+		out.writeLong(fingerprint);
+		out.writeInt(step);
+		out.writeBoolean(finished);
+		state.write(out);
+		out.flush();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray(), 0, bytes.size());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		try (FileOutputStream file = new FileOutputStream(temp.toFile());
+				BufferedOutputStream buffered = new BufferedOutputStream(file)) {
+			bytes.writeTo(buffered);
+			buffered.flush();
+			file.getChannel().force(true); /* on disk before it replaces the previous checkpoint */
+		}
+		Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		/* if this write took more than the allowed share of the time since the last one, write less often */
+		long endTime = System.nanoTime();
+		long trainingNanos = startTime - lastWriteEnd;
+		if (endTime - startTime > maxOverhead * trainingNanos)
+			interval *= 2;
+
+		lastStep = step;
+		lastWriteEnd = endTime;
+		numWrites++;
+		writeNanos += endTime - startTime;
+	}
+
+	/**
+	 * A checkpoint read back from its file
+	 */
+	public static class Saved {
+		final int step; /* the epoch or generation it was written at */
+		final boolean finished; /* true if the run had finished training */
+		final DataInputStream in; /* the algorithm's state */
+
+		Saved(int step, boolean finished, DataInputStream in) {
+			this.step = step;
+			this.finished = finished;
+			this.in = in;
+		}
+	}
+
+	/**
+	 * Reads this run's checkpoint, if it has one
+	 *
+	 * @return the checkpoint, or null if there is no checkpoint file for this run
+	 * @throws IOException if the file cannot be read or is not a whole checkpoint of this run
+	 */
+	public Saved read() throws IOException {
+		if (!Files.exists(path))
+			return null;
+
+		byte[] bytes = Files.readAllBytes(path);
+		if (bytes.length < 8)
+			throw new IOException(path + " is too short to be a checkpoint");
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong())
+			throw new IOException(path + " is damaged (CRC mismatch)");
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readByte() != kind)
+			throw new IOException(path + " is not a version " + VERSION + " " + (kind == MLP ? "MLP" : "GA") + " checkpoint");
+		if (in.readLong() != fingerprint)
+			throw new IOException(path + " was written by a different run");
+
+		int step = in.readInt();
+		boolean finished = in.readBoolean();
+		lastStep = step;
+		return new Saved(step, finished, in);
+	}
+
+	/**
+	 * Deletes this run's checkpoint file, e.g. once the run has finished
+	 */
+	public void delete() throws IOException {
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * @return how many checkpoints were written, the time spent writing them and the current interval
+	 */
+	public String summary() {
+		return String.format("%d checkpoints written in %.1f ms (every %d)", numWrites, writeNanos / 1e6, interval);
+	}
+
+	/**
+	 * Writes the state of a random number generator, so that it carries on with the same numbers when read back
+	 */
+	static void writeRandom(DataOutputStream out, Random random) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+			objects.writeObject(random);
+		}
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	/**
+	 * Reads the state of a random number generator written by writeRandom
+	 */
+	static Random readRandom(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (Random) objects.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Random number generator state is damaged", e);
+		}
+	}
+
+	/**
+	 * Writes a 2D array of doubles, with its dimensions
+	 */
+	static void writeMatrix(DataOutputStream out, double[][] matrix) throws IOException {
+		out.writeInt(matrix.length);
+		out.writeInt(matrix.length == 0 ? 0 : matrix[0].length);
+		for (double[] row : matrix)
+			for (double value : row)
+				out.writeDouble(value);
+	}
+
+	/**
+	 * Reads a 2D array of doubles written by writeMatrix into an array of the same dimensions
+	 */
+	static void readMatrix(DataInputStream in, double[][] matrix) throws IOException {
+		int numRows = in.readInt(), numColumns = in.readInt();
+		if (numRows != matrix.length || (numRows > 0 && numColumns != matrix[0].length))
+			throw new IOException("Checkpoint has a " + numRows + "x" + numColumns + " matrix where "
+					+ matrix.length + "x" + (matrix.length == 0 ? 0 : matrix[0].length) + " was expected");
+		for (double[] row : matrix)
+			for (int column = 0; column < row.length; column++)
+				row[column] = in.readDouble();
+	}
+
+	/**
+	 * Writes GA genes, one byte per value (every value is 0-16)
+	 */
+	static void writeGenes(DataOutputStream out, int[][] genes) throws IOException {
+		out.writeInt(genes.length);
+		out.writeInt(genes.length == 0 ? 0 : genes[0].length);
+		byte[] values = new byte[genes.length == 0 ? 0 : genes[0].length];
+		for (int[] gene : genes) {
+			for (int pos = 0; pos < gene.length; pos++)
+				values[pos] = (byte) gene[pos];
+			out.write(values);
+		}
+	}
+
+	/**
+	 * Reads GA genes written by writeGenes
+	 */
+	static int[][] readGenes(DataInputStream in) throws IOException {
+		int[][] genes = new int[in.readInt()][in.readInt()];
+		byte[] values = new byte[genes.length == 0 ? 0 : genes[0].length];
+		for (int[] gene : genes) {
+			in.readFully(values);
+			for (int pos = 0; pos < gene.length; pos++)
+				gene[pos] = values[pos];
+		}
+		return genes;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java Checkpoint file");
+			return;
+		}
+
+		byte[] bytes = Files.readAllBytes(Paths.get(args[0]));
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (bytes.length < 30 || in.readInt() != MAGIC) {
+			System.out.println(args[0] + " is not a checkpoint");
+			return;
+		}
+
+		int version = in.readInt();
+		byte kind = in.readByte();
+		long fingerprint = in.readLong();
+		int step = in.readInt();
+		boolean finished = in.readBoolean();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		boolean intact = crc.getValue() == ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong();
+
+		System.out.println(args[0] + ": version " + version + " " + (kind == MLP ? "MLP" : kind == GA ? "GA" : "unknown")
+				+ " checkpoint, fingerprint " + Long.toHexString(fingerprint) + ", " + (kind == MLP ? "epoch " : "generation ")
+				+ step + (finished ? " (finished)" : "") + ", " + bytes.length + " bytes, " + (intact ? "intact" : "DAMAGED"));
+	}
+}
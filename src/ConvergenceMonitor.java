@@ -0,0 +1,184 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * ConvergenceMonitor.java:
+ * Tracks the best and mean fitness of the GA population after every generation
+ * and decides when the generation loop should stop early. The loop can stop when
+ * a target fitness is reached, when the best fitness has not improved for a number
+ * of generations (stagnation), or when a wall-clock time budget runs out.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ConvergenceMonitor {
+
+	/**
+	 * The reason that the generation loop stopped
+	 */
+	public enum StopReason {
+		MAX_GENERATIONS, TARGET_REACHED, STAGNATED, TIME_BUDGET
+	}
+
+	private final int maxGenerations; /* the generation limit from the configuration */
+	private final int targetFitness; /* fitness at which to stop, 0 if disabled */
+	private final int stagnationWindow; /* generations without improvement before stopping, 0 if disabled */
+	private final long deadline; /* System.nanoTime() at which to stop, Long.MAX_VALUE if disabled */
+
+	private final int[] bestFitness; /* best fitness in the population, one entry per generation */
+	private final double[] meanFitness; /* mean fitness of the population, one entry per generation */
+	private int numRecorded = 0; /* number of generations recorded so far (including generation 0) */
+
+	private int bestSoFar = -1; /* highest fitness seen in any generation */
+	private int lastImprovement = 0; /* generation at which bestSoFar last increased */
+
+	private StopReason stopReason = StopReason.MAX_GENERATIONS;
+
+	/**
+	 * Creates a monitor for one run of the genetic algorithm
+	 *
+	 * @param config, the GA configuration containing the stopping criteria
+	 * @param maxFitness, the highest fitness possible on the training set
+	 */
+	public ConvergenceMonitor(GeneticAlgorithmConfig config, int maxFitness) {
+		this.maxGenerations = config.generations;
+		this.targetFitness = config.targetFitnessPercent > 0
+				? (int) Math.ceil(maxFitness * config.targetFitnessPercent / 100.0)
+				: 0;
+		this.stagnationWindow = config.stagnationWindow;
+		this.deadline = config.timeBudgetMillis > 0 ? System.nanoTime() + config.timeBudgetMillis * 1_000_000L
+				: Long.MAX_VALUE;
+
+		/* generation 0 is the initial population */
+		this.bestFitness = new int[maxGenerations + 1];
+		this.meanFitness = new double[maxGenerations + 1];
+	}
+
+	/**
+	 * Records the fitness of the population after a generation and checks the stopping criteria
+	 *
+	 * @param fitnesses, the fitness of every gene in the population
+	 * @return true if the generation loop should stop
+	 */
+	public boolean record(int[] fitnesses) {
+		int best = 0;
+		long sum = 0;
+
+		for (int fitness : fitnesses) {
+			sum += fitness;
+			if (fitness > best)
+				best = fitness;
+		}
+
+		int generation = numRecorded++;
+		bestFitness[generation] = best;
+		meanFitness[generation] = (double) sum / fitnesses.length;
+
+		if (best > bestSoFar) {
+			bestSoFar = best;
+			lastImprovement = generation;
+		}
+
+		/* check each stopping criteria, from most to least desirable */
+		if (targetFitness > 0 && best >= targetFitness)
+			stopReason = StopReason.TARGET_REACHED;
+		else if (stagnationWindow > 0 && generation - lastImprovement >= stagnationWindow)
+			stopReason = StopReason.STAGNATED;
+		else if (System.nanoTime() >= deadline)
+			stopReason = StopReason.TIME_BUDGET;
+		else if (generation >= maxGenerations)
+			stopReason = StopReason.MAX_GENERATIONS;
+		else
+			return false;
+
+		return true;
+	}
+
+	/**
+	 * Writes the fitness history and stopping state to a checkpoint (see Checkpoint)
+	 *
+	 * @param out, the checkpoint being written
+	 */
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(numRecorded);
+		for (int generation = 0; generation < numRecorded; generation++) {
+			out.writeInt(bestFitness[generation]);
+			out.writeDouble(meanFitness[generation]);
+		}
+		out.writeInt(bestSoFar);
+		out.writeInt(lastImprovement);
+		out.writeByte(stopReason.ordinal());
+	}
+
+	/**
+	 * Reads the fitness history and stopping state written by writeTo, so that a resumed run carries on
+	 * from the generation it was checkpointed at. The time budget starts again from when this monitor was created.
+	 *
+	 * @param in, the checkpoint being read
+	 */
+	void readFrom(DataInputStream in) throws IOException {
+		int numSaved = in.readInt();
+		if (numSaved < 1 || numSaved > bestFitness.length)
+			throw new IOException("Checkpoint has " + numSaved + " generations, but the limit is " + maxGenerations);
+
+		for (int generation = 0; generation < numSaved; generation++) {
+			bestFitness[generation] = in.readInt();
+			meanFitness[generation] = in.readDouble();
+		}
+		numRecorded = numSaved;
+		bestSoFar = in.readInt();
+		lastImprovement = in.readInt();
+		stopReason = StopReason.values()[in.readByte()];
+	}
+
+	/**
+	 * @return the last generation that was run (0 is the initial population)
+	 */
+	public int getStopGeneration() {
+		return numRecorded - 1;
+	}
+
+	/**
+	 * @return the reason that the generation loop stopped
+	 */
+	public StopReason getStopReason() {
+		return stopReason;
+	}
+
+	/**
+	 * @return the best fitness of each generation that was run
+	 */
+	public int[] getBestFitness() {
+		return Arrays.copyOf(bestFitness, numRecorded);
+	}
+
+	/**
+	 * @param fitness, the fitness to look for
+	 * @return the first generation at which the best gene reached the given fitness, or -1 if none did
+	 */
+	public int generationReaching(int fitness) {
+		for (int generation = 0; generation < numRecorded; generation++)
+			if (bestFitness[generation] >= fitness)
+				return generation;
+		return -1;
+	}
+
+	/**
+	 * @return the mean fitness of each generation that was run
+	 */
+	public double[] getMeanFitness() {
+		return Arrays.copyOf(meanFitness, numRecorded);
+	}
+
+	/**
+	 * @return a one line summary of when and why the generation loop stopped
+	 */
+	public String summary() {
+		int last = numRecorded - 1;
+		return "Stopped at generation " + last + "/" + maxGenerations + " (" + stopReason + "), best fitness = "
+				+ bestFitness[last] + ", mean fitness = " + Math.round(meanFitness[last] * 100.0) / 100.0;
+	}
+}
@@ -0,0 +1,268 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * CrossValidation.java:
+ * Cross-validation engine that runs folds on a shared executor. Every fold of every
+ * algorithm is submitted as its own task, so the folds of one algorithm and different
+ * algorithms all run at the same time, and the total running time is bounded by the
+ * slowest fold. Supports the original two fold test, k-fold and stratified k-fold.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class CrossValidation {
+
+	private final ExecutorService executor; /* executor shared by all folds of all algorithms */
+
+	/**
+	 * @param executor, the executor to run folds on
+	 */
+	public CrossValidation(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * A single fold; the training set and the test set for one train/test run
+	 */
+	public static class Fold {
+		final int[][] trainSet;
+		final int[][] testSet;
+
+		Fold(int[][] trainSet, int[][] testSet) {
+			this.trainSet = trainSet;
+			this.testSet = testSet;
+		}
+	}
+
+	/**
+	 * Creates the two folds for the original two fold test; train on dataset1 and test on
+	 * dataset2, then train on dataset2 and test on dataset1
+	 *
+	 * @param dataset1, the first dataset
+	 * @param dataset2, the second dataset
+	 * @return the two folds
+	 */
+	public static Fold[] twoFolds(int[][] dataset1, int[][] dataset2) {
+		return new Fold[] { new Fold(dataset1, dataset2), new Fold(dataset2, dataset1) };
+	}
+
+	/**
+	 * Splits a dataset into k folds after shuffling it. Each fold tests on one
+	 * part and trains on the other k-1 parts.
+	 *
+	 * @param dataset, the dataset to split
+	 * @param numFolds, the number of folds (k)
+	 * @param random, random number generator used to shuffle the rows
+	 * @return the k folds
+	 */
+	public static Fold[] kFolds(int[][] dataset, int numFolds, Random random) {
+		checkNumFolds(dataset, numFolds);
+		int[] order = shuffledPositions(dataset.length, random);
+
+		/* deal the shuffled rows out to the folds in turn */
+		int[] foldOfRow = new int[dataset.length];
+		for (int pos = 0; pos < order.length; pos++)
+			foldOfRow[order[pos]] = pos % numFolds;
+
+		return buildFolds(dataset, foldOfRow, numFolds);
+	}
+
+	/**
+	 * Splits a dataset into k folds so that every fold has (as near as possible)
+	 * the same proportion of each category as the whole dataset.
+	 *
+	 * @param dataset, the dataset to split
+	 * @param numFolds, the number of folds (k)
+	 * @param random, random number generator used to shuffle the rows
+	 * @return the k folds
+	 */
+	public static Fold[] stratifiedFolds(int[][] dataset, int numFolds, Random random) {
+		checkNumFolds(dataset, numFolds);
+		int[] order = shuffledPositions(dataset.length, random);
+		int lastIndex = dataset[0].length - 1; /* the category is in the last cell of each row */
+
+		/* count the rows of each category, to find where each category starts once grouped */
+		int[] categoryStart = new int[MultilayerPerceptron.NUM_OUTPUT + 1];
+		for (int[] row : dataset) {
+			int category = row[lastIndex];
+			if (category + 1 >= categoryStart.length)
+				categoryStart = Arrays.copyOf(categoryStart, category + 2);
+			categoryStart[category + 1]++;
+		}
+		for (int category = 1; category < categoryStart.length; category++)
+			categoryStart[category] += categoryStart[category - 1];
+
+		/* group the shuffled rows by category, keeping their shuffled order within each category */
+		int[] grouped = new int[dataset.length];
+		for (int row : order)
+			grouped[categoryStart[dataset[row][lastIndex]]++] = row;
+
+		/* deal the grouped rows out to the folds in turn; each category carries on from the fold
+		   where the previous category stopped, so the folds differ in size by at most one row */
+		int[] foldOfRow = new int[dataset.length];
+		for (int pos = 0; pos < grouped.length; pos++)
+			foldOfRow[grouped[pos]] = pos % numFolds;
+
+		return buildFolds(dataset, foldOfRow, numFolds);
+	}
+
+	/**
+	 * Helper function that checks the number of folds before any rows are dealt out to them
+	 */
+	private static void checkNumFolds(int[][] dataset, int numFolds) {
+		if (numFolds < 2 || numFolds > dataset.length)
+			throw new IllegalArgumentException("Number of folds must be between 2 and the dataset size: " + numFolds);
+	}
+
+	/**
+	 * Helper function that creates a shuffled array of row positions using a Fisher-Yates shuffle
+	 */
+	private static int[] shuffledPositions(int length, Random random) {
+		int[] order = new int[length];
+		for (int pos = 0; pos < length; pos++)
+			order[pos] = pos;
+
+		for (int pos = length - 1; pos > 0; pos--) {
+			int randomIndex = random.nextInt(pos + 1);
+			int temp = order[randomIndex];
+			order[randomIndex] = order[pos];
+			order[pos] = temp;
+		}
+		return order;
+	}
+
+	/**
+	 * Helper function that builds the train and test sets of each fold, given which fold each row is tested in
+	 */
+	private static Fold[] buildFolds(int[][] dataset, int[] foldOfRow, int numFolds) {
+		int[] testSizes = new int[numFolds];
+		for (int fold : foldOfRow)
+			testSizes[fold]++;
+
+		Fold[] folds = new Fold[numFolds];
+		for (int fold = 0; fold < numFolds; fold++) {
+			int[][] trainSet = new int[dataset.length - testSizes[fold]][];
+			int[][] testSet = new int[testSizes[fold]][];
+
+			/* rows in this fold go into the test set, every other row goes into the training set */
+			for (int row = 0, trainPos = 0, testPos = 0; row < dataset.length; row++) {
+				if (foldOfRow[row] == fold)
+					testSet[testPos++] = dataset[row];
+				else
+					trainSet[trainPos++] = dataset[row];
+			}
+			folds[fold] = new Fold(trainSet, testSet);
+		}
+		return folds;
+	}
+
+	/**
+	 * Submits every fold as a separate task. A new evaluator is created for each fold,
+	 * so each fold has its own model state. The prediction for every test row of every
+	 * fold is recorded in one EvaluationSink, with the test sets in fold order.
+	 *
+	 * @param name, the name of the algorithm (used when printing the results)
+	 * @param evaluatorFactory, creates a new evaluator for each fold
+	 * @param folds, the folds to run
+	 * @return the result, which can be waited on with report()
+	 */
+	public Result submit(String name, Supplier<FoldEvaluator> evaluatorFactory, Fold[] folds) {
+		List<Future<FoldOutcome>> foldFutures = new ArrayList<>();
+		int[] testLengths = new int[folds.length];
+
+		int totalTestRows = 0;
+		for (Fold fold : folds)
+			totalTestRows += fold.testSet.length;
+		EvaluationSink sink = new EvaluationSink(totalTestRows, MultilayerPerceptron.NUM_OUTPUT);
+
+		for (int fold = 0, firstRow = 0; fold < folds.length; fold++) {
+			Fold currentFold = folds[fold];
+			int foldFirstRow = firstRow;
+			testLengths[fold] = currentFold.testSet.length;
+			firstRow += currentFold.testSet.length;
+
+			foldFutures.add(executor.submit(() -> {
+				FoldEvaluator evaluator = evaluatorFactory.get();
+				evaluator.setEvaluationSink(sink, foldFirstRow);
+				int totalCorrect = evaluator.trainAndTest(currentFold.trainSet, currentFold.testSet);
+				return new FoldOutcome(totalCorrect, evaluator.foldSummary());
+			}));
+		}
+		return new Result(name, foldFutures, testLengths, sink);
+	}
+
+	/**
+	 * The number of correct categorisations and the summary from one finished fold
+	 */
+	private static class FoldOutcome {
+		final int totalCorrect;
+		final String summary;
+
+		FoldOutcome(int totalCorrect, String summary) {
+			this.totalCorrect = totalCorrect;
+			this.summary = summary;
+		}
+	}
+
+	/**
+	 * The result of one algorithm over all of its folds; the folds may still be running
+	 */
+	public static class Result {
+		private final String name;
+		private final List<Future<FoldOutcome>> foldFutures;
+		private final int[] testLengths;
+		private final EvaluationSink sink;
+
+		private Result(String name, List<Future<FoldOutcome>> foldFutures, int[] testLengths, EvaluationSink sink) {
+			this.name = name;
+			this.foldFutures = foldFutures;
+			this.testLengths = testLengths;
+			this.sink = sink;
+		}
+
+		/**
+		 * Waits for every fold to finish, then returns the predictions and confusion matrix over all folds
+		 *
+		 * @return the evaluation sink holding every prediction
+		 */
+		public EvaluationSink evaluation() throws InterruptedException, ExecutionException {
+			for (Future<FoldOutcome> future : foldFutures)
+				future.get();
+			return sink;
+		}
+
+		/**
+		 * Waits for every fold to finish, then prints the total number of correct
+		 * categorisations for each fold, the overall percentage and the results for each category
+		 *
+		 * @return the percentage of correct categorisations over all folds
+		 */
+		public double report() throws InterruptedException, ExecutionException {
+			int[] foldTotals = new int[foldFutures.size()];
+			String[] summaries = new String[foldFutures.size()];
+
+			for (int fold = 0; fold < foldTotals.length; fold++) {
+				FoldOutcome outcome = foldFutures.get(fold).get();
+				foldTotals[fold] = outcome.totalCorrect;
+				summaries[fold] = outcome.summary;
+			}
+
+			System.out.println("\n" + name + ":\n-------------------");
+			for (int fold = 0; fold < summaries.length; fold++)
+				if (summaries[fold] != null)
+					System.out.println("Fold " + (fold + 1) + ": " + summaries[fold]);
+
+			double percentageCorrect = Utility.calculatePercentage(foldTotals, testLengths);
+			System.out.print(sink.perCategorySummary());
+			return percentageCorrect;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+import java.util.Random;
+
+/**
+ * CrossoverStrategy.java:
+ * Gene crossover for the genetic algorithm. A crossover strategy takes two parent
+ * genes and writes two new child genes; the parents are never modified, because
+ * the same parent can be selected for several pairs in one generation. Each strategy
+ * can also cross over packed genes (see PackedGene) without unpacking them.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface CrossoverStrategy {
+
+	/**
+	 * Crosses over two parent genes to create two child genes
+	 *
+	 * @param parent1, the first parent gene
+	 * @param parent2, the second parent gene
+	 * @param child1, the first child gene, overwritten by this function
+	 * @param child2, the second child gene, overwritten by this function
+	 * @param random, the random number generator for this run
+	 */
+	void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, Random random);
+
+	/**
+	 * Crosses over two packed parent genes. By default the parents are unpacked, crossed over and
+	 * packed again; the strategies below override this to work on the packed genes directly.
+	 *
+	 * @param parent1, the first packed parent gene
+	 * @param parent2, the second packed parent gene
+	 * @param child1, the first packed child gene, overwritten by this function
+	 * @param child2, the second packed child gene, overwritten by this function
+	 * @param random, the random number generator for this run
+	 */
+	default void crossoverPacked(long[] parent1, long[] parent2, long[] child1, long[] child2, Random random) {
+		int[] unpacked1 = new int[PackedGene.GENE_VALUES], unpacked2 = new int[PackedGene.GENE_VALUES];
+		crossover(PackedGene.unpack(parent1), PackedGene.unpack(parent2), unpacked1, unpacked2, random);
+		System.arraycopy(PackedGene.pack(unpacked1), 0, child1, 0, PackedGene.GENE_LONGS);
+		System.arraycopy(PackedGene.pack(unpacked2), 0, child2, 0, PackedGene.GENE_LONGS);
+	}
+
+	/**
+	 * Returns the crossover strategy with the given name
+	 *
+	 * @param name, the name of the strategy ("uniform", "twoPoint" or "multiPoint")
+	 * @return the crossover strategy
+	 */
+	static CrossoverStrategy forName(String name) {
+		switch (name) {
+		case "uniform":
+			return new Uniform();
+		case "twoPoint":
+			return new TwoPoint();
+		case "multiPoint":
+			return new MultiPoint();
+		default:
+			throw new IllegalArgumentException("Unknown crossover strategy: " + name);
+		}
+	}
+
+	/**
+	 * Helper function for two-point and multi-point crossover. Swaps the elements
+	 * between the two cross points from one parent to the other; the children
+	 * must already contain copies of their own parent
+	 *
+	 * @param parent1, the first parent gene
+	 * @param parent2, the second parent gene
+	 * @param child1, the first child gene
+	 * @param child2, the second child gene
+	 * @param crossPoint1, first crossover point
+	 * @param crossPoint2, second crossover point
+	 */
+	static void crossoverSection(int[] parent1, int[] parent2, int[] child1, int[] child2, int crossPoint1,
+			int crossPoint2) {
+
+		/* loop from the first cross point to the second cross point, add elements
+		   from the other parent to new genes */
+		for (int genePos = crossPoint1; genePos < crossPoint2; genePos++) {
+			child1[genePos] = parent2[genePos];
+			child2[genePos] = parent1[genePos];
+		}
+	}
+
+	/**
+	 * Uniform crossover function; for each element in the gene, there
+	 * is a 50% chance for it to crossover.
+	 */
+	class Uniform implements CrossoverStrategy {
+
+		@Override
+		public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, Random random) {
+
+			/* loop through each element in the gene with a 50% chance for a crossover to occur */
+			for (int genePos = 0; genePos < parent1.length; genePos++) {
+				if (random.nextBoolean()) {
+					child1[genePos] = parent2[genePos];
+					child2[genePos] = parent1[genePos];
+				} else {
+					child1[genePos] = parent1[genePos];
+					child2[genePos] = parent2[genePos];
+				}
+			}
+		}
+
+		@Override
+		public void crossoverPacked(long[] parent1, long[] parent2, long[] child1, long[] child2, Random random) {
+
+			/* one random bit per element decides whether it crosses over; the bits are spread into a mask of whole elements */
+			for (int word = 0; word < parent1.length; word++) {
+				long mask = PackedGene.SPREAD[random.nextInt() & ((1 << PackedGene.valuesIn(word)) - 1)];
+				child1[word] = parent1[word] & ~mask | parent2[word] & mask;
+				child2[word] = parent2[word] & ~mask | parent1[word] & mask;
+			}
+		}
+	}
+
+	/**
+	 * Two-point crossover; randomly chooses two positions in the gene
+	 * to crossover with the other parent gene.
+	 */
+	class TwoPoint implements CrossoverStrategy {
+
+		@Override
+		public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, Random random) {
+
+			int geneLength = parent1.length;
+			int[] crossPoints = crossPoints(geneLength, random);
+
+			System.arraycopy(parent1, 0, child1, 0, geneLength);
+			System.arraycopy(parent2, 0, child2, 0, geneLength);
+			crossoverSection(parent1, parent2, child1, child2, crossPoints[0], crossPoints[1]);
+		}
+
+		@Override
+		public void crossoverPacked(long[] parent1, long[] parent2, long[] child1, long[] child2, Random random) {
+			int[] crossPoints = crossPoints(PackedGene.GENE_VALUES, random);
+
+			System.arraycopy(parent1, 0, child1, 0, parent1.length);
+			System.arraycopy(parent2, 0, child2, 0, parent2.length);
+			PackedGene.copyRange(parent2, child1, crossPoints[0], crossPoints[1]);
+			PackedGene.copyRange(parent1, child2, crossPoints[0], crossPoints[1]);
+		}
+
+		/**
+		 * Helper function that chooses the two cross points
+		 */
+		private static int[] crossPoints(int geneLength, Random random) {
+
+			/* generate a new ratio and the first cross point */
+			double ratio = random.nextInt(10) / 10.0;
+			int crossPoint1 = (int) (ratio * geneLength);
+
+			/* generate a new ratio and the second cross point */
+			ratio = random.nextInt(10) / 10.0;
+			int crossPoint2 = (int) (crossPoint1 + (ratio * (geneLength - crossPoint1)));
+
+			return new int[] { crossPoint1, crossPoint2 };
+		}
+	}
+
+	/**
+	 * Multi-point (K-point) crossover function; randomly chooses the amount of crossovers
+	 * and randomly chooses the size of each crossover, then performs all of these
+	 * crossovers between the two parent genes.
+	 */
+	class MultiPoint implements CrossoverStrategy {
+
+		@Override
+		public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, Random random) {
+
+			int geneLength = parent1.length;
+			int[] crossPoints = crossPoints(geneLength, random);
+
+			System.arraycopy(parent1, 0, child1, 0, geneLength);
+			System.arraycopy(parent2, 0, child2, 0, geneLength);
+			for (int pos = 0; pos < crossPoints.length; pos += 2)
+				crossoverSection(parent1, parent2, child1, child2, crossPoints[pos], crossPoints[pos + 1]);
+		}
+
+		@Override
+		public void crossoverPacked(long[] parent1, long[] parent2, long[] child1, long[] child2, Random random) {
+			int[] crossPoints = crossPoints(PackedGene.GENE_VALUES, random);
+
+			System.arraycopy(parent1, 0, child1, 0, parent1.length);
+			System.arraycopy(parent2, 0, child2, 0, parent2.length);
+			for (int pos = 0; pos < crossPoints.length; pos += 2) {
+				PackedGene.copyRange(parent2, child1, crossPoints[pos], crossPoints[pos + 1]);
+				PackedGene.copyRange(parent1, child2, crossPoints[pos], crossPoints[pos + 1]);
+			}
+		}
+
+		/**
+		 * Helper function that chooses the cross points, as pairs of the start and end of each crossover
+		 */
+		private static int[] crossPoints(int geneLength, Random random) {
+
+			int numCrossPoints = random.nextInt(64) + 1; /* generate random number of cross points (1-64) */
+
+			/* generate max cross size, given the number of cross points */
+			int maxCross = geneLength / numCrossPoints;
+			if (maxCross < 2)
+				return new int[0];
+
+			/* each gene is split into sections, one for each cross point */
+			int[] crossPoints = new int[geneLength / maxCross * 2];
+			int numPoints = 0;
+			for (int currentSection = 0; currentSection + maxCross <= geneLength; currentSection += maxCross) {
+
+				/* generate new crossover size: between 1 and max cross size - 1 */
+				int crossSize = random.nextInt(maxCross - 1) + 1;
+
+				/* generate first cross point so that the crossover stays within the current section */
+				crossPoints[numPoints] = currentSection + random.nextInt(maxCross - crossSize + 1);
+				crossPoints[numPoints + 1] = crossPoints[numPoints] + crossSize;
+				numPoints += 2;
+			}
+			return crossPoints;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CsvRowReader.java:
+ * Reads rows of comma separated ints from a stream into arrays supplied by the caller, a block
+ * at a time, so that a file of any size can be read with a fixed amount of memory. Digits are
+ * parsed straight from the bytes of the stream, avoiding a String and String.split for every
+ * line. A row may have 64 feature values with or without the category after them; without
+ * it, the category cell is set to 0. Rows with and without a category can be mixed, so which
+ * rows had one can be recorded row by row. Like Utility.readFile, a malformed value (a
+ * character that is not part of an int, a '-' after the start of a value, an empty value or
+ * an int that overflows) is an error rather than being skipped.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class CsvRowReader implements Closeable {
+
+	private final InputStream input;
+	private final int rowLength; /* values in a full row, including the category */
+
+	private final byte[] buffer = new byte[1 << 16];
+	private int bufferPos = 0, bufferEnd = 0;
+	private boolean endOfStream = false;
+
+	private long rowsRead = 0;
+	private boolean hasCategory = false; /* whether the last row read had a category */
+
+	/* state of the row being parsed; kept between calls because a row can span two blocks of bytes */
+	private int column = 0;
+	private long value = 0; /* a long so that a value too large for an int can be detected */
+	private boolean inNumber = false, negative = false;
+	private boolean afterValue = false; /* whether whitespace has followed the value, so it must end */
+
+	/**
+	 * @param input, the stream to read
+	 * @param rowLength, the number of values in a full row, including the category
+	 */
+	public CsvRowReader(InputStream input, int rowLength) {
+		this.input = input;
+		this.rowLength = rowLength;
+	}
+
+	/**
+	 * Reads up to rows.length rows into the given arrays, which must each have rowLength cells
+	 *
+	 * @param rows, the arrays to fill
+	 * @return the number of rows read; 0 once the end of the stream has been reached
+	 */
+	public int read(int[][] rows) throws IOException {
+		return read(rows, null);
+	}
+
+	/**
+	 * Reads up to rows.length rows into the given arrays, recording whether each row had a category
+	 *
+	 * @param rows, the arrays to fill, which must each have rowLength cells
+	 * @param hasCategories, set to true for each row read that included a category (null to not record it)
+	 * @return the number of rows read; 0 once the end of the stream has been reached
+	 */
+	public int read(int[][] rows, boolean[] hasCategories) throws IOException {
+		int numRows = 0;
+
+		while (numRows < rows.length) {
+			if (bufferPos == bufferEnd) {
+				if (endOfStream)
+					break;
+				bufferEnd = input.read(buffer);
+				bufferPos = 0;
+				if (bufferEnd == -1) {
+					bufferEnd = 0;
+					endOfStream = true;
+					/* the last row may not end with a new line */
+					if (finishValue(rows[numRows], true) && finishRow(rows[numRows])) {
+						if (hasCategories != null)
+							hasCategories[numRows] = hasCategory;
+						numRows++;
+					}
+					break;
+				}
+			}
+
+			byte current = buffer[bufferPos++];
+
+			if (current >= '0' && current <= '9') {
+				if (afterValue)
+					throw malformed("space inside the value");
+				value = value * 10 + (current - '0');
+				if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE))
+					throw malformed("too large for an int");
+				inNumber = true;
+			} else if (current == '-') {
+				if (inNumber || negative || afterValue)
+					throw malformed("'-' after the start of the value");
+				negative = true;
+			} else if (current == ',') {
+				finishValue(rows[numRows], false);
+			} else if (current == '\n') {
+				if (finishValue(rows[numRows], true) && finishRow(rows[numRows])) {
+					if (hasCategories != null)
+						hasCategories[numRows] = hasCategory;
+					numRows++;
+				}
+			} else if (current == ' ' || current == '\t' || current == '\r') {
+				/* whitespace may surround a value, but not split it */
+				if (negative && !inNumber)
+					throw malformed("'-' without digits");
+				afterValue = inNumber;
+			} else {
+				throw malformed(current >= 0x20 && current < 0x7f ? "unexpected character '" + (char) current + "'"
+						: String.format("unexpected byte 0x%02x", current & 0xff));
+			}
+		}
+		return numRows;
+	}
+
+	/**
+	 * Helper function that stores the value that has just been parsed in the current row
+	 *
+	 * @param endOfLine, true if the value ends the line, which may then be blank
+	 * @return true if the current row has any values
+	 */
+	private boolean finishValue(int[] row, boolean endOfLine) throws IOException {
+		if (inNumber) {
+			if (column >= rowLength)
+				throw new IOException("Row " + (rowsRead + 1) + " has too many values");
+			row[column++] = (int) (negative ? -value : value);
+		} else if (negative) {
+			throw malformed("'-' without digits");
+		} else if (!endOfLine || column > 0) {
+			throw malformed("empty value");
+		}
+		value = 0;
+		inNumber = negative = afterValue = false;
+		return column > 0;
+	}
+
+	/**
+	 * Helper function that describes a malformed value at the current position
+	 *
+	 * @param problem, what is wrong with the value
+	 * @return the exception to throw
+	 */
+	private IOException malformed(String problem) {
+		return new IOException("Row " + (rowsRead + 1) + ": malformed value in column " + (column + 1) + ", " + problem);
+	}
+
+	/**
+	 * Helper function that ends the current row; blank lines are skipped
+	 *
+	 * @return true if a row was completed
+	 */
+	private boolean finishRow(int[] row) throws IOException {
+		if (column == 0)
+			return false;
+		if (column < rowLength - 1)
+			throw new IOException("Row " + (rowsRead + 1) + " has too few values");
+
+		hasCategory = column == rowLength;
+		if (!hasCategory)
+			row[rowLength - 1] = 0; /* the array may still hold the category of an earlier row */
+
+		column = 0;
+		rowsRead++;
+		return true;
+	}
+
+	/**
+	 * @return true if the last row read included a category
+	 */
+	public boolean hasCategory() {
+		return hasCategory;
+	}
+
+	/**
+	 * @return the total number of rows read so far
+	 */
+	public long getRowsRead() {
+		return rowsRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
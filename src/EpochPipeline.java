@@ -0,0 +1,166 @@
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * EpochPipeline.java:
+ * Prepares the training data for the MLP's epochs on a background thread. For every epoch the
+ * rows are shuffled into a new order and their input values are packed into mini-batches: each
+ * batch is one double array holding its rows one after another, so an epoch reads its inputs
+ * in order from memory. The pipeline has two epoch buffers (double buffering): while the
+ * training thread works through one epoch, the background thread prepares the next in the
+ * other, so the training thread only waits if it finishes an epoch faster than the next one
+ * can be shuffled and packed. The time it spent waiting is recorded.
+ *
+ * The order of each epoch depends only on the pipeline's seed and the epoch's number (the
+ * shuffle of every epoch starts again from the rows in dataset order), so a seeded MLP gets the
+ * same order of rows every run, and a run resumed from a checkpoint (see Checkpoint) gets the
+ * orders that it would have had if it had never stopped.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class EpochPipeline implements AutoCloseable {
+
+	/**
+	 * The rows of one epoch, in shuffled order and packed into mini-batches
+	 */
+	public static class Epoch {
+		final int[] order; /* position in the dataset of each row, in the order they are trained on */
+		final double[][] batches; /* batch b holds the inputs of rows b * batchSize onwards in order, one after another */
+		final int batchSize;
+		final int numFeatures;
+
+		Epoch(int numRows, int batchSize, int numFeatures) {
+			this.order = new int[numRows];
+			this.batchSize = batchSize;
+			this.numFeatures = numFeatures;
+			this.batches = new double[(numRows + batchSize - 1) / batchSize][];
+			for (int batch = 0; batch < batches.length; batch++)
+				batches[batch] = new double[Math.min(batchSize, numRows - batch * batchSize) * numFeatures];
+		}
+
+		/**
+		 * @return the number of rows in each batch (the last may have fewer)
+		 */
+		public int batchSize() {
+			return batchSize;
+		}
+	}
+
+	private static final Epoch FAILED = new Epoch(0, 1, 0); /* passed to the training thread if preparing an epoch failed */
+
+	private final double[][] inputs; /* the input values of every row */
+	private final int[] permutation; /* shuffled again for every epoch */
+	private final long seed; /* combined with the epoch number to seed each epoch's shuffle */
+	private int nextEpoch; /* number of the next epoch to prepare */
+
+	private final BlockingQueue<Epoch> freeEpochs = new ArrayBlockingQueue<>(2);
+	private final BlockingQueue<Epoch> filledEpochs = new ArrayBlockingQueue<>(2);
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final Thread preparer;
+
+	private long waitNanos = 0; /* time the training thread has spent waiting for an epoch */
+
+	/**
+	 * Starts preparing epochs
+	 *
+	 * @param inputs, the input values of every row of the training set
+	 * @param batchSize, the number of rows packed into each batch
+	 * @param seed, the seed for the shuffles
+	 * @param firstEpoch, the number of the first epoch to prepare (0, unless resuming)
+	 */
+	public EpochPipeline(double[][] inputs, int batchSize, long seed, int firstEpoch) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+
+		this.inputs = inputs;
+		this.seed = seed;
+		this.nextEpoch = firstEpoch;
+		this.permutation = new int[inputs.length];
+
+		int numFeatures = inputs.length == 0 ? 0 : inputs[0].length;
+		freeEpochs.add(new Epoch(inputs.length, batchSize, numFeatures));
+		freeEpochs.add(new Epoch(inputs.length, batchSize, numFeatures));
+
+		/* the preparer fills whichever epoch is free while the other one is being trained on */
+		preparer = new Thread(() -> {
+			try {
+				while (true) {
+					Epoch epoch = freeEpochs.take();
+					prepare(epoch);
+					filledEpochs.put(epoch);
+				}
+			} catch (InterruptedException e) {
+				/* closed */
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+				filledEpochs.offer(FAILED); /* there is always room, as at most two epochs exist */
+			}
+		}, "epoch-pipeline");
+		preparer.setDaemon(true);
+		preparer.start();
+	}
+
+	/**
+	 * Helper function that shuffles the rows (Fisher-Yates) and packs their inputs into the epoch's batches
+	 */
+	private void prepare(Epoch epoch) {
+		Random random = new Random(seed ^ nextEpoch++ * 0x9E3779B97F4A7C15L); /* spreads the seeds of neighbouring epochs */
+		for (int pos = 0; pos < permutation.length; pos++)
+			permutation[pos] = pos;
+
+		for (int pos = permutation.length - 1; pos > 0; pos--) {
+			int randomIndex = random.nextInt(pos + 1);
+			int temp = permutation[randomIndex];
+			permutation[randomIndex] = permutation[pos];
+			permutation[pos] = temp;
+		}
+		System.arraycopy(permutation, 0, epoch.order, 0, permutation.length);
+
+		for (int pos = 0; pos < permutation.length; pos++)
+			System.arraycopy(inputs[permutation[pos]], 0, epoch.batches[pos / epoch.batchSize],
+					pos % epoch.batchSize * epoch.numFeatures, epoch.numFeatures);
+	}
+
+	/**
+	 * Waits for the next epoch to be ready. It must be given back with release once it has been trained on.
+	 *
+	 * @return the next epoch
+	 */
+	public Epoch next() throws InterruptedException {
+		long startTime = System.nanoTime();
+		Epoch epoch = filledEpochs.take();
+		waitNanos += System.nanoTime() - startTime;
+
+		if (epoch == FAILED)
+			throw new IllegalStateException("Preparing an epoch failed", failure.get());
+		return epoch;
+	}
+
+	/**
+	 * Gives an epoch back to the pipeline, so that the epoch after next can be prepared in it
+	 *
+	 * @param epoch, an epoch returned by next
+	 */
+	public void release(Epoch epoch) {
+		freeEpochs.add(epoch);
+	}
+
+	/**
+	 * @return the total time the training thread has spent waiting in next, in nanoseconds
+	 */
+	public long waitNanos() {
+		return waitNanos;
+	}
+
+	/**
+	 * Stops the background thread
+	 */
+	@Override
+	public void close() {
+		preparer.interrupt();
+	}
+}
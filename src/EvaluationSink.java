@@ -0,0 +1,212 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * EvaluationSink.java:
+ * Records the predicted category of every test row so that a confusion matrix and the
+ * precision, recall and error rate of each category can be reported after a run, without
+ * running anything again. Predictions are stored in a primitive array (one slot per row)
+ * and the confusion matrix is counted in a separate array for each thread, so folds running
+ * at the same time never contend on a shared counter. The per-thread counts are merged only
+ * when the matrix is read, which must be after every fold has finished.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class EvaluationSink {
+
+	private final int numCategories;
+
+	final int[] predictions; /* predicted category of each row, -1 if the row has not been recorded */
+	final int[] actuals; /* actual category of each row */
+
+	/* how the predictions were made, if not by the rule that counts the algorithm's correct categorisations; null if they were */
+	private volatile String predictionRule;
+
+	/* confusion matrix counts for each thread, flattened as [actual * numCategories + predicted] */
+	private final Queue<long[]> threadCounts = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<long[]> localCounts;
+
+	/**
+	 * @param numRows, the total number of rows that will be recorded
+	 * @param numCategories, the number of categories (10 for the UCI digits)
+	 */
+	public EvaluationSink(int numRows, int numCategories) {
+		this.numCategories = numCategories;
+		this.predictions = new int[numRows];
+		this.actuals = new int[numRows];
+		Arrays.fill(predictions, -1);
+
+		this.localCounts = ThreadLocal.withInitial(() -> {
+			long[] counts = new long[numCategories * numCategories];
+			threadCounts.add(counts);
+			return counts;
+		});
+	}
+
+	/**
+	 * Records the prediction for one row. Each row must only be recorded by one thread.
+	 *
+	 * @param row, the position of the row
+	 * @param predicted, the category that was predicted
+	 * @param actual, the actual category of the row
+	 */
+	public void record(int row, int predicted, int actual) {
+		if (predicted < 0 || predicted >= numCategories || actual < 0 || actual >= numCategories)
+			throw new IllegalArgumentException("Category out of range: predicted " + predicted + ", actual " + actual);
+
+		predictions[row] = predicted;
+		actuals[row] = actual;
+		localCounts.get()[actual * numCategories + predicted]++;
+	}
+
+	/**
+	 * Marks the recorded predictions as made by a different rule from the one the algorithm's
+	 * own accuracy is counted with (e.g. the GA, whose fitness scores sections of rows rather than
+	 * single rows). The accuracy of the predictions is then reported as "predictionAccuracy", next
+	 * to the rule, rather than as "accuracy", so it is not mistaken for the algorithm's accuracy.
+	 *
+	 * @param predictionRule, a description of how each row's prediction was made
+	 */
+	public void setPredictionRule(String predictionRule) {
+		this.predictionRule = predictionRule;
+	}
+
+	/**
+	 * Merges the counts from every thread into one confusion matrix
+	 *
+	 * @return the confusion matrix, indexed by [actual category][predicted category]
+	 */
+	public long[][] confusionMatrix() {
+		long[][] matrix = new long[numCategories][numCategories];
+		for (long[] counts : threadCounts)
+			for (int pos = 0; pos < counts.length; pos++)
+				matrix[pos / numCategories][pos % numCategories] += counts[pos];
+		return matrix;
+	}
+
+	/**
+	 * Helper function that returns the number of rows predicted as each category (the column totals)
+	 */
+	private static long[] predictedTotals(long[][] matrix) {
+		long[] totals = new long[matrix.length];
+		for (long[] actualRow : matrix)
+			for (int predicted = 0; predicted < actualRow.length; predicted++)
+				totals[predicted] += actualRow[predicted];
+		return totals;
+	}
+
+	/**
+	 * Helper function that returns the number of rows of each actual category (the row totals)
+	 */
+	private static long[] actualTotals(long[][] matrix) {
+		long[] totals = new long[matrix.length];
+		for (int actual = 0; actual < matrix.length; actual++)
+			for (long count : matrix[actual])
+				totals[actual] += count;
+		return totals;
+	}
+
+	private static double ratio(long numerator, long denominator) {
+		return denominator == 0 ? 0.0 : (double) numerator / denominator;
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 10000.0) / 10000.0;
+	}
+
+	/**
+	 * @return a table of the precision, recall and error rate of each category
+	 */
+	public String perCategorySummary() {
+		long[][] matrix = confusionMatrix();
+		long[] predictedTotals = predictedTotals(matrix);
+		long[] actualTotals = actualTotals(matrix);
+
+		StringBuilder summary = new StringBuilder();
+		if (predictionRule != null)
+			summary.append("Per category results from predicting each row as the ").append(predictionRule)
+					.append(String.format(" (not the accuracy above)%n"));
+		summary.append(String.format("%-9s %9s %9s %9s %9s%n", "Category", "Precision", "Recall", "Error", "Rows"));
+		for (int category = 0; category < numCategories; category++) {
+			double recall = ratio(matrix[category][category], actualTotals[category]);
+			summary.append(String.format("%-9d %9.4f %9.4f %9.4f %9d%n", category,
+					ratio(matrix[category][category], predictedTotals[category]), recall,
+					actualTotals[category] == 0 ? 0.0 : 1.0 - recall, actualTotals[category]));
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * @return the confusion matrix and the precision, recall and error rate of each category as JSON
+	 */
+	public String toJson() {
+		long[][] matrix = confusionMatrix();
+		long[] predictedTotals = predictedTotals(matrix);
+		long[] actualTotals = actualTotals(matrix);
+
+		long numCorrect = 0, numRows = 0;
+		for (int category = 0; category < numCategories; category++) {
+			numCorrect += matrix[category][category];
+			numRows += actualTotals[category];
+		}
+
+		StringBuilder json = new StringBuilder("{\"rows\":").append(numRows);
+		if (predictionRule == null)
+			json.append(",\"accuracy\":");
+		else
+			json.append(",\"predictionRule\":\"").append(predictionRule).append("\",\"predictionAccuracy\":");
+		json.append(round(ratio(numCorrect, numRows))).append(",\"categories\":[");
+		for (int category = 0; category < numCategories; category++) {
+			double recall = ratio(matrix[category][category], actualTotals[category]);
+			json.append(category == 0 ? "" : ",").append("{\"category\":").append(category).append(",\"precision\":")
+					.append(round(ratio(matrix[category][category], predictedTotals[category])))
+					.append(",\"recall\":").append(round(recall)).append(",\"errorRate\":")
+					.append(round(actualTotals[category] == 0 ? 0.0 : 1.0 - recall)).append(",\"rows\":")
+					.append(actualTotals[category]).append('}');
+		}
+
+		json.append("],\"confusionMatrix\":[");
+		for (int actual = 0; actual < numCategories; actual++) {
+			json.append(actual == 0 ? "[" : ",[");
+			for (int predicted = 0; predicted < numCategories; predicted++)
+				json.append(predicted == 0 ? "" : ",").append(matrix[actual][predicted]);
+			json.append(']');
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * Writes the prediction for every recorded row as a CSV file (row, predicted, actual)
+	 *
+	 * @param path, the file to write
+	 */
+	public void writePredictions(String path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+			writer.write("row,predicted,actual");
+			writer.newLine();
+			for (int row = 0; row < predictions.length; row++) {
+				if (predictions[row] < 0)
+					continue;
+				writer.write(row + "," + predictions[row] + "," + actuals[row]);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Writes the confusion matrix and per category results as a JSON file
+	 *
+	 * @param path, the file to write
+	 */
+	public void writeJson(String path) throws IOException {
+		Files.write(Paths.get(path), (toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * FeaturePreprocessor.java:
+ * Feature preprocessing that is fitted on the training set of a fold and then applied to
+ * both the training and test sets. Columns whose variance over the training set is zero (or
+ * no more than a threshold) are dropped, and the remaining columns can be put in order of
+ * descending variance. Preprocessed rows keep the dataset layout (feature values followed by
+ * the category) and the original values, so the algorithms work unchanged on fewer columns.
+ *
+ * Dropping a column that is constant over the training set does not change which training
+ * row is nearest to a test row: the column adds the same amount to the distance from a test
+ * row to every training row. Ordering the columns by variance puts the columns that add the
+ * most to a distance first, so the nearest neighbour search, which stops adding to a distance
+ * once it is larger than the nearest one so far (see Utility.squaredDistanceWithin), stops sooner.
+ *
+ * Scaling, for the MLP's inputs, is separate (see Scaling), since the scaled values are not ints.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class FeaturePreprocessor {
+
+	private final int[] columns; /* the original position of each column that is kept, in their new order */
+	private final double[] variances; /* variance of each kept column over the training set */
+	private final int numOriginal; /* number of feature values in a row before preprocessing */
+
+	private FeaturePreprocessor(int[] columns, double[] variances, int numOriginal) {
+		this.columns = columns;
+		this.variances = variances;
+		this.numOriginal = numOriginal;
+	}
+
+	/**
+	 * Fits a preprocessor on a training set
+	 *
+	 * @param trainSet, the rows to fit on
+	 * @param minVariance, columns with a variance of no more than this are dropped; below 0 keeps every column
+	 * @param orderByVariance, true to put the kept columns in order of descending variance
+	 * @return the fitted preprocessor
+	 */
+	public static FeaturePreprocessor fit(int[][] trainSet, double minVariance, boolean orderByVariance) {
+		int numFeatures = trainSet[0].length - 1;
+		double[] means = Projection.featureMeans(trainSet, numFeatures);
+		double[] allVariances = new double[numFeatures];
+
+		for (int[] row : trainSet)
+			for (int feature = 0; feature < numFeatures; feature++) {
+				double difference = row[feature] - means[feature];
+				allVariances[feature] += difference * difference;
+			}
+
+		int numKept = 0;
+		int[] kept = new int[numFeatures];
+		for (int feature = 0; feature < numFeatures; feature++) {
+			allVariances[feature] /= Math.max(1, trainSet.length);
+			if (allVariances[feature] > minVariance)
+				kept[numKept++] = feature;
+		}
+
+		/* insertion sort of the kept columns by descending variance; stable, so equal columns keep their order */
+		if (orderByVariance)
+			for (int pos = 1; pos < numKept; pos++) {
+				int column = kept[pos], insertPos = pos;
+				for (; insertPos > 0 && allVariances[kept[insertPos - 1]] < allVariances[column]; insertPos--)
+					kept[insertPos] = kept[insertPos - 1];
+				kept[insertPos] = column;
+			}
+
+		int[] columns = new int[numKept];
+		double[] variances = new double[numKept];
+		for (int pos = 0; pos < numKept; pos++) {
+			columns[pos] = kept[pos];
+			variances[pos] = allVariances[kept[pos]];
+		}
+		return new FeaturePreprocessor(columns, variances, numFeatures);
+	}
+
+	/**
+	 * @return the number of feature values in a preprocessed row
+	 */
+	public int numFeatures() {
+		return columns.length;
+	}
+
+	/**
+	 * Preprocesses one row; the category in the last cell is copied over unchanged
+	 *
+	 * @param row, a row with all of its feature values and a category cell
+	 * @return the row with only the kept columns, in their new order, and then the category
+	 */
+	public int[] apply(int[] row) {
+		int[] preprocessed = new int[columns.length + 1];
+		for (int pos = 0; pos < columns.length; pos++)
+			preprocessed[pos] = row[columns[pos]];
+		preprocessed[columns.length] = row[row.length - 1];
+		return preprocessed;
+	}
+
+	/**
+	 * Preprocesses every row of a dataset
+	 *
+	 * @param dataset, the rows to preprocess
+	 * @return the preprocessed rows
+	 */
+	public int[][] apply(int[][] dataset) {
+		int[][] preprocessed = new int[dataset.length][];
+		for (int pos = 0; pos < dataset.length; pos++)
+			preprocessed[pos] = apply(dataset[pos]);
+		return preprocessed;
+	}
+
+	/**
+	 * Wraps a scorer that was built from preprocessed rows, so that it can score rows with all of their feature values
+	 *
+	 * @param scorer, the scorer built from preprocessed rows
+	 * @return a scorer that preprocesses each row before scoring it
+	 */
+	public Scorer wrap(Scorer scorer) {
+		return new Scorer() {
+			@Override
+			public int score(int[] row) {
+				return scorer.score(apply(row));
+			}
+
+			@Override
+			public int[] scoreBatch(int[][] rows) {
+				return scorer.scoreBatch(apply(rows));
+			}
+		};
+	}
+
+	/**
+	 * @return how many columns were kept and the variance of the first and last of them
+	 */
+	public String summary() {
+		return String.format("kept %d of %d columns (variance %.2f to %.2f)", columns.length, numOriginal,
+				columns.length == 0 ? 0.0 : variances[0], columns.length == 0 ? 0.0 : variances[columns.length - 1]);
+	}
+
+	/**
+	 * Scaling of the feature values of a row into real numbers, fitted on a training set. "standard"
+	 * subtracts the mean of each feature value and divides by its standard deviation, and
+	 * "minmax" maps the smallest and largest value of each feature in the training set to 0 and 1.
+	 * "none" leaves the values as they are. A feature that has the same value in every training
+	 * row is only shifted (to 0), not divided.
+	 */
+	public static class Scaling {
+
+		private final double[] offsets; /* subtracted from each feature value */
+		private final double[] factors; /* then multiplied by this */
+
+		private Scaling(double[] offsets, double[] factors) {
+			this.offsets = offsets;
+			this.factors = factors;
+		}
+
+		/**
+		 * @param numFeatures, the number of feature values in each row
+		 * @return a scaling that leaves the values as they are
+		 */
+		public static Scaling none(int numFeatures) {
+			double[] factors = new double[numFeatures];
+			Arrays.fill(factors, 1.0);
+			return new Scaling(new double[numFeatures], factors);
+		}
+
+		/**
+		 * Fits a scaling on a training set
+		 *
+		 * @param trainSet, the rows to fit on
+		 * @param method, "none", "standard" or "minmax"
+		 * @return the fitted scaling
+		 */
+		public static Scaling fit(int[][] trainSet, String method) {
+			int numFeatures = trainSet[0].length - 1;
+			Scaling scaling = none(numFeatures);
+
+			switch (method) {
+			case "none":
+				break;
+
+			case "standard":
+				double[] means = Projection.featureMeans(trainSet, numFeatures);
+				for (int feature = 0; feature < numFeatures; feature++) {
+					double sum = 0.0;
+					for (int[] row : trainSet)
+						sum += (row[feature] - means[feature]) * (row[feature] - means[feature]);
+					double deviation = Math.sqrt(sum / Math.max(1, trainSet.length));
+					scaling.offsets[feature] = means[feature];
+					if (deviation > 0.0)
+						scaling.factors[feature] = 1.0 / deviation;
+				}
+				break;
+
+			case "minmax":
+				for (int feature = 0; feature < numFeatures; feature++) {
+					int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+					for (int[] row : trainSet) {
+						min = Math.min(min, row[feature]);
+						max = Math.max(max, row[feature]);
+					}
+					scaling.offsets[feature] = min;
+					if (max > min)
+						scaling.factors[feature] = 1.0 / (max - min);
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown input scaling: " + method);
+			}
+			return scaling;
+		}
+
+		/**
+		 * Scales the feature values of one row
+		 *
+		 * @param row, a row of feature values (any cells after them, such as the category, are ignored)
+		 * @return the scaled feature values
+		 */
+		public double[] apply(int[] row) {
+			double[] scaled = new double[offsets.length];
+			for (int feature = 0; feature < offsets.length; feature++)
+				scaled[feature] = (row[feature] - offsets[feature]) * factors[feature];
+			return scaled;
+		}
+
+		/**
+		 * Scales the feature values of every row of a dataset
+		 *
+		 * @param dataset, the rows to scale
+		 * @return the scaled feature values of each row
+		 */
+		public double[][] apply(int[][] dataset) {
+			double[][] scaled = new double[dataset.length][];
+			for (int pos = 0; pos < dataset.length; pos++)
+				scaled[pos] = apply(dataset[pos]);
+			return scaled;
+		}
+	}
+}
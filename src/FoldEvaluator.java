@@ -0,0 +1,39 @@
+/**
+ * FoldEvaluator.java:
+ * One fold of a cross-validation test. An evaluator is trained on the training set
+ * and then tested on the test set, returning the number of correct categorisations.
+ * A new evaluator is created for every fold so that folds can run at the same time
+ * without sharing any model state.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface FoldEvaluator {
+
+	/**
+	 * Trains on the training set, then tests against the test set
+	 *
+	 * @param trainSet, the dataset to train with
+	 * @param testSet, the dataset to test against
+	 * @return the number of correct categorisations for this fold
+	 */
+	int trainAndTest(int[][] trainSet, int[][] testSet);
+
+	/**
+	 * @return extra details about the last fold that was run (e.g. when the GA stopped), or null if there are none
+	 */
+	default String foldSummary() {
+		return null;
+	}
+
+	/**
+	 * Sets where the prediction for each test row is recorded. Row i of the test set is
+	 * recorded at position firstRow + i. Evaluators that do not record predictions ignore this.
+	 *
+	 * @param sink, the sink to record predictions in
+	 * @param firstRow, the position in the sink of the first row of the test set
+	 */
+	default void setEvaluationSink(EvaluationSink sink, int firstRow) {
+	}
+}
@@ -1,24 +1,56 @@
 
+import java.io.IOException;
+import java.util.Random;
+
 /**
  * GeneticAlgorithm.java:
  * Genetic algorithm that categorises UCI digits. The fitness function uses
  * Euclidean distance to find the row in the dataset that is closest to the gene.
- * Various crossover and selection techniques have been implemented, though the best 
- * achieved ~70.4% accuracy (simple best genes selection and uniform crossover).
+ * Selection, crossover and mutation are pluggable strategies chosen through
+ * GeneticAlgorithmConfig, though the best achieved ~70.4% accuracy
+ * (simple best genes selection and uniform crossover).
  * 
  * @author Samuel C. Donovan
  * @created 31/01/22
- * @updated 25/02/22
+ * @updated 18/10/26
  */
-public class GeneticAlgorithm {
+public class GeneticAlgorithm implements FoldEvaluator {
 
-	private static final int POPULATION_SIZE = 40; /* size of the population */
 	private static final int GENE_LENGTH = 640; /* length of each gene in the population */
-	private static final int GENERATIONS = 300; /* number of generations for breeding */
-	private static final double MUTATION_RATE = 2.0; /* rate at which each gene mutates */
 
-	int[][] population = new int[POPULATION_SIZE][GENE_LENGTH]; /* 2D array that holds the current population */
-	int[][] tempPopulation = new int[POPULATION_SIZE][GENE_LENGTH]; /* 2D array created from gene selection techniques */
+	private final GeneticAlgorithmConfig config; /* population size, generations, strategies etc. */
+	private Random random; /* random number generator used by all of the strategies; restored when resuming */
+
+	int[][] population; /* 2D array that holds the current population */
+	int[] fitnesses; /* fitness of each gene in the population, calculated once per gene */
+
+	ConvergenceMonitor monitor; /* best/mean fitness history and stopping point for the latest fold */
+
+	private Checkpoint checkpoint; /* checkpoint of the latest fold, null if checkpoints are disabled */
+	private int resumedFrom; /* generation the latest fold resumed from, -1 if it started from scratch */
+
+	private EvaluationSink sink; /* records the prediction for each test row, if set */
+	private int sinkFirstRow;
+
+	/* how the per row predictions are made, reported with them since it is not how the fitness counts correct rows */
+	static final String PREDICTION_RULE = "category of the nearest of the best gene's 10 prototypes";
+
+	/**
+	 * Creates a genetic algorithm with the default configuration
+	 */
+	public GeneticAlgorithm() {
+		this(new GeneticAlgorithmConfig());
+	}
+
+	/**
+	 * Creates a genetic algorithm with the given configuration
+	 * 
+	 * @param config, the parameters and strategies to use
+	 */
+	public GeneticAlgorithm(GeneticAlgorithmConfig config) {
+		this.config = config;
+		this.random = config.seed == null ? new Random() : new Random(config.seed);
+	}
 
 	/**
 	 * Main function that runs the genetic algorithm with a 2-fold test. For the first
@@ -40,9 +72,11 @@ public class GeneticAlgorithm {
 
 		/* get the total number of correct categorisations from the first fold */
 		int firstFoldTotal = trainAndTestPopulation(dataset1, dataset2);
+		System.out.println("First fold: " + monitor.summary());
 
 		/* get the total number of correct categorisations from the second fold */
 		int secondFoldTotal = trainAndTestPopulation(dataset2, dataset1);
+		System.out.println("Second fold: " + monitor.summary());
 
 		/* print the total number of correct categorisations and its percentage (the full percentage and to 2 d.p.) */
 		double percentCorrect = Utility.calculatePercentage(firstFoldTotal, secondFoldTotal, dataset1.length,
@@ -59,6 +93,39 @@ public class GeneticAlgorithm {
 		return percentCorrect;
 	}
 
+	/**
+	 * Runs one fold of a cross-validation test
+	 * 
+	 * @param trainSet, the training set to form the population on
+	 * @param testSet, the set to test the newly formed population on
+	 * @return the number of correct categorisations for this fold
+	 */
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		return trainAndTestPopulation(trainSet, testSet);
+	}
+
+	@Override
+	public String foldSummary() {
+		return monitor == null ? null : monitor.summary() + checkpointSummary();
+	}
+
+	/**
+	 * @return where the latest fold resumed from and how many checkpoints it wrote, or "" if checkpoints are disabled
+	 */
+	private String checkpointSummary() {
+		if (checkpoint == null)
+			return "";
+		return (resumedFrom >= 0 ? ", resumed from generation " + resumedFrom : "") + ", " + checkpoint.summary();
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		this.sink = sink;
+		this.sinkFirstRow = firstRow;
+		sink.setPredictionRule(PREDICTION_RULE);
+	}
+
 	/**
 	 * Trains the population on a training set, then tests that population against the test set.
 	 * 
@@ -67,15 +134,48 @@ public class GeneticAlgorithm {
 	 * @return the number of correct categorisations for this fold
 	 */
 	private int trainAndTestPopulation(int[][] trainSet, int[][] testSet) {
-		/* generate an initial, randomised population */
-		generateNewPopulation();
+		checkpoint = config.checkpoint(trainSet);
+		Checkpoint.Saved saved = readCheckpoint(checkpoint);
+		boolean stopped;
+
+		/* the max fitness is one point for every category in every section of 10 rows (see fitness());
+		   the monitor is made first so that ga.timeBudgetMillis also counts the initial population */
+		monitor = new ConvergenceMonitor(config, 10 * ((trainSet.length + 9) / 10));
+
+		if (saved == null) {
+			initialisePopulation(trainSet);
+			stopped = monitor.record(fitnesses);
+			resumedFrom = -1;
+		} else {
+			stopped = restoreState(saved);
+			resumedFrom = saved.step;
+		}
 
-		/* loops for as many generations as specified */
-		for (int generation = 0; generation < GENERATIONS; generation++) {
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TRAIN);
 
-			/* run selection on the current population and then crossover */
-			bestGeneSelection(trainSet);
-			uniformCrossover();
+		/* loops until the max generations is reached, or until the monitor decides 
+		   that the population has converged */
+		while (!stopped) {
+			long generationStart = Metrics.ENABLED ? System.nanoTime() : 0;
+			nextGeneration(trainSet);
+			if (Metrics.ENABLED)
+				Metrics.GENERATIONS.record(System.nanoTime() - generationStart);
+
+			stopped = monitor.record(fitnesses);
+			if (checkpoint != null && !stopped && checkpoint.due(monitor.getStopGeneration()))
+				writeCheckpoint(false);
+		}
+
+		scope.end(trainSet.length);
+
+		/* a seeded run that finishes keeps its checkpoint, so running it again skips the training;
+		   an unseeded run would never be repeated, and a run stopped by its time budget would stop
+		   somewhere else next time, so their checkpoints are deleted */
+		if (checkpoint != null && (saved == null || !saved.finished)) {
+			if (config.seed != null && monitor.getStopReason() != ConvergenceMonitor.StopReason.TIME_BUDGET)
+				writeCheckpoint(true);
+			else
+				deleteCheckpoint();
 		}
 
 		/* after generations have finished, get the total number of correct categorisations from this fold */
@@ -85,27 +185,100 @@ public class GeneticAlgorithm {
 	}
 
 	/**
-	 * Generates a new, randomised population of genes 
+	 * Helper function that reads the checkpoint of a fold, if it has one. A checkpoint that cannot be
+	 * read is reported and ignored, so the fold starts from scratch.
+	 * 
+	 * @param checkpoint, the checkpoint of the fold, or null if checkpoints are disabled
+	 * @return the saved checkpoint, or null if there is none to resume from
 	 */
-	private void generateNewPopulation() {
-
-		/* empty the population */
-		population = new int[POPULATION_SIZE][GENE_LENGTH];
-		int[] gene = new int[GENE_LENGTH];
+	static Checkpoint.Saved readCheckpoint(Checkpoint checkpoint) {
+		if (checkpoint == null)
+			return null;
+		try {
+			return checkpoint.read();
+		} catch (IOException e) {
+			System.err.println("Ignoring checkpoint: " + e.getMessage());
+			return null;
+		}
+	}
 
-		/* create as many genes as specified in the variable POPULATION_SIZE */
-		for (int currentGene = 0; currentGene < POPULATION_SIZE; currentGene++) {
-			gene = new int[GENE_LENGTH]; /* empty gene */
+	/**
+	 * Helper function that restores the population, fitnesses, random number generator and
+	 * fitness history from a checkpoint
+	 * 
+	 * @param saved, the checkpoint to resume from
+	 * @return true if the run had already stopped when the checkpoint was written
+	 */
+	private boolean restoreState(Checkpoint.Saved saved) {
+		try {
+			population = Checkpoint.readGenes(saved.in);
+			fitnesses = new int[population.length];
+			for (int pos = 0; pos < fitnesses.length; pos++)
+				fitnesses[pos] = saved.in.readInt();
+			random = Checkpoint.readRandom(saved.in);
+			monitor.readFrom(saved.in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Checkpoint " + checkpoint.path() + " could not be restored", e);
+		}
+		return saved.finished;
+	}
 
-			/* for every position in gene, generate a random number between 0 and 16 */
-			for (int pos = 0; pos < gene.length; pos++)
-				gene[pos] = (int) (Math.random() * 17);
+	/**
+	 * Helper function that writes the state of the run to its checkpoint. A checkpoint that
+	 * cannot be written is reported, and training carries on.
+	 * 
+	 * @param finished, true if the run has stopped
+	 */
+	private void writeCheckpoint(boolean finished) {
+		try {
+			checkpoint.write(monitor.getStopGeneration(), finished, out -> {
+				Checkpoint.writeGenes(out, population);
+				for (int fitness : fitnesses)
+					out.writeInt(fitness);
+				Checkpoint.writeRandom(out, random);
+				monitor.writeTo(out);
+			});
+		} catch (IOException e) {
+			System.err.println("Could not write checkpoint " + checkpoint.path() + ": " + e);
+		}
+	}
 
-			/* set position in population to the newly created gene */
-			population[currentGene] = gene;
+	/**
+	 * Helper function that deletes the checkpoint of a finished run
+	 */
+	private void deleteCheckpoint() {
+		try {
+			checkpoint.delete();
+		} catch (IOException e) {
+			System.err.println("Could not delete checkpoint " + checkpoint.path() + ": " + e);
 		}
 	}
 
+	/**
+	 * Generates an initial population (random, or partly seeded from the training set, see
+	 * SeedingStrategy) and measures the fitness of every gene
+	 * 
+	 * @param trainSet, the training set to seed from and measure fitness against
+	 */
+	void initialisePopulation(int[][] trainSet) {
+		population = SeedingStrategy.initialPopulation(config, trainSet, random);
+		fitnesses = new int[config.populationSize];
+		evaluatePopulation(trainSet, 0, population.length);
+	}
+
+	/**
+	 * Calculates the fitness of a range of genes in the population. Only genes that 
+	 * have changed since their fitness was last calculated need to be evaluated.
+	 * 
+	 * @param dataset, current dataset that is being trained on
+	 * @param start, the position of the first gene to evaluate
+	 * @param end, the position after the last gene to evaluate
+	 */
+	private void evaluatePopulation(int[][] dataset, int start, int end) {
+		for (int pos = start; pos < end; pos++)
+			fitnesses[pos] = fitness(population[pos], dataset);
+	}
+
 	/**
 	 * Gene fitness evaluation function. Finds the nearest neighbour in the dataset 
 	 * for each section of the gene and if the categories match, the fitness increases by 1 
@@ -122,6 +295,8 @@ public class GeneticAlgorithm {
 		int minPos = -1;
 		int[] currentRow;
 
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.FITNESS);
+
 		/* loop through the 10 sections of the gene, each representing one of the categories */
 		for (int category = 0; category < 10; category++) {
 
@@ -131,7 +306,8 @@ public class GeneticAlgorithm {
 			/* loop through every 10 rows in the dataset. If the nearest neighbour in the current section
 			 * matches the current category, the categorisation was correct */
 			for (int datasetSection = 0; datasetSection < dataset.length; datasetSection += 10) {
-				for (int datasetPos = datasetSection; datasetPos < datasetSection + 10; datasetPos++) {
+				int sectionEnd = Math.min(datasetSection + 10, dataset.length); /* the last section may be shorter */
+				for (int datasetPos = datasetSection; datasetPos < sectionEnd; datasetPos++) {
 
 					currentDist = Utility.euclideanDistance(currentRow, dataset[datasetPos]);
 
@@ -150,6 +326,8 @@ public class GeneticAlgorithm {
 
 			}
 		}
+
+		scope.end(dataset.length);
 		return fitness;
 	}
 
@@ -188,6 +366,9 @@ public class GeneticAlgorithm {
 	private int testPopulation(int[][] dataset) {
 		int bestFitness = 0;
 		int currentFitness = 0;
+		int bestPos = 0;
+
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TEST);
 
 		/* loop through every gene in the population and measure their fitness */
 		for (int pos = 0; pos < population.length; pos++) {
@@ -196,333 +377,151 @@ public class GeneticAlgorithm {
 
 			/* find the best fitness, and this will be used to represent the total number
 			   of correct categorisations for this fold. */
-			if (currentFitness > bestFitness)
-				bestFitness = currentFitness;
-		}
-
-		return bestFitness;
-	}
-
-	/**
-	 * Retrieves the two genes in the population with the highest fitness. This is
-	 * a very simple selection function, but because of this simplicity it has proven
-	 * particularly effective in generating populations with a high average fitness quickly
-	 * 
-	 * @param dataset, current dataset that is being trained on
-	 */
-	private void bestGeneSelection(int[][] dataset) {
-
-		tempPopulation = new int[POPULATION_SIZE][GENE_LENGTH]; /* reset temporary population */
-
-		/* find the positions of the two best genes in the population */
-		int[] bestGenesInPopulation = findTwoBestGenes(population, dataset);
-		int[] bestGene1 = population[bestGenesInPopulation[0]], bestGene2 = population[bestGenesInPopulation[1]];
-
-		/* populate the temporary population with the two best genes */
-		for (int populationPos = 0; populationPos < population.length; populationPos++) {
-			tempPopulation[populationPos] = bestGene1.clone();
-			tempPopulation[++populationPos] = bestGene2.clone();
-		}
-	}
-
-	/**
-	* Helper function that retrieves the two genes in the given set of genes with the highest fitness
-	* 
-	* @param genes, the set of genes to find the best genes for
-	* @param dataset, current dataset that is being trained on
-	* @return an array containing the positions of the best genes in the set
-	*/
-	private int[] findTwoBestGenes(int[][] genes, int[][] dataset) {
-		int currentFitness;
-		int bestFitness = 0, secondBestFitness = 0;
-		int bestPos = -1, secondBestPos = -1;
-
-		/* loop through each gene in the population in order 
-		 * to find the two genes with the highest fitnesses */
-		for (int currentGene = 0; currentGene < genes.length; currentGene++) {
-
-			/* get fitness for the current gene */
-			currentFitness = fitness(genes[currentGene], dataset);
-
-			/* if the current fitness is more than the best fitness, set best fitness
-			   to current, and set second best fitness to previous best */
-			if (currentFitness >= bestFitness) {
-				secondBestFitness = bestFitness;
-				secondBestPos = bestPos;
-
+			if (currentFitness > bestFitness) {
 				bestFitness = currentFitness;
-				bestPos = currentGene;
-			} else if (currentFitness >= secondBestFitness) {
-				/* if current fitness is less than the best fitness, but more than the second best,
-				   set secondBestFitness to currentFitness */
-				secondBestFitness = currentFitness;
-				secondBestPos = currentGene;
+				bestPos = pos;
 			}
 		}
 
-		/* return an array containing the positions of the two best genes in the given set of genes */
-		return new int[] { bestPos, secondBestPos };
-	}
-
-	/**
-	 * Tournament selection method for selecting parent genes. Chooses a random set of 10
-	 * genes in the population and the two best genes from that set become parents for the next population
-	 * 
-	 * @param dataset, current training set
-	 */
-	private void tournamentSelection(int[][] dataset) {
-
-		/* use Fisher Yates shuffle to shuffle the population */
-		fisherYatesShuffle();
-
-		tempPopulation = new int[POPULATION_SIZE][GENE_LENGTH]; /* reset temporary population */
-		int numContestants = 10; /* 10 genes are in each tournament */
-		int[][] tournament = new int[numContestants][GENE_LENGTH]; /* 2D array to hold tournament genes */
-		int[] bestGenes;
-
-		/* loop through every two elements in population */
-		for (int populationPos = 0; populationPos < population.length; populationPos++) {
-
-			/* loop through every position in the tournament */
-			for (int tournamentPos = 0; tournamentPos < numContestants; tournamentPos++)
-				tournament[tournamentPos] = population[tournamentPos];
-
-			bestGenes = findTwoBestGenes(tournament, dataset);
-
-			/* add two best genes from tournament to the temporary population */
-			tempPopulation[populationPos] = tournament[bestGenes[0]];
-			tempPopulation[++populationPos] = tournament[bestGenes[1]];
-
-		}
-	}
-
-	/**
-	 * Helper function for tournament selection. Based on the
-	 * Fisher-Yates shuffle algorithm, shuffles the current population
-	 * in order to select random genes for the tournament
-	 */
-	private void fisherYatesShuffle() {
-
-		int randomIndex;
-		int[] tempGene;
-
-		/* loop through every element of the population */
-		for (int populationPos = 0; populationPos < population.length; populationPos++) {
+		if (sink != null)
+			recordPredictions(population[bestPos], dataset);
 
-			/* generate a random index between 0 and population length minus current position */
-			randomIndex = (int) (Math.random() * (population.length - populationPos));
+		scope.end(dataset.length);
+		if (Metrics.ENABLED)
+			Metrics.ROWS_CATEGORISED.add(dataset.length);
 
-			/* swap genes in positions populationPos and randomIndex */
-			tempGene = population[randomIndex].clone();
-			population[randomIndex] = population[populationPos];
-			population[populationPos] = tempGene;
-		}
+		return bestFitness;
 	}
 
 	/**
-	 * Uniform crossover function; for each element in the gene, there
-	 * is a 50% chance for it to crossover.  
+	 * Helper function that records a prediction for every row of the test set using the best gene.
+	 * The fitness function scores sections of 10 rows rather than single rows, so for the
+	 * per row predictions each of the 10 sections of the gene is used as the prototype
+	 * of its category, and a row is predicted as the category of its nearest prototype.
+	 * Their accuracy is not the fitness based count testPopulation returns, so the sink reports
+	 * it under its own name (see EvaluationSink.setPredictionRule).
+	 * 
+	 * @param gene, the best gene in the population
+	 * @param dataset, the test set
 	 */
-	private void uniformCrossover() {
-		double crossoverChance = 50.0;
-		double randomChance; /* random chance that the gene element will crossover */
-		int tempElement;
-
-		int[] newGene1, newGene2;
-
-		/* loop through every two genes in the temporary population and generate two new genes from them */
-		for (int populationPos = 0; populationPos < tempPopulation.length; populationPos++) {
-
-			newGene1 = tempPopulation[populationPos];
-			newGene2 = tempPopulation[populationPos + 1];
-
-			/* loop through each element in the gene with a 50% chance for a crossover to occur */
-			for (int genePos = 0; genePos < newGene1.length; genePos++) {
-
-				randomChance = Math.random() * 100;
-
-				/* if the random chance is higher than the crossover chance, perform crossover */
-				if (randomChance >= crossoverChance) {
-					tempElement = newGene1[genePos];
-					newGene1[genePos] = newGene2[genePos];
-					newGene2[genePos] = tempElement;
+	private void recordPredictions(int[] gene, int[][] dataset) {
+		int[][] prototypes = new int[10][];
+		for (int category = 0; category < 10; category++)
+			prototypes[category] = getRow(gene, category);
+
+		int lastIndex = dataset[0].length - 1;
+		for (int datasetPos = 0; datasetPos < dataset.length; datasetPos++) {
+			double min = Double.MAX_VALUE;
+			int predicted = 0;
+
+			for (int category = 0; category < 10; category++) {
+				double currentDist = Utility.euclideanDistance(prototypes[category], dataset[datasetPos]);
+				if (currentDist < min) {
+					min = currentDist;
+					predicted = category;
 				}
-
-				/* call mutate on the current gene elements */
-				newGene1[genePos] = mutate(newGene1[genePos]);
-				newGene2[genePos] = mutate(newGene2[genePos]);
-
 			}
-
-			/* insert the new genes into the population */
-			population[populationPos] = newGene1.clone();
-			population[++populationPos] = newGene2.clone();
+			sink.record(sinkFirstRow + datasetPos, predicted, dataset[datasetPos][lastIndex]);
 		}
 	}
 
 	/**
-	 * Two-point crossover; randomly chooses two positions in the gene
-	 * to crossover with the other parent gene. Uses the temporary population
-	 * created through gene selection.
+	 * Runs one generation: selects parents, creates children through crossover and mutation,
+	 * and then replaces part or all of the population with them depending on the replacement mode.
+	 * Only the new children have their fitness evaluated; genes that survive keep their fitness.
+	 * 
+	 * @param dataset, current dataset that is being trained on
 	 */
-	private void twoPointCrossover() {
-
-		double ratio; /* ratio for generating cross points */
-		int crossPoint1, crossPoint2; /* positions for the genes to crossover */
-		int startPoint = 0; /* the starting point for crossover */
-
-		/* loop through every two genes in the temporary population and create new genes from those two */
-		for (int populationPos = 0; populationPos < tempPopulation.length; populationPos += 2) {
-
-			/* generate a new ratio and the first cross point */
-			ratio = ((int) (Math.random() * 10.0)) / 10.0;
-			crossPoint1 = (int) (ratio * GENE_LENGTH);
-
-			/* generate a new ratio and the second cross point */
-			ratio = ((int) (Math.random() * 10.0)) / 10.0;
-			crossPoint2 = (int) (crossPoint1 + (ratio * (GENE_LENGTH - crossPoint1)));
-
-			/* use helper function to crossover the genes at the
-			   generated cross points and add them to the population */
-			crossoverAndAddToPopulation(populationPos, startPoint, crossPoint1, crossPoint2, GENE_LENGTH);
+	void nextGeneration(int[][] dataset) {
+
+		int childrenStart = 0; /* position of the first child added in this generation */
+
+		switch (config.replacement) {
+		case GENERATIONAL:
+			/* the whole population is replaced by children */
+			childrenStart = 0;
+			break;
+
+		case ELITIST:
+			/* sort the population so that the best genes come first, then keep them unchanged */
+			sortByFitness();
+			childrenStart = config.eliteCount;
+			break;
+
+		case STEADY_STATE:
+			/* sort the population so that the worst genes come last, then replace only those */
+			sortByFitness();
+			childrenStart = population.length - config.steadyStateChildren;
+			break;
 		}
-	}
-
-	/**
-	 * Multi-point (K-point) crossover function; randomly chooses the amount of crossovers
-	 * and randomly chooses the size of each crossover, then performs all of these
-	 * crossovers between the two parent genes. 
-	 */
-	private void multiPointCrossover() {
-
-		int numCrossPoints; /* random number of cross points, different for each set of genes */
-		int maxCross; /* max crossover size, generated using numCrossPoints */
-		int crossSize; /* current crossover size, generated using maxCross */
-		int crossPoint1, crossPoint2; /* the two cross points for the current section */
-
-		int[] sections; /* each gene is split into sections, the number of sections is dictated by numCrossPoints */
-
-		/* loop through every two genes in the temporary population and create new genes from those two */
-		for (int populationPos = 0; populationPos < POPULATION_SIZE; populationPos += 2) {
-
-			numCrossPoints = (int) (Math.random() * 64) + 1; /* generate random number of cross points (1-64) */
-
-			/* generate max cross size, given the number of cross points */
-			maxCross = (int) (GENE_LENGTH / numCrossPoints);
-
-			sections = new int[numCrossPoints]; /* set number of sections to the number of cross points */
 
-			/* put the first index of each section into an array */
-			for (int crossPointStart = 0; crossPointStart < numCrossPoints; crossPointStart++)
-				sections[crossPointStart] = crossPointStart * maxCross;
+		replaceWithChildren(childrenStart, breedChildren(population.length - childrenStart));
 
-			/* loop through each section */
-			for (int currentSection : sections) {
-
-				/* generate new crossover size: between 0 and max cross size */
-				crossSize = (int) (Math.random() * maxCross - 1) + 1;
-
-				/* generate first cross point; between currentSection and maxCross - crossSize*/
-				crossPoint1 = currentSection + ((int) (Math.random() * (maxCross - crossSize))) + 1;
-
-				crossPoint2 = crossPoint1 + crossSize;
-
-				/* use helper function to crossover the genes at the
-				generated cross points and add them to the population */
-				crossoverAndAddToPopulation(populationPos, currentSection, crossPoint1, crossPoint2,
-						currentSection + maxCross);
-			}
-		}
+		/* only the new children need their fitness calculated */
+		evaluatePopulation(dataset, childrenStart, population.length);
 	}
 
 	/**
-	 * Helper function for twoPoint and multiPoint crossover. Uses cross points to
-	 * crossover two parent genes.
+	 * Selects parents from the current population and breeds the given number of children
 	 * 
-	 * @param populationPos, current iteration of the loop, represents the position in the population
-	 * @param startPos, start position of the crossover
-	 * @param crossPoint1, first crossover point
-	 * @param crossPoint2, second crossover point
-	 * @param endPos, end position of the crossover
+	 * @param numChildren, the number of children needed
+	 * @return the new children, already mutated
 	 */
-	private void crossoverAndAddToPopulation(int populationPos, int startPos, int crossPoint1, int crossPoint2,
-			int endPos) {
+	private int[][] breedChildren(int numChildren) {
 
-		/* new genes to be created from parent genes */
-		int[] newGene1 = new int[GENE_LENGTH], newGene2 = new int[GENE_LENGTH];
+		/* parents and children are created in pairs, so round up to an even number */
+		int numPairs = (numChildren + 1) / 2;
+		int[][] parents = new int[numPairs * 2][];
+		int[][] children = new int[numPairs * 2][];
 
-		/* loop from the start of the current section of the parent gene until the first cross point, 
-		   add each element from current parents (from temporary population) to the new genes */
-		for (int genePos = startPos; genePos < crossPoint1; genePos++) {
-			newGene1[genePos] = tempPopulation[populationPos][genePos];
-			newGene2[genePos] = tempPopulation[populationPos + 1][genePos];
-		}
+		config.selection.select(population, fitnesses, parents, random);
 
-		/* loop from the start of the first cross point to the second cross point, add elements 
-		   from the other parent to new genes*/
-		for (int genePos = crossPoint1; genePos < crossPoint2; genePos++) {
-			newGene1[genePos] = tempPopulation[populationPos + 1][genePos];
-			newGene2[genePos] = tempPopulation[populationPos][genePos];
-		}
+		/* loop through every pair of parents and generate two new genes from them */
+		for (int parentPos = 0; parentPos < parents.length; parentPos += 2) {
+			children[parentPos] = new int[GENE_LENGTH];
+			children[parentPos + 1] = new int[GENE_LENGTH];
 
-		/* loop from end of the second cross point to end of current section, 
-		   add the rest of the elements to respective new genes */
-		for (int genePos = crossPoint2; genePos < endPos; genePos++) {
-			newGene1[genePos] = tempPopulation[populationPos][genePos];
-			newGene2[genePos] = tempPopulation[populationPos + 1][genePos];
-		}
+			config.crossover.crossover(parents[parentPos], parents[parentPos + 1], children[parentPos],
+					children[parentPos + 1], random);
 
-		/* mutate new genes */
-		mutate(newGene1);
-		mutate(newGene2);
+			config.mutation.mutate(children[parentPos], config.mutationRate, random);
+			config.mutation.mutate(children[parentPos + 1], config.mutationRate, random);
+		}
 
-		/* add new genes to actual population */
-		population[populationPos] = newGene1;
-		population[populationPos + 1] = newGene2;
+		return children;
 	}
 
 	/**
-	 * Gene mutation function (for individual element in gene), 2.0% chance to change 
-	 * current element in the gene to a random feature value (0-16)
+	 * Inserts children into the population from the given position until the end of the population.
+	 * If there is an odd number of places, the last child is discarded.
 	 * 
-	 * @param element, the gene element to perform mutation on
-	 * @return the gene element that is either mutated or unchanged
+	 * @param start, the position of the first gene to be replaced
+	 * @param children, the children to insert
 	 */
-	private int mutate(int element) {
-
-		double randomChance = Math.random() * 100; /* generate random number from 0 to 100 */
-		int featureValueMax = 17; /* the largest number that a feature value can be is 16, +1 for random num */
-
-		/* if the random number is less than or equal to the mutation rate,
-		 * the gene bit is mutated */
-		if (MUTATION_RATE >= randomChance)
-			element = (int) (Math.random() * featureValueMax);
-
-		return element;
+	private void replaceWithChildren(int start, int[][] children) {
+		for (int pos = start, childPos = 0; pos < population.length; pos++, childPos++)
+			population[pos] = children[childPos];
 	}
 
 	/**
-	 * Gene mutation function (for whole gene), loops through every element in
-	 * the gene, with a 2.0% chance to mutate each element to a random feature value (0-16)
-	 * 
-	 * @param gene the gene to be mutated
+	 * Sorts the population (and the fitness of each gene) from highest to lowest fitness.
+	 * Insertion sort is used because the population is small and mostly sorted already
+	 * after the first generation.
 	 */
-	private void mutate(int[] gene) {
-
-		double randomChance;
-		int featureValueMax = 17; /* the largest number that a feature value can be is 16, +1 for random num */
-
-		/* loop through every position in the gene */
-		for (int genePos = 0; genePos < gene.length; genePos++) {
-
-			/* generate random number from 0 to 100 */
-			randomChance = Math.random() * 100;
+	private void sortByFitness() {
+		for (int pos = 1; pos < population.length; pos++) {
+			int[] gene = population[pos];
+			int fitness = fitnesses[pos];
+			int insertPos = pos - 1;
+
+			while (insertPos >= 0 && fitnesses[insertPos] < fitness) {
+				population[insertPos + 1] = population[insertPos];
+				fitnesses[insertPos + 1] = fitnesses[insertPos];
+				insertPos--;
+			}
 
-			/* if random number is less than or equal to the mutation rate,
-			 * the element at the current position is mutated */
-			if (MUTATION_RATE >= randomChance)
-				gene[genePos] = (int) (Math.random() * featureValueMax);
+			population[insertPos + 1] = gene;
+			fitnesses[insertPos + 1] = fitness;
 		}
 	}
-
 }
@@ -0,0 +1,163 @@
+import java.util.Properties;
+
+/**
+ * GeneticAlgorithmConfig.java:
+ * Runtime configuration for the genetic algorithm. The defaults are the
+ * parameters that gave the best recorded accuracy (~70.4%); any of them can be
+ * overridden from properties (e.g. -Dga.selection=tournament) so that parameter
+ * exploration does not need the project to be recompiled.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class GeneticAlgorithmConfig {
+
+	/**
+	 * How the children of each generation replace the current population.
+	 * GENERATIONAL replaces the whole population, ELITIST carries the best genes
+	 * over unchanged and STEADY_STATE only replaces the worst genes with a few new children.
+	 */
+	public enum Replacement {
+		GENERATIONAL, ELITIST, STEADY_STATE
+	}
+
+	int populationSize = 40; /* size of the population */
+	int generations = 300; /* number of generations for breeding */
+	double mutationRate = 2.0; /* rate at which each gene mutates */
+
+	String selectionName = "best"; /* parent selection strategy */
+	int tournamentSize = SelectionStrategy.Tournament.DEFAULT_CONTESTANTS; /* contestants in each tournament */
+	String crossoverName = "uniform"; /* gene crossover strategy */
+	String mutationName = "randomReset"; /* gene mutation strategy */
+
+	Replacement replacement = Replacement.GENERATIONAL; /* population replacement mode */
+	int eliteCount = 2; /* number of best genes kept each generation in ELITIST mode */
+	int steadyStateChildren = 2; /* number of new children each generation in STEADY_STATE mode */
+
+	double targetFitnessPercent = 0.0; /* stop once the best gene reaches this % of the max fitness, 0 = disabled */
+	int stagnationWindow = 0; /* stop after this many generations without improvement, 0 = disabled */
+	long timeBudgetMillis = 0; /* stop once this much time has passed in one fold (initial population included), 0 = disabled */
+
+	String seedingName = "random"; /* initial population seeding strategy */
+	double seedFraction = 0.0; /* fraction of the initial population that is seeded, 0 = all random */
+	int seedNoise = 2; /* largest change to each value of a perturbed seeded gene */
+
+	boolean packed = false; /* use PackedGeneticAlgorithm, which stores genes 5 bits per value */
+
+	String checkpointPrefix = null; /* start of the path of each fold's checkpoint file, null = no checkpoints */
+	int checkpointEvery = 10; /* generations between checkpoints, at least (see Checkpoint) */
+	double checkpointOverhead = 0.02; /* largest fraction of the training time to spend writing checkpoints */
+
+	Long seed = null; /* seed for the random number generator, null for a different population every run */
+
+	SelectionStrategy selection = SelectionStrategy.forName(selectionName, tournamentSize);
+	CrossoverStrategy crossover = CrossoverStrategy.forName(crossoverName);
+	MutationStrategy mutation = MutationStrategy.forName(mutationName);
+	SeedingStrategy seeding = SeedingStrategy.forName(seedingName);
+
+	/**
+	 * Creates a configuration from properties; any property that is not set keeps its default value.
+	 * Recognised keys are ga.populationSize, ga.generations, ga.mutationRate, ga.selection,
+	 * ga.tournamentSize, ga.crossover, ga.mutation, ga.replacement, ga.eliteCount, ga.steadyStateChildren,
+	 * ga.targetFitness (% of the max fitness), ga.stagnationWindow, ga.timeBudgetMillis, ga.seeding,
+	 * ga.seedFraction, ga.seedNoise, ga.packed, ga.checkpoint, ga.checkpointEvery, ga.checkpointOverhead and ga.seed
+	 *
+	 * @param props, the properties to read (usually System.getProperties())
+	 * @return the new configuration
+	 */
+	public static GeneticAlgorithmConfig fromProperties(Properties props) {
+		GeneticAlgorithmConfig config = new GeneticAlgorithmConfig();
+
+		config.populationSize = Integer.parseInt(props.getProperty("ga.populationSize", "" + config.populationSize));
+		config.generations = Integer.parseInt(props.getProperty("ga.generations", "" + config.generations));
+		config.mutationRate = Double.parseDouble(props.getProperty("ga.mutationRate", "" + config.mutationRate));
+
+		config.selectionName = props.getProperty("ga.selection", config.selectionName);
+		config.tournamentSize = Integer.parseInt(props.getProperty("ga.tournamentSize", "" + config.tournamentSize));
+		config.crossoverName = props.getProperty("ga.crossover", config.crossoverName);
+		config.mutationName = props.getProperty("ga.mutation", config.mutationName);
+
+		config.replacement = Replacement
+				.valueOf(props.getProperty("ga.replacement", config.replacement.name()).toUpperCase());
+		config.eliteCount = Integer.parseInt(props.getProperty("ga.eliteCount", "" + config.eliteCount));
+		config.steadyStateChildren = Integer
+				.parseInt(props.getProperty("ga.steadyStateChildren", "" + config.steadyStateChildren));
+
+		config.targetFitnessPercent = Double
+				.parseDouble(props.getProperty("ga.targetFitness", "" + config.targetFitnessPercent));
+		config.stagnationWindow = Integer.parseInt(props.getProperty("ga.stagnationWindow", "" + config.stagnationWindow));
+		config.timeBudgetMillis = Long.parseLong(props.getProperty("ga.timeBudgetMillis", "" + config.timeBudgetMillis));
+
+		config.seedingName = props.getProperty("ga.seeding", config.seedingName);
+		config.seedFraction = Double.parseDouble(props.getProperty("ga.seedFraction", "" + config.seedFraction));
+		config.seedNoise = Integer.parseInt(props.getProperty("ga.seedNoise", "" + config.seedNoise));
+
+		config.packed = Boolean.parseBoolean(props.getProperty("ga.packed", "" + config.packed));
+
+		config.checkpointPrefix = props.getProperty("ga.checkpoint", config.checkpointPrefix);
+		config.checkpointEvery = Integer.parseInt(props.getProperty("ga.checkpointEvery", "" + config.checkpointEvery));
+		config.checkpointOverhead = Double
+				.parseDouble(props.getProperty("ga.checkpointOverhead", "" + config.checkpointOverhead));
+
+		if (props.getProperty("ga.seed") != null)
+			config.seed = Long.parseLong(props.getProperty("ga.seed"));
+
+		config.resolveStrategies();
+		return config;
+	}
+
+	/**
+	 * Creates the strategy objects from the strategy names and checks that the
+	 * configuration is valid. Must be called after changing any of the names.
+	 */
+	void resolveStrategies() {
+		if (populationSize < 2 || populationSize % 2 != 0)
+			throw new IllegalArgumentException("Population size must be an even number >= 2: " + populationSize);
+		if (replacement == Replacement.ELITIST && (eliteCount < 0 || eliteCount >= populationSize))
+			throw new IllegalArgumentException("Elite count must be between 0 and the population size: " + eliteCount);
+		if (replacement == Replacement.STEADY_STATE
+				&& (steadyStateChildren < 2 || steadyStateChildren % 2 != 0 || steadyStateChildren > populationSize))
+			throw new IllegalArgumentException(
+					"Steady state children must be an even number between 2 and the population size: "
+							+ steadyStateChildren);
+		if (seedFraction < 0.0 || seedFraction > 1.0)
+			throw new IllegalArgumentException("Seed fraction must be between 0 and 1: " + seedFraction);
+		if (seedNoise < 0)
+			throw new IllegalArgumentException("Seed noise must be >= 0: " + seedNoise);
+		if (checkpointEvery < 1 || checkpointOverhead <= 0.0)
+			throw new IllegalArgumentException("Checkpoint interval must be at least 1 and the overhead positive: "
+					+ checkpointEvery + ", " + checkpointOverhead);
+
+		selection = SelectionStrategy.forName(selectionName, tournamentSize);
+		crossover = CrossoverStrategy.forName(crossoverName);
+		mutation = MutationStrategy.forName(mutationName);
+		seeding = SeedingStrategy.forName(seedingName);
+	}
+
+	/**
+	 * Creates the checkpoint for one fold, named after the training set and every parameter that
+	 * changes the run, so a run only resumes from a checkpoint that it wrote itself
+	 *
+	 * @param trainSet, the training set of the fold
+	 * @return the checkpoint, or null if checkpoints are disabled
+	 */
+	Checkpoint checkpoint(int[][] trainSet) {
+		if (checkpointPrefix == null)
+			return null;
+		String description = "ga " + this + ", tournamentSize=" + tournamentSize + ", eliteCount=" + eliteCount
+				+ ", steadyStateChildren=" + steadyStateChildren + ", seedNoise=" + seedNoise
+				+ ", targetFitnessPercent=" + targetFitnessPercent + ", stagnationWindow=" + stagnationWindow
+				+ ", timeBudgetMillis=" + timeBudgetMillis + ", seed=" + seed;
+		return new Checkpoint(checkpointPrefix, Checkpoint.GA, Checkpoint.fingerprint(trainSet, description),
+				checkpointEvery, checkpointOverhead);
+	}
+
+	@Override
+	public String toString() {
+		return "population=" + populationSize + ", generations=" + generations + ", mutationRate=" + mutationRate
+				+ ", selection=" + selectionName + ", crossover=" + crossoverName + ", mutation=" + mutationName
+				+ ", replacement=" + replacement
+				+ (seedFraction > 0 ? ", seeding=" + seedingName + " (" + seedFraction + ")" : "") + (packed ? ", packed" : "");
+	}
+}
@@ -0,0 +1,113 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram.java:
+ * Lock-free histogram of durations (in nanoseconds) for reporting percentiles such
+ * as p50 and p99. Values are counted in log-linear buckets; every power of two is
+ * split into 8 sub-buckets, so a reported percentile is within 12.5% of the real value
+ * while the whole histogram is a fixed array of counters that any number of threads
+ * can record into without locking.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3; /* 2^3 = 8 sub-buckets per power of two */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * Records one duration
+	 *
+	 * @param nanos, the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+		totalCount.increment();
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * Helper function that finds the bucket for a value. Values below 8 have a bucket each;
+	 * above that, the bucket is found from the position of the highest set bit and the next 3 bits.
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highestBit - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Helper function that returns the highest value that falls into a bucket
+	 */
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * @param percentile, the percentile to find (0-100)
+	 * @return the duration in nanoseconds that the given percentage of recorded durations are at or below
+	 */
+	public long percentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[NUM_BUCKETS];
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			snapshot[bucket] = counts.get(bucket);
+			total += snapshot[bucket];
+		}
+		if (total == 0)
+			return 0;
+
+		long target = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			seen += snapshot[bucket];
+			if (seen >= target && snapshot[bucket] > 0)
+				return upperBoundOf(bucket);
+		}
+		return upperBoundOf(NUM_BUCKETS - 1);
+	}
+
+	/**
+	 * @return the number of durations recorded
+	 */
+	public long count() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * @return the mean of the recorded durations in nanoseconds
+	 */
+	public double mean() {
+		long count = totalCount.sum();
+		return count == 0 ? 0.0 : (double) totalNanos.sum() / count;
+	}
+
+	/**
+	 * Clears every recorded duration
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+			counts.set(bucket, 0);
+		totalCount.reset();
+		totalNanos.reset();
+	}
+}
@@ -1,19 +1,34 @@
 import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main.java 
  * INSTRUCTIONS:
- * Lines 26 and 30 search the current directory for "cw2DataSet1.csv" and "cw2DataSet2.csv" respectively.
+ * The main function searches the current directory for "cw2DataSet1.csv" and "cw2DataSet2.csv" respectively.
  * If those files are found in the current directory, the main function will run the following algorithms.
  * 
- * First is the Nearest Neighbour algorithm, which should finish in > 10s, with an accuracy of ~98.3%.
- * Next, the Multilayer Perceptron will run. This should finish in ~60s and the accuracy will range from 90% to 94%.
- * Finally, the Genetic Algorithm will run. This should finish in less than 30s and the accuracy will range
- * from roughly 45% to 70%, but will differ every time it is ran.
+ * The Nearest Neighbour algorithm should have an accuracy of ~98.3%, the Multilayer Perceptron's accuracy
+ * will range from 90% to 94% and the Genetic Algorithm's accuracy will range from roughly 45% to 70%, 
+ * but will differ every time it is ran. Every fold of all three algorithms runs at the same time, so the
+ * total running time is roughly that of the slowest fold (the MLP, ~35s) rather than ~100s.
+ * 
+ * Optional system properties: -Dcv.folds=k runs a k-fold test on both datasets combined, 
+ * -Dcv.stratified=true balances the categories in each fold, -Dcv.threads sets the number of threads
+ * and -Dga.* / -Dmlp.* / -Dnn.* change the GA, MLP and nearest neighbour parameters (see GeneticAlgorithmConfig,
+ * MultilayerPerceptronConfig and NearestNeighbourConfig). -Dprojection.* projects the rows to fewer values
+ * before the nearest neighbour and MLP run (see ProjectionConfig), after -Dprep.* drops constant columns and
+ * orders the rest by variance (see PreprocessingConfig). -Dcascade.run=true also runs a cascade classifier,
+ * which only passes rows its cheap first stage is unsure of on to the nearest neighbour (-Dcascade.*, see
+ * CascadeConfig). -Dcv.output=prefix writes the prediction for every row (prefix-nn.csv etc.)
+ * and the confusion matrix with per category precision/recall (prefix-nn.json etc.) for each algorithm.
  * 
  * @author Samuel C. Donovan
  * @created 01/01/22
- * @updated: 03/03/22
+ * @updated: 18/10/26
  */
 public class Main {
 
@@ -34,22 +49,113 @@ public class Main {
 		if (dataset1.length == 0 || dataset2.length == 0)
 			return;
 		
-		/* run the Nearest Neighbour algorithm using Euclidean distance */
-		System.out.println("\nNearest neighbour (Euclidean):" + "\n-------------------");
-		NearestNeighbour nearestNeighbour = new NearestNeighbour();
-		nearestNeighbour.twoFold(dataset1, dataset2);
-
-		/* run the Multilayer Perceptron */
-		System.out.println(
-				"-------------------\n\n" + "Multilayer Perceptron (running time = ~70s):" + "\n-------------------");
-		MultilayerPerceptron multilayerPerceptron = new MultilayerPerceptron();
-		multilayerPerceptron.twoFold(dataset1, dataset2);
-
-		/* run the Genetic Algorithm */
-		System.out.println(
-				"-------------------\n\n" + "Genetic Algorithm (running time = ~30s):" + "\n-------------------");
-		GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm();
-		geneticAlgorithm.twoFold(dataset1, dataset2);
+		/* all folds of all three algorithms run at the same time on one shared executor,
+		   so the total running time is roughly that of the slowest fold */
+		int numThreads = Integer.getInteger("cv.threads", Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		CrossValidation crossValidation = new CrossValidation(executor);
+
+		/* the original two fold test is used by default; -Dcv.folds=k combines both datasets and 
+		   runs a k-fold test instead (-Dcv.stratified=true keeps the categories balanced in each fold) */
+		CrossValidation.Fold[] folds = createFolds(dataset1, dataset2);
+
+		/* GA and MLP parameters can be changed at runtime with -Dga.* and -Dmlp.* properties */
+		GeneticAlgorithmConfig gaConfig = GeneticAlgorithmConfig.fromProperties(System.getProperties());
+		MultilayerPerceptronConfig mlpConfig = MultilayerPerceptronConfig.fromProperties(System.getProperties());
+		NearestNeighbourConfig nnConfig = NearestNeighbourConfig.fromProperties(System.getProperties());
+
+		/* -Dprojection.method=pca|random projects the rows of each fold for the nearest neighbour and MLP */
+		ProjectionConfig projectionConfig = ProjectionConfig.fromProperties(System.getProperties());
+
+		/* -Dprep.* drops constant columns and orders the rest by variance before the projection */
+		PreprocessingConfig preprocessingConfig = PreprocessingConfig.fromProperties(System.getProperties());
+
+		long startTime = System.nanoTime();
+
+		CrossValidation.Result nearestNeighbour = crossValidation.submit("Nearest neighbour (Euclidean)",
+				() -> new ProjectedEvaluator(new NearestNeighbour(nnConfig), preprocessingConfig, projectionConfig), folds);
+		/* -Dmlp.ensemble=n trains n differently seeded MLPs at once and averages their outputs */
+		CrossValidation.Result multilayerPerceptron = crossValidation.submit(
+				mlpConfig.ensembleSize > 1 ? "Multilayer Perceptron (ensemble of " + mlpConfig.ensembleSize + ")"
+						: "Multilayer Perceptron",
+				() -> new ProjectedEvaluator(
+						mlpConfig.ensembleSize > 1 ? new MultilayerPerceptronEnsemble(mlpConfig)
+								: new MultilayerPerceptron(mlpConfig),
+						preprocessingConfig, projectionConfig),
+				folds);
+		CrossValidation.Result geneticAlgorithm = crossValidation.submit("Genetic Algorithm",
+				() -> gaConfig.packed ? new PackedGeneticAlgorithm(gaConfig) : new GeneticAlgorithm(gaConfig), folds);
+
+		/* -Dcascade.run=true adds the cascade; -Dcascade.* sets the cheap first stage and when it hands rows
+		   on to the nearest neighbour */
+		CascadeConfig cascadeConfig = CascadeConfig.fromProperties(System.getProperties());
+		CrossValidation.Result cascade = !Boolean.getBoolean("cascade.run") ? null
+				: crossValidation.submit("Cascade (" + cascadeConfig.stage + ", then nearest neighbour)",
+						() -> new CascadeClassifier(cascadeConfig), folds);
+
+		/* print the results of each algorithm in order, waiting for its folds to finish */
+		try {
+			nearestNeighbour.report();
+			multilayerPerceptron.report();
+			geneticAlgorithm.report();
+			if (cascade != null)
+				cascade.report();
+
+			String outputPrefix = System.getProperty("cv.output");
+			if (outputPrefix != null) {
+				writeEvaluation(nearestNeighbour, outputPrefix + "-nn");
+				writeEvaluation(multilayerPerceptron, outputPrefix + "-mlp");
+				writeEvaluation(geneticAlgorithm, outputPrefix + "-ga");
+				if (cascade != null)
+					writeEvaluation(cascade, outputPrefix + "-cascade");
+			}
+		} catch (IOException e) {
+			System.out.println("Could not write evaluation: " + e);
+		} catch (InterruptedException | ExecutionException e) {
+			System.out.println("Cross-validation failed: " + e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		System.out.println("-------------------\nTotal running time = " + (System.nanoTime() - startTime) / 1_000_000
+				+ " ms on " + numThreads + " threads");
+	}
+
+	/**
+	 * Writes the predictions of an algorithm to a CSV file and its confusion matrix to a JSON file
+	 * 
+	 * @param result, the result of the algorithm
+	 * @param path, the path of the files without an extension
+	 */
+	private static void writeEvaluation(CrossValidation.Result result, String path)
+			throws IOException, InterruptedException, ExecutionException {
+		EvaluationSink evaluation = result.evaluation();
+		evaluation.writePredictions(path + ".csv");
+		evaluation.writeJson(path + ".json");
+		System.out.println("Wrote " + path + ".csv and " + path + ".json");
+	}
+
+	/**
+	 * Creates the folds to run, either the original two fold test on the two datasets or 
+	 * (if cv.folds is set above 2) a k-fold test on both datasets combined
+	 * 
+	 * @param dataset1, the first dataset
+	 * @param dataset2, the second dataset
+	 * @return the folds to run
+	 */
+	private static CrossValidation.Fold[] createFolds(int[][] dataset1, int[][] dataset2) {
+		int numFolds = Integer.getInteger("cv.folds", 2);
+
+		if (numFolds == 2 && !Boolean.getBoolean("cv.stratified"))
+			return CrossValidation.twoFolds(dataset1, dataset2);
+
+		/* combine both datasets into one */
+		int[][] combined = Utility.combineDatasets(dataset1, dataset2);
 
+		Random random = new Random();
+		if (Boolean.getBoolean("cv.stratified"))
+			return CrossValidation.stratifiedFolds(combined, numFolds, random);
+		else
+			return CrossValidation.kFolds(combined, numFolds, random);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics.java:
+ * Instrumentation for the hot paths of the project, for finding where the time goes in a slow
+ * fold without attaching a profiler. Counts distance computations and rows, records epoch and
+ * generation durations in histograms, and times the train, test, fitness and readFile phases
+ * along with the bytes each phase allocates. Every phase is also emitted as a JFR event
+ * (MetricsEvent) when the JVM supports it, and a snapshot of everything is written periodically.
+ *
+ * Instrumentation is off unless -Dmetrics.enabled=true is set. ENABLED is a static final
+ * constant, so when it is false the JIT removes every "if (Metrics.ENABLED)" check and the
+ * instrumented code runs exactly as it did before.
+ * Optional: -Dmetrics.interval (seconds between snapshots, default 10, 0 for none) and
+ * -Dmetrics.output (file to append snapshots to, one JSON object per line; default stderr).
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public final class Metrics {
+
+	public static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+
+	/**
+	 * The phases that are timed
+	 */
+	public enum Phase {
+		TRAIN("train"), TEST("test"), FITNESS("fitness"), READ_FILE("readFile");
+
+		final String label;
+		final LatencyHistogram durations = new LatencyHistogram();
+		final LongAdder rows = new LongAdder();
+		final LongAdder allocatedBytes = new LongAdder();
+
+		Phase(String label) {
+			this.label = label;
+		}
+	}
+
+	static final LongAdder DISTANCES = new LongAdder(); /* Euclidean distance computations */
+	static final LongAdder ROWS_TRAINED = new LongAdder(); /* rows passed through an MLP epoch */
+	static final LongAdder ROWS_CATEGORISED = new LongAdder(); /* rows categorised in a test phase */
+	static final LatencyHistogram EPOCHS = new LatencyHistogram(); /* duration of each MLP epoch */
+	static final LatencyHistogram GENERATIONS = new LatencyHistogram(); /* duration of each GA generation */
+
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+	private static final boolean JFR_AVAILABLE = ENABLED && MetricsEvent.AVAILABLE;
+
+	/* shared scope returned when instrumentation is disabled, so that timing a phase allocates nothing */
+	private static final Scope DISABLED = new Scope(null);
+
+	static {
+		long interval = Long.getLong("metrics.interval", 10);
+		if (ENABLED && interval > 0)
+			startSnapshots(interval, System.getProperty("metrics.output"));
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * A phase that is being timed; end() must be called when the phase finishes
+	 */
+	public static final class Scope {
+		private final Phase phase;
+		private final long startNanos;
+		private final long startAllocated;
+		private final MetricsEvent event; /* null if instrumentation is disabled or the JVM has no JFR */
+
+		private Scope(Phase phase) {
+			this.phase = phase;
+			this.startNanos = phase == null ? 0 : System.nanoTime();
+			this.startAllocated = phase == null ? 0 : allocatedBytes();
+			this.event = phase != null && JFR_AVAILABLE ? MetricsEvent.begin(phase.label) : null;
+		}
+
+		/**
+		 * Ends the phase and records its duration, rows and allocated bytes
+		 *
+		 * @param rows, the number of rows in the data the phase worked on
+		 */
+		public void end(long rows) {
+			if (phase == null)
+				return;
+
+			long allocated = allocatedBytes() - startAllocated;
+			phase.durations.record(System.nanoTime() - startNanos);
+			phase.rows.add(rows);
+			phase.allocatedBytes.add(allocated);
+
+			if (event != null)
+				event.finish(rows, allocated);
+		}
+	}
+
+	/**
+	 * Starts timing a phase. Phases may be nested (e.g. fitness inside train), in which
+	 * case the time and allocations of the inner phase are counted in both.
+	 *
+	 * @param phase, the phase to time
+	 * @return the scope to end when the phase finishes
+	 */
+	public static Scope begin(Phase phase) {
+		return ENABLED ? new Scope(phase) : DISABLED;
+	}
+
+	/**
+	 * Helper function that returns the bytes allocated so far by the current thread, or 0 if the JVM cannot measure it
+	 */
+	private static long allocatedBytes() {
+		return THREAD_BEAN == null ? 0 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (ENABLED && bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+				if (threadBean.isThreadAllocatedMemorySupported()) {
+					threadBean.setThreadAllocatedMemoryEnabled(true);
+					return threadBean;
+				}
+			}
+		} catch (LinkageError | UnsupportedOperationException e) {
+			/* allocation is not measured on this JVM */
+		}
+		return null;
+	}
+
+	/**
+	 * Helper function that starts a daemon thread writing a snapshot every interval, and a final snapshot when the JVM exits
+	 */
+	private static void startSnapshots(long intervalSeconds, String outputPath) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		SnapshotWriter writer = new SnapshotWriter(outputPath);
+		scheduler.scheduleAtFixedRate(writer::write, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(writer::write, "metrics-final-snapshot"));
+	}
+
+	/**
+	 * Writes snapshots and remembers the previous one, so that rates (per second) can be worked out
+	 */
+	private static class SnapshotWriter {
+		private final String outputPath;
+		private long lastNanos = System.nanoTime();
+		private long lastDistances, lastRowsTrained, lastRowsCategorised;
+
+		SnapshotWriter(String outputPath) {
+			this.outputPath = outputPath;
+		}
+
+		synchronized void write() {
+			long now = System.nanoTime();
+			double seconds = Math.max(1e-9, (now - lastNanos) / 1e9);
+			long distances = DISTANCES.sum(), rowsTrained = ROWS_TRAINED.sum(), rowsCategorised = ROWS_CATEGORISED.sum();
+
+			String snapshot = snapshot(Math.round((distances - lastDistances) / seconds),
+					Math.round((rowsTrained - lastRowsTrained) / seconds),
+					Math.round((rowsCategorised - lastRowsCategorised) / seconds));
+
+			lastNanos = now;
+			lastDistances = distances;
+			lastRowsTrained = rowsTrained;
+			lastRowsCategorised = rowsCategorised;
+
+			if (outputPath == null) {
+				System.err.println(snapshot);
+				return;
+			}
+			try (PrintWriter output = new PrintWriter(new FileWriter(outputPath, true))) {
+				output.println(snapshot);
+			} catch (IOException e) {
+				System.err.println("Could not write metrics to " + outputPath + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * @return a snapshot of every counter and histogram as a single line of JSON
+	 */
+	public static String snapshot() {
+		return snapshot(-1, -1, -1);
+	}
+
+	private static String snapshot(long distancesPerSec, long rowsTrainedPerSec, long rowsCategorisedPerSec) {
+		StringBuilder json = new StringBuilder("{\"timeMillis\":").append(System.currentTimeMillis())
+				.append(",\"distances\":").append(DISTANCES.sum())
+				.append(",\"rowsTrained\":").append(ROWS_TRAINED.sum())
+				.append(",\"rowsCategorised\":").append(ROWS_CATEGORISED.sum());
+		if (distancesPerSec >= 0)
+			json.append(",\"distancesPerSec\":").append(distancesPerSec).append(",\"rowsTrainedPerSec\":")
+					.append(rowsTrainedPerSec).append(",\"rowsCategorisedPerSec\":").append(rowsCategorisedPerSec);
+
+		json.append(",\"epochs\":");
+		appendHistogram(json, EPOCHS);
+		json.append(",\"generations\":");
+		appendHistogram(json, GENERATIONS);
+
+		for (Phase phase : Phase.values()) {
+			json.append(",\"").append(phase.label).append("\":");
+			appendHistogram(json, phase.durations);
+			json.setLength(json.length() - 1);
+			json.append(",\"rows\":").append(phase.rows.sum()).append(",\"allocatedBytes\":")
+					.append(phase.allocatedBytes.sum()).append('}');
+		}
+		return json.append('}').toString();
+	}
+
+	/**
+	 * Helper function that appends the count and the mean, p50 and p99 durations (in ms) of a histogram
+	 */
+	private static void appendHistogram(StringBuilder json, LatencyHistogram histogram) {
+		json.append("{\"count\":").append(histogram.count())
+				.append(",\"meanMs\":").append(Math.round(histogram.mean() / 1e3) / 1e3)
+				.append(",\"p50Ms\":").append(Math.round(histogram.percentile(50) / 1e3) / 1e3)
+				.append(",\"p99Ms\":").append(Math.round(histogram.percentile(99) / 1e3) / 1e3).append('}');
+	}
+}
@@ -0,0 +1,111 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MetricsEvent.java:
+ * Java Flight Recorder event for one phase of an algorithm (train, test, fitness or readFile).
+ * The events show up in a flight recording under "UCI Digits", with the number of rows the
+ * phase processed and the bytes it allocated.
+ *
+ * The project targets Java 8, whose class library has no jdk.jfr, so the event type is defined
+ * at run time through jdk.jfr.EventFactory, found by reflection (the same way ScoringServer
+ * finds virtual threads). On a JVM without JFR, AVAILABLE is false and no events are created.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+final class MetricsEvent {
+
+	/* index of each field of the event, in the order they are defined in */
+	private static final int PHASE = 0, ROWS = 1, ALLOCATED_BYTES = 2;
+
+	private static final Object FACTORY; /* jdk.jfr.EventFactory for the event type, null without JFR */
+	private static final Method NEW_EVENT, BEGIN, SET, COMMIT;
+
+	static final boolean AVAILABLE;
+
+	static {
+		Object factory = null;
+		Method newEvent = null, begin = null, set = null, commit = null;
+		try {
+			Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class,
+					Object.class);
+			Class<?> label = Class.forName("jdk.jfr.Label");
+
+			List<Object> eventAnnotations = Arrays.asList(
+					annotation.newInstance(Class.forName("jdk.jfr.Name"), "uci.digits.Phase"),
+					annotation.newInstance(label, "Phase"),
+					annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] { "UCI Digits" }),
+					annotation.newInstance(Class.forName("jdk.jfr.Description"), "One train, test, fitness or readFile phase"));
+
+			Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class,
+					List.class);
+			List<Object> fields = Arrays.asList(
+					field.newInstance(String.class, "phase", Collections.singletonList(annotation.newInstance(label, "Phase"))),
+					field.newInstance(long.class, "rows", Collections.singletonList(annotation.newInstance(label, "Rows"))),
+					field.newInstance(long.class, "allocatedBytes",
+							Collections.singletonList(annotation.newInstance(label, "Allocated Bytes"))));
+
+			Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+			factory = eventFactory.getMethod("create", List.class, List.class).invoke(null, eventAnnotations, fields);
+			newEvent = eventFactory.getMethod("newEvent");
+
+			Class<?> event = Class.forName("jdk.jfr.Event");
+			begin = event.getMethod("begin");
+			set = event.getMethod("set", int.class, Object.class);
+			commit = event.getMethod("commit");
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			factory = null; /* no JFR on this JVM */
+		}
+
+		FACTORY = factory;
+		NEW_EVENT = newEvent;
+		BEGIN = begin;
+		SET = set;
+		COMMIT = commit;
+		AVAILABLE = factory != null;
+	}
+
+	private final Object event; /* the jdk.jfr.Event, null if it could not be created */
+
+	private MetricsEvent(Object event) {
+		this.event = event;
+	}
+
+	/**
+	 * @param phase, the name of the phase
+	 * @return a new event that has started timing
+	 */
+	static MetricsEvent begin(String phase) {
+		try {
+			Object event = NEW_EVENT.invoke(FACTORY);
+			SET.invoke(event, PHASE, phase);
+			BEGIN.invoke(event);
+			return new MetricsEvent(event);
+		} catch (ReflectiveOperationException e) {
+			return new MetricsEvent(null);
+		}
+	}
+
+	/**
+	 * Ends the event and commits it to the recording (if a recording is running)
+	 *
+	 * @param rows, the number of rows processed
+	 * @param allocatedBytes, the bytes allocated during the phase
+	 */
+	void finish(long rows, long allocatedBytes) {
+		if (event == null)
+			return;
+		try {
+			SET.invoke(event, ROWS, rows);
+			SET.invoke(event, ALLOCATED_BYTES, allocatedBytes);
+			COMMIT.invoke(event);
+		} catch (ReflectiveOperationException e) {
+			/* the phase is still recorded in Metrics, only the event is lost */
+		}
+	}
+}
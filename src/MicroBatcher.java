@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MicroBatcher.java:
+ * Groups rows that arrive at the same time from different threads into a single
+ * call to Scorer.scoreBatch. A dispatcher thread waits for the first row, then keeps
+ * collecting rows for up to a short window (or until the batch is full) before scoring
+ * them all together and completing each caller's future. Under load this turns many
+ * small scoring calls into a few larger ones; when idle a row waits at most one window.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class MicroBatcher implements AutoCloseable {
+
+	/**
+	 * A row waiting to be scored and the future to complete with its category
+	 */
+	private static class Request {
+		final int[] row;
+		final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+		Request(int[] row) {
+			this.row = row;
+		}
+	}
+
+	private final Scorer scorer;
+	private final long windowNanos; /* how long to wait for more rows after the first row of a batch */
+	private final int maxBatchSize;
+
+	private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+	private final Thread dispatcher;
+	private volatile boolean running = true;
+
+	/* submit holds the read lock while it checks running and queues a row, and close holds the write lock
+	   while it clears running, so a row is either queued before the dispatcher's final drain or refused */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+	private final LongAdder numBatches = new LongAdder();
+	private final LongAdder numRows = new LongAdder();
+
+	/**
+	 * Creates a batcher and starts its dispatcher thread
+	 *
+	 * @param scorer, the scorer to send batches to
+	 * @param windowMicros, how long to keep collecting rows after the first row of a batch arrives
+	 * @param maxBatchSize, the largest number of rows in one batch
+	 */
+	public MicroBatcher(Scorer scorer, long windowMicros, int maxBatchSize) {
+		this.scorer = scorer;
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxBatchSize = maxBatchSize;
+
+		this.dispatcher = new Thread(this::dispatchLoop, "micro-batcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * Adds a row to the next batch
+	 *
+	 * @param row, the row to score
+	 * @return a future that completes with the row's category once its batch has been scored, or
+	 *         straight away with an IllegalStateException if the batcher is closed
+	 */
+	public CompletableFuture<Integer> submit(int[] row) {
+		Request request = new Request(row);
+		closeLock.readLock().lock();
+		try {
+			if (!running)
+				request.result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+			else
+				queue.add(request);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+		return request.result;
+	}
+
+	/**
+	 * Helper function run by the dispatcher thread; collects and scores batches until closed
+	 */
+	private void dispatchLoop() {
+		List<Request> batch = new ArrayList<>(maxBatchSize);
+
+		while (running) {
+			try {
+				/* wait for the first row of the next batch */
+				Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+
+				/* keep collecting rows until the window closes or the batch is full */
+				long deadline = System.nanoTime() + windowNanos;
+				while (batch.size() < maxBatchSize) {
+					queue.drainTo(batch, maxBatchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= maxBatchSize || remaining <= 0)
+						break;
+
+					Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null)
+						break;
+					batch.add(next);
+				}
+
+				scoreBatch(batch);
+			} catch (InterruptedException e) {
+				/* closed while collecting: the rows already taken from the queue are still scored */
+				if (!batch.isEmpty())
+					scoreBatch(batch);
+				break;
+			} finally {
+				batch.clear();
+			}
+		}
+
+		/* fail anything still waiting so that no caller blocks forever */
+		for (Request request; (request = queue.poll()) != null;)
+			request.result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+	}
+
+	/**
+	 * Helper function that scores one batch and completes every request in it
+	 */
+	private void scoreBatch(List<Request> batch) {
+		int[][] rows = new int[batch.size()][];
+		for (int pos = 0; pos < rows.length; pos++)
+			rows[pos] = batch.get(pos).row;
+
+		try {
+			int[] categories = scorer.scoreBatch(rows);
+			for (int pos = 0; pos < rows.length; pos++)
+				batch.get(pos).result.complete(categories[pos]);
+		} catch (RuntimeException e) {
+			for (Request request : batch)
+				request.result.completeExceptionally(e);
+		}
+
+		numBatches.increment();
+		numRows.add(rows.length);
+	}
+
+	/**
+	 * @return the mean number of rows in each batch scored so far
+	 */
+	public double meanBatchSize() {
+		long batches = numBatches.sum();
+		return batches == 0 ? 0.0 : (double) numRows.sum() / batches;
+	}
+
+	/**
+	 * @return the number of batches scored so far
+	 */
+	public long batchCount() {
+		return numBatches.sum();
+	}
+
+	@Override
+	public void close() {
+		closeLock.writeLock().lock();
+		try {
+			running = false;
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		dispatcher.interrupt();
+	}
+}
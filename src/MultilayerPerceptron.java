@@ -1,33 +1,64 @@
+import java.io.IOException;
+import java.util.Random;
+
 
 /**
  * MultilayerPerceptron.java:
  * MLP that uses a Sigmoid transfer/activation function and 
- * an MSE loss function. Achieves accuracy in the range of 90% to 93% but
+ * an MSE loss function. The number of hidden nodes, learning rate and epochs
+ * are set through MultilayerPerceptronConfig. Achieves accuracy in the range of 90% to 93% but
  * the best recorded is ~93.59%.
  * 
  * @author Samuel C. Donovan
  * @created 14/02/22
- * @updated 03/03/22
+ * @updated 18/10/26
  */
-public class MultilayerPerceptron {
+public class MultilayerPerceptron implements FoldEvaluator, Scorer {
 
-	static final int NUM_INPUTS = 2810; /* number of input features */
 	static final int NUM_FEATURE_VALS = 64; /* number of feature values for each input */
-	static final int NUM_HIDDEN = 60; /* number of hidden nodes */
 	static final int NUM_OUTPUT = 10; /* number of output nodes */
 
-	static final int MAX_EPOCHS = 400; /* maximum number of training epochs */
-	static final double ERROR_THRESHOLD = 0.001; /* threshold for training error */
+	private final MultilayerPerceptronConfig config; /* hidden nodes, learning rate, epochs etc. */
+	private final int numHidden; /* number of hidden nodes */
+	private Random random; /* random number generator for the initial weights; restored when resuming */
+	private final Activation activation; /* sigmoid transfer of each layer, exact or approximate (see Activation) */
+	private int numFeatures = NUM_FEATURE_VALS; /* number of inputs; fewer than 64 if the rows have been projected */
+	private FeaturePreprocessor.Scaling inputScaling; /* scaling of the feature values into the input layer, fitted on the training set */
+
+	private int numEpochs; /* epochs run in the latest training */
+	private long waitMillis; /* time the latest training waited for the epoch pipeline */
+	private Checkpoint checkpoint; /* checkpoint of the latest training, null if checkpoints are disabled */
+	private int resumedFrom; /* epoch the latest training resumed from, -1 if it started from scratch */
 
-	static final double LEARNING_RATE = 0.1; /* relatively low learning rate to avoid convergence */
+	double[][] inputToHiddenWeights; /* weights for the hidden nodes */
+	double[][] hiddenLayer; /* hidden layer which stores the weighted sums from the inputs */
+	double[] hiddenBias; /* the bias for each hidden node */
 
-	double[][] inputToHiddenWeights = new double[NUM_FEATURE_VALS][NUM_HIDDEN]; /* weights for the hidden nodes */
-	double[][] hiddenLayer = new double[NUM_INPUTS][NUM_HIDDEN]; /* hidden layer which stores the weighted sums from the inputs */
-	double[] hiddenBias = new double[NUM_HIDDEN]; /* the bias for each hidden node */
+	double[][] hiddenToOutputWeights; /* weights for the output nodes */
+	double[][] outputLayer; /* output layer which stores the weighted sums from the hidden nodes */
+	double[] outputBias; /* bias for the output nodes */
 
-	double[][] hiddenToOutputWeights = new double[NUM_HIDDEN][NUM_OUTPUT]; /* weights for the output nodes */
-	double[][] outputLayer = new double[NUM_INPUTS][NUM_OUTPUT]; /* output layer which stores the weighted sums from the hidden nodes */
-	double[] outputBias = new double[NUM_OUTPUT]; /* bias for the output nodes */
+	private EvaluationSink sink; /* records the prediction for each test row, if set */
+	private int sinkFirstRow;
+
+	/**
+	 * Creates an MLP with the default configuration
+	 */
+	public MultilayerPerceptron() {
+		this(new MultilayerPerceptronConfig());
+	}
+
+	/**
+	 * Creates an MLP with the given configuration
+	 * 
+	 * @param config, the parameters to use
+	 */
+	public MultilayerPerceptron(MultilayerPerceptronConfig config) {
+		this.config = config;
+		this.numHidden = config.hiddenNodes;
+		this.random = config.seed == null ? new Random() : new Random(config.seed);
+		this.activation = Activation.forName(config.activation);
+	}
 
 	/**
 	 * Runs a two fold test on both of the datasets. Trains the 
@@ -68,6 +99,24 @@ public class MultilayerPerceptron {
 		return percentCorrect;
 	}
 
+	/**
+	 * Runs one fold of a cross-validation test
+	 * 
+	 * @param trainSet, the dataset to train with
+	 * @param testSet, the set to test the MLP against
+	 * @return the total number of correct categorisations
+	 */
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		return trainAndTestMLP(trainSet, testSet);
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		this.sink = sink;
+		this.sinkFirstRow = firstRow;
+	}
+
 	/**
 	 * Trains the MLP on a training set, then tests the MLP on a test set
 	 * 
@@ -77,7 +126,9 @@ public class MultilayerPerceptron {
 	 */
 	private int trainAndTestMLP(int[][] trainSet, int[][] testSet) {
 
-		initialise(); /* randomise weights and set biases to 0 */
+		/* randomise weights and set biases to 0; the layers need a row for every input in either set */
+		initialise(Math.max(trainSet.length, testSet.length), trainSet[0].length - 1);
+		inputScaling = FeaturePreprocessor.Scaling.fit(trainSet, config.inputScaling);
 
 		train(trainSet); /* train MLP weights on trainSet */
 
@@ -86,17 +137,115 @@ public class MultilayerPerceptron {
 		return totalCorrect;
 	}
 
+	/**
+	 * Trains the MLP on a training set so that it can then be used to score new rows
+	 * 
+	 * @param trainSet, the dataset to train with
+	 */
+	public void trainModel(int[][] trainSet) {
+		initialise(trainSet.length, trainSet[0].length - 1);
+		inputScaling = FeaturePreprocessor.Scaling.fit(trainSet, config.inputScaling);
+		train(trainSet);
+	}
+
+	/**
+	 * Scales the feature values of every row of a dataset for the input layer, using the scaling
+	 * fitted on the training set (-Dmlp.inputScaling); with no scaling the values are unchanged
+	 * 
+	 * @param dataset, the rows to scale
+	 * @return the scaled feature values of each row
+	 */
+	double[][] inputs(int[][] dataset) {
+		return inputScaling.apply(dataset);
+	}
+
+	/**
+	 * Scales the feature values of one row for the input layer (see inputs)
+	 * 
+	 * @param row, the row to scale
+	 * @return the scaled feature values
+	 */
+	double[] input(int[] row) {
+		return inputScaling.apply(row);
+	}
+
+	@Override
+	public String foldSummary() {
+		return "trained for " + numEpochs + " epochs"
+				+ (config.inputScaling.equals("none") ? "" : " (" + config.inputScaling + " input scaling)")
+				+ (config.shuffle ? ", shuffled every epoch (waited " + waitMillis + " ms for data)" : "")
+				+ (checkpoint == null ? ""
+						: (resumedFrom >= 0 ? ", resumed from epoch " + resumedFrom : "") + ", " + checkpoint.summary());
+	}
+
+	/**
+	 * Passes a single row forward through the trained MLP. Unlike forwardPropagation, this
+	 * does not store anything in the MLP's layers, so it can be called from several threads at once.
+	 * 
+	 * @param row, the row to pass through the MLP
+	 * @return the value of each output node
+	 */
+	public double[] outputs(int[] row) {
+		double[] input = inputScaling.apply(row);
+		double[] hidden = new double[numHidden];
+		double[] output = new double[NUM_OUTPUT];
+
+		for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++)
+			hidden[hiddenNode] = getWeightedSum(inputToHiddenWeights, hiddenNode, numFeatures, input, true)
+					+ hiddenBias[hiddenNode];
+		activation.transfer(hidden, numHidden);
+
+		for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++)
+			output[outputNode] = getWeightedSum(hiddenToOutputWeights, outputNode, numHidden, hidden, true)
+					+ outputBias[outputNode];
+		activation.transfer(output, NUM_OUTPUT);
+
+		return output;
+	}
+
+	/**
+	 * Categorises a single row with the trained MLP
+	 * 
+	 * @param row, the row to categorise
+	 * @return the index of the output node with the highest value
+	 */
+	@Override
+	public int score(int[] row) {
+		double[] output = outputs(row);
+		int outputIndex = 0;
+
+		for (int outputNode = 1; outputNode < NUM_OUTPUT; outputNode++)
+			if (output[outputNode] > output[outputIndex])
+				outputIndex = outputNode;
+
+		return outputIndex;
+	}
+
+	/**
+	* Helper function to initialise all weights and biases in the MLP for rows with 64 feature values
+	* 
+	* @param numInputs, the number of rows that the hidden and output layers need to hold
+	*/
+	void initialise(int numInputs) {
+		initialise(numInputs, NUM_FEATURE_VALS);
+	}
+
 	/**
 	* Helper function to initialise all weights and biases in the MLP
+	* 
+	* @param numInputs, the number of rows that the hidden and output layers need to hold
+	* @param numFeatures, the number of feature values in each row (the number of input nodes)
 	*/
-	private void initialise() {
+	void initialise(int numInputs, int numFeatures) {
 
-		inputToHiddenWeights = new double[NUM_FEATURE_VALS][NUM_HIDDEN]; /* weights for the hidden nodes */
-		hiddenLayer = new double[NUM_INPUTS][NUM_HIDDEN]; /* hidden layer which stores the weighted sums from the inputs */
-		hiddenBias = new double[NUM_HIDDEN]; /* the bias for each hidden node */
+		this.numFeatures = numFeatures;
+		inputScaling = FeaturePreprocessor.Scaling.none(numFeatures); /* replaced by the fitted scaling when training */
+		inputToHiddenWeights = new double[numFeatures][numHidden]; /* weights for the hidden nodes */
+		hiddenLayer = new double[numInputs][numHidden]; /* hidden layer which stores the weighted sums from the inputs */
+		hiddenBias = new double[numHidden]; /* the bias for each hidden node */
 
-		hiddenToOutputWeights = new double[NUM_HIDDEN][NUM_OUTPUT]; /* weights for the output nodes */
-		outputLayer = new double[NUM_INPUTS][NUM_OUTPUT]; /* output layer which stores the weighted sums from the hidden nodes */
+		hiddenToOutputWeights = new double[numHidden][NUM_OUTPUT]; /* weights for the output nodes */
+		outputLayer = new double[numInputs][NUM_OUTPUT]; /* output layer which stores the weighted sums from the hidden nodes */
 		outputBias = new double[NUM_OUTPUT]; /* bias for the output nodes */
 
 		/* maximum and minimum range for the random weights */
@@ -106,16 +255,16 @@ public class MultilayerPerceptron {
 		/* initialise all hidden weights randomly between -1 and 1 */
 		for (int inputNode = 0; inputNode < inputToHiddenWeights.length; inputNode++)
 			for (int hiddenNode = 0; hiddenNode < inputToHiddenWeights[0].length; hiddenNode++)
-				inputToHiddenWeights[inputNode][hiddenNode] = (Math.random() * (max + max)) + min;
+				inputToHiddenWeights[inputNode][hiddenNode] = (random.nextDouble() * (max + max)) + min;
 
 		/* set all hidden biases to 0 */
-		for (int hiddenNode = 0; hiddenNode < NUM_HIDDEN; hiddenNode++)
+		for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++)
 			hiddenBias[hiddenNode] = 0.0;
 
 		/* initialise all output weights randomly randomly between -1 and 1 */
 		for (int hiddenNode = 0; hiddenNode < hiddenToOutputWeights.length; hiddenNode++)
 			for (int outputNode = 0; outputNode < hiddenToOutputWeights[0].length; outputNode++)
-				hiddenToOutputWeights[hiddenNode][outputNode] = (Math.random() * (max + max)) + min;
+				hiddenToOutputWeights[hiddenNode][outputNode] = (random.nextDouble() * (max + max)) + min;
 
 		/* set all output biases to 0 */
 		for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++)
@@ -124,7 +273,10 @@ public class MultilayerPerceptron {
 
 	/**
 	 * Trains the MLP by passing the training set through the MLP, and updating
-	 * the weights with each epoch.
+	 * the weights with each epoch. With -Dmlp.shuffle=true the rows are trained on in a new
+	 * random order every epoch, prepared by an EpochPipeline while the previous epoch trains.
+	 * With -Dmlp.checkpoint the weights are checkpointed every few epochs, and training resumes
+	 * from the checkpoint if there is one (see Checkpoint).
 	 * 
 	 * @param trainingSet, dataset to train the MLP on
 	 */
@@ -132,40 +284,148 @@ public class MultilayerPerceptron {
 
 		/* values to determine when to stop backpropagating */
 		double meanSquaredError = 0.0;
-		int numEpochs = 0;
-
-		double[][] errorGradients; /* 2D array to hold error gradients for hidden and output nodes */
-
-		int actualOutput;
+		boolean finished = false;
+		numEpochs = 0;
+		waitMillis = 0;
+		resumedFrom = -1;
+
+		double[][] inputs = inputs(trainingSet); /* the scaled feature values of every row */
+		long shuffleSeed = config.shuffle ? random.nextLong() : 0;
+
+		/* carry on from the checkpoint if there is one; the weights were initialised already,
+		   so the random number generator is restored to where it was after that */
+		checkpoint = config.checkpoint(trainingSet);
+		Checkpoint.Saved saved = GeneticAlgorithm.readCheckpoint(checkpoint);
+		if (saved != null) {
+			try {
+				meanSquaredError = saved.in.readDouble();
+				shuffleSeed = saved.in.readLong();
+				Checkpoint.readMatrix(saved.in, inputToHiddenWeights);
+				Checkpoint.readMatrix(saved.in, hiddenToOutputWeights);
+				Checkpoint.readMatrix(saved.in, new double[][] { hiddenBias });
+				Checkpoint.readMatrix(saved.in, new double[][] { outputBias });
+				random = Checkpoint.readRandom(saved.in);
+			} catch (IOException e) {
+				throw new IllegalStateException("Checkpoint " + checkpoint.path() + " could not be restored", e);
+			}
+			numEpochs = resumedFrom = saved.step;
+			finished = saved.finished;
+		}
 
-		/* do while loop to ensure it runs at least once */
-		do {
-			meanSquaredError = 0.0;
-			numEpochs++;
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TRAIN);
+
+		EpochPipeline pipeline = config.shuffle && !finished
+				? new EpochPipeline(inputs, config.batchSize, shuffleSeed, numEpochs)
+				: null;
+
+		try {
+			/* runs at least once, unless resuming a finished training */
+			while (!finished) {
+				long epochStart = Metrics.ENABLED ? System.nanoTime() : 0;
+				meanSquaredError = 0.0;
+				numEpochs++;
+
+				if (pipeline == null) {
+					/* loop through every row of the training set and train the weights of the MLP */
+					for (int currentRow = 0; currentRow < trainingSet.length; currentRow++)
+						meanSquaredError += trainRow(trainingSet, inputs[currentRow], 0, currentRow);
+				} else {
+					/* loop through the rows in this epoch's order, reading their inputs from the packed batches */
+					EpochPipeline.Epoch epoch = pipeline.next();
+					for (int pos = 0; pos < epoch.order.length; pos++)
+						meanSquaredError += trainRow(trainingSet, epoch.batches[pos / epoch.batchSize],
+								pos % epoch.batchSize * numFeatures, epoch.order[pos]);
+					pipeline.release(epoch);
+				}
+
+				/* take the mean of the squared error */
+				meanSquaredError = meanSquaredError / trainingSet.length * 2;
+
+				if (Metrics.ENABLED) {
+					Metrics.EPOCHS.record(System.nanoTime() - epochStart);
+					Metrics.ROWS_TRAINED.add(trainingSet.length);
+				}
+
+				/* loop while squared error is above the threshold and max epochs hasn't been reached yet */
+				finished = !(meanSquaredError > config.errorThreshold && numEpochs < config.maxEpochs);
+				if (checkpoint != null && !finished && checkpoint.due(numEpochs))
+					writeCheckpoint(meanSquaredError, shuffleSeed, false);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while training", e);
+		} finally {
+			if (pipeline != null) {
+				pipeline.close();
+				waitMillis = pipeline.waitNanos() / 1_000_000;
+			}
+		}
 
-			/* loop through every row of the training set and train the weights of the MLP */
-			for (int currentRow = 0; currentRow < trainingSet.length; currentRow++) {
+		scope.end(trainingSet.length);
+
+		/* the same as the GA: only a seeded run keeps its finished checkpoint */
+		if (checkpoint != null && (saved == null || !saved.finished)) {
+			if (config.seed != null)
+				writeCheckpoint(meanSquaredError, shuffleSeed, true);
+			else
+				try {
+					checkpoint.delete();
+				} catch (IOException e) {
+					System.err.println("Could not delete checkpoint " + checkpoint.path() + ": " + e);
+				}
+		}
+	}
 
-				forwardPropagation(trainingSet, currentRow); /* pass the current row forward through the layers */
+	/**
+	 * Helper function that writes the weights, biases and training state to the checkpoint. Training
+	 * is plain stochastic gradient descent with a fixed learning rate, so there is no other optimiser
+	 * state. A checkpoint that cannot be written is reported, and training carries on.
+	 * 
+	 * @param meanSquaredError, the error of the latest epoch
+	 * @param shuffleSeed, the seed of the epoch pipeline's shuffles
+	 * @param finished, true if training has finished
+	 */
+	private void writeCheckpoint(double meanSquaredError, long shuffleSeed, boolean finished) {
+		try {
+			checkpoint.write(numEpochs, finished, out -> {
+				out.writeDouble(meanSquaredError);
+				out.writeLong(shuffleSeed);
+				Checkpoint.writeMatrix(out, inputToHiddenWeights);
+				Checkpoint.writeMatrix(out, hiddenToOutputWeights);
+				Checkpoint.writeMatrix(out, new double[][] { hiddenBias });
+				Checkpoint.writeMatrix(out, new double[][] { outputBias });
+				Checkpoint.writeRandom(out, random);
+			});
+		} catch (IOException e) {
+			System.err.println("Could not write checkpoint " + checkpoint.path() + ": " + e);
+		}
+	}
 
-				/* calculate error gradients for output and hidden layers, used for updating weights */
-				errorGradients = calculateErrorGradients(trainingSet, currentRow);
+	/**
+	 * Helper function that trains the weights of the MLP on one row
+	 * 
+	 * @param trainingSet, the training set
+	 * @param input, the array holding the scaled feature values of the row
+	 * @param offset, the position of the row's first feature value in input
+	 * @param currentRow, the index of the row in the training set
+	 * @return the row's squared error if the MLP predicted it wrongly, otherwise 0
+	 */
+	private double trainRow(int[][] trainingSet, double[] input, int offset, int currentRow) {
 
-				/* update weights and biases using error gradients */
-				weightUpdate(trainingSet, currentRow, errorGradients);
+		forwardPropagation(input, offset, currentRow); /* pass the current row forward through the layers */
 
-				actualOutput = getPredictedOutput(currentRow); /* get the predicted output after forward propagation */
+		/* calculate error gradients for output and hidden layers, used for updating weights */
+		double[][] errorGradients = calculateErrorGradients(trainingSet, currentRow);
 
-				/* if there was an error with the prediciton, update the MSE */
-				if (actualOutput != trainingSet[currentRow][NUM_FEATURE_VALS])
-					meanSquaredError += Math.pow(1.0 - outputLayer[currentRow][actualOutput], 2);
-			}
+		/* update weights and biases using error gradients */
+		weightUpdate(input, offset, currentRow, errorGradients);
 
-			/* take the mean of the squared error */
-			meanSquaredError = meanSquaredError / NUM_INPUTS * 2;
+		int actualOutput = getPredictedOutput(currentRow); /* get the predicted output after forward propagation */
 
-			/* loop while squared error is above the threshold and max epochs hasn't been reached yet */
-		} while (meanSquaredError > ERROR_THRESHOLD && numEpochs < MAX_EPOCHS);
+		/* if there was an error with the prediciton, update the MSE */
+		if (actualOutput != trainingSet[currentRow][numFeatures])
+			return Math.pow(1.0 - outputLayer[currentRow][actualOutput], 2);
+		return 0.0;
 	}
 
 	/**
@@ -179,6 +439,9 @@ public class MultilayerPerceptron {
 		int currentBestIndex = -1, correctCount = 0;
 
 		int actualCategory;
+		double[][] inputs = inputs(testSet); /* the scaled feature values of every row */
+
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TEST);
 
 		/* loop through every row of the test dataset */
 		for (int currentRow = 0; currentRow < testSet.length; currentRow++) {
@@ -187,7 +450,7 @@ public class MultilayerPerceptron {
 			actualCategory = testSet[currentRow][testSet[currentRow].length - 1];
 
 			/* forward feed the current row through the MLP layers */
-			forwardPropagation(testSet, currentRow);
+			forwardPropagation(inputs, currentRow);
 
 			/* find the highest probability in the output layer, after the forward pass through */
 			currentBestIndex = getPredictedOutput(currentRow);
@@ -196,8 +459,15 @@ public class MultilayerPerceptron {
 			 * the categorisation was correct */
 			if (currentBestIndex == actualCategory)
 				correctCount++;
+
+			if (sink != null)
+				sink.record(sinkFirstRow + currentRow, currentBestIndex, actualCategory);
 		}
 
+		scope.end(testSet.length);
+		if (Metrics.ENABLED)
+			Metrics.ROWS_CATEGORISED.add(testSet.length);
+
 		return correctCount;
 	}
 
@@ -205,44 +475,58 @@ public class MultilayerPerceptron {
 	 * Main function for forward propagation through the MLP. Passes the input layer through
 	 * the hidden layer, and then through the output layer.
 	 * 
-	 * @param dataset, the current dataset (train or test)
+	 * @param inputs, the scaled feature values of the current dataset (train or test), see inputs()
 	 * @param currentRow, the index of the current row in the dataset
 	 */
-	private void forwardPropagation(int[][] dataset, int currentRow) {
+	void forwardPropagation(double[][] inputs, int currentRow) {
+		forwardPropagation(inputs[currentRow], 0, currentRow);
+	}
+
+	/**
+	 * Forward propagation of a row whose feature values start at an offset in an array (e.g. a packed batch)
+	 * 
+	 * @param input, the array holding the scaled feature values of the row
+	 * @param offset, the position of the row's first feature value in input
+	 * @param currentRow, the index of the current row in the dataset
+	 */
+	void forwardPropagation(double[] input, int offset, int currentRow) {
 
 		double weightedSum = 0.0;
 
-		boolean transfer = false; /* boolean for sigmoid function, false = transfer, true = derivative */
 		boolean forwardPropagate = true; /* boolean for weighted sum function */
 
 		/* loop through every hidden node in the MLP */
-		for (int hiddenNode = 0; hiddenNode < NUM_HIDDEN; hiddenNode++) {
+		for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++) {
 
 			/* get the weighted sum for all feature values in the current row of data multiplied
 			 * by the weight connecting that input with the current hidden node  */
-			weightedSum = getWeightedSum(inputToHiddenWeights, hiddenNode, NUM_FEATURE_VALS, dataset[currentRow]);
+			weightedSum = 0.0;
+			for (int inputNode = 0; inputNode < numFeatures; inputNode++)
+				weightedSum += inputToHiddenWeights[inputNode][hiddenNode] * input[offset + inputNode];
 
 			weightedSum += hiddenBias[hiddenNode]; /* add hidden bias to the weighted sum */
 
-			/* pass the weighted sum into the sigmoid transfer function (not derivative) */
-			hiddenLayer[currentRow][hiddenNode] = sigmoidFunction(weightedSum, transfer);
-
+			hiddenLayer[currentRow][hiddenNode] = weightedSum;
 		}
 
+		/* pass the weighted sums of the whole hidden layer into the sigmoid transfer function */
+		activation.transfer(hiddenLayer[currentRow], numHidden);
+
 		/* loop through every output node */
 		for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++) {
 
 			/* get the weighted sum for all hidden node outputs in the hidden layer multiplied 
 			 * by the weight connecting that node with the current output node  */
-			weightedSum = getWeightedSum(hiddenToOutputWeights, outputNode, NUM_HIDDEN, hiddenLayer[currentRow],
+			weightedSum = getWeightedSum(hiddenToOutputWeights, outputNode, numHidden, hiddenLayer[currentRow],
 					forwardPropagate);
 
 			weightedSum += outputBias[outputNode]; /* add output bias to the weighted sum */
 
-			/* pass the weighted sum into the sigmoid transfer function (not derivative) */
-			outputLayer[currentRow][outputNode] = sigmoidFunction(weightedSum, transfer);
-
+			outputLayer[currentRow][outputNode] = weightedSum;
 		}
+
+		/* pass the weighted sums of the whole output layer into the sigmoid transfer function */
+		activation.transfer(outputLayer[currentRow], NUM_OUTPUT);
 	}
 
 	/**
@@ -252,12 +536,12 @@ public class MultilayerPerceptron {
 	 * @param currentRow, the index for the current row of the training set
 	 * @return a 2D array containing all of the output and hidden error gradients
 	 */
-	private double[][] calculateErrorGradients(int[][] trainingSet, int currentRow) {
+	double[][] calculateErrorGradients(int[][] trainingSet, int currentRow) {
 		double[] outputErrors = new double[NUM_OUTPUT];
-		double[] hiddenErrors = new double[NUM_HIDDEN];
+		double[] hiddenErrors = new double[numHidden];
 
 		/* get the category for the current row in the dataset */
-		int category = trainingSet[currentRow][NUM_FEATURE_VALS];
+		int category = trainingSet[currentRow][numFeatures];
 		int predicted = getPredictedOutput(currentRow); /* get predicted output */
 		int target;
 
@@ -266,9 +550,12 @@ public class MultilayerPerceptron {
 		int error = predicted != category ? 1 : 0;
 		double weightedSum = 0.0;
 
-		boolean derivative = true; /* boolean for sigmoid function so that it returns the derivative */
 		boolean backPropagate = false; /* boolean for weighted sum function, false = backpropagate, true = forward */
 
+		/* the sigmoid derivative of every output and hidden node, multiplied into each error gradient below */
+		Activation.derivative(outputLayer[currentRow], outputErrors, NUM_OUTPUT);
+		Activation.derivative(hiddenLayer[currentRow], hiddenErrors, numHidden);
+
 		/* loop through every node in the output layer */
 		for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++) {
 			/* if the current node is equal to the category for this row of data,  */
@@ -276,19 +563,18 @@ public class MultilayerPerceptron {
 
 			/* calculate error gradient for the current output node using the sigmoid derivative */
 			outputErrors[outputNode] = (target - outputLayer[currentRow][outputNode]) * error
-					* sigmoidFunction(outputLayer[currentRow][outputNode], derivative);
+					* outputErrors[outputNode];
 		}
 
 		/* loop through every node in the hidden layer */
-		for (int hiddenNode = 0; hiddenNode < NUM_HIDDEN; hiddenNode++) {
+		for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++) {
 
 			/* calculate weighted sum of output error gradients multiplied by 
 			 * the weight of the current hidden node (connected to the corresponding output node) */
 			weightedSum = getWeightedSum(hiddenToOutputWeights, hiddenNode, NUM_OUTPUT, outputErrors, backPropagate);
 
 			/* calculate hidden error gradient by multiplying weighted sum by the sigmoid derivative */
-			hiddenErrors[hiddenNode] = weightedSum * error
-					* sigmoidFunction(hiddenLayer[currentRow][hiddenNode], derivative);
+			hiddenErrors[hiddenNode] = weightedSum * error * hiddenErrors[hiddenNode];
 
 		}
 
@@ -299,11 +585,23 @@ public class MultilayerPerceptron {
 	/**
 	 * Update the weights in the MLP using pre-calculated error gradients for 
 	 *  
-	 * @param trainingSet, current training set
+	 * @param inputs, the scaled feature values of the current training set
 	 * @param currentRow, index of current row in training set
 	 * @param gradientErrors, error gradients, calculated prior to updating weights
 	 */
-	private void weightUpdate(int[][] trainingSet, int currentRow, double[][] gradientErrors) {
+	void weightUpdate(double[][] inputs, int currentRow, double[][] gradientErrors) {
+		weightUpdate(inputs[currentRow], 0, currentRow, gradientErrors);
+	}
+
+	/**
+	 * Updates the weights for a row whose feature values start at an offset in an array (e.g. a packed batch)
+	 * 
+	 * @param input, the array holding the scaled feature values of the row
+	 * @param offset, the position of the row's first feature value in input
+	 * @param currentRow, index of current row in training set
+	 * @param gradientErrors, error gradients, calculated prior to updating weights
+	 */
+	void weightUpdate(double[] input, int offset, int currentRow, double[][] gradientErrors) {
 		double currentWeightChange;
 		int outputErrors = 0, hiddenErrors = 1;
 
@@ -312,9 +610,9 @@ public class MultilayerPerceptron {
 
 			/* calculate weight change for the current output node; learning rate multiplied
 			 * by the gradient error for this node */
-			currentWeightChange = LEARNING_RATE * gradientErrors[outputErrors][outputNode];
+			currentWeightChange = config.learningRate * gradientErrors[outputErrors][outputNode];
 
-			for (int hiddenNode = 0; hiddenNode < NUM_HIDDEN; hiddenNode++)
+			for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++)
 				/* update hidden to output weights by adding the current weight change multiplied by
 				   the value at the hidden node (this will be sigmoid value) */
 				hiddenToOutputWeights[hiddenNode][outputNode] += hiddenLayer[currentRow][outputNode]
@@ -325,14 +623,14 @@ public class MultilayerPerceptron {
 		}
 
 		/* update input to hidden weights and hidden bias */
-		for (int hiddenNode = 0; hiddenNode < NUM_HIDDEN; hiddenNode++) {
+		for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++) {
 			/* calculate weight change */
-			currentWeightChange = LEARNING_RATE * gradientErrors[hiddenErrors][hiddenNode];
+			currentWeightChange = config.learningRate * gradientErrors[hiddenErrors][hiddenNode];
 
-			for (int dataPoint = 0; dataPoint < NUM_FEATURE_VALS; dataPoint++)
+			for (int dataPoint = 0; dataPoint < numFeatures; dataPoint++)
 				/* update input to hidden weight by adding current weight change multiplied
 				 * by the feature value at the current position in the dataset row */
-				inputToHiddenWeights[dataPoint][hiddenNode] += trainingSet[currentRow][dataPoint] * currentWeightChange;
+				inputToHiddenWeights[dataPoint][hiddenNode] += input[offset + dataPoint] * currentWeightChange;
 
 			/* update hidden bias at current node */
 			hiddenBias[hiddenNode] += currentWeightChange;
@@ -366,45 +664,6 @@ public class MultilayerPerceptron {
 		return weightedSum;
 	}
 
-	/**
-	 * Calculates the weighted sum for inputs that are int (as opposed to double). This is used
-	 * when dealing with the inputs from the dataset, as they are int arrays.
-	 * 
-	 * @param weights, the weights to be used for the weighted sum
-	 * @param currentNode, current node in the layer
-	 * @param numNodes, number of nodes in the next layer 
-	 * @param inputs, int array of inputs to be multiplied by the weights and summed
-	 * @return the weighted sum
-	 */
-	private double getWeightedSum(double[][] weights, int currentNode, int numNodes, int[] inputs) {
-		double weightedSum = 0.0;
-
-		/* for every node in the next layer, multiple its value by the weight from 
-		   that layer to the current node */
-		for (int nodeInNextLayer = 0; nodeInNextLayer < numNodes; nodeInNextLayer++)
-			weightedSum += weights[nodeInNextLayer][currentNode] * inputs[nodeInNextLayer];
-
-		return weightedSum;
-	}
-
-	/**
-	 * Sigmoid function that handles both the Sigmoid transfer and the Sigmoid derivative
-	 * 
-	 * @param input to be passed into the sigmoid transfer 
-	 * @param derivative, boolean check to determine whether or not the derivative 
-	 * of the sigmoid is to be used
-	 * @return new value after being passed through the sigmoid function
-	 */
-	private double sigmoidFunction(double input, boolean derivative) {
-
-		/* if the derivative is being called, return the sigmoid derivative of the dotProduct */
-		if (derivative)
-			return input * (1 - input);
-		else
-			/* if it's not the derivative, it's the sigmoid transfer function */
-			return (1 / (1 + Math.exp(-input)));
-	}
-
 	/**
 	 * Finds the node with the highest probability in the current output layer;
 	 * the index of this node is the MLP's prediction for the current input
@@ -0,0 +1,132 @@
+import java.util.Properties;
+
+/**
+ * MultilayerPerceptronConfig.java:
+ * Runtime configuration for the MLP. The defaults are the parameters that
+ * gave the best recorded accuracy (~93.59%); any of them can be overridden from
+ * properties (e.g. -Dmlp.hiddenNodes=80) so that parameter exploration does not 
+ * need the project to be recompiled.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class MultilayerPerceptronConfig {
+
+	int hiddenNodes = 60; /* number of hidden nodes */
+	int maxEpochs = 400; /* maximum number of training epochs */
+	double errorThreshold = 0.001; /* threshold for training error */
+	double learningRate = 0.1; /* relatively low learning rate to avoid convergence */
+	boolean shuffle = false; /* train on the rows in a new random order every epoch (see EpochPipeline) */
+	int batchSize = 64; /* rows in each packed batch when shuffling */
+	String activation = "exact"; /* "exact", "table" or "rational" sigmoid (see Activation) */
+	String inputScaling = "none"; /* "none", "standard" or "minmax" scaling of the inputs (see FeaturePreprocessor.Scaling) */
+
+	int ensembleSize = 1; /* number of MLPs trained and averaged (see MultilayerPerceptronEnsemble), 1 = a single MLP */
+	int ensembleThreads = Runtime.getRuntime().availableProcessors(); /* members trained at the same time */
+	int ensembleMember = -1; /* position of this MLP in an ensemble, -1 for a single MLP */
+
+	String checkpointPrefix = null; /* start of the path of each fold's checkpoint file, null = no checkpoints */
+	int checkpointEvery = 10; /* epochs between checkpoints, at least (see Checkpoint) */
+	double checkpointOverhead = 0.02; /* largest fraction of the training time to spend writing checkpoints */
+
+	Long seed = null; /* seed for the random weights, null for different weights every run */
+
+	/**
+	 * Creates a configuration from properties; any property that is not set keeps its default value.
+	 * Recognised keys are mlp.hiddenNodes, mlp.maxEpochs, mlp.errorThreshold, mlp.learningRate,
+	 * mlp.activation, mlp.inputScaling, mlp.shuffle, mlp.batchSize, mlp.ensemble, mlp.ensembleThreads, mlp.checkpoint, mlp.checkpointEvery,
+	 * mlp.checkpointOverhead and mlp.seed
+	 *
+	 * @param props, the properties to read (usually System.getProperties())
+	 * @return the new configuration
+	 */
+	public static MultilayerPerceptronConfig fromProperties(Properties props) {
+		MultilayerPerceptronConfig config = new MultilayerPerceptronConfig();
+
+		config.hiddenNodes = Integer.parseInt(props.getProperty("mlp.hiddenNodes", "" + config.hiddenNodes));
+		config.maxEpochs = Integer.parseInt(props.getProperty("mlp.maxEpochs", "" + config.maxEpochs));
+		config.errorThreshold = Double.parseDouble(props.getProperty("mlp.errorThreshold", "" + config.errorThreshold));
+		config.learningRate = Double.parseDouble(props.getProperty("mlp.learningRate", "" + config.learningRate));
+		config.activation = props.getProperty("mlp.activation", config.activation);
+		config.inputScaling = props.getProperty("mlp.inputScaling", config.inputScaling);
+		config.shuffle = Boolean.parseBoolean(props.getProperty("mlp.shuffle", "" + config.shuffle));
+		config.batchSize = Integer.parseInt(props.getProperty("mlp.batchSize", "" + config.batchSize));
+
+		config.ensembleSize = Integer.parseInt(props.getProperty("mlp.ensemble", "" + config.ensembleSize));
+		config.ensembleThreads = Integer.parseInt(props.getProperty("mlp.ensembleThreads", "" + config.ensembleThreads));
+
+		config.checkpointPrefix = props.getProperty("mlp.checkpoint", config.checkpointPrefix);
+		config.checkpointEvery = Integer.parseInt(props.getProperty("mlp.checkpointEvery", "" + config.checkpointEvery));
+		config.checkpointOverhead = Double
+				.parseDouble(props.getProperty("mlp.checkpointOverhead", "" + config.checkpointOverhead));
+
+		if (props.getProperty("mlp.seed") != null)
+			config.seed = Long.parseLong(props.getProperty("mlp.seed"));
+
+		if (config.hiddenNodes < 1 || config.maxEpochs < 1 || config.batchSize < 1 || config.ensembleSize < 1
+				|| config.ensembleThreads < 1)
+			throw new IllegalArgumentException(
+					"Hidden nodes, max epochs, batch size, ensemble size and ensemble threads must be at least 1");
+		if (!config.inputScaling.equals("none") && !config.inputScaling.equals("standard")
+				&& !config.inputScaling.equals("minmax"))
+			throw new IllegalArgumentException("Unknown input scaling: " + config.inputScaling);
+		Activation.forName(config.activation); /* throws if the name is unknown */
+		if (config.checkpointEvery < 1 || config.checkpointOverhead <= 0.0)
+			throw new IllegalArgumentException("Checkpoint interval must be at least 1 and the overhead positive: "
+					+ config.checkpointEvery + ", " + config.checkpointOverhead);
+
+		return config;
+	}
+
+	/**
+	 * Creates the configuration of one member of an ensemble: the same parameters, but its own seed.
+	 * Member 0 keeps this configuration's seed, so it is the same MLP that would be trained on its own.
+	 *
+	 * @param member, the position of the member in the ensemble
+	 * @return the member's configuration (a single MLP)
+	 */
+	MultilayerPerceptronConfig member(int member) {
+		MultilayerPerceptronConfig config = new MultilayerPerceptronConfig();
+		config.hiddenNodes = hiddenNodes;
+		config.maxEpochs = maxEpochs;
+		config.errorThreshold = errorThreshold;
+		config.learningRate = learningRate;
+		config.shuffle = shuffle;
+		config.batchSize = batchSize;
+		config.activation = activation;
+		config.inputScaling = inputScaling;
+		config.checkpointPrefix = checkpointPrefix;
+		config.checkpointEvery = checkpointEvery;
+		config.checkpointOverhead = checkpointOverhead;
+		config.ensembleMember = member;
+		config.seed = seed == null ? null : seed + 1_000_003L * member;
+		return config;
+	}
+
+	/**
+	 * Creates the checkpoint for one fold, named after the training set and every parameter that
+	 * changes the run, so a run only resumes from a checkpoint that it wrote itself. Each member of
+	 * an ensemble has its own checkpoint, even without a seed, as the members train at the same time.
+	 *
+	 * @param trainSet, the training set of the fold
+	 * @return the checkpoint, or null if checkpoints are disabled
+	 */
+	Checkpoint checkpoint(int[][] trainSet) {
+		if (checkpointPrefix == null)
+			return null;
+		String description = "mlp " + this + ", batchSize=" + batchSize + ", seed=" + seed
+				+ (ensembleMember < 0 ? "" : ", member=" + ensembleMember);
+		return new Checkpoint(checkpointPrefix, Checkpoint.MLP, Checkpoint.fingerprint(trainSet, description),
+				checkpointEvery, checkpointOverhead);
+	}
+
+	@Override
+	public String toString() {
+		return "hiddenNodes=" + hiddenNodes + ", maxEpochs=" + maxEpochs + ", learningRate=" + learningRate
+				+ ", errorThreshold=" + errorThreshold + (activation.equals("exact") ? "" : ", activation=" + activation)
+				+ (inputScaling.equals("none") ? "" : ", inputScaling=" + inputScaling)
+				+ (shuffle ? ", shuffle (batchSize=" + batchSize + ")" : "")
+				+ (ensembleSize > 1 ? ", ensemble of " + ensembleSize : "");
+	}
+}
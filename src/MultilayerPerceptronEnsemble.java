@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * MultilayerPerceptronEnsemble.java:
+ * Several MLPs, each with its own seed, trained at the same time (one per thread) on the same
+ * training set. A row is categorised by averaging the outputs of every member and taking the
+ * highest. A single MLP's accuracy changes from run to run with its random initial weights
+ * (90% to 94%); the average of several is steadier, and since the members train side by side
+ * on otherwise idle cores the ensemble takes about as long to train as one MLP.
+ *
+ * Inference is fused: the members' input to hidden weights are stacked into one matrix, so a
+ * single pass over a row's inputs works out the hidden layers of every member, rather than
+ * each member reading the row again. The outputs are exactly those of each member on its own.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class MultilayerPerceptronEnsemble implements FoldEvaluator, Scorer {
+
+	private static final int NUM_OUTPUT = MultilayerPerceptron.NUM_OUTPUT;
+
+	private final MultilayerPerceptronConfig config; /* the members' parameters, the ensemble size and threads */
+	private final Activation activation; /* the members' sigmoid, applied to the fused hidden layer at once */
+
+	private MultilayerPerceptron[] members;
+	private int numHidden; /* hidden nodes of each member */
+
+	/* every member's weights, with the input to hidden weights stacked so that hidden node h of
+	   member m is column m * numHidden + h */
+	private double[][] inputToHiddenWeights;
+	private double[] hiddenBias;
+	private double[][][] hiddenToOutputWeights; /* hidden to output weights of each member */
+	private double[][] outputBias; /* output biases of each member */
+
+	private long trainMillis; /* wall-clock time taken to train every member */
+	private String summary;
+
+	private EvaluationSink sink; /* records the prediction for each test row, if set */
+	private int sinkFirstRow;
+
+	/**
+	 * @param config, the members' parameters (-Dmlp.*), including the ensemble size and the number of threads
+	 */
+	public MultilayerPerceptronEnsemble(MultilayerPerceptronConfig config) {
+		this.config = config;
+		this.activation = Activation.forName(config.activation);
+	}
+
+	/**
+	 * Trains every member on a training set, up to config.ensembleThreads at a time, then fuses their weights
+	 *
+	 * @param trainSet, the dataset to train with
+	 */
+	public void train(int[][] trainSet) {
+		long startTime = System.nanoTime();
+		members = new MultilayerPerceptron[config.ensembleSize];
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(config.ensembleThreads, members.length));
+		try {
+			List<Future<?>> trained = new ArrayList<>();
+			for (int member = 0; member < members.length; member++) {
+				MultilayerPerceptron multilayerPerceptron = new MultilayerPerceptron(config.member(member));
+				members[member] = multilayerPerceptron;
+				trained.add(executor.submit(() -> multilayerPerceptron.trainModel(trainSet)));
+			}
+			for (Future<?> future : trained)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while training the ensemble", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Training an ensemble member failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		trainMillis = (System.nanoTime() - startTime) / 1_000_000;
+		fuse();
+	}
+
+	/**
+	 * Helper function that copies the trained members' weights into the fused layout
+	 */
+	private void fuse() {
+		numHidden = config.hiddenNodes;
+		int numFeatures = members[0].inputToHiddenWeights.length;
+
+		inputToHiddenWeights = new double[numFeatures][members.length * numHidden];
+		hiddenBias = new double[members.length * numHidden];
+		hiddenToOutputWeights = new double[members.length][][];
+		outputBias = new double[members.length][];
+
+		for (int member = 0; member < members.length; member++) {
+			for (int inputNode = 0; inputNode < numFeatures; inputNode++)
+				System.arraycopy(members[member].inputToHiddenWeights[inputNode], 0, inputToHiddenWeights[inputNode],
+						member * numHidden, numHidden);
+			System.arraycopy(members[member].hiddenBias, 0, hiddenBias, member * numHidden, numHidden);
+			hiddenToOutputWeights[member] = members[member].hiddenToOutputWeights;
+			outputBias[member] = members[member].outputBias;
+		}
+	}
+
+	/**
+	 * Passes a single row forward through every member in one pass over its inputs. Safe to call
+	 * from several threads at once.
+	 *
+	 * @param row, the row to pass through the members
+	 * @return the value of each output node of each member, [member][outputNode]
+	 */
+	public double[][] memberOutputs(int[] row) {
+		/* every member's scaling was fitted on the same training set with the same method, so they are the same */
+		double[] input = members[0].input(row);
+		double[] hidden = new double[hiddenBias.length];
+
+		/* hidden layers of every member: each input value is read once and multiplied into every member's weights */
+		for (int inputNode = 0; inputNode < input.length; inputNode++) {
+			double value = input[inputNode];
+			double[] weights = inputToHiddenWeights[inputNode];
+			for (int hiddenNode = 0; hiddenNode < hidden.length; hiddenNode++)
+				hidden[hiddenNode] += weights[hiddenNode] * value;
+		}
+		for (int hiddenNode = 0; hiddenNode < hidden.length; hiddenNode++)
+			hidden[hiddenNode] += hiddenBias[hiddenNode];
+		activation.transfer(hidden, hidden.length);
+
+		double[][] outputs = new double[members.length][NUM_OUTPUT];
+		for (int member = 0; member < members.length; member++) {
+			int firstHidden = member * numHidden;
+			for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++) {
+				double weightedSum = 0.0;
+				for (int hiddenNode = 0; hiddenNode < numHidden; hiddenNode++)
+					weightedSum += hiddenToOutputWeights[member][hiddenNode][outputNode] * hidden[firstHidden + hiddenNode];
+				outputs[member][outputNode] = weightedSum + outputBias[member][outputNode];
+			}
+			activation.transfer(outputs[member], NUM_OUTPUT);
+		}
+		return outputs;
+	}
+
+	/**
+	 * @param row, the row to pass through the members
+	 * @return the mean value of each output node over every member
+	 */
+	public double[] outputs(int[] row) {
+		double[] mean = new double[NUM_OUTPUT];
+		for (double[] output : memberOutputs(row))
+			for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++)
+				mean[outputNode] += output[outputNode] / members.length;
+		return mean;
+	}
+
+	/**
+	 * Categorises a single row with the averaged outputs of every member
+	 *
+	 * @param row, the row to categorise
+	 * @return the index of the output node with the highest mean value
+	 */
+	@Override
+	public int score(int[] row) {
+		return highest(outputs(row));
+	}
+
+	/**
+	 * Trains the ensemble on a training set, then tests it against the test set. The accuracy of
+	 * each member on its own is worked out from the same pass and reported in the fold summary.
+	 *
+	 * @param trainSet, the dataset to train with
+	 * @param testSet, the dataset to test against
+	 * @return the number of rows the ensemble categorised correctly
+	 */
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		train(trainSet);
+
+		int correctCount = 0;
+		int[] memberCorrect = new int[members.length];
+
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TEST);
+
+		for (int currentRow = 0; currentRow < testSet.length; currentRow++) {
+			int actualCategory = testSet[currentRow][testSet[currentRow].length - 1];
+			double[][] outputs = memberOutputs(testSet[currentRow]);
+
+			double[] mean = new double[NUM_OUTPUT];
+			for (int member = 0; member < members.length; member++) {
+				if (highest(outputs[member]) == actualCategory)
+					memberCorrect[member]++;
+				for (int outputNode = 0; outputNode < NUM_OUTPUT; outputNode++)
+					mean[outputNode] += outputs[member][outputNode] / members.length;
+			}
+
+			int predicted = highest(mean);
+			if (predicted == actualCategory)
+				correctCount++;
+			if (sink != null)
+				sink.record(sinkFirstRow + currentRow, predicted, actualCategory);
+		}
+
+		scope.end(testSet.length);
+		if (Metrics.ENABLED)
+			Metrics.ROWS_CATEGORISED.add(testSet.length);
+
+		int worst = testSet.length, best = 0;
+		long sum = 0;
+		for (int correct : memberCorrect) {
+			worst = Math.min(worst, correct);
+			best = Math.max(best, correct);
+			sum += correct;
+		}
+		summary = String.format("%d members trained in %d ms on %d threads, members %.2f%% to %.2f%% (mean %.2f%%), ensemble %.2f%%",
+				members.length, trainMillis, Math.min(config.ensembleThreads, members.length),
+				100.0 * worst / testSet.length, 100.0 * best / testSet.length,
+				100.0 * sum / members.length / testSet.length, 100.0 * correctCount / testSet.length);
+
+		return correctCount;
+	}
+
+	@Override
+	public String foldSummary() {
+		return summary;
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		this.sink = sink;
+		this.sinkFirstRow = firstRow;
+	}
+
+	/**
+	 * Helper function that finds the output node with the highest value (the first, if several are equal)
+	 */
+	private static int highest(double[] output) {
+		int outputIndex = 0;
+		for (int outputNode = 1; outputNode < output.length; outputNode++)
+			if (output[outputNode] > output[outputIndex])
+				outputIndex = outputNode;
+		return outputIndex;
+	}
+}
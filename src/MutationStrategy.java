@@ -0,0 +1,129 @@
+import java.util.Random;
+
+/**
+ * MutationStrategy.java:
+ * Gene mutation for the genetic algorithm. Mutation is applied to every
+ * new child gene after crossover. Each strategy can also mutate packed genes
+ * (see PackedGene) without unpacking them.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface MutationStrategy {
+
+	int FEATURE_VALUE_MAX = 16; /* the largest number that a feature value can be */
+
+	/**
+	 * Mutates a gene in place
+	 *
+	 * @param gene, the gene to be mutated
+	 * @param mutationRate, the percentage chance (0-100) for each element to mutate
+	 * @param random, the random number generator for this run
+	 */
+	void mutate(int[] gene, double mutationRate, Random random);
+
+	/**
+	 * Mutates a packed gene in place. By default the gene is unpacked, mutated and packed again;
+	 * the strategies below override this to change only the mutated elements of the packed gene.
+	 *
+	 * @param gene, the packed gene to be mutated
+	 * @param mutationRate, the percentage chance (0-100) for each element to mutate
+	 * @param random, the random number generator for this run
+	 */
+	default void mutatePacked(long[] gene, double mutationRate, Random random) {
+		int[] unpacked = PackedGene.unpack(gene);
+		mutate(unpacked, mutationRate, random);
+		System.arraycopy(PackedGene.pack(unpacked), 0, gene, 0, PackedGene.GENE_LONGS);
+	}
+
+	/**
+	 * Helper function for packed mutation. Rather than drawing a random number for every element,
+	 * the gap to the next mutated element is drawn from the geometric distribution, which gives
+	 * each element the same mutationRate% chance to mutate with far fewer random numbers.
+	 *
+	 * @param mutationRate, the percentage chance (0-100) for each element to mutate
+	 * @param random, the random number generator for this run
+	 * @return the number of elements to skip before the next mutated element (capped at the gene length)
+	 */
+	static int nextMutationGap(double mutationRate, Random random) {
+		double probability = mutationRate / 100.0;
+		if (probability >= 1.0)
+			return 0;
+		if (probability <= 0.0)
+			return PackedGene.GENE_VALUES;
+
+		double gap = Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log(1.0 - probability));
+		return (int) Math.min(PackedGene.GENE_VALUES, gap);
+	}
+
+	/**
+	 * Returns the mutation strategy with the given name
+	 *
+	 * @param name, the name of the strategy ("randomReset" or "creep")
+	 * @return the mutation strategy
+	 */
+	static MutationStrategy forName(String name) {
+		switch (name) {
+		case "randomReset":
+			return new RandomReset();
+		case "creep":
+			return new Creep();
+		default:
+			throw new IllegalArgumentException("Unknown mutation strategy: " + name);
+		}
+	}
+
+	/**
+	 * Loops through every element in the gene, with a mutationRate% chance
+	 * to mutate each element to a random feature value (0-16)
+	 */
+	class RandomReset implements MutationStrategy {
+
+		@Override
+		public void mutate(int[] gene, double mutationRate, Random random) {
+
+			/* loop through every position in the gene */
+			for (int genePos = 0; genePos < gene.length; genePos++)
+
+				/* if random number is less than or equal to the mutation rate,
+				 * the element at the current position is mutated */
+				if (mutationRate >= random.nextDouble() * 100)
+					gene[genePos] = random.nextInt(FEATURE_VALUE_MAX + 1);
+		}
+
+		@Override
+		public void mutatePacked(long[] gene, double mutationRate, Random random) {
+			for (int genePos = nextMutationGap(mutationRate, random); genePos < PackedGene.GENE_VALUES; genePos += 1
+					+ nextMutationGap(mutationRate, random))
+				PackedGene.set(gene, genePos, random.nextInt(FEATURE_VALUE_MAX + 1));
+		}
+	}
+
+	/**
+	 * Creep mutation; loops through every element in the gene, with a mutationRate% chance
+	 * to move each element up or down by one, staying within the feature value range (0-16)
+	 */
+	class Creep implements MutationStrategy {
+
+		@Override
+		public void mutate(int[] gene, double mutationRate, Random random) {
+
+			for (int genePos = 0; genePos < gene.length; genePos++) {
+				if (mutationRate >= random.nextDouble() * 100) {
+					int newValue = gene[genePos] + (random.nextBoolean() ? 1 : -1);
+					gene[genePos] = Math.max(0, Math.min(FEATURE_VALUE_MAX, newValue));
+				}
+			}
+		}
+
+		@Override
+		public void mutatePacked(long[] gene, double mutationRate, Random random) {
+			for (int genePos = nextMutationGap(mutationRate, random); genePos < PackedGene.GENE_VALUES; genePos += 1
+					+ nextMutationGap(mutationRate, random)) {
+				int newValue = PackedGene.get(gene, genePos) + (random.nextBoolean() ? 1 : -1);
+				PackedGene.set(gene, genePos, Math.max(0, Math.min(FEATURE_VALUE_MAX, newValue)));
+			}
+		}
+	}
+}
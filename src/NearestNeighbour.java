@@ -1,14 +1,77 @@
+import java.util.Arrays;
+import java.util.Random;
+
 
 /**
  * NearestNeighbour.java:
  * Nearest neighbour (using Euclidean distance) solution 
- * to the UCI digits task. Achieves ~98.3% accuracy
+ * to the UCI digits task. Achieves ~98.3% accuracy. The reference set can
+ * be shrunk with a prototype reduction, and searched with a pruned exact
+ * search instead of a linear one (see NearestNeighbourConfig).
  * 
  * @author Samuel C. Donovan
  * @created 17/01/22
- * @updated 06/02/22
+ * @updated 18/10/26
  */
-public class NearestNeighbour {
+public class NearestNeighbour implements FoldEvaluator, Scorer {
+
+	private final NearestNeighbourConfig config; /* prototype reduction and its tolerance */
+	private final Random random; /* random number generator used by the reduction */
+	private final int[][] referenceSet; /* rows used as neighbours when scoring single rows */
+	private final PivotIndex referenceIndex; /* pivot index over the reference set, null for a linear search */
+
+	private String reductionSummary; /* compression and speed-up of the latest reduction, if any */
+	private String searchSummary; /* distances pruned by the latest pivot search, if any */
+
+	private EvaluationSink sink; /* records the prediction for each test row, if set */
+	private int sinkFirstRow;
+
+	/**
+	 * Creates a nearest neighbour categoriser for cross-validation, where the 
+	 * neighbours come from the training set of each fold
+	 */
+	public NearestNeighbour() {
+		this(new int[0][]);
+	}
+
+	/**
+	 * Creates a nearest neighbour categoriser for cross-validation that reduces the 
+	 * training set of each fold as set in the configuration
+	 * 
+	 * @param config, the reduction to use
+	 */
+	public NearestNeighbour(NearestNeighbourConfig config) {
+		this(config, new int[0][]);
+	}
+
+	/**
+	 * Creates a nearest neighbour scorer that categorises rows using the given reference set
+	 * 
+	 * @param referenceSet, the rows to use as neighbours
+	 */
+	public NearestNeighbour(int[][] referenceSet) {
+		this(new NearestNeighbourConfig(), referenceSet);
+	}
+
+	/**
+	 * Creates a nearest neighbour scorer whose reference set is the training set, reduced as set in the configuration
+	 * 
+	 * @param config, the reduction to use
+	 * @param trainSet, the rows to reduce into the reference set
+	 */
+	public NearestNeighbour(NearestNeighbourConfig config, int[][] trainSet) {
+		this.config = config;
+		this.random = config.seed == null ? new Random() : new Random(config.seed);
+		this.referenceSet = reduceReferenceSet(trainSet);
+		this.referenceIndex = config.search.equals("pivot") ? newIndex(referenceSet) : null;
+	}
+
+	/**
+	 * Helper function that builds a pivot index over a reference set
+	 */
+	private PivotIndex newIndex(int[][] reference) {
+		return new PivotIndex(reference, config.numPivots, config.pivotSelection, random);
+	}
 
 	/**
 	 * Main function that runs a two fold test using the Nearest Neighbour algorithm. 
@@ -30,6 +93,177 @@ public class NearestNeighbour {
 
 	}
 
+	/**
+	 * Runs one fold; the training set is used as the set of neighbours for every row in the test set
+	 * 
+	 * @param trainSet, the reference rows
+	 * @param testSet, the rows to categorise
+	 * @return number of correct categorisations
+	 */
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		return categorise(testSet, reduceReferenceSet(trainSet));
+	}
+
+	@Override
+	public String foldSummary() {
+		if (reductionSummary == null || searchSummary == null)
+			return reductionSummary == null ? searchSummary : reductionSummary;
+		return reductionSummary + "; " + searchSummary;
+	}
+
+	/**
+	 * Reduces a training set into a smaller reference set using the configured reduction.
+	 * The reduction is first tried on part of the training set and checked against the
+	 * rest (the held-out rows); if the held-out accuracy drops by more than the tolerance,
+	 * the full training set is used instead. Otherwise the whole training set is reduced.
+	 * Editing can remove every row of a small or noisy set; if a reduction keeps no rows, the
+	 * full training set is used as well, and the summary says so.
+	 * 
+	 * @param trainSet, the training set
+	 * @return the reference set to use
+	 */
+	int[][] reduceReferenceSet(int[][] trainSet) {
+		if (config.reduction == null || trainSet.length == 0)
+			return trainSet;
+
+		/* hold out part of the training set to check the reduction against */
+		int[][] shuffled = PrototypeReduction.shuffled(trainSet, random);
+		int numHeldOut = Math.max(1, (int) (shuffled.length * config.validationFraction));
+		int[][] heldOut = Arrays.copyOfRange(shuffled, 0, numHeldOut);
+		int[][] fitSet = Arrays.copyOfRange(shuffled, numHeldOut, shuffled.length);
+
+		if (fitSet.length == 0)
+			return unreduced("too few rows to check the reduction on", trainSet);
+		int[][] reducedFitSet = config.reduction.reduce(fitSet, random);
+		if (reducedFitSet.length == 0)
+			return unreduced("reduction kept none of the rows it was checked with", trainSet);
+
+		long startTime = System.nanoTime();
+		double fullAccuracy = 100.0 * countCorrect(heldOut, fitSet) / heldOut.length;
+		long fullTime = System.nanoTime() - startTime;
+
+		startTime = System.nanoTime();
+		double reducedAccuracy = 100.0 * countCorrect(heldOut, reducedFitSet) / heldOut.length;
+		long reducedTime = Math.max(1, System.nanoTime() - startTime);
+
+		if (reducedAccuracy < fullAccuracy - config.tolerancePercent) {
+			reductionSummary = String.format(
+					"%s reduction dropped held-out accuracy from %.2f%% to %.2f%% (tolerance %.2f), using all %d rows",
+					config.reductionName, fullAccuracy, reducedAccuracy, config.tolerancePercent, trainSet.length);
+			return trainSet;
+		}
+
+		int[][] reduced = config.reduction.reduce(trainSet, random);
+		if (reduced.length == 0)
+			return unreduced("reduction kept no rows", trainSet);
+		reductionSummary = String.format(
+				"%s reduction kept %d of %d rows (%.1fx smaller), held-out accuracy %.2f%% vs %.2f%%, query speed-up %.1fx",
+				config.reductionName, reduced.length, trainSet.length, (double) trainSet.length / reduced.length,
+				reducedAccuracy, fullAccuracy, (double) fullTime / reducedTime);
+		return reduced;
+	}
+
+	/**
+	 * Helper function that records why the reduction was not used and returns the full training set
+	 */
+	private int[][] unreduced(String reason, int[][] trainSet) {
+		reductionSummary = String.format("%s %s, using all %d rows", config.reductionName, reason, trainSet.length);
+		return trainSet;
+	}
+
+	/**
+	 * @return the compression and speed-up of the latest reduction, or null if nothing was reduced
+	 */
+	public String getReductionSummary() {
+		return reductionSummary;
+	}
+
+	/**
+	 * Helper function that counts how many rows are categorised correctly by their nearest neighbour in the reference set
+	 */
+	private int countCorrect(int[][] rows, int[][] reference) {
+		int numCorrect = 0;
+		for (int[] row : rows)
+			if (reference[nearestNeighbour(row, reference)][row.length - 1] == row[row.length - 1])
+				numCorrect++;
+		return numCorrect;
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		this.sink = sink;
+		this.sinkFirstRow = firstRow;
+	}
+
+	/**
+	 * Finds the nearest neighbour of a row in the reference set
+	 * 
+	 * @param row, the row to categorise
+	 * @return the category of the nearest row in the reference set
+	 */
+	@Override
+	public int score(int[] row) {
+		int nearestPos = referenceIndex == null ? nearestNeighbour(row, referenceSet) : referenceIndex.nearest(row);
+		return referenceSet[nearestPos][row.length - 1];
+	}
+
+	/**
+	 * Finds the nearest neighbour of every row in a batch. The reference set is the outer loop, 
+	 * so each reference row is read from memory once for the whole batch instead of once per row.
+	 * 
+	 * @param rows, the rows to categorise
+	 * @return the category of the nearest reference row for each row
+	 */
+	@Override
+	public int[] scoreBatch(int[][] rows) {
+		/* the pivot search skips most reference rows for each row, which beats reading each reference row once */
+		if (referenceIndex != null)
+			return Scorer.super.scoreBatch(rows);
+
+		int[] min = new int[rows.length]; /* squared distance to the nearest reference row so far */
+		int[] categories = new int[rows.length];
+		Arrays.fill(min, Integer.MAX_VALUE);
+
+		for (int[] referenceRow : referenceSet) {
+			int category = referenceRow[referenceRow.length - 1];
+
+			for (int pos = 0; pos < rows.length; pos++) {
+				int currentDist = Utility.squaredDistanceWithin(rows[pos], referenceRow, min[pos]);
+				if (currentDist < min[pos]) {
+					min[pos] = currentDist;
+					categories[pos] = category;
+				}
+			}
+		}
+		return categories;
+	}
+
+	/**
+	 * Helper function that finds the position of the nearest row in a dataset. Squared distances
+	 * are compared, which give the same order as distances, so each distance can stop as soon as
+	 * it is no nearer than the nearest row so far (see Utility.squaredDistanceWithin).
+	 * 
+	 * @param row, the row to find the nearest neighbour of
+	 * @param dataset, the rows to search
+	 * @return the position of the nearest row in the dataset
+	 */
+	int nearestNeighbour(int[] row, int[][] dataset) {
+		int min = Integer.MAX_VALUE; /* current minimum squared distance, initialised to INF */
+		int currentDist;
+		int minPos = 0;
+
+		for (int datasetPos = 0; datasetPos < dataset.length; datasetPos++) {
+			currentDist = Utility.squaredDistanceWithin(row, dataset[datasetPos], min);
+
+			if (currentDist < min) {
+				min = currentDist;
+				minPos = datasetPos;
+			}
+		}
+		return minPos;
+	}
+
 	/**
 	 * Main categorisation function; uses Euclidean distance to 
 	 * calculate the nearest row in the other dataset, and checks if the categories match
@@ -39,42 +273,42 @@ public class NearestNeighbour {
 	 * @param dataset2, data from the other dataset
 	 * @return number of correct categorisations
 	 */
-	private int categorise(int[][] dataset1, int[][] dataset2) {
+	int categorise(int[][] dataset1, int[][] dataset2) {
 
-		double min = Float.MAX_VALUE; /* current minimum distance, initialised to INF */
-		double currentDist; /* current distance to compare to min */
-		int minPos = 0; /* position of current min distance neighbour */
+		int minPos; /* position of current min distance neighbour */
 		int numCorrect = 0; /* total number of correct categorisations */
 
 		int lastIndex = dataset1[0].length - 1; /* last index of each row (65) */
 
-		/* loop through each row in dataset1 to get its nearest neighbour in dataset2 */
-		for (int dataset1Pos = 0; dataset1Pos < dataset1.length; dataset1Pos++) {
-
-			/* reset min to INF before each loop of the second dataset */
-			min = Float.MAX_VALUE;
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TEST);
 
-			/* loop through the dateset2, comparing the distance to each row and
-			 * retrieving the nearest neighbour to the current row from dataset1 */
-			for (int dataset2Pos = 0; dataset2Pos < dataset2.length; dataset2Pos++) {
+		/* with the pivot search, the index over dataset2 is built once and used for every row */
+		PivotIndex index = config.search.equals("pivot") ? newIndex(dataset2) : null;
 
-				/* use Euclidean distance function from Utility class to calculate distance */
-				currentDist = Utility.euclideanDistance(dataset1[dataset1Pos], dataset2[dataset2Pos]);
+		/* loop through each row in dataset1 to get its nearest neighbour in dataset2 */
+		for (int dataset1Pos = 0; dataset1Pos < dataset1.length; dataset1Pos++) {
 
-				/* if the distance between the two rows from each dataset is smaller than the current
-				 * minimum distance, set minimum distance to this new distance and save the position in minPos*/
-				if (currentDist < min) {
-					min = currentDist;
-					minPos = dataset2Pos;
-				}
-			}
+			/* compare the distance to each row in dataset2 (using Euclidean distance) and
+			 * retrieve the nearest neighbour to the current row from dataset1 */
+			minPos = index == null ? nearestNeighbour(dataset1[dataset1Pos], dataset2)
+					: index.nearest(dataset1[dataset1Pos]);
 
 			/* if the nearest neighbour both have the same category in their last cell (65)
 			 * the categorisation is correct, numCorrect is incremented by 1 */
 			if (dataset1[dataset1Pos][lastIndex] == dataset2[minPos][lastIndex])
 				numCorrect++;
+
+			if (sink != null)
+				sink.record(sinkFirstRow + dataset1Pos, dataset2[minPos][lastIndex], dataset1[dataset1Pos][lastIndex]);
 		}
 
+		if (index != null)
+			searchSummary = index.summary();
+
+		scope.end(dataset1.length);
+		if (Metrics.ENABLED)
+			Metrics.ROWS_CATEGORISED.add(dataset1.length);
+
 		return numCorrect;
 	}
 
@@ -0,0 +1,83 @@
+import java.util.Properties;
+
+/**
+ * NearestNeighbourConfig.java:
+ * Runtime configuration for the nearest neighbour algorithm. By default every training
+ * row is used as a reference row (~98.3% accuracy); a prototype reduction can be chosen
+ * (e.g. -Dnn.reduction=condensed) to shrink the reference set so that queries are faster.
+ * A reduction is only used if it keeps the accuracy on a held-out part of the training set
+ * within the tolerance of the full reference set. -Dnn.search=pivot replaces the linear
+ * search for each row's nearest neighbour with an exact search that skips most distances (see PivotIndex).
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class NearestNeighbourConfig {
+
+	String reductionName = "none"; /* "none", "condensed", "edited", "editedCondensed" or "kmeans" */
+	int prototypesPerCategory = 20; /* prototypes for each category (kmeans only) */
+	double tolerancePercent = 1.0; /* largest drop in held-out accuracy (percentage points) allowed for a reduction */
+	double validationFraction = 0.2; /* part of the training set held out to check the reduction */
+
+	String search = "linear"; /* "linear" or "pivot" */
+	int numPivots = 4; /* number of pivots for the pivot search */
+	String pivotSelection = "farthest"; /* "norm", "random" or "farthest" */
+
+	Long seed = null; /* seed for the reduction and pivots, null for different ones every run */
+
+	PrototypeReduction reduction; /* the reduction to use, null for none */
+
+	/**
+	 * Creates a configuration from properties; any property that is not set keeps its default value.
+	 * Recognised keys are nn.reduction, nn.prototypes, nn.tolerance, nn.validationFraction, nn.search,
+	 * nn.pivots, nn.pivotSelection and nn.seed
+	 *
+	 * @param props, the properties to read (usually System.getProperties())
+	 * @return the new configuration
+	 */
+	public static NearestNeighbourConfig fromProperties(Properties props) {
+		NearestNeighbourConfig config = new NearestNeighbourConfig();
+
+		config.reductionName = props.getProperty("nn.reduction", config.reductionName);
+		config.prototypesPerCategory = Integer
+				.parseInt(props.getProperty("nn.prototypes", "" + config.prototypesPerCategory));
+		config.tolerancePercent = Double.parseDouble(props.getProperty("nn.tolerance", "" + config.tolerancePercent));
+		config.validationFraction = Double
+				.parseDouble(props.getProperty("nn.validationFraction", "" + config.validationFraction));
+		config.search = props.getProperty("nn.search", config.search);
+		config.numPivots = Integer.parseInt(props.getProperty("nn.pivots", "" + config.numPivots));
+		config.pivotSelection = props.getProperty("nn.pivotSelection", config.pivotSelection);
+
+		if (props.getProperty("nn.seed") != null)
+			config.seed = Long.parseLong(props.getProperty("nn.seed"));
+
+		config.resolveReduction();
+		return config;
+	}
+
+	/**
+	 * Looks up the reduction from its name, checking that the parameters are valid
+	 */
+	void resolveReduction() {
+		if (validationFraction <= 0.0 || validationFraction >= 1.0)
+			throw new IllegalArgumentException("Validation fraction must be between 0 and 1: " + validationFraction);
+		if (!search.equals("linear") && !search.equals("pivot"))
+			throw new IllegalArgumentException("Unknown nearest neighbour search: " + search);
+		if (numPivots < 1)
+			throw new IllegalArgumentException("Number of pivots must be at least 1: " + numPivots);
+		if (!pivotSelection.equals("norm") && !pivotSelection.equals("random") && !pivotSelection.equals("farthest"))
+			throw new IllegalArgumentException("Unknown pivot selection: " + pivotSelection);
+
+		reduction = reductionName.equals("none") ? null
+				: PrototypeReduction.forName(reductionName, prototypesPerCategory);
+	}
+
+	@Override
+	public String toString() {
+		return "reduction=" + reductionName
+				+ (reductionName.equals("kmeans") ? ", prototypesPerCategory=" + prototypesPerCategory : "")
+				+ ", tolerancePercent=" + tolerancePercent + ", search=" + search
+				+ (search.equals("pivot") ? ", pivots=" + numPivots + " (" + pivotSelection + ")" : "");
+	}
+}
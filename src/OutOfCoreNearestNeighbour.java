@@ -0,0 +1,321 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * OutOfCoreNearestNeighbour.java:
+ * Nearest neighbour search against a reference set that is read from disk instead of held
+ * on the heap, so the reference set can be far larger than the memory available. The
+ * reference file is streamed in fixed-size blocks while the nearest distance found so far
+ * is kept in memory for every query row. A reader thread fills one block while the other
+ * block is being compared against the queries (double buffering), so reading from disk
+ * overlaps with computing distances. Only two blocks of reference rows are ever in memory.
+ *
+ * The reference file can be a dataset CSV file, or a packed binary file written by
+ * "convert", which stores each value in one byte (UCI values are 0-16) and is ~3x smaller
+ * and much faster to decode. Binary files start with the magic number "UCIB", a version,
+ * the row length and the number of rows.
+ *
+ * Usage: java OutOfCoreNearestNeighbour convert [reference csv] [binary file]
+ *        java OutOfCoreNearestNeighbour [reference csv or binary] [input file or -] [output file or -]
+ * The second form categorises the input with the StreamingClassifier, so neither the input nor the
+ * reference set has to fit in memory. Optional: -Dooc.blockRows (reference rows per block, default 4096)
+ * and -Dstream.chunkSize (query rows compared per pass over the reference file, default 65536).
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class OutOfCoreNearestNeighbour implements Scorer {
+
+	static final int MAGIC = 0x55434942; /* "UCIB" */
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 4 + 4 + 4 + 8; /* magic, version, row length, number of rows */
+
+	private final Path referenceFile;
+	private final int blockRows;
+	private final int rowLength;
+
+	/**
+	 * A block of reference rows, filled by the reader thread; a block with no rows marks the end of the file
+	 */
+	private static class Block {
+		final int[][] rows;
+		int numRows;
+
+		Block(int blockRows, int rowLength) {
+			this.rows = new int[blockRows][rowLength];
+		}
+	}
+
+	/**
+	 * Reads reference rows from a file, one block at a time
+	 */
+	private interface BlockReader extends Closeable {
+		int read(int[][] rows) throws IOException;
+	}
+
+	/**
+	 * @param referenceFile, the CSV or packed binary file holding the reference rows
+	 * @param blockRows, the number of reference rows in each block
+	 */
+	public OutOfCoreNearestNeighbour(Path referenceFile, int blockRows) throws IOException {
+		if (blockRows < 1)
+			throw new IllegalArgumentException("Block rows must be at least 1: " + blockRows);
+
+		this.referenceFile = referenceFile;
+		this.blockRows = blockRows;
+
+		try (FileChannel channel = FileChannel.open(referenceFile)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			channel.read(header);
+			header.flip();
+			this.rowLength = header.remaining() == HEADER_BYTES && header.getInt(0) == MAGIC ? header.getInt(8)
+					: MultilayerPerceptron.NUM_FEATURE_VALS + 1;
+		}
+	}
+
+	/**
+	 * @param file, a reference file
+	 * @return true if the file is a packed binary file written by convertToBinary, false if it is a CSV file
+	 */
+	public static boolean isBinary(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			channel.read(header);
+			return header.position() == HEADER_BYTES && header.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Helper function that opens the reference file with the reader for its format
+	 */
+	private BlockReader openReader() throws IOException {
+		FileChannel channel = FileChannel.open(referenceFile);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		channel.read(header);
+
+		if (header.position() == HEADER_BYTES && header.getInt(0) == MAGIC) {
+			if (header.getInt(4) != VERSION)
+				throw new IOException("Unsupported binary version " + header.getInt(4) + " in " + referenceFile);
+			return new BinaryReader(channel, rowLength, blockRows);
+		}
+
+		channel.position(0);
+		CsvRowReader csvReader = new CsvRowReader(new BufferedInputStream(Channels.newInputStream(channel)), rowLength);
+		return new BlockReader() {
+			@Override
+			public int read(int[][] rows) throws IOException {
+				return csvReader.read(rows);
+			}
+
+			@Override
+			public void close() throws IOException {
+				csvReader.close();
+			}
+		};
+	}
+
+	/**
+	 * Reads rows from a packed binary file; every value is one unsigned byte
+	 */
+	private static class BinaryReader implements BlockReader {
+		private final FileChannel channel;
+		private final int rowLength;
+		private final ByteBuffer buffer;
+
+		BinaryReader(FileChannel channel, int rowLength, int blockRows) {
+			this.channel = channel;
+			this.rowLength = rowLength;
+			this.buffer = ByteBuffer.allocateDirect(rowLength * blockRows);
+		}
+
+		@Override
+		public int read(int[][] rows) throws IOException {
+			buffer.clear();
+			while (buffer.hasRemaining() && channel.read(buffer) != -1)
+				;
+			buffer.flip();
+
+			int numRows = Math.min(rows.length, buffer.remaining() / rowLength);
+			for (int row = 0; row < numRows; row++)
+				for (int pos = 0; pos < rowLength; pos++)
+					rows[row][pos] = buffer.get() & 0xFF;
+			return numRows;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Finds the category of the nearest reference row for every query row, in one pass over the reference file
+	 *
+	 * @param queries, the rows to categorise
+	 * @return the category of the nearest reference row for each query row
+	 */
+	public int[] categorise(int[][] queries) throws IOException, InterruptedException {
+		double[] min = new double[queries.length]; /* running minimum distance for each query */
+		int[] categories = new int[queries.length];
+		Arrays.fill(min, Double.MAX_VALUE);
+
+		BlockingQueue<Block> freeBlocks = new ArrayBlockingQueue<>(2);
+		BlockingQueue<Block> filledBlocks = new ArrayBlockingQueue<>(2);
+		freeBlocks.add(new Block(blockRows, rowLength));
+		freeBlocks.add(new Block(blockRows, rowLength));
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		/* the reader thread fills whichever block is free while the other one is being compared */
+		Thread readerThread = new Thread(() -> {
+			try (BlockReader reader = openReader()) {
+				while (true) {
+					Block block = freeBlocks.take();
+					block.numRows = reader.read(block.rows);
+					filledBlocks.put(block);
+					if (block.numRows == 0)
+						return;
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+				Block end = new Block(0, 0);
+				filledBlocks.offer(end); /* there is always room, as at most two blocks exist */
+			}
+		}, "reference-reader");
+		readerThread.setDaemon(true);
+		readerThread.start();
+
+		try {
+			for (Block block; (block = filledBlocks.take()).numRows > 0;) {
+				compareBlock(queries, block, min, categories);
+				freeBlocks.put(block);
+			}
+		} finally {
+			readerThread.interrupt();
+		}
+		readerThread.join();
+
+		if (failure.get() != null)
+			throw new IOException("Reading " + referenceFile + " failed", failure.get());
+		return categories;
+	}
+
+	/**
+	 * Helper function that updates the running minimum of every query with the rows of one block.
+	 * The block is small enough to stay in the CPU cache while every query is compared against it.
+	 */
+	private void compareBlock(int[][] queries, Block block, double[] min, int[] categories) {
+		int categoryIndex = rowLength - 1;
+
+		for (int query = 0; query < queries.length; query++) {
+			int[] queryRow = queries[query];
+			for (int pos = 0; pos < block.numRows; pos++) {
+				double currentDist = Utility.euclideanDistance(queryRow, block.rows[pos]);
+				if (currentDist < min[query]) {
+					min[query] = currentDist;
+					categories[query] = block.rows[pos][categoryIndex];
+				}
+			}
+		}
+	}
+
+	@Override
+	public int score(int[] row) {
+		return scoreBatch(new int[][] { row })[0];
+	}
+
+	/**
+	 * Categorises a batch of rows with one pass over the reference file. Larger batches
+	 * share the cost of reading the file between more rows.
+	 */
+	@Override
+	public int[] scoreBatch(int[][] rows) {
+		try {
+			return categorise(rows);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading " + referenceFile, e);
+		}
+	}
+
+	/**
+	 * Converts a dataset CSV file into the packed binary format, one row at a time
+	 *
+	 * @param csvFile, the CSV file to read
+	 * @param binaryFile, the binary file to write
+	 * @return the number of rows written
+	 */
+	public static long convertToBinary(Path csvFile, Path binaryFile) throws IOException {
+		int rowLength = MultilayerPerceptron.NUM_FEATURE_VALS + 1;
+		int[][] rows = new int[4096][rowLength];
+		byte[] bytes = new byte[rows.length * rowLength];
+		long numRows = 0;
+
+		try (CsvRowReader reader = new CsvRowReader(new FileInputStream(csvFile.toFile()), rowLength);
+				DataOutputStream output = new DataOutputStream(Files.newOutputStream(binaryFile))) {
+
+			/* the number of rows is not known until the end, so it is written last */
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(rowLength);
+			output.writeLong(0);
+
+			for (int read; (read = reader.read(rows)) > 0;) {
+				for (int row = 0; row < read; row++)
+					for (int pos = 0; pos < rowLength; pos++) {
+						int value = rows[row][pos];
+						if (value < 0 || value > 255)
+							throw new IOException("Row " + (numRows + row + 1) + " has a value outside 0-255: " + value);
+						bytes[row * rowLength + pos] = (byte) value;
+					}
+				output.write(bytes, 0, read * rowLength);
+				numRows += read;
+			}
+		}
+
+		try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.WRITE)) {
+			ByteBuffer count = ByteBuffer.allocate(8);
+			count.putLong(numRows).flip();
+			channel.write(count, 12);
+		}
+		return numRows;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("convert")) {
+			long numRows = convertToBinary(Paths.get(args[1]), Paths.get(args[2]));
+			System.out.println("Wrote " + numRows + " rows to " + args[2]);
+			return;
+		}
+		if (args.length < 1) {
+			System.out.println("Usage: java OutOfCoreNearestNeighbour [reference csv or binary] [input|-] [output|-]");
+			return;
+		}
+
+		String inputPath = args.length > 1 ? args[1] : "-";
+		String outputPath = args.length > 2 ? args[2] : "-";
+
+		OutOfCoreNearestNeighbour scorer = new OutOfCoreNearestNeighbour(Paths.get(args[0]),
+				Integer.getInteger("ooc.blockRows", 4096));
+		StreamingClassifier.runFiles(scorer, Integer.getInteger("stream.chunkSize", 65536), inputPath, outputPath,
+				" against " + args[0]);
+	}
+}
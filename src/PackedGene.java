@@ -0,0 +1,150 @@
+/**
+ * PackedGene.java:
+ * Packed encoding of a genetic algorithm gene. Every element of a gene is a feature value
+ * between 0 and 16, so 5 bits are enough instead of a 32 bit int. Each 64 value section of
+ * the gene (one category) is packed into 6 longs of 12 values each, so a gene is 60 longs
+ * (480 bytes) rather than 640 ints (2560 bytes), ~5.3x smaller. Sections start on a long,
+ * so a section can be unpacked without touching the others.
+ *
+ * Whole ranges of values are copied between genes with masks (see copyRange), so crossover
+ * works on up to 12 values at once.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public final class PackedGene {
+
+	static final int BITS_PER_VALUE = 5;
+	static final int VALUES_PER_LONG = 12;
+	static final int SECTION_VALUES = 64; /* values in each section (one per category) */
+	static final int SECTION_LONGS = (SECTION_VALUES + VALUES_PER_LONG - 1) / VALUES_PER_LONG; /* 6 */
+	static final int NUM_SECTIONS = 10;
+	static final int GENE_VALUES = SECTION_VALUES * NUM_SECTIONS; /* 640 */
+	static final int GENE_LONGS = SECTION_LONGS * NUM_SECTIONS; /* 60 */
+
+	private static final long VALUE_MASK = (1L << BITS_PER_VALUE) - 1;
+
+	/* SPREAD[bits] has all 5 bits of field i set for every bit i set in the 12 bit number bits */
+	static final long[] SPREAD = new long[1 << VALUES_PER_LONG];
+
+	static {
+		for (int bits = 0; bits < SPREAD.length; bits++)
+			for (int field = 0; field < VALUES_PER_LONG; field++)
+				if ((bits & (1 << field)) != 0)
+					SPREAD[bits] |= VALUE_MASK << (field * BITS_PER_VALUE);
+	}
+
+	private PackedGene() {
+	}
+
+	/**
+	 * @return the position of the long holding a gene position
+	 */
+	static int wordOf(int genePos) {
+		int offset = genePos % SECTION_VALUES;
+		return genePos / SECTION_VALUES * SECTION_LONGS + offset / VALUES_PER_LONG;
+	}
+
+	/**
+	 * @return the bit position of a gene position within its long
+	 */
+	static int shiftOf(int genePos) {
+		return genePos % SECTION_VALUES % VALUES_PER_LONG * BITS_PER_VALUE;
+	}
+
+	/**
+	 * @return the gene position of the first value in a long
+	 */
+	static int firstValueOf(int word) {
+		return word / SECTION_LONGS * SECTION_VALUES + word % SECTION_LONGS * VALUES_PER_LONG;
+	}
+
+	/**
+	 * @return the number of values held in a long (12, or 4 in the last long of a section)
+	 */
+	static int valuesIn(int word) {
+		return Math.min(VALUES_PER_LONG, SECTION_VALUES - word % SECTION_LONGS * VALUES_PER_LONG);
+	}
+
+	/**
+	 * Packs an unpacked gene
+	 *
+	 * @param gene, the 640 values of the gene (0-16 each)
+	 * @return the packed gene
+	 */
+	public static long[] pack(int[] gene) {
+		long[] packed = new long[GENE_LONGS];
+		for (int genePos = 0; genePos < GENE_VALUES; genePos++)
+			packed[wordOf(genePos)] |= (long) gene[genePos] << shiftOf(genePos);
+		return packed;
+	}
+
+	/**
+	 * Unpacks a packed gene
+	 *
+	 * @param packed, the packed gene
+	 * @return the 640 values of the gene
+	 */
+	public static int[] unpack(long[] packed) {
+		int[] gene = new int[GENE_VALUES];
+		for (int genePos = 0; genePos < GENE_VALUES; genePos++)
+			gene[genePos] = get(packed, genePos);
+		return gene;
+	}
+
+	/**
+	 * Unpacks one section of a packed gene into an array
+	 *
+	 * @param packed, the packed gene
+	 * @param section, the section to unpack (0-9)
+	 * @param row, the array to fill; its first 64 values are set
+	 */
+	static void unpackSection(long[] packed, int section, int[] row) {
+		int word = section * SECTION_LONGS;
+		for (int pos = 0; pos < SECTION_VALUES; pos += VALUES_PER_LONG, word++) {
+			long bits = packed[word];
+			int end = Math.min(pos + VALUES_PER_LONG, SECTION_VALUES);
+			for (int rowPos = pos; rowPos < end; rowPos++, bits >>>= BITS_PER_VALUE)
+				row[rowPos] = (int) (bits & VALUE_MASK);
+		}
+	}
+
+	/**
+	 * @return the value at a gene position
+	 */
+	static int get(long[] packed, int genePos) {
+		return (int) (packed[wordOf(genePos)] >>> shiftOf(genePos) & VALUE_MASK);
+	}
+
+	/**
+	 * Sets the value at a gene position
+	 */
+	static void set(long[] packed, int genePos, int value) {
+		int word = wordOf(genePos), shift = shiftOf(genePos);
+		packed[word] = packed[word] & ~(VALUE_MASK << shift) | (long) value << shift;
+	}
+
+	/**
+	 * Copies the values in a range of gene positions from one gene to another, a long at a time
+	 *
+	 * @param from, the gene to copy from
+	 * @param to, the gene to copy into
+	 * @param start, the first gene position to copy
+	 * @param end, the gene position after the last one to copy
+	 */
+	static void copyRange(long[] from, long[] to, int start, int end) {
+		if (start >= end)
+			return;
+
+		for (int word = wordOf(start); word <= wordOf(end - 1); word++) {
+			int first = firstValueOf(word);
+			int fromField = Math.max(start, first) - first;
+			int toField = Math.min(end, first + valuesIn(word)) - first;
+
+			/* fields fromField to toField - 1 of this long are in the range */
+			long mask = SPREAD[((1 << toField) - 1) & ~((1 << fromField) - 1)];
+			to[word] = to[word] & ~mask | from[word] & mask;
+		}
+	}
+}
@@ -0,0 +1,440 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * PackedGeneticAlgorithm.java:
+ * The genetic algorithm with packed genes (see PackedGene): each gene is 60 longs instead of
+ * 640 ints, ~5.3x less memory for the population, and crossover and mutation work on the
+ * packed genes directly (see CrossoverStrategy.crossoverPacked and MutationStrategy.mutatePacked).
+ * Selection, replacement and stopping are the same as in GeneticAlgorithm and use the same
+ * configuration (-Dga.packed=true chooses this class in Main).
+ *
+ * The fitness loop uses SWAR (SIMD within a register) arithmetic. The compared feature values
+ * of each training row are packed 5 to a long in 12 bit lanes, and each gene section is
+ * packed the same way in reverse order. Multiplying a row long by a section long then leaves
+ * the dot product of their 5 values in the top lane: every lane of the product is the sum
+ * of at most 5 products of values up to 16 (at most 1280), so no lane carries into the
+ * next. The squared distance is |row|^2 + |section|^2 - 2 * dot, with |row|^2 worked out once
+ * per row and |section|^2 once per section, so each row needs 13 multiplications instead of 63.
+ * A packed row is 13 longs (104 bytes) in one array, rather than a 65 int array of its own.
+ *
+ * Squared distances give the same ordering as the square-rooted distance, so every gene gets
+ * exactly the fitness it would get from GeneticAlgorithm (including comparing only the first
+ * 63 values of each section, and keeping the minimum distance between sections).
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class PackedGeneticAlgorithm implements FoldEvaluator {
+
+	/* as in Utility.euclideanDistance, the last of the 64 values in a row or section is not compared */
+	private static final int NUM_COMPARED = PackedGene.SECTION_VALUES - 1;
+
+	private static final int LANE_BITS = 12; /* bits per lane; the largest sum in a lane (5 * 16 * 16) needs 11 */
+	private static final int LANES = 5; /* lanes in each long */
+	private static final int DOT_LANE_SHIFT = LANE_BITS * (LANES - 1); /* the lane of a product that holds the dot product */
+	private static final int LANE_MASK = (1 << LANE_BITS) - 1;
+	static final int ROW_LONGS = (NUM_COMPARED + LANES - 1) / LANES; /* 13 longs for 63 values */
+
+	/**
+	 * A dataset packed for the SWAR fitness loop
+	 */
+	static class PackedDataset {
+		final long[] lanes; /* ROW_LONGS longs for each row, one row after another */
+		final int[] squaredNorms; /* sum of the squares of the compared values of each row */
+		final int[] categories;
+		final int numRows;
+
+		PackedDataset(int[][] dataset) {
+			this.numRows = dataset.length;
+			this.lanes = new long[numRows * ROW_LONGS];
+			this.squaredNorms = new int[numRows];
+			this.categories = new int[numRows];
+
+			for (int row = 0; row < numRows; row++) {
+				for (int pos = 0; pos < NUM_COMPARED; pos++) {
+					int value = dataset[row][pos];
+					if (value < 0 || value > MutationStrategy.FEATURE_VALUE_MAX)
+						throw new IllegalArgumentException("Row " + row + " has a value outside 0-"
+								+ MutationStrategy.FEATURE_VALUE_MAX + ": " + value);
+					lanes[row * ROW_LONGS + pos / LANES] |= (long) value << (pos % LANES * LANE_BITS);
+					squaredNorms[row] += value * value;
+				}
+				categories[row] = dataset[row][dataset[row].length - 1];
+			}
+		}
+	}
+
+	private final GeneticAlgorithmConfig config; /* population size, generations, strategies etc. */
+	private Random random; /* random number generator used by all of the strategies; restored when resuming */
+
+	long[][] population; /* the current population of packed genes */
+	int[] fitnesses; /* fitness of each gene in the population, calculated once per gene */
+
+	/* one single-element array per population position, passed to the selection strategy in place of
+	   the genes so that the strategies written for int genes can select packed ones */
+	private int[][] handles;
+
+	ConvergenceMonitor monitor; /* best/mean fitness history and stopping point for the latest fold */
+
+	private Checkpoint checkpoint; /* checkpoint of the latest fold, null if checkpoints are disabled */
+	private int resumedFrom; /* generation the latest fold resumed from, -1 if it started from scratch */
+
+	private EvaluationSink sink; /* records the prediction for each test row, if set */
+	private int sinkFirstRow;
+
+	/**
+	 * Creates a packed genetic algorithm with the given configuration
+	 *
+	 * @param config, the parameters and strategies to use
+	 */
+	public PackedGeneticAlgorithm(GeneticAlgorithmConfig config) {
+		this.config = config;
+		this.random = config.seed == null ? new Random() : new Random(config.seed);
+	}
+
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		PackedDataset packedTrainSet = new PackedDataset(trainSet);
+		checkpoint = config.checkpoint(trainSet);
+		Checkpoint.Saved saved = GeneticAlgorithm.readCheckpoint(checkpoint);
+		boolean stopped;
+
+		/* the max fitness is one point for every category in every section of 10 rows (see fitness());
+		   the monitor is made first so that ga.timeBudgetMillis also counts the initial population */
+		monitor = new ConvergenceMonitor(config, 10 * ((trainSet.length + 9) / 10));
+
+		if (saved == null) {
+			initialisePopulation(trainSet, packedTrainSet);
+			stopped = monitor.record(fitnesses);
+			resumedFrom = -1;
+		} else {
+			stopped = restoreState(saved);
+			resumedFrom = saved.step;
+		}
+
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TRAIN);
+
+		while (!stopped) {
+			long generationStart = Metrics.ENABLED ? System.nanoTime() : 0;
+			nextGeneration(packedTrainSet);
+			if (Metrics.ENABLED)
+				Metrics.GENERATIONS.record(System.nanoTime() - generationStart);
+
+			stopped = monitor.record(fitnesses);
+			if (checkpoint != null && !stopped && checkpoint.due(monitor.getStopGeneration()))
+				writeCheckpoint(false);
+		}
+
+		scope.end(trainSet.length);
+
+		/* the same as GeneticAlgorithm: only a seeded run that did not run out of time keeps its
+		   finished checkpoint */
+		if (checkpoint != null && (saved == null || !saved.finished)) {
+			if (config.seed != null && monitor.getStopReason() != ConvergenceMonitor.StopReason.TIME_BUDGET)
+				writeCheckpoint(true);
+			else
+				deleteCheckpoint();
+		}
+
+		return testPopulation(testSet);
+	}
+
+	@Override
+	public String foldSummary() {
+		if (monitor == null)
+			return null;
+		if (checkpoint == null)
+			return monitor.summary();
+		return monitor.summary() + (resumedFrom >= 0 ? ", resumed from generation " + resumedFrom : "") + ", "
+				+ checkpoint.summary();
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		this.sink = sink;
+		this.sinkFirstRow = firstRow;
+		sink.setPredictionRule(GeneticAlgorithm.PREDICTION_RULE);
+	}
+
+	/**
+	 * Generates an initial population and measures the fitness of every gene. The genes are made
+	 * by SeedingStrategy in the same way as GeneticAlgorithm, so a seed gives the same first population.
+	 *
+	 * @param trainSet, the training set to seed from
+	 * @param packedTrainSet, the same training set packed, to measure fitness against
+	 */
+	void initialisePopulation(int[][] trainSet, PackedDataset packedTrainSet) {
+		int[][] genes = SeedingStrategy.initialPopulation(config, trainSet, random);
+		population = new long[genes.length][];
+		fitnesses = new int[genes.length];
+		handles = new int[genes.length][];
+
+		for (int currentGene = 0; currentGene < genes.length; currentGene++) {
+			population[currentGene] = PackedGene.pack(genes[currentGene]);
+			handles[currentGene] = new int[] { currentGene };
+		}
+
+		evaluatePopulation(packedTrainSet, 0, population.length);
+	}
+
+	/**
+	 * Helper function that restores the population, fitnesses, random number generator and fitness
+	 * history from a checkpoint. The genes are stored unpacked, the same as GeneticAlgorithm's.
+	 *
+	 * @param saved, the checkpoint to resume from
+	 * @return true if the run had already stopped when the checkpoint was written
+	 */
+	private boolean restoreState(Checkpoint.Saved saved) {
+		try {
+			int[][] genes = Checkpoint.readGenes(saved.in);
+			population = new long[genes.length][];
+			fitnesses = new int[genes.length];
+			handles = new int[genes.length][];
+			for (int pos = 0; pos < genes.length; pos++) {
+				population[pos] = PackedGene.pack(genes[pos]);
+				fitnesses[pos] = saved.in.readInt();
+				handles[pos] = new int[] { pos };
+			}
+			random = Checkpoint.readRandom(saved.in);
+			monitor.readFrom(saved.in);
+		} catch (IOException e) {
+			throw new IllegalStateException("Checkpoint " + checkpoint.path() + " could not be restored", e);
+		}
+		return saved.finished;
+	}
+
+	/**
+	 * Helper function that writes the state of the run to its checkpoint, reporting (and carrying on) if it cannot
+	 *
+	 * @param finished, true if the run has stopped
+	 */
+	private void writeCheckpoint(boolean finished) {
+		try {
+			checkpoint.write(monitor.getStopGeneration(), finished, out -> {
+				int[][] genes = new int[population.length][];
+				for (int pos = 0; pos < population.length; pos++)
+					genes[pos] = PackedGene.unpack(population[pos]);
+				Checkpoint.writeGenes(out, genes);
+				for (int fitness : fitnesses)
+					out.writeInt(fitness);
+				Checkpoint.writeRandom(out, random);
+				monitor.writeTo(out);
+			});
+		} catch (IOException e) {
+			System.err.println("Could not write checkpoint " + checkpoint.path() + ": " + e);
+		}
+	}
+
+	/**
+	 * Helper function that deletes the checkpoint of a finished run
+	 */
+	private void deleteCheckpoint() {
+		try {
+			checkpoint.delete();
+		} catch (IOException e) {
+			System.err.println("Could not delete checkpoint " + checkpoint.path() + ": " + e);
+		}
+	}
+
+	/**
+	 * Calculates the fitness of a range of genes in the population
+	 */
+	private void evaluatePopulation(PackedDataset dataset, int start, int end) {
+		for (int pos = start; pos < end; pos++)
+			fitnesses[pos] = fitness(population[pos], dataset);
+	}
+
+	/**
+	 * Gene fitness evaluation function; the same as GeneticAlgorithm.fitness on packed genes and rows
+	 *
+	 * @param gene, the packed gene to be evaluated
+	 * @param dataset, the packed dataset to test the gene against
+	 * @return the fitness score for the given gene
+	 */
+	int fitness(long[] gene, PackedDataset dataset) {
+		int fitness = 0;
+		int min = Integer.MAX_VALUE; /* smallest squared distance so far; like GeneticAlgorithm, never reset */
+		int minPos = -1;
+		int[] sectionRow = new int[PackedGene.SECTION_VALUES];
+		long[] reversed = new long[ROW_LONGS];
+		long[] lanes = dataset.lanes;
+
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.FITNESS);
+
+		for (int category = 0; category < PackedGene.NUM_SECTIONS; category++) {
+
+			/* pack the section with the lanes of each long in reverse order, so that multiplying
+			   it by a row long lines each value up with the row value in the same position */
+			PackedGene.unpackSection(gene, category, sectionRow);
+			Arrays.fill(reversed, 0);
+			int sectionNorm = 0;
+			for (int pos = 0; pos < NUM_COMPARED; pos++) {
+				reversed[pos / LANES] |= (long) sectionRow[pos] << ((LANES - 1 - pos % LANES) * LANE_BITS);
+				sectionNorm += sectionRow[pos] * sectionRow[pos];
+			}
+
+			for (int datasetSection = 0; datasetSection < dataset.numRows; datasetSection += 10) {
+				int sectionEnd = Math.min(datasetSection + 10, dataset.numRows); /* the last section may be shorter */
+				for (int datasetPos = datasetSection; datasetPos < sectionEnd; datasetPos++) {
+
+					int offset = datasetPos * ROW_LONGS;
+					int dot = 0;
+					for (int word = 0; word < ROW_LONGS; word++)
+						dot += (int) (lanes[offset + word] * reversed[word] >>> DOT_LANE_SHIFT) & LANE_MASK;
+
+					int squaredDist = dataset.squaredNorms[datasetPos] + sectionNorm - 2 * dot;
+					if (squaredDist < min) {
+						min = squaredDist;
+						minPos = datasetPos;
+					}
+				}
+
+				if (category == dataset.categories[minPos])
+					fitness++;
+			}
+		}
+
+		if (Metrics.ENABLED)
+			Metrics.DISTANCES.add((long) PackedGene.NUM_SECTIONS * dataset.numRows);
+		scope.end(dataset.numRows);
+		return fitness;
+	}
+
+	/**
+	 * Measures every gene against the test set and returns the best fitness as the number of correct categorisations
+	 *
+	 * @param testSet, the test set
+	 * @return the number of correct categorisations
+	 */
+	private int testPopulation(int[][] testSet) {
+		PackedDataset dataset = new PackedDataset(testSet);
+		int bestFitness = 0;
+		int bestPos = 0;
+
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.TEST);
+
+		for (int pos = 0; pos < population.length; pos++) {
+			int currentFitness = fitness(population[pos], dataset);
+			if (currentFitness > bestFitness) {
+				bestFitness = currentFitness;
+				bestPos = pos;
+			}
+		}
+
+		if (sink != null)
+			recordPredictions(population[bestPos], testSet);
+
+		scope.end(testSet.length);
+		if (Metrics.ENABLED)
+			Metrics.ROWS_CATEGORISED.add(testSet.length);
+
+		return bestFitness;
+	}
+
+	/**
+	 * Helper function that records a prediction for every row of the test set, using each section of
+	 * the best gene as the prototype of its category (see GeneticAlgorithm.recordPredictions)
+	 */
+	private void recordPredictions(long[] gene, int[][] dataset) {
+		int[][] prototypes = new int[PackedGene.NUM_SECTIONS][PackedGene.SECTION_VALUES];
+		for (int category = 0; category < PackedGene.NUM_SECTIONS; category++)
+			PackedGene.unpackSection(gene, category, prototypes[category]);
+
+		int lastIndex = dataset[0].length - 1;
+		for (int datasetPos = 0; datasetPos < dataset.length; datasetPos++) {
+			double min = Double.MAX_VALUE;
+			int predicted = 0;
+
+			for (int category = 0; category < PackedGene.NUM_SECTIONS; category++) {
+				double currentDist = Utility.euclideanDistance(prototypes[category], dataset[datasetPos]);
+				if (currentDist < min) {
+					min = currentDist;
+					predicted = category;
+				}
+			}
+			sink.record(sinkFirstRow + datasetPos, predicted, dataset[datasetPos][lastIndex]);
+		}
+	}
+
+	/**
+	 * Runs one generation, replacing part or all of the population with children as set by the replacement mode
+	 *
+	 * @param dataset, the packed training set
+	 */
+	void nextGeneration(PackedDataset dataset) {
+		int childrenStart = 0; /* position of the first child added in this generation */
+
+		switch (config.replacement) {
+		case GENERATIONAL:
+			childrenStart = 0;
+			break;
+
+		case ELITIST:
+			sortByFitness();
+			childrenStart = config.eliteCount;
+			break;
+
+		case STEADY_STATE:
+			sortByFitness();
+			childrenStart = population.length - config.steadyStateChildren;
+			break;
+		}
+
+		long[][] children = breedChildren(population.length - childrenStart);
+		for (int pos = childrenStart, childPos = 0; pos < population.length; pos++, childPos++)
+			population[pos] = children[childPos];
+
+		evaluatePopulation(dataset, childrenStart, population.length);
+	}
+
+	/**
+	 * Selects parents from the current population and breeds the given number of children
+	 *
+	 * @param numChildren, the number of children needed
+	 * @return the new children, already mutated
+	 */
+	private long[][] breedChildren(int numChildren) {
+		int numPairs = (numChildren + 1) / 2;
+		int[][] parents = new int[numPairs * 2][];
+		long[][] children = new long[numPairs * 2][];
+
+		/* the selection strategy picks handles; each handle holds the position of the selected gene */
+		config.selection.select(handles, fitnesses, parents, random);
+
+		for (int parentPos = 0; parentPos < parents.length; parentPos += 2) {
+			long[] parent1 = population[parents[parentPos][0]], parent2 = population[parents[parentPos + 1][0]];
+			children[parentPos] = new long[PackedGene.GENE_LONGS];
+			children[parentPos + 1] = new long[PackedGene.GENE_LONGS];
+
+			config.crossover.crossoverPacked(parent1, parent2, children[parentPos], children[parentPos + 1], random);
+
+			config.mutation.mutatePacked(children[parentPos], config.mutationRate, random);
+			config.mutation.mutatePacked(children[parentPos + 1], config.mutationRate, random);
+		}
+
+		return children;
+	}
+
+	/**
+	 * Sorts the population (and the fitness of each gene) from highest to lowest fitness, as in GeneticAlgorithm
+	 */
+	private void sortByFitness() {
+		for (int pos = 1; pos < population.length; pos++) {
+			long[] gene = population[pos];
+			int fitness = fitnesses[pos];
+			int insertPos = pos - 1;
+
+			while (insertPos >= 0 && fitnesses[insertPos] < fitness) {
+				population[insertPos + 1] = population[insertPos];
+				fitnesses[insertPos + 1] = fitnesses[insertPos];
+				insertPos--;
+			}
+
+			population[insertPos + 1] = gene;
+			fitnesses[insertPos + 1] = fitness;
+		}
+	}
+}
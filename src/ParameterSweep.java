@@ -0,0 +1,523 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParameterSweep.java:
+ * Hyperparameter sweep engine for the GA and the MLP. Takes a search space of
+ * parameters (the same keys as the -Dga.* and -Dmlp.* properties), builds either
+ * every combination (grid search) or a number of random samples (random search),
+ * and runs repeated two fold tests of every configuration in parallel. Each
+ * repetition of each trial has its own seed, so results can be reproduced.
+ *
+ * Successive halving can be turned on to stop bad configurations early; every
+ * configuration starts with a small budget of generations/epochs, and only the best
+ * 1/eta of them move on to the next rung with eta times the budget.
+ *
+ * A configuration that the algorithm's config rejects (e.g. an odd GA population size drawn
+ * from a range) does not stop the sweep: random search draws another one in its place, and
+ * a configuration that is still invalid (or any invalid grid combination) is not run and is
+ * written to the results with the reason.
+ *
+ * Usage: java ParameterSweep ga|mlp "ga.populationSize=20,40,60;ga.mutationRate=0.5:5.0"
+ * with optional -Dsweep.mode=grid|random, -Dsweep.samples, -Dsweep.repetitions, -Dsweep.halving=true,
+ * -Dsweep.eta, -Dsweep.seed, -Dsweep.threads and -Dsweep.output (default sweep_results.csv)
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ParameterSweep {
+
+	private static final int MAX_RESAMPLES = 100; /* attempts to draw a valid random configuration */
+
+	/**
+	 * A parameter in the search space; either a list of values or a continuous range (min:max)
+	 */
+	static class Parameter {
+		final String name;
+		final String[] values; /* null for a range */
+		final double min, max; /* bounds of a range */
+		final boolean integerRange; /* true if both bounds of the range are integers */
+
+		Parameter(String name, String definition) {
+			this.name = name;
+			if (definition.contains(":")) {
+				String[] bounds = definition.split(":");
+				this.values = null;
+				this.min = Double.parseDouble(bounds[0]);
+				this.max = Double.parseDouble(bounds[1]);
+				this.integerRange = !bounds[0].contains(".") && !bounds[1].contains(".");
+			} else {
+				this.values = definition.split(",");
+				this.min = this.max = 0;
+				this.integerRange = false;
+			}
+		}
+
+		/**
+		 * @return a random value from the list, or a random value within the range
+		 */
+		String sample(Random random) {
+			if (values != null)
+				return values[random.nextInt(values.length)].trim();
+			if (integerRange)
+				return Long.toString((long) min + random.nextInt((int) (max - min) + 1));
+			return Double.toString(min + random.nextDouble() * (max - min));
+		}
+	}
+
+	/**
+	 * One configuration in the sweep and the results from its repetitions
+	 */
+	static class Trial {
+		final int id;
+		final Properties parameters; /* only the parameters from the search space */
+		int rung = 0; /* successive halving rung, 0 if halving is off */
+		int budget; /* generations (GA) or max epochs (MLP) for this rung */
+		double[] accuracies; /* accuracy of each repetition */
+		long[] runtimes; /* running time of each repetition in nanoseconds */
+		String invalid; /* why the configuration was rejected, null if it is valid */
+
+		Trial(int id, Properties parameters) {
+			this.id = id;
+			this.parameters = parameters;
+		}
+
+		Trial(Trial previous, int rung, int budget) {
+			this(previous.id, previous.parameters);
+			this.invalid = previous.invalid;
+			this.rung = rung;
+			this.budget = budget;
+		}
+
+		double meanAccuracy() {
+			double sum = 0.0;
+			for (double accuracy : accuracies)
+				sum += accuracy;
+			return sum / accuracies.length;
+		}
+
+		/**
+		 * @return the sample variance of the accuracies (0 for a single repetition)
+		 */
+		double accuracyVariance() {
+			if (accuracies.length < 2)
+				return 0.0;
+			double mean = meanAccuracy(), sum = 0.0;
+			for (double accuracy : accuracies)
+				sum += (accuracy - mean) * (accuracy - mean);
+			return sum / (accuracies.length - 1);
+		}
+
+		double meanRuntimeMillis() {
+			long sum = 0;
+			for (long runtime : runtimes)
+				sum += runtime;
+			return sum / (double) runtimes.length / 1_000_000.0;
+		}
+	}
+
+	private final String algorithm; /* "ga" or "mlp" */
+	private final List<Parameter> searchSpace;
+	private final Properties baseProperties; /* properties that every trial starts from */
+	private final int[][] dataset1, dataset2;
+	private final ExecutorService executor;
+	private final long baseSeed; /* the seed of each repetition is derived from this, the trial id and repetition */
+
+	/**
+	 * @param algorithm, the algorithm to sweep ("ga" or "mlp")
+	 * @param searchSpace, the parameters to sweep over
+	 * @param baseProperties, properties that every trial starts from (trial parameters override these)
+	 * @param dataset1, the first dataset
+	 * @param dataset2, the second dataset
+	 * @param executor, the executor to run trials on
+	 * @param baseSeed, seed used to derive the seed of every repetition
+	 */
+	public ParameterSweep(String algorithm, List<Parameter> searchSpace, Properties baseProperties, int[][] dataset1,
+			int[][] dataset2, ExecutorService executor, long baseSeed) {
+		if (!algorithm.equals("ga") && !algorithm.equals("mlp"))
+			throw new IllegalArgumentException("Algorithm must be ga or mlp: " + algorithm);
+
+		this.algorithm = algorithm;
+		this.searchSpace = searchSpace;
+		this.baseProperties = baseProperties;
+		this.dataset1 = dataset1;
+		this.dataset2 = dataset2;
+		this.executor = executor;
+		this.baseSeed = baseSeed;
+	}
+
+	/**
+	 * Parses a search space, e.g. "ga.populationSize=20,40,60;ga.mutationRate=0.5:5.0"
+	 *
+	 * @param spec, parameters separated by semicolons; each one is a list of values or a min:max range
+	 * @return the parameters in the search space
+	 */
+	public static List<Parameter> parseSearchSpace(String spec) {
+		List<Parameter> space = new ArrayList<>();
+		for (String definition : spec.split(";")) {
+			if (definition.trim().isEmpty())
+				continue;
+
+			String[] nameAndValues = definition.split("=", 2);
+			if (nameAndValues.length != 2)
+				throw new IllegalArgumentException("Parameter must be name=values: " + definition);
+			space.add(new Parameter(nameAndValues[0].trim(), nameAndValues[1].trim()));
+		}
+		return space;
+	}
+
+	/**
+	 * @return one trial for every combination of parameter values (grid search)
+	 */
+	public List<Trial> gridTrials() {
+		List<Properties> combinations = new ArrayList<>();
+		combinations.add(new Properties());
+
+		for (Parameter parameter : searchSpace) {
+			if (parameter.values == null)
+				throw new IllegalArgumentException("Grid search needs a list of values for " + parameter.name);
+
+			/* every existing combination is extended with each value of this parameter */
+			List<Properties> extended = new ArrayList<>();
+			for (Properties combination : combinations) {
+				for (String value : parameter.values) {
+					Properties next = (Properties) combination.clone();
+					next.setProperty(parameter.name, value.trim());
+					extended.add(next);
+				}
+			}
+			combinations = extended;
+		}
+
+		List<Trial> trials = new ArrayList<>();
+		for (Properties combination : combinations) {
+			Trial trial = new Trial(trials.size(), combination);
+			trial.invalid = validate(combination);
+			trials.add(trial);
+		}
+		return trials;
+	}
+
+	/**
+	 * @param numSamples, the number of random configurations
+	 * @return trials with randomly chosen parameter values (random search); an invalid configuration
+	 *         is drawn again, up to MAX_RESAMPLES times
+	 */
+	public List<Trial> randomTrials(int numSamples) {
+		Random random = new Random(baseSeed);
+		List<Trial> trials = new ArrayList<>();
+
+		for (int sample = 0; sample < numSamples; sample++) {
+			Properties parameters;
+			String invalid;
+			int attempts = 0;
+			do {
+				parameters = new Properties();
+				for (Parameter parameter : searchSpace)
+					parameters.setProperty(parameter.name, parameter.sample(random));
+				invalid = validate(parameters);
+			} while (invalid != null && ++attempts < MAX_RESAMPLES);
+
+			Trial trial = new Trial(sample, parameters);
+			trial.invalid = invalid;
+			trials.add(trial);
+		}
+		return trials;
+	}
+
+	/**
+	 * Helper function that checks a configuration by building the algorithm's config from it
+	 *
+	 * @return why the config rejected the configuration, or null if it is valid
+	 */
+	private String validate(Properties parameters) {
+		Properties props = new Properties();
+		props.putAll(baseProperties);
+		props.putAll(parameters);
+		try {
+			if (algorithm.equals("ga"))
+				GeneticAlgorithmConfig.fromProperties(props);
+			else
+				MultilayerPerceptronConfig.fromProperties(props);
+			return null;
+		} catch (IllegalArgumentException e) {
+			return e.getMessage() != null ? e.getMessage() : e.toString();
+		}
+	}
+
+	/**
+	 * Runs every trial with the full budget
+	 *
+	 * @param trials, the trials to run
+	 * @param repetitions, the number of two fold tests for each trial
+	 * @return the finished trials
+	 */
+	public List<Trial> run(List<Trial> trials, int repetitions) throws InterruptedException, ExecutionException {
+		for (Trial trial : trials)
+			if (trial.invalid == null)
+				trial.budget = fullBudget(trial);
+
+		runRung(trials, repetitions);
+		return trials;
+	}
+
+	/**
+	 * Runs the trials with successive halving. The first rung gives every trial 1/eta^(rungs-1) of
+	 * the full budget; after each rung only the best 1/eta of the trials move on to the next rung with
+	 * eta times the budget, so that the last rung runs the best trials with the full budget.
+	 *
+	 * @param trials, the trials to run
+	 * @param repetitions, the number of two fold tests for each trial in each rung
+	 * @param eta, the factor by which trials are cut and budgets grow after each rung
+	 * @return every trial from every rung
+	 */
+	public List<Trial> runWithHalving(List<Trial> trials, int repetitions, int eta)
+			throws InterruptedException, ExecutionException {
+		if (eta < 2)
+			throw new IllegalArgumentException("eta must be at least 2: " + eta);
+
+		/* invalid configurations are recorded once and never run */
+		List<Trial> allResults = new ArrayList<>();
+		List<Trial> current = new ArrayList<>();
+		for (Trial trial : trials)
+			(trial.invalid == null ? current : allResults).add(trial);
+		runRung(allResults, repetitions);
+
+		/* number of rungs needed to cut the trials down to (at least) one */
+		int numRungs = 1;
+		for (int remaining = current.size(); remaining > 1; remaining = (remaining + eta - 1) / eta)
+			numRungs++;
+
+		for (int rung = 0; rung < numRungs; rung++) {
+			double fraction = Math.pow(eta, rung - (numRungs - 1));
+
+			List<Trial> rungTrials = new ArrayList<>();
+			for (Trial trial : current)
+				rungTrials.add(new Trial(trial, rung, Math.max(1, (int) Math.round(fullBudget(trial) * fraction))));
+
+			runRung(rungTrials, repetitions);
+			allResults.addAll(rungTrials);
+
+			/* keep the best 1/eta of this rung for the next one */
+			rungTrials.removeIf(trial -> trial.invalid != null);
+			if (rungTrials.isEmpty())
+				break;
+			rungTrials.sort(Comparator.comparingDouble(Trial::meanAccuracy).reversed());
+			current = rungTrials.subList(0, Math.max(1, (rungTrials.size() + eta - 1) / eta));
+		}
+		return allResults;
+	}
+
+	/**
+	 * Helper function that runs every repetition of every valid trial in parallel and waits for them all to
+	 * finish. An invalid trial gets no results. If a repetition is rejected by the algorithm's config, its
+	 * trial is marked invalid rather than stopping the sweep.
+	 */
+	private void runRung(List<Trial> trials, int repetitions) throws InterruptedException, ExecutionException {
+		List<Future<double[]>> futures = new ArrayList<>();
+
+		for (Trial trial : trials) {
+			if (trial.invalid != null) {
+				trial.accuracies = new double[0];
+				trial.runtimes = new long[0];
+				continue;
+			}
+			trial.accuracies = new double[repetitions];
+			trial.runtimes = new long[repetitions];
+
+			for (int repetition = 0; repetition < repetitions; repetition++) {
+				Properties props = trialProperties(trial, repetition);
+				futures.add(executor.submit(() -> runTwoFold(props)));
+			}
+		}
+
+		/* results come back in the same order as they were submitted */
+		int futurePos = 0;
+		for (Trial trial : trials) {
+			if (trial.accuracies.length == 0)
+				continue;
+			for (int repetition = 0; repetition < repetitions; repetition++) {
+				try {
+					double[] result = futures.get(futurePos++).get();
+					trial.accuracies[repetition] = result[0];
+					trial.runtimes[repetition] = (long) result[1];
+				} catch (ExecutionException e) {
+					if (!(e.getCause() instanceof IllegalArgumentException))
+						throw e;
+					trial.invalid = e.getCause().getMessage();
+				}
+			}
+			if (trial.invalid != null) {
+				trial.accuracies = new double[0];
+				trial.runtimes = new long[0];
+			}
+		}
+	}
+
+	/**
+	 * Helper function that builds the properties for one repetition of a trial: the base properties,
+	 * overridden by the trial's parameters, its budget and the seed for this repetition
+	 */
+	private Properties trialProperties(Trial trial, int repetition) {
+		Properties props = new Properties();
+		props.putAll(baseProperties);
+		props.putAll(trial.parameters);
+
+		props.setProperty(budgetKey(), Integer.toString(trial.budget));
+		props.setProperty(algorithm + ".seed", Long.toString(baseSeed + 1_000_003L * trial.id + repetition));
+		return props;
+	}
+
+	/**
+	 * Helper function that runs one two fold test without printing anything
+	 *
+	 * @return an array containing the accuracy (%) and running time (ns)
+	 */
+	private double[] runTwoFold(Properties props) {
+		long startTime = System.nanoTime();
+
+		FoldEvaluator evaluator;
+		if (algorithm.equals("ga")) {
+			GeneticAlgorithmConfig gaConfig = GeneticAlgorithmConfig.fromProperties(props);
+			evaluator = gaConfig.packed ? new PackedGeneticAlgorithm(gaConfig) : new GeneticAlgorithm(gaConfig);
+		} else
+			evaluator = new MultilayerPerceptron(MultilayerPerceptronConfig.fromProperties(props));
+
+		int totalCorrect = evaluator.trainAndTest(dataset1, dataset2) + evaluator.trainAndTest(dataset2, dataset1);
+		double accuracy = totalCorrect * 100.0 / (dataset1.length + dataset2.length);
+
+		return new double[] { accuracy, System.nanoTime() - startTime };
+	}
+
+	/**
+	 * @return the property that holds the budget for this algorithm (generations or max epochs)
+	 */
+	private String budgetKey() {
+		return algorithm.equals("ga") ? "ga.generations" : "mlp.maxEpochs";
+	}
+
+	/**
+	 * @return the full budget for a trial; its own value if it sets the budget, otherwise the base/default value
+	 */
+	private int fullBudget(Trial trial) {
+		String value = trial.parameters.getProperty(budgetKey(), baseProperties.getProperty(budgetKey()));
+		if (value != null)
+			return Integer.parseInt(value);
+		return algorithm.equals("ga") ? new GeneticAlgorithmConfig().generations
+				: new MultilayerPerceptronConfig().maxEpochs;
+	}
+
+	/**
+	 * Writes the results table as CSV; one row per trial (per rung if halving was used)
+	 *
+	 * @param trials, the finished trials
+	 * @param outputPath, the file to write to
+	 */
+	public void writeTable(List<Trial> trials, String outputPath) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.UTF_8)) {
+			writer.write("trial,rung");
+			for (Parameter parameter : searchSpace)
+				writer.write("," + parameter.name);
+			writer.write(",budget,repetitions,accuracyMean,accuracyVariance,runtimeMeanMs,invalid");
+			writer.newLine();
+
+			for (Trial trial : trials) {
+				writer.write(trial.id + "," + trial.rung);
+				for (Parameter parameter : searchSpace)
+					writer.write("," + trial.parameters.getProperty(parameter.name));
+				if (trial.invalid != null)
+					writer.write(",,0,,,,\"" + trial.invalid.replace("\"", "\"\"") + "\"");
+				else
+					writer.write("," + trial.budget + "," + trial.accuracies.length + "," + trial.meanAccuracy() + ","
+							+ trial.accuracyVariance() + "," + trial.meanRuntimeMillis() + ",");
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Prints the best trials, sorted by mean accuracy, to the console
+	 *
+	 * @param trials, the finished trials
+	 * @param count, the number of trials to print
+	 */
+	public static void printBest(List<Trial> trials, int count) {
+		List<Trial> sorted = new ArrayList<>();
+		for (Trial trial : trials)
+			if (trial.invalid == null)
+				sorted.add(trial);
+		sorted.sort(Comparator.comparingInt((Trial trial) -> trial.rung).reversed()
+				.thenComparing(Comparator.comparingDouble(Trial::meanAccuracy).reversed()));
+
+		for (int pos = 0; pos < Math.min(count, sorted.size()); pos++) {
+			Trial trial = sorted.get(pos);
+			System.out.println("Trial " + trial.id + " " + trial.parameters + " budget=" + trial.budget + ": "
+					+ Math.round(trial.meanAccuracy() * 100.0) / 100.0 + "% (variance "
+					+ Math.round(trial.accuracyVariance() * 100.0) / 100.0 + "), "
+					+ Math.round(trial.meanRuntimeMillis()) + " ms per run");
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: java ParameterSweep ga|mlp [\"name=v1,v2;name=min:max\"]");
+			return;
+		}
+
+		/* the datasets are read from the current directory, the same as Main */
+		int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+		int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+		if (dataset1.length == 0 || dataset2.length == 0)
+			return;
+
+		List<Parameter> searchSpace = parseSearchSpace(args.length > 1 ? args[1] : "");
+		int repetitions = Integer.getInteger("sweep.repetitions", 3);
+		int numThreads = Integer.getInteger("sweep.threads", Runtime.getRuntime().availableProcessors());
+		long seed = Long.getLong("sweep.seed", System.nanoTime());
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			ParameterSweep sweep = new ParameterSweep(args[0], searchSpace, System.getProperties(), dataset1,
+					dataset2, executor, seed);
+
+			List<Trial> trials = System.getProperty("sweep.mode", "grid").equals("random")
+					? sweep.randomTrials(Integer.getInteger("sweep.samples", 20))
+					: sweep.gridTrials();
+			System.out.println("Running " + trials.size() + " trials x " + repetitions + " repetitions on "
+					+ numThreads + " threads (seed " + seed + ")");
+
+			List<Trial> results = Boolean.getBoolean("sweep.halving")
+					? sweep.runWithHalving(trials, repetitions, Integer.getInteger("sweep.eta", 3))
+					: sweep.run(trials, repetitions);
+
+			String outputPath = System.getProperty("sweep.output", "sweep_results.csv");
+			sweep.writeTable(results, outputPath);
+
+			int numInvalid = 0;
+			for (Trial trial : results)
+				if (trial.invalid != null)
+					numInvalid++;
+			if (numInvalid > 0)
+				System.out.println(numInvalid + " invalid configurations were skipped (see the invalid column)");
+
+			printBest(results, 5);
+			System.out.println("Results written to " + outputPath);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
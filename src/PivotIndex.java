@@ -0,0 +1,321 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PivotIndex.java:
+ * Exact nearest neighbour search that skips most distance computations. The distance from
+ * every reference row to a pivot row is worked out once, and the reference rows are sorted
+ * by it. By the triangle inequality, a reference row r can be no closer to a query q than
+ * |d(q, pivot) - d(r, pivot)|, so a query starts at the reference rows whose pivot distance
+ * is closest to its own and scans outwards in both directions, stopping each direction as
+ * soon as that lower bound is larger than the best distance found so far. Further pivots
+ * give more lower bounds, which are checked before computing a full distance.
+ *
+ * With the zero row as the pivot this is the same as sorting the references by their norm.
+ * The reference rows themselves are not copied; only their order, pivot distances and
+ * original positions are stored. Ties are broken by the original position, so the result
+ * is always the same row that a full linear search would return.
+ *
+ * An index is never changed once built. withAppended and withoutPositions return a new index
+ * that shares the pivots and the existing rows' pivot distances, merging new rows into the
+ * sorted order rather than sorting again, so a reference set can change without rebuilding
+ * its index while queries keep using the old one.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class PivotIndex {
+
+	private static final double EPSILON = 1e-9; /* allows for rounding in the lower bounds */
+
+	private final int[][] sortedRows; /* reference rows sorted by distance to the first pivot */
+	private final int[] originalPos; /* position of each sorted row in the original reference set */
+	private final double[] keys; /* distance from each sorted row to the first pivot */
+	private final double[][] pivotDists; /* [sorted row][pivot] distances to the other pivots */
+	private final int[][] pivots;
+
+	private final LongAdder numQueries = new LongAdder();
+	private final LongAdder numDistances = new LongAdder(); /* full distances computed by queries */
+
+	/**
+	 * Builds the index
+	 *
+	 * @param referenceSet, the rows to search
+	 * @param numPivots, the number of pivots (1 or more)
+	 * @param pivotSelection, how pivots are chosen ("norm", "random" or "farthest")
+	 * @param random, the random number generator used to choose pivots
+	 */
+	public PivotIndex(int[][] referenceSet, int numPivots, String pivotSelection, Random random) {
+		this.pivots = selectPivots(referenceSet, numPivots, pivotSelection, random);
+
+		/* sort positions by the distance to the first pivot */
+		double[] firstPivotDists = new double[referenceSet.length];
+		Integer[] order = new Integer[referenceSet.length];
+		for (int pos = 0; pos < referenceSet.length; pos++) {
+			firstPivotDists[pos] = Utility.euclideanDistance(referenceSet[pos], pivots[0]);
+			order[pos] = pos;
+		}
+		Arrays.sort(order, (first, second) -> Double.compare(firstPivotDists[first], firstPivotDists[second]));
+
+		this.sortedRows = new int[referenceSet.length][];
+		this.originalPos = new int[referenceSet.length];
+		this.keys = new double[referenceSet.length];
+		this.pivotDists = new double[referenceSet.length][pivots.length - 1];
+
+		for (int pos = 0; pos < order.length; pos++) {
+			sortedRows[pos] = referenceSet[order[pos]];
+			originalPos[pos] = order[pos];
+			keys[pos] = firstPivotDists[order[pos]];
+			for (int pivot = 1; pivot < pivots.length; pivot++)
+				pivotDists[pos][pivot - 1] = Utility.euclideanDistance(sortedRows[pos], pivots[pivot]);
+		}
+	}
+
+	/**
+	 * Helper constructor for an index derived from another one
+	 */
+	private PivotIndex(int[][] pivots, int[][] sortedRows, int[] originalPos, double[] keys, double[][] pivotDists) {
+		this.pivots = pivots;
+		this.sortedRows = sortedRows;
+		this.originalPos = originalPos;
+		this.keys = keys;
+		this.pivotDists = pivotDists;
+	}
+
+	/**
+	 * Creates an index that also holds new rows, keeping the same pivots. Only the new rows' pivot
+	 * distances are computed; they are sorted among themselves and merged into the existing order.
+	 *
+	 * @param newRows, the rows to add
+	 * @param firstPos, the original position of the first new row (usually the current number of rows)
+	 * @return the new index
+	 */
+	public PivotIndex withAppended(int[][] newRows, int firstPos) {
+		Integer[] order = new Integer[newRows.length];
+		double[] newKeys = new double[newRows.length];
+		for (int pos = 0; pos < newRows.length; pos++) {
+			newKeys[pos] = Utility.euclideanDistance(newRows[pos], pivots[0]);
+			order[pos] = pos;
+		}
+		Arrays.sort(order, (first, second) -> Double.compare(newKeys[first], newKeys[second]));
+
+		int total = sortedRows.length + newRows.length;
+		int[][] mergedRows = new int[total][];
+		int[] mergedPos = new int[total];
+		double[] mergedKeys = new double[total];
+		double[][] mergedPivotDists = new double[total][];
+
+		/* merge the two sorted lists */
+		int oldPos = 0, newPos = 0;
+		for (int pos = 0; pos < total; pos++) {
+			if (newPos == newRows.length || (oldPos < sortedRows.length && keys[oldPos] <= newKeys[order[newPos]])) {
+				mergedRows[pos] = sortedRows[oldPos];
+				mergedPos[pos] = originalPos[oldPos];
+				mergedKeys[pos] = keys[oldPos];
+				mergedPivotDists[pos] = pivotDists[oldPos];
+				oldPos++;
+			} else {
+				int row = order[newPos++];
+				mergedRows[pos] = newRows[row];
+				mergedPos[pos] = firstPos + row;
+				mergedKeys[pos] = newKeys[row];
+				mergedPivotDists[pos] = new double[pivots.length - 1];
+				for (int pivot = 1; pivot < pivots.length; pivot++)
+					mergedPivotDists[pos][pivot - 1] = Utility.euclideanDistance(newRows[row], pivots[pivot]);
+			}
+		}
+		return new PivotIndex(pivots, mergedRows, mergedPos, mergedKeys, mergedPivotDists);
+	}
+
+	/**
+	 * Creates an index without some rows, keeping the same pivots. The original positions of the
+	 * remaining rows are shifted down to match the reference set with those rows removed.
+	 *
+	 * @param removed, whether each original position is removed (indexed by original position)
+	 * @return the new index
+	 */
+	public PivotIndex withoutPositions(boolean[] removed) {
+		/* new position of each remaining original position */
+		int[] shifted = new int[removed.length];
+		int numKept = 0;
+		for (int pos = 0; pos < removed.length; pos++)
+			shifted[pos] = removed[pos] ? -1 : numKept++;
+
+		int[][] keptRows = new int[numKept][];
+		int[] keptPos = new int[numKept];
+		double[] keptKeys = new double[numKept];
+		double[][] keptPivotDists = new double[numKept][];
+
+		int next = 0;
+		for (int pos = 0; pos < sortedRows.length; pos++) {
+			if (removed[originalPos[pos]])
+				continue;
+			keptRows[next] = sortedRows[pos];
+			keptPos[next] = shifted[originalPos[pos]];
+			keptKeys[next] = keys[pos];
+			keptPivotDists[next] = pivotDists[pos];
+			next++;
+		}
+		return new PivotIndex(pivots, keptRows, keptPos, keptKeys, keptPivotDists);
+	}
+
+	/**
+	 * @return the number of rows in the index
+	 */
+	public int size() {
+		return sortedRows.length;
+	}
+
+	/**
+	 * Helper function that chooses the pivot rows. "norm" uses the zero row first (so the first key
+	 * is each row's norm) and then random rows; "random" uses random reference rows; "farthest" starts
+	 * from a random row and repeatedly takes the row farthest from the pivots chosen so far, which
+	 * spreads the pivots out and tends to give the tightest lower bounds.
+	 */
+	private static int[][] selectPivots(int[][] referenceSet, int numPivots, String pivotSelection, Random random) {
+		if (numPivots < 1)
+			throw new IllegalArgumentException("Number of pivots must be at least 1: " + numPivots);
+
+		int rowLength = referenceSet.length == 0 ? MultilayerPerceptron.NUM_FEATURE_VALS + 1 : referenceSet[0].length;
+		int[][] pivots = new int[numPivots][];
+		if (referenceSet.length == 0) {
+			Arrays.fill(pivots, new int[rowLength]);
+			return pivots;
+		}
+
+		switch (pivotSelection) {
+		case "norm":
+			pivots[0] = new int[rowLength];
+			for (int pivot = 1; pivot < numPivots; pivot++)
+				pivots[pivot] = referenceSet[random.nextInt(referenceSet.length)];
+			break;
+
+		case "random":
+			for (int pivot = 0; pivot < numPivots; pivot++)
+				pivots[pivot] = referenceSet[random.nextInt(referenceSet.length)];
+			break;
+
+		case "farthest":
+			/* the first pivot is the row farthest from a random row, so it lies on the edge of the data */
+			double[] minDists = new double[referenceSet.length];
+			int[] start = referenceSet[random.nextInt(referenceSet.length)];
+			Arrays.fill(minDists, Double.MAX_VALUE);
+
+			for (int pivot = 0; pivot < numPivots; pivot++) {
+				int[] previous = pivot == 0 ? start : pivots[pivot - 1];
+				int farthestPos = 0;
+				for (int pos = 0; pos < referenceSet.length; pos++) {
+					minDists[pos] = Math.min(minDists[pos], Utility.euclideanDistance(referenceSet[pos], previous));
+					if (minDists[pos] > minDists[farthestPos])
+						farthestPos = pos;
+				}
+				pivots[pivot] = referenceSet[farthestPos];
+			}
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown pivot selection: " + pivotSelection);
+		}
+		return pivots;
+	}
+
+	/**
+	 * Finds the nearest reference row to a query row
+	 *
+	 * @param row, the query row
+	 * @return the position of the nearest row in the original reference set
+	 */
+	public int nearest(int[] row) {
+		if (sortedRows.length == 0)
+			return 0;
+
+		double queryKey = Utility.euclideanDistance(row, pivots[0]);
+		double[] queryPivotDists = new double[pivots.length - 1];
+		for (int pivot = 1; pivot < pivots.length; pivot++)
+			queryPivotDists[pivot - 1] = Utility.euclideanDistance(row, pivots[pivot]);
+
+		/* start at the first row whose key is not less than the query's key */
+		int low = 0, high = keys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle] < queryKey)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		double min = Double.MAX_VALUE;
+		int minPos = Integer.MAX_VALUE; /* original position of the nearest row */
+		long numComputed = 0;
+
+		int down = low - 1, up = low;
+		boolean scanDown = down >= 0, scanUp = up < keys.length;
+
+		while (scanDown || scanUp) {
+
+			/* take the next row from whichever direction has the closer key */
+			boolean goUp = scanUp && (!scanDown || keys[up] - queryKey <= queryKey - keys[down]);
+			int pos = goUp ? up++ : down--;
+
+			/* every row further in this direction has an even larger lower bound, so stop scanning it */
+			if (Math.abs(queryKey - keys[pos]) > min + EPSILON) {
+				if (goUp)
+					scanUp = false;
+				else
+					scanDown = false;
+				continue;
+			}
+			if (goUp)
+				scanUp = up < keys.length;
+			else
+				scanDown = down >= 0;
+
+			if (prunedByPivots(pos, queryPivotDists, min))
+				continue;
+
+			double currentDist = Utility.euclideanDistance(row, sortedRows[pos]);
+			numComputed++;
+
+			/* on a tie keep the row that comes first in the reference set, as a linear search would */
+			if (currentDist < min || (currentDist == min && originalPos[pos] < minPos)) {
+				min = currentDist;
+				minPos = originalPos[pos];
+			}
+		}
+
+		numQueries.increment();
+		numDistances.add(numComputed);
+		return minPos;
+	}
+
+	/**
+	 * Helper function that checks the lower bounds from the other pivots
+	 */
+	private boolean prunedByPivots(int pos, double[] queryPivotDists, double min) {
+		double[] rowPivotDists = pivotDists[pos];
+		for (int pivot = 0; pivot < rowPivotDists.length; pivot++)
+			if (Math.abs(queryPivotDists[pivot] - rowPivotDists[pivot]) > min + EPSILON)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return the fraction of reference rows whose distance was never computed, over every query so far
+	 */
+	public double prunedFraction() {
+		long queries = numQueries.sum();
+		if (queries == 0 || sortedRows.length == 0)
+			return 0.0;
+		return 1.0 - (double) numDistances.sum() / ((double) queries * sortedRows.length);
+	}
+
+	/**
+	 * @return the number of queries and the fraction of distance computations that were skipped
+	 */
+	public String summary() {
+		return String.format("pivot search over %d rows with %d pivot(s), %d queries, %.1f%% of distances pruned",
+				sortedRows.length, pivots.length, numQueries.sum(), prunedFraction() * 100.0);
+	}
+}
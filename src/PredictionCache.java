@@ -0,0 +1,263 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PredictionCache.java:
+ * Caches the category predicted for each distinct row in front of another scorer, so a row
+ * that has been seen before is answered without running the model (for the nearest neighbour
+ * algorithm, without scanning the whole reference set). Each feature value of a UCI digit is
+ * between 0 and 16, so the 64 values are packed 5 bits each into 6 longs, which are both the
+ * key that is compared in full and the input to the hash.
+ *
+ * Entries live in one primitive array with open addressing: a row can only be stored in a
+ * small window of slots after its hash. When the window is full, a CLOCK policy evicts a slot
+ * that has not been used since the hand last passed it. Reads take no locks; each slot has a
+ * version number that is odd while the slot is being written, and a reader retries the slot
+ * if the version changed while it was reading. Writes are serialised by a lock.
+ *
+ * Rows that cannot be packed (not 64 feature values, or a value outside 0-31) bypass the cache.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class PredictionCache implements Scorer {
+
+	private static final int BITS_PER_VALUE = 5;
+	private static final int VALUES_PER_LONG = 64 / BITS_PER_VALUE; /* 12 values in each long */
+	private static final int KEY_LONGS = (MultilayerPerceptron.NUM_FEATURE_VALS + VALUES_PER_LONG - 1)
+			/ VALUES_PER_LONG; /* 6 longs for 64 values */
+	private static final int MAX_VALUE = (1 << BITS_PER_VALUE) - 1;
+
+	/* layout of each slot in the data array: version, category (-1 if empty), then the key */
+	private static final int VERSION = 0, CATEGORY = 1, KEY = 2;
+	private static final int SLOT_LONGS = KEY + KEY_LONGS;
+
+	private static final int PROBE_WINDOW = 8; /* slots after the hash that a row can be stored in */
+
+	private final Scorer scorer; /* the model that is run on a cache miss */
+	private final int mask; /* number of slots - 1 */
+	private final AtomicLongArray data;
+	private final AtomicIntegerArray referenced; /* CLOCK bit for each slot, set whenever the slot is hit */
+	private int clockHand = 0; /* position in the probe window where the next eviction search starts */
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder bypasses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param scorer, the scorer to cache the predictions of
+	 * @param capacity, the maximum number of rows to cache (rounded up to a power of two)
+	 */
+	public PredictionCache(Scorer scorer, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Cache capacity must be at least 1: " + capacity);
+
+		int numSlots = Math.max(PROBE_WINDOW, Integer.highestOneBit(capacity - 1) << 1);
+		this.scorer = scorer;
+		this.mask = numSlots - 1;
+		this.data = new AtomicLongArray(numSlots * SLOT_LONGS);
+		this.referenced = new AtomicIntegerArray(numSlots);
+
+		for (int slot = 0; slot < numSlots; slot++)
+			data.set(slot * SLOT_LONGS + CATEGORY, -1);
+	}
+
+	@Override
+	public int score(int[] row) {
+		long[] key = pack(row);
+		if (key == null) {
+			bypasses.increment();
+			return scorer.score(row);
+		}
+
+		int category = lookup(key);
+		if (category >= 0) {
+			hits.increment();
+			return category;
+		}
+
+		misses.increment();
+		category = scorer.score(row);
+		store(key, category);
+		return category;
+	}
+
+	/**
+	 * Scores a batch; rows found in the cache are answered straight away and only the
+	 * rest are passed on to the scorer, together as one batch.
+	 */
+	@Override
+	public int[] scoreBatch(int[][] rows) {
+		int[] categories = new int[rows.length];
+		long[][] keys = new long[rows.length][];
+		int[] missPositions = new int[rows.length];
+		int numMisses = 0;
+
+		for (int pos = 0; pos < rows.length; pos++) {
+			keys[pos] = pack(rows[pos]);
+			categories[pos] = keys[pos] == null ? -1 : lookup(keys[pos]);
+
+			if (categories[pos] >= 0)
+				hits.increment();
+			else {
+				if (keys[pos] == null)
+					bypasses.increment();
+				else
+					misses.increment();
+				missPositions[numMisses++] = pos;
+			}
+		}
+
+		if (numMisses > 0) {
+			int[][] missRows = new int[numMisses][];
+			for (int pos = 0; pos < numMisses; pos++)
+				missRows[pos] = rows[missPositions[pos]];
+
+			int[] missCategories = scorer.scoreBatch(missRows);
+			for (int pos = 0; pos < numMisses; pos++) {
+				int rowPos = missPositions[pos];
+				categories[rowPos] = missCategories[pos];
+				if (keys[rowPos] != null)
+					store(keys[rowPos], missCategories[pos]);
+			}
+		}
+		return categories;
+	}
+
+	/**
+	 * Helper function that packs the 64 feature values of a row into 5 bits each
+	 *
+	 * @return the packed key, or null if the row cannot be packed
+	 */
+	private static long[] pack(int[] row) {
+		if (row.length != MultilayerPerceptron.NUM_FEATURE_VALS + 1)
+			return null;
+
+		long[] key = new long[KEY_LONGS];
+		for (int pos = 0; pos < MultilayerPerceptron.NUM_FEATURE_VALS; pos++) {
+			int value = row[pos];
+			if (value < 0 || value > MAX_VALUE)
+				return null;
+			key[pos / VALUES_PER_LONG] |= (long) value << (pos % VALUES_PER_LONG * BITS_PER_VALUE);
+		}
+		return key;
+	}
+
+	/**
+	 * Helper function that mixes the packed key into the slot the probe window starts at
+	 */
+	private int slotOf(long[] key) {
+		long hash = 0x9E3779B97F4A7C15L;
+		for (long word : key) {
+			hash ^= word;
+			hash *= 0xBF58476D1CE4E5B9L;
+			hash ^= hash >>> 31;
+		}
+		return (int) hash & mask;
+	}
+
+	/**
+	 * Helper function that looks a key up without locking
+	 *
+	 * @return the cached category, or -1 if the key is not cached
+	 */
+	private int lookup(long[] key) {
+		int start = slotOf(key);
+
+		for (int probe = 0; probe < PROBE_WINDOW; probe++) {
+			int slot = (start + probe) & mask;
+			int base = slot * SLOT_LONGS;
+
+			while (true) {
+				long version = data.get(base + VERSION);
+				if ((version & 1) != 0) {
+					/* the slot is being written; wait for the writer to finish */
+					Thread.yield();
+					continue;
+				}
+
+				long category = data.get(base + CATEGORY);
+				boolean matches = category >= 0;
+				for (int word = 0; matches && word < KEY_LONGS; word++)
+					matches = data.get(base + KEY + word) == key[word];
+
+				/* if the slot was rewritten while it was being read, read it again */
+				if (data.get(base + VERSION) != version)
+					continue;
+
+				if (matches) {
+					if (referenced.get(slot) == 0)
+						referenced.lazySet(slot, 1);
+					return (int) category;
+				}
+				break;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Helper function that stores a key in an empty slot of its probe window, or in a slot chosen by CLOCK
+	 */
+	private synchronized void store(long[] key, int category) {
+		int start = slotOf(key);
+		int target = -1;
+
+		/* use an empty slot (or the slot already holding this key) if there is one */
+		for (int probe = 0; probe < PROBE_WINDOW && target < 0; probe++) {
+			int slot = (start + probe) & mask;
+			int base = slot * SLOT_LONGS;
+			if (data.get(base + CATEGORY) < 0)
+				target = slot;
+			else {
+				boolean matches = true;
+				for (int word = 0; matches && word < KEY_LONGS; word++)
+					matches = data.get(base + KEY + word) == key[word];
+				if (matches)
+					return;
+			}
+		}
+
+		/* otherwise sweep the hand around the window, giving recently used slots a second chance */
+		if (target < 0) {
+			while (target < 0) {
+				int slot = (start + clockHand) & mask;
+				clockHand = (clockHand + 1) % PROBE_WINDOW;
+				if (referenced.get(slot) == 0)
+					target = slot;
+				else
+					referenced.set(slot, 0);
+			}
+			evictions.increment();
+		}
+
+		int base = target * SLOT_LONGS;
+		long version = data.get(base + VERSION);
+		data.set(base + VERSION, version + 1); /* odd while the slot is being written */
+		data.set(base + CATEGORY, category);
+		for (int word = 0; word < KEY_LONGS; word++)
+			data.set(base + KEY + word, key[word]);
+		referenced.set(target, 0);
+		data.set(base + VERSION, version + 2);
+	}
+
+	/**
+	 * @return the fraction of cacheable lookups that were hits
+	 */
+	public double hitRate() {
+		long numHits = hits.sum(), total = numHits + misses.sum();
+		return total == 0 ? 0.0 : (double) numHits / total;
+	}
+
+	/**
+	 * @return the hit, miss, bypass and eviction counts as JSON fields (without the enclosing braces)
+	 */
+	public String statsJson() {
+		return "\"cacheHits\":" + hits.sum() + ",\"cacheMisses\":" + misses.sum() + ",\"cacheBypasses\":"
+				+ bypasses.sum() + ",\"cacheEvictions\":" + evictions.sum() + ",\"cacheHitRate\":"
+				+ Math.round(hitRate() * 10000.0) / 10000.0;
+	}
+}
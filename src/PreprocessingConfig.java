@@ -0,0 +1,59 @@
+import java.util.Properties;
+
+/**
+ * PreprocessingConfig.java:
+ * Runtime configuration for the feature preprocessing that runs before the nearest neighbour
+ * algorithm and the MLP (see FeaturePreprocessor). By default rows keep all 64 columns in
+ * their original order; -Dprep.dropConstant=true drops the columns that are constant over the
+ * training set of each fold and -Dprep.order=variance puts the rest in order of descending variance.
+ * Scaling the MLP's inputs is set with -Dmlp.inputScaling (see MultilayerPerceptronConfig).
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class PreprocessingConfig {
+
+	boolean dropConstant = false; /* drop columns with a variance of no more than minVariance */
+	double minVariance = 0.0; /* largest variance of a column that is dropped (0 = only constant columns) */
+	String order = "none"; /* "none" or "variance" */
+
+	/**
+	 * Creates a configuration from properties; any property that is not set keeps its default value.
+	 * Recognised keys are prep.dropConstant, prep.minVariance and prep.order
+	 *
+	 * @param props, the properties to read (usually System.getProperties())
+	 * @return the new configuration
+	 */
+	public static PreprocessingConfig fromProperties(Properties props) {
+		PreprocessingConfig config = new PreprocessingConfig();
+
+		config.dropConstant = Boolean.parseBoolean(props.getProperty("prep.dropConstant", "" + config.dropConstant));
+		config.minVariance = Double.parseDouble(props.getProperty("prep.minVariance", "" + config.minVariance));
+		config.order = props.getProperty("prep.order", config.order);
+
+		if (!config.order.equals("none") && !config.order.equals("variance"))
+			throw new IllegalArgumentException("Unknown feature order: " + config.order);
+		if (config.minVariance < 0.0)
+			throw new IllegalArgumentException("Minimum variance must be >= 0: " + config.minVariance);
+		return config;
+	}
+
+	/**
+	 * Fits the configured preprocessing on a training set
+	 *
+	 * @param trainSet, the rows to fit on
+	 * @return the fitted preprocessor, or null if no preprocessing is configured
+	 */
+	public FeaturePreprocessor fit(int[][] trainSet) {
+		if (!dropConstant && order.equals("none"))
+			return null;
+		return FeaturePreprocessor.fit(trainSet, dropConstant ? minVariance : -1.0, order.equals("variance"));
+	}
+
+	@Override
+	public String toString() {
+		return "dropConstant=" + dropConstant + (dropConstant ? " (minVariance=" + minVariance + ")" : "") + ", order="
+				+ order;
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * ProjectedEvaluator.java:
+ * Runs another evaluator (the nearest neighbour algorithm or the MLP) on preprocessed and/or
+ * projected rows. For each fold the preprocessing (see FeaturePreprocessor) and then the
+ * projection are fitted on the training set only, then both the training and test sets are
+ * transformed and passed on, so nothing about the test set leaks into the fit.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ProjectedEvaluator implements FoldEvaluator {
+
+	private final FoldEvaluator evaluator; /* the evaluator that runs on the transformed rows */
+	private final ProjectionConfig config;
+	private final PreprocessingConfig preprocessingConfig;
+
+	private String projectionSummary;
+
+	/**
+	 * @param evaluator, the evaluator to run on the projected rows
+	 * @param config, the projection to use
+	 */
+	public ProjectedEvaluator(FoldEvaluator evaluator, ProjectionConfig config) {
+		this(evaluator, new PreprocessingConfig(), config);
+	}
+
+	/**
+	 * @param evaluator, the evaluator to run on the transformed rows
+	 * @param preprocessingConfig, the preprocessing to use before the projection
+	 * @param config, the projection to use
+	 */
+	public ProjectedEvaluator(FoldEvaluator evaluator, PreprocessingConfig preprocessingConfig,
+			ProjectionConfig config) {
+		this.evaluator = evaluator;
+		this.config = config;
+		this.preprocessingConfig = preprocessingConfig;
+	}
+
+	@Override
+	public int trainAndTest(int[][] trainSet, int[][] testSet) {
+		long startTime = System.nanoTime();
+		String preprocessingSummary = null;
+
+		FeaturePreprocessor preprocessor = preprocessingConfig.fit(trainSet);
+		if (preprocessor != null) {
+			trainSet = preprocessor.apply(trainSet);
+			testSet = preprocessor.apply(testSet);
+			preprocessingSummary = "preprocessing " + preprocessor.summary();
+		}
+
+		Projection.Fitted projection = config.fit(trainSet);
+		if (projection == null) {
+			projectionSummary = preprocessingSummary;
+			return evaluator.trainAndTest(trainSet, testSet);
+		}
+
+		int[][] projectedTrainSet = projection.apply(trainSet);
+		int[][] projectedTestSet = projection.apply(testSet);
+
+		projectionSummary = (preprocessingSummary == null ? "" : preprocessingSummary + ", ") + config.methodName
+				+ " projection from " + (trainSet[0].length - 1) + " to " + projection.numComponents()
+				+ " values per row in " + (System.nanoTime() - startTime) / 1_000_000 + " ms";
+
+		return evaluator.trainAndTest(projectedTrainSet, projectedTestSet);
+	}
+
+	@Override
+	public String foldSummary() {
+		String summary = evaluator.foldSummary();
+		if (projectionSummary == null)
+			return summary;
+		return summary == null ? projectionSummary : projectionSummary + "; " + summary;
+	}
+
+	@Override
+	public void setEvaluationSink(EvaluationSink sink, int firstRow) {
+		evaluator.setEvaluationSink(sink, firstRow);
+	}
+}
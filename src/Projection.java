@@ -0,0 +1,311 @@
+import java.util.Random;
+
+/**
+ * Projection.java:
+ * Dimensionality reduction that runs before the nearest neighbour algorithm or the MLP.
+ * A projection is fitted on the training set of a fold and then maps every row (of both
+ * the training and test sets) from 64 feature values down to a smaller number of components,
+ * so every distance and weighted sum has fewer values to loop over. Projected rows keep
+ * the dataset layout (components followed by the category), with each component stored as
+ * a fixed point int (the real value multiplied by a scale), so the algorithms work unchanged.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface Projection {
+
+	/**
+	 * Fits the projection on a training set
+	 *
+	 * @param trainSet, the rows to fit on
+	 * @param numComponents, the number of components to project down to
+	 * @param random, the random number generator for this run
+	 * @return the fitted projection
+	 */
+	Fitted fit(int[][] trainSet, int numComponents, Random random);
+
+	/**
+	 * Returns the projection with the given name
+	 *
+	 * @param name, the name of the projection ("pca" or "random")
+	 * @return the projection
+	 */
+	static Projection forName(String name) {
+		switch (name) {
+		case "pca":
+			return new PrincipalComponents();
+		case "random":
+			return new RandomProjection();
+		default:
+			throw new IllegalArgumentException("Unknown projection: " + name);
+		}
+	}
+
+	/**
+	 * Helper function that returns the mean of each feature value over a set of rows
+	 */
+	static double[] featureMeans(int[][] rows, int numFeatures) {
+		double[] means = new double[numFeatures];
+		for (int[] row : rows)
+			for (int feature = 0; feature < numFeatures; feature++)
+				means[feature] += row[feature];
+		for (int feature = 0; feature < numFeatures; feature++)
+			means[feature] /= Math.max(1, rows.length);
+		return means;
+	}
+
+	/**
+	 * A fitted projection; maps rows onto the components found from the training set
+	 */
+	class Fitted {
+		private final double[] means; /* mean of each feature value in the training set, subtracted before projecting */
+		private final double[][] components; /* [component][feature] */
+		private double scale = 1.0; /* fixed point scale for the projected values */
+
+		Fitted(double[] means, double[][] components) {
+			this.means = means;
+			this.components = components;
+		}
+
+		/**
+		 * Sets the fixed point scale, checking that squared distances between projected rows still fit
+		 * in the int that Utility.squaredDistanceWithin sums them in
+		 *
+		 * @param scale, the value that each projected value is multiplied by before it is rounded to an int
+		 * @param trainSet, the rows the projection was fitted on, whose ranges bound the projected values
+		 * @return this projection
+		 */
+		Fitted withScale(double scale, int[][] trainSet) {
+			double maxScale = maxScale(trainSet);
+			if (scale > maxScale)
+				throw new IllegalArgumentException("Projection scale " + scale + " is too large for "
+						+ components.length + " components: squared distances would overflow an int above " + maxScale);
+			this.scale = scale;
+			return this;
+		}
+
+		/**
+		 * Helper function that finds the largest scale at which components * (2 * largest projected value)^2,
+		 * the largest squared distance between two rows within the training set's ranges, is below
+		 * Integer.MAX_VALUE (allowing 1 for the rounding of each value)
+		 */
+		private double maxScale(int[][] trainSet) {
+			/* the furthest each feature value is from its mean, over the training set */
+			double[] maxDeviation = new double[means.length];
+			for (int[] row : trainSet)
+				for (int feature = 0; feature < means.length; feature++)
+					maxDeviation[feature] = Math.max(maxDeviation[feature], Math.abs(row[feature] - means[feature]));
+
+			double largest = 0.0; /* the largest absolute projected value, before scaling */
+			for (double[] component : components) {
+				double bound = 0.0;
+				for (int feature = 0; feature < means.length; feature++)
+					bound += Math.abs(component[feature]) * maxDeviation[feature];
+				largest = Math.max(largest, bound);
+			}
+
+			double maxValue = Math.sqrt((double) Integer.MAX_VALUE / components.length) / 2 - 1;
+			return largest == 0.0 ? Double.MAX_VALUE : maxValue / largest;
+		}
+
+		/**
+		 * @return the number of components that rows are projected onto
+		 */
+		public int numComponents() {
+			return components.length;
+		}
+
+		/**
+		 * Projects one row; the category in the last cell is copied over unchanged
+		 *
+		 * @param row, a row with 64 feature values and a category cell
+		 * @return the projected row, with one value per component and then the category
+		 */
+		public int[] apply(int[] row) {
+			int[] projected = new int[components.length + 1];
+
+			for (int component = 0; component < components.length; component++) {
+				double sum = 0.0;
+				for (int feature = 0; feature < means.length; feature++)
+					sum += components[component][feature] * (row[feature] - means[feature]);
+				projected[component] = (int) Math.round(sum * scale);
+			}
+
+			projected[components.length] = row[row.length - 1];
+			return projected;
+		}
+
+		/**
+		 * Wraps a scorer that was built from projected rows, so that it can score rows with all 64 feature values
+		 *
+		 * @param scorer, the scorer built from projected rows
+		 * @return a scorer that projects each row before scoring it
+		 */
+		public Scorer wrap(Scorer scorer) {
+			return new Scorer() {
+				@Override
+				public int score(int[] row) {
+					return scorer.score(apply(row));
+				}
+
+				@Override
+				public int[] scoreBatch(int[][] rows) {
+					return scorer.scoreBatch(apply(rows));
+				}
+			};
+		}
+
+		/**
+		 * Projects every row of a dataset
+		 *
+		 * @param dataset, the rows to project
+		 * @return the projected rows
+		 */
+		public int[][] apply(int[][] dataset) {
+			int[][] projected = new int[dataset.length][];
+			for (int pos = 0; pos < dataset.length; pos++)
+				projected[pos] = apply(dataset[pos]);
+			return projected;
+		}
+	}
+
+	/**
+	 * Principal component analysis. Projects onto the directions of greatest variance in the
+	 * training set, found as the eigenvectors of the covariance matrix with the largest
+	 * eigenvalues. For the UCI digits most of the variance is in the first 20-30 components,
+	 * so distances between projected rows are close to distances between the original rows.
+	 */
+	class PrincipalComponents implements Projection {
+
+		private static final int MAX_SWEEPS = 50;
+
+		@Override
+		public Fitted fit(int[][] trainSet, int numComponents, Random random) {
+			int numFeatures = trainSet[0].length - 1;
+			double[] means = featureMeans(trainSet, numFeatures);
+
+			/* covariance matrix of the feature values */
+			double[][] covariance = new double[numFeatures][numFeatures];
+			for (int[] row : trainSet)
+				for (int first = 0; first < numFeatures; first++) {
+					double firstDiff = row[first] - means[first];
+					for (int second = first; second < numFeatures; second++)
+						covariance[first][second] += firstDiff * (row[second] - means[second]);
+				}
+			for (int first = 0; first < numFeatures; first++)
+				for (int second = first; second < numFeatures; second++) {
+					covariance[first][second] /= Math.max(1, trainSet.length - 1);
+					covariance[second][first] = covariance[first][second];
+				}
+
+			double[][] eigenvectors = new double[numFeatures][numFeatures];
+			double[] eigenvalues = jacobiEigen(covariance, eigenvectors);
+
+			/* take the eigenvectors with the largest eigenvalues (selection sort on the first numComponents) */
+			int[] order = new int[numFeatures];
+			for (int pos = 0; pos < numFeatures; pos++)
+				order[pos] = pos;
+			double[][] components = new double[Math.min(numComponents, numFeatures)][numFeatures];
+
+			for (int component = 0; component < components.length; component++) {
+				int largest = component;
+				for (int pos = component + 1; pos < numFeatures; pos++)
+					if (eigenvalues[order[pos]] > eigenvalues[order[largest]])
+						largest = pos;
+				int temp = order[component];
+				order[component] = order[largest];
+				order[largest] = temp;
+
+				for (int feature = 0; feature < numFeatures; feature++)
+					components[component][feature] = eigenvectors[feature][order[component]];
+			}
+
+			return new Fitted(means, components);
+		}
+
+		/**
+		 * Helper function that finds the eigenvalues and eigenvectors of a symmetric matrix with the
+		 * cyclic Jacobi method. Each rotation zeroes one off-diagonal value; sweeps over every
+		 * off-diagonal value are repeated until they are all (close to) zero.
+		 *
+		 * @param matrix, the symmetric matrix (overwritten)
+		 * @param eigenvectors, filled with the eigenvectors, one per column
+		 * @return the eigenvalues, in the same order as the columns of eigenvectors
+		 */
+		private static double[] jacobiEigen(double[][] matrix, double[][] eigenvectors) {
+			int size = matrix.length;
+			for (int pos = 0; pos < size; pos++)
+				eigenvectors[pos][pos] = 1.0;
+
+			for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+				double offDiagonal = 0.0;
+				for (int row = 0; row < size; row++)
+					for (int column = row + 1; column < size; column++)
+						offDiagonal += matrix[row][column] * matrix[row][column];
+				if (offDiagonal < 1e-18)
+					break;
+
+				for (int p = 0; p < size; p++) {
+					for (int q = p + 1; q < size; q++) {
+						if (Math.abs(matrix[p][q]) < 1e-300)
+							continue;
+
+						/* rotation angle that zeroes matrix[p][q] */
+						double theta = (matrix[q][q] - matrix[p][p]) / (2.0 * matrix[p][q]);
+						double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+						if (theta == 0.0)
+							t = 1.0;
+						double c = 1.0 / Math.sqrt(t * t + 1.0), s = t * c;
+
+						for (int k = 0; k < size; k++) {
+							double kp = matrix[k][p], kq = matrix[k][q];
+							matrix[k][p] = c * kp - s * kq;
+							matrix[k][q] = s * kp + c * kq;
+						}
+						for (int k = 0; k < size; k++) {
+							double pk = matrix[p][k], qk = matrix[q][k];
+							matrix[p][k] = c * pk - s * qk;
+							matrix[q][k] = s * pk + c * qk;
+						}
+						for (int k = 0; k < size; k++) {
+							double kp = eigenvectors[k][p], kq = eigenvectors[k][q];
+							eigenvectors[k][p] = c * kp - s * kq;
+							eigenvectors[k][q] = s * kp + c * kq;
+						}
+					}
+				}
+			}
+
+			double[] eigenvalues = new double[size];
+			for (int pos = 0; pos < size; pos++)
+				eigenvalues[pos] = matrix[pos][pos];
+			return eigenvalues;
+		}
+	}
+
+	/**
+	 * Sparse random projection (Achlioptas). Each component is a random combination of the
+	 * feature values with weights of +sqrt(3), 0 or -sqrt(3) (probabilities 1/6, 2/3, 1/6),
+	 * divided by sqrt(components) so that distances are preserved on average. Much cheaper
+	 * to fit than PCA and does not depend on the training set, but needs more components
+	 * for the same accuracy.
+	 */
+	class RandomProjection implements Projection {
+
+		@Override
+		public Fitted fit(int[][] trainSet, int numComponents, Random random) {
+			int numFeatures = trainSet[0].length - 1;
+			double weight = Math.sqrt(3.0 / numComponents);
+
+			double[][] components = new double[numComponents][numFeatures];
+			for (int component = 0; component < numComponents; component++)
+				for (int feature = 0; feature < numFeatures; feature++) {
+					int draw = random.nextInt(6);
+					components[component][feature] = draw == 0 ? weight : draw == 1 ? -weight : 0.0;
+				}
+
+			return new Fitted(featureMeans(trainSet, numFeatures), components);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * ProjectionConfig.java:
+ * Runtime configuration for the dimensionality reduction that runs before the nearest
+ * neighbour algorithm and the MLP (see Projection). By default there is no projection and
+ * rows keep all 64 feature values; -Dprojection.method=pca -Dprojection.components=24
+ * projects every fold onto 24 principal components of its training set.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ProjectionConfig {
+
+	String methodName = "none"; /* "none", "pca" or "random" */
+	int components = 24; /* number of components to project onto */
+	double scale = 4.0; /* projected values are multiplied by this before rounding, so they keep some precision as ints */
+
+	Long seed = null; /* seed for the random projection, null for a different projection every run */
+
+	Projection projection; /* the projection to use, null for none */
+
+	/**
+	 * Creates a configuration from properties; any property that is not set keeps its default value.
+	 * Recognised keys are projection.method, projection.components, projection.scale and projection.seed
+	 *
+	 * @param props, the properties to read (usually System.getProperties())
+	 * @return the new configuration
+	 */
+	public static ProjectionConfig fromProperties(Properties props) {
+		ProjectionConfig config = new ProjectionConfig();
+
+		config.methodName = props.getProperty("projection.method", config.methodName);
+		config.components = Integer.parseInt(props.getProperty("projection.components", "" + config.components));
+		config.scale = Double.parseDouble(props.getProperty("projection.scale", "" + config.scale));
+
+		if (props.getProperty("projection.seed") != null)
+			config.seed = Long.parseLong(props.getProperty("projection.seed"));
+
+		if (config.components < 1 || config.scale <= 0.0)
+			throw new IllegalArgumentException("Components and scale must be positive");
+
+		config.projection = config.methodName.equals("none") ? null : Projection.forName(config.methodName);
+		return config;
+	}
+
+	/**
+	 * Fits the configured projection on a training set
+	 *
+	 * @param trainSet, the rows to fit on
+	 * @return the fitted projection, or null if no projection is configured
+	 * @throws IllegalArgumentException if the scale is too large for the int distances of these rows
+	 */
+	public Projection.Fitted fit(int[][] trainSet) {
+		if (projection == null)
+			return null;
+		Random random = seed == null ? new Random() : new Random(seed);
+		return projection.fit(trainSet, components, random).withScale(scale, trainSet);
+	}
+
+	@Override
+	public String toString() {
+		return "projection=" + methodName + (projection == null ? "" : ", components=" + components + ", scale=" + scale);
+	}
+}
@@ -0,0 +1,295 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * PrototypeReduction.java:
+ * Shrinks the reference set used by the nearest neighbour algorithm, so that each query
+ * compares against fewer rows. A reduction keeps (or creates) a smaller set of rows that
+ * categorises the training set almost as well as the full set does. Rows keep the dataset
+ * layout (64 feature values followed by the category), so the reduced set can be used
+ * anywhere a training set can.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface PrototypeReduction {
+
+	/**
+	 * Reduces a training set
+	 *
+	 * @param trainSet, the rows to reduce
+	 * @param random, the random number generator for this run
+	 * @return the reduced set of rows
+	 */
+	int[][] reduce(int[][] trainSet, Random random);
+
+	/**
+	 * Returns the reduction with the given name
+	 *
+	 * @param name, the name of the reduction ("condensed", "edited", "editedCondensed" or "kmeans")
+	 * @param prototypesPerCategory, the number of prototypes for each category (only used by "kmeans")
+	 * @return the reduction
+	 */
+	static PrototypeReduction forName(String name, int prototypesPerCategory) {
+		switch (name) {
+		case "condensed":
+			return new Condensed();
+		case "edited":
+			return new Edited();
+		case "editedCondensed":
+			return (trainSet, random) -> new Condensed().reduce(new Edited().reduce(trainSet, random), random);
+		case "kmeans":
+			return new KMeans(prototypesPerCategory);
+		default:
+			throw new IllegalArgumentException("Unknown prototype reduction: " + name);
+		}
+	}
+
+	/**
+	 * Helper function that finds the position of the nearest row among the first numRows rows
+	 *
+	 * @param row, the row to find the nearest neighbour of
+	 * @param rows, the rows to search
+	 * @param numRows, the number of rows to search
+	 * @return the position of the nearest row
+	 */
+	static int nearest(int[] row, int[][] rows, int numRows) {
+		double min = Double.MAX_VALUE;
+		int minPos = 0;
+		for (int pos = 0; pos < numRows; pos++) {
+			double currentDist = Utility.euclideanDistance(row, rows[pos]);
+			if (currentDist < min) {
+				min = currentDist;
+				minPos = pos;
+			}
+		}
+		return minPos;
+	}
+
+	/**
+	 * Helper function that shuffles a copy of the rows using a Fisher-Yates shuffle
+	 */
+	static int[][] shuffled(int[][] rows, Random random) {
+		int[][] copy = Arrays.copyOf(rows, rows.length);
+		for (int pos = copy.length - 1; pos > 0; pos--) {
+			int randomIndex = random.nextInt(pos + 1);
+			int[] temp = copy[randomIndex];
+			copy[randomIndex] = copy[pos];
+			copy[pos] = temp;
+		}
+		return copy;
+	}
+
+	/**
+	 * Hart's condensed nearest neighbour. Starts with one row and keeps passing over the training
+	 * set, adding every row that the rows kept so far categorise wrongly, until a whole pass adds
+	 * nothing. Every training row is then categorised correctly by the kept rows. Mostly rows near
+	 * the boundaries between categories are kept; rows in the middle of a category are dropped.
+	 */
+	class Condensed implements PrototypeReduction {
+
+		@Override
+		public int[][] reduce(int[][] trainSet, Random random) {
+			if (trainSet.length == 0)
+				return trainSet;
+
+			int[][] rows = shuffled(trainSet, random); /* the result depends on the order the rows are visited in */
+			int lastIndex = rows[0].length - 1;
+
+			int[][] kept = new int[rows.length][];
+			boolean[] isKept = new boolean[rows.length];
+			kept[0] = rows[0];
+			isKept[0] = true;
+			int numKept = 1;
+
+			boolean added;
+			do {
+				added = false;
+				for (int pos = 0; pos < rows.length; pos++) {
+					if (isKept[pos])
+						continue;
+
+					int nearestPos = nearest(rows[pos], kept, numKept);
+					if (kept[nearestPos][lastIndex] != rows[pos][lastIndex]) {
+						kept[numKept++] = rows[pos];
+						isKept[pos] = true;
+						added = true;
+					}
+				}
+			} while (added);
+
+			return Arrays.copyOf(kept, numKept);
+		}
+	}
+
+	/**
+	 * Wilson's edited nearest neighbour. Removes every row whose 3 nearest neighbours (not counting
+	 * itself) mostly belong to another category. This removes noisy and mislabelled rows rather than
+	 * shrinking the set by much, so it is usually followed by condensing ("editedCondensed").
+	 */
+	class Edited implements PrototypeReduction {
+
+		private static final int NUM_NEIGHBOURS = 3;
+
+		@Override
+		public int[][] reduce(int[][] trainSet, Random random) {
+			if (trainSet.length <= NUM_NEIGHBOURS)
+				return trainSet;
+
+			int lastIndex = trainSet[0].length - 1;
+			int[][] kept = new int[trainSet.length][];
+			int numKept = 0;
+
+			double[] nearestDists = new double[NUM_NEIGHBOURS];
+			int[] nearestCategories = new int[NUM_NEIGHBOURS];
+
+			for (int pos = 0; pos < trainSet.length; pos++) {
+				Arrays.fill(nearestDists, Double.MAX_VALUE);
+
+				/* keep the 3 nearest neighbours in order of distance, using insertion */
+				for (int other = 0; other < trainSet.length; other++) {
+					if (other == pos)
+						continue;
+
+					double currentDist = Utility.euclideanDistance(trainSet[pos], trainSet[other]);
+					if (currentDist >= nearestDists[NUM_NEIGHBOURS - 1])
+						continue;
+
+					int insertPos = NUM_NEIGHBOURS - 1;
+					while (insertPos > 0 && nearestDists[insertPos - 1] > currentDist) {
+						nearestDists[insertPos] = nearestDists[insertPos - 1];
+						nearestCategories[insertPos] = nearestCategories[insertPos - 1];
+						insertPos--;
+					}
+					nearestDists[insertPos] = currentDist;
+					nearestCategories[insertPos] = trainSet[other][lastIndex];
+				}
+
+				int numAgree = 0;
+				for (int category : nearestCategories)
+					if (category == trainSet[pos][lastIndex])
+						numAgree++;
+
+				if (numAgree * 2 > NUM_NEIGHBOURS)
+					kept[numKept++] = trainSet[pos];
+			}
+
+			return Arrays.copyOf(kept, numKept);
+		}
+	}
+
+	/**
+	 * Replaces the rows of each category with a fixed number of prototypes found by k-means
+	 * clustering, so the size of the reduced set is chosen up front (prototypes per category x 10).
+	 * Each prototype is the mean of its cluster, rounded back to whole feature values.
+	 */
+	class KMeans implements PrototypeReduction {
+
+		private static final int MAX_ITERATIONS = 20;
+
+		private final int prototypesPerCategory;
+
+		KMeans(int prototypesPerCategory) {
+			if (prototypesPerCategory < 1)
+				throw new IllegalArgumentException("Prototypes per category must be at least 1");
+			this.prototypesPerCategory = prototypesPerCategory;
+		}
+
+		@Override
+		public int[][] reduce(int[][] trainSet, Random random) {
+			if (trainSet.length == 0)
+				return trainSet;
+
+			int rowLength = trainSet[0].length;
+			int numFeatures = rowLength - 1;
+
+			int numCategories = 0;
+			for (int[] row : trainSet)
+				numCategories = Math.max(numCategories, row[numFeatures] + 1);
+
+			int[][] prototypes = new int[numCategories * prototypesPerCategory][];
+			int numPrototypes = 0;
+
+			for (int category = 0; category < numCategories; category++) {
+
+				/* collect the rows of this category */
+				int numRows = 0;
+				for (int[] row : trainSet)
+					if (row[numFeatures] == category)
+						numRows++;
+				int[][] rows = new int[numRows][];
+				for (int pos = 0, rowPos = 0; pos < trainSet.length; pos++)
+					if (trainSet[pos][numFeatures] == category)
+						rows[rowPos++] = trainSet[pos];
+
+				for (double[] centroid : cluster(shuffled(rows, random), numFeatures)) {
+					int[] prototype = new int[rowLength];
+					for (int feature = 0; feature < numFeatures; feature++)
+						prototype[feature] = (int) Math.round(centroid[feature]);
+					prototype[numFeatures] = category;
+					prototypes[numPrototypes++] = prototype;
+				}
+			}
+
+			return Arrays.copyOf(prototypes, numPrototypes);
+		}
+
+		/**
+		 * Helper function that clusters the (already shuffled) rows of one category with Lloyd's algorithm,
+		 * starting from the first k rows as centroids
+		 */
+		private double[][] cluster(int[][] rows, int numFeatures) {
+			int numClusters = Math.min(prototypesPerCategory, rows.length);
+			double[][] centroids = new double[numClusters][numFeatures];
+			for (int cluster = 0; cluster < numClusters; cluster++)
+				for (int feature = 0; feature < numFeatures; feature++)
+					centroids[cluster][feature] = rows[cluster][feature];
+
+			int[] assignments = new int[rows.length];
+			Arrays.fill(assignments, -1);
+
+			for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+
+				/* assign every row to its nearest centroid */
+				boolean changed = false;
+				for (int pos = 0; pos < rows.length; pos++) {
+					double min = Double.MAX_VALUE;
+					int nearestCluster = 0;
+					for (int cluster = 0; cluster < numClusters; cluster++) {
+						double sum = 0.0;
+						for (int feature = 0; feature < numFeatures; feature++) {
+							double difference = rows[pos][feature] - centroids[cluster][feature];
+							sum += difference * difference;
+						}
+						if (sum < min) {
+							min = sum;
+							nearestCluster = cluster;
+						}
+					}
+					if (assignments[pos] != nearestCluster) {
+						assignments[pos] = nearestCluster;
+						changed = true;
+					}
+				}
+				if (!changed)
+					break;
+
+				/* move every centroid to the mean of its rows; an empty cluster keeps its centroid */
+				double[][] sums = new double[numClusters][numFeatures];
+				int[] counts = new int[numClusters];
+				for (int pos = 0; pos < rows.length; pos++) {
+					counts[assignments[pos]]++;
+					for (int feature = 0; feature < numFeatures; feature++)
+						sums[assignments[pos]][feature] += rows[pos][feature];
+				}
+				for (int cluster = 0; cluster < numClusters; cluster++)
+					if (counts[cluster] > 0)
+						for (int feature = 0; feature < numFeatures; feature++)
+							centroids[cluster][feature] = sums[cluster][feature] / counts[cluster];
+			}
+
+			return centroids;
+		}
+	}
+}
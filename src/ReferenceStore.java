@@ -0,0 +1,251 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * ReferenceStore.java:
+ * Reference set for the nearest neighbour search that can change while it is being used.
+ * Labelled rows can be appended and deleted at any time; each row gets an id when it is
+ * appended, which is used to delete it later.
+ *
+ * The rows are held in an immutable snapshot (copy-on-write). A change builds a new snapshot
+ * and publishes it with a single volatile write, so a query reads the current snapshot once
+ * and uses it throughout. Queries therefore never wait for a change and never see half of
+ * one, while a query that started before a change finishes on the old snapshot. Changes are
+ * made one at a time. Appending or deleting several rows in one call copies the snapshot only once.
+ *
+ * With the pivot search (-Dnn.search=pivot), the pivot index is updated along with the rows
+ * rather than rebuilt (see PivotIndex.withAppended). The pivots chosen at the start are kept,
+ * so the search stays exact, although it prunes less well if the rows drift far from them;
+ * rebuildIndex chooses new pivots without blocking queries.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ReferenceStore implements Scorer {
+
+	/**
+	 * An unchanging version of the reference set
+	 */
+	public static class Snapshot {
+		final int[][] rows; /* reference rows in the order they were appended */
+		final long[] ids; /* id of each row, in ascending order */
+		private final PivotIndex index; /* pivot index over the rows, null for a linear search */
+		private final long version; /* number of changes made before this snapshot */
+
+		Snapshot(int[][] rows, long[] ids, PivotIndex index, long version) {
+			this.rows = rows;
+			this.ids = ids;
+			this.index = index;
+			this.version = version;
+		}
+
+		/**
+		 * Finds the category of the nearest row to a query row. On a tie the row appended first is used.
+		 *
+		 * @param row, the row to categorise
+		 * @return the category of the nearest row, or -1 if the snapshot is empty
+		 */
+		public int score(int[] row) {
+			if (rows.length == 0)
+				return -1;
+
+			int nearestPos;
+			if (index != null)
+				nearestPos = index.nearest(row);
+			else {
+				double min = Double.MAX_VALUE;
+				nearestPos = 0;
+				for (int pos = 0; pos < rows.length; pos++) {
+					double currentDist = Utility.euclideanDistance(row, rows[pos]);
+					if (currentDist < min) {
+						min = currentDist;
+						nearestPos = pos;
+					}
+				}
+			}
+			return rows[nearestPos][rows[nearestPos].length - 1];
+		}
+
+		/**
+		 * @return the number of rows in this snapshot
+		 */
+		public int size() {
+			return rows.length;
+		}
+
+		/**
+		 * @return the number of changes made to the store before this snapshot
+		 */
+		public long version() {
+			return version;
+		}
+	}
+
+	private final NearestNeighbourConfig config; /* linear or pivot search, and the pivots */
+	private final Random random; /* random number generator used to choose pivots */
+
+	private volatile Snapshot current;
+	private long nextId = 0; /* id of the next row to be appended; only used while holding the lock */
+
+	/**
+	 * Creates an empty store
+	 *
+	 * @param config, the search to use (linear or pivot); reductions are not applied to a store
+	 */
+	public ReferenceStore(NearestNeighbourConfig config) {
+		this(config, new int[0][]);
+	}
+
+	/**
+	 * Creates a store holding an initial reference set
+	 *
+	 * @param config, the search to use (linear or pivot); reductions are not applied to a store
+	 * @param referenceSet, the initial rows, which are given ids 0 to referenceSet.length - 1
+	 */
+	public ReferenceStore(NearestNeighbourConfig config, int[][] referenceSet) {
+		this.config = config;
+		this.random = config.seed == null ? new Random() : new Random(config.seed);
+
+		int[][] rows = copyRows(referenceSet);
+		long[] ids = new long[rows.length];
+		for (int pos = 0; pos < rows.length; pos++)
+			ids[pos] = nextId++;
+		this.current = new Snapshot(rows, ids, newIndex(rows), 0);
+	}
+
+	/**
+	 * Helper function that copies rows, so that a caller changing its arrays afterwards cannot change the store
+	 */
+	private static int[][] copyRows(int[][] rows) {
+		int[][] copy = new int[rows.length][];
+		for (int pos = 0; pos < rows.length; pos++)
+			copy[pos] = rows[pos].clone();
+		return copy;
+	}
+
+	/**
+	 * Helper function that builds a pivot index with new pivots, or returns null for a linear search
+	 */
+	private PivotIndex newIndex(int[][] rows) {
+		return config.search.equals("pivot") ? new PivotIndex(rows, config.numPivots, config.pivotSelection, random)
+				: null;
+	}
+
+	/**
+	 * @return the current snapshot; a caller running several queries that must see the same rows should use it for all of them
+	 */
+	public Snapshot snapshot() {
+		return current;
+	}
+
+	/**
+	 * Appends labelled rows (64 feature values followed by the category)
+	 *
+	 * @param newRows, the rows to append
+	 * @return the id of each appended row
+	 */
+	public synchronized long[] append(int[][] newRows) {
+		Snapshot snapshot = current;
+		int[][] added = copyRows(newRows);
+
+		int[][] rows = Arrays.copyOf(snapshot.rows, snapshot.rows.length + added.length);
+		long[] ids = Arrays.copyOf(snapshot.ids, rows.length);
+		long[] addedIds = new long[added.length];
+		for (int pos = 0; pos < added.length; pos++) {
+			rows[snapshot.rows.length + pos] = added[pos];
+			ids[snapshot.rows.length + pos] = addedIds[pos] = nextId++;
+		}
+
+		/* an index built over no rows has no real pivots, so it is built properly on the first append */
+		PivotIndex index = snapshot.index == null ? null
+				: snapshot.rows.length == 0 ? newIndex(rows) : snapshot.index.withAppended(added, snapshot.rows.length);
+
+		current = new Snapshot(rows, ids, index, snapshot.version + 1);
+		return addedIds;
+	}
+
+	/**
+	 * Deletes rows by id; ids that are not in the store are ignored
+	 *
+	 * @param deletedIds, the ids of the rows to delete
+	 * @return the number of rows deleted
+	 */
+	public synchronized int delete(long... deletedIds) {
+		Snapshot snapshot = current;
+		boolean[] removed = new boolean[snapshot.rows.length];
+		int numRemoved = 0;
+
+		/* ids are in ascending order, so each can be found by a binary search */
+		for (long id : deletedIds) {
+			int pos = Arrays.binarySearch(snapshot.ids, id);
+			if (pos >= 0 && !removed[pos]) {
+				removed[pos] = true;
+				numRemoved++;
+			}
+		}
+		if (numRemoved == 0)
+			return 0;
+
+		int[][] rows = new int[snapshot.rows.length - numRemoved][];
+		long[] ids = new long[rows.length];
+		int next = 0;
+		for (int pos = 0; pos < snapshot.rows.length; pos++)
+			if (!removed[pos]) {
+				rows[next] = snapshot.rows[pos];
+				ids[next++] = snapshot.ids[pos];
+			}
+
+		PivotIndex index = snapshot.index == null ? null : snapshot.index.withoutPositions(removed);
+
+		current = new Snapshot(rows, ids, index, snapshot.version + 1);
+		return numRemoved;
+	}
+
+	/**
+	 * Chooses new pivots for the current rows, e.g. after many changes. The new index is built
+	 * while queries carry on using the current snapshot; only other changes wait for it.
+	 */
+	public synchronized void rebuildIndex() {
+		Snapshot snapshot = current;
+		if (snapshot.index != null)
+			current = new Snapshot(snapshot.rows, snapshot.ids, newIndex(snapshot.rows), snapshot.version + 1);
+	}
+
+	/**
+	 * Categorises a row against the current snapshot
+	 *
+	 * @param row, the row to categorise
+	 * @return the category of the nearest reference row, or -1 if the store is empty
+	 */
+	@Override
+	public int score(int[] row) {
+		return current.score(row);
+	}
+
+	/**
+	 * Categorises a batch of rows; every row in the batch is compared against the same snapshot
+	 */
+	@Override
+	public int[] scoreBatch(int[][] rows) {
+		Snapshot snapshot = current;
+		int[] categories = new int[rows.length];
+		for (int pos = 0; pos < rows.length; pos++)
+			categories[pos] = snapshot.score(rows[pos]);
+		return categories;
+	}
+
+	/**
+	 * @return the number of rows in the current snapshot
+	 */
+	public int size() {
+		return current.size();
+	}
+
+	/**
+	 * @return the number of changes made to the store so far
+	 */
+	public long version() {
+		return current.version;
+	}
+}
@@ -0,0 +1,182 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReferenceStoreValidation.java:
+ * Checks that a ReferenceStore stays correct while rows are appended and deleted during queries.
+ * The store starts with cw2DataSet1.csv. One writer thread then makes a series of changes:
+ * it appends chunks of rows from cw2DataSet2.csv, and deletes rows it appended earlier and rows
+ * of the starting set. At the same time, reader threads keep taking snapshots and categorising
+ * rows from cw2DataSet2.csv. Each reader checks that:
+ * - its snapshots never go back to an earlier version;
+ * - every snapshot is whole (one id per row, ids in ascending order);
+ * - each answer is the category of a row at the smallest distance in that snapshot, found by
+ *   a linear search (so the pivot index, which is updated rather than rebuilt, stays exact).
+ * At the end, the store must hold exactly the rows the writer expects, and must answer every
+ * query the same as a new store built from those rows.
+ *
+ * Usage: java ReferenceStoreValidation, with optional -Dstore.readers (default 2, or one per
+ * core if more), -Dstore.changes (default 200), -Dstore.seed and any -Dnn.* property
+ * (-Dnn.search defaults to pivot here, so the index updates are checked)
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ReferenceStoreValidation {
+
+	private static final int CHUNK_SIZE = 20; /* rows appended in each append */
+	private static final int NUM_FINAL_QUERIES = 500; /* rows checked against a new store at the end */
+
+	/**
+	 * Helper function that checks one answer against a linear search of the snapshot's rows
+	 *
+	 * @return true if the category is that of a row at the smallest distance (any of them, on a tie)
+	 */
+	private static boolean isNearestCategory(ReferenceStore.Snapshot snapshot, int[] row, int category) {
+		if (snapshot.rows.length == 0)
+			return category == -1;
+
+		double min = Double.MAX_VALUE;
+		for (int[] reference : snapshot.rows)
+			min = Math.min(min, Utility.euclideanDistance(row, reference));
+		for (int[] reference : snapshot.rows)
+			if (Utility.euclideanDistance(row, reference) == min && reference[reference.length - 1] == category)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Helper function that checks a snapshot is whole: one id per row, in ascending order
+	 */
+	private static boolean isWhole(ReferenceStore.Snapshot snapshot) {
+		if (snapshot.rows.length != snapshot.ids.length)
+			return false;
+		for (int pos = 1; pos < snapshot.ids.length; pos++)
+			if (snapshot.ids[pos] <= snapshot.ids[pos - 1])
+				return false;
+		return true;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+
+		/* the datasets are read from the current directory, the same as Main */
+		int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+		int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+		if (dataset1.length == 0 || dataset2.length == 0)
+			return;
+
+		Properties props = new Properties();
+		props.putAll(System.getProperties());
+		if (props.getProperty("nn.search") == null)
+			props.setProperty("nn.search", "pivot");
+		NearestNeighbourConfig config = NearestNeighbourConfig.fromProperties(props);
+
+		int numReaders = Integer.getInteger("store.readers", Math.max(2, Runtime.getRuntime().availableProcessors()));
+		int numChanges = Integer.getInteger("store.changes", 200);
+		long seed = Long.getLong("store.seed", 1);
+
+		ReferenceStore store = new ReferenceStore(config, dataset1);
+
+		/* the rows the store should hold, by id; the starting rows have ids 0 to dataset1.length - 1 */
+		Map<Long, int[]> expected = new TreeMap<>();
+		for (int pos = 0; pos < dataset1.length; pos++)
+			expected.put((long) pos, dataset1[pos]);
+
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicLong numQueries = new AtomicLong(), numWrong = new AtomicLong(), numBackwards = new AtomicLong(),
+				numTorn = new AtomicLong();
+
+		List<Thread> readers = new ArrayList<>();
+		for (int reader = 0; reader < numReaders; reader++) {
+			Random random = new Random(seed + 1 + reader);
+			Thread thread = new Thread(() -> {
+				long lastVersion = -1;
+				while (writing.get()) {
+					ReferenceStore.Snapshot snapshot = store.snapshot();
+					if (snapshot.version() < lastVersion)
+						numBackwards.incrementAndGet();
+					lastVersion = snapshot.version();
+					if (!isWhole(snapshot))
+						numTorn.incrementAndGet();
+
+					int[] row = dataset2[random.nextInt(dataset2.length)];
+					if (!isNearestCategory(snapshot, row, snapshot.score(row)))
+						numWrong.incrementAndGet();
+					numQueries.incrementAndGet();
+				}
+			});
+			readers.add(thread);
+			thread.start();
+		}
+
+		/* the writer: two appends, then a delete of some appended rows and some starting rows */
+		Random random = new Random(seed);
+		long startTime = System.nanoTime();
+		int nextRow = 0, numAppended = 0, numDeleted = 0;
+		for (int change = 0; change < numChanges; change++) {
+			if (change % 3 < 2) {
+				int[][] chunk = new int[CHUNK_SIZE][];
+				for (int pos = 0; pos < chunk.length; pos++)
+					chunk[pos] = dataset2[nextRow++ % dataset2.length];
+				long[] ids = store.append(chunk);
+				for (int pos = 0; pos < ids.length; pos++)
+					expected.put(ids[pos], chunk[pos]);
+				numAppended += chunk.length;
+			} else {
+				List<Long> live = new ArrayList<>(expected.keySet());
+				long[] ids = new long[Math.min(CHUNK_SIZE, live.size())];
+				for (int pos = 0; pos < ids.length; pos++)
+					ids[pos] = live.get(random.nextInt(live.size()));
+				numDeleted += store.delete(ids);
+				for (long id : ids)
+					expected.remove(id);
+			}
+
+			/* keeps pace with the readers, so that every change is made while queries are running */
+			while (numQueries.get() < (change + 1L) * numReaders)
+				Thread.yield();
+		}
+		long millis = (System.nanoTime() - startTime) / 1_000_000;
+
+		writing.set(false);
+		for (Thread thread : readers)
+			thread.join();
+
+		/* the final store against the expected rows, and against a new store built from them */
+		ReferenceStore.Snapshot snapshot = store.snapshot();
+		long[] expectedIds = new long[expected.size()];
+		int idPos = 0;
+		for (long id : expected.keySet())
+			expectedIds[idPos++] = id;
+		boolean sameRows = Arrays.equals(snapshot.ids, expectedIds);
+
+		ReferenceStore rebuilt = new ReferenceStore(config, expected.values().toArray(new int[0][]));
+		int numDifferent = 0;
+		for (int query = 0; query < NUM_FINAL_QUERIES; query++) {
+			int[] row = dataset2[random.nextInt(dataset2.length)];
+			if (store.score(row) != rebuilt.score(row))
+				numDifferent++;
+		}
+
+		boolean ok = numWrong.get() == 0 && numBackwards.get() == 0 && numTorn.get() == 0 && sameRows
+				&& numDifferent == 0;
+		System.out.println("Store (" + config.search + " search): " + numChanges + " changes (" + numAppended
+				+ " rows appended, " + numDeleted + " deleted) in " + millis + " ms while " + numReaders
+				+ " readers ran " + numQueries.get() + " queries");
+		System.out.println("Readers: " + numWrong.get() + " answers not the nearest in their snapshot, "
+				+ numBackwards.get() + " snapshots older than the one before, " + numTorn.get() + " snapshots not whole");
+		System.out.println("Final store: " + snapshot.size() + " rows (" + expected.size() + " expected), "
+				+ (sameRows ? "same" : "DIFFERENT") + " ids, " + numDifferent + " of " + NUM_FINAL_QUERIES
+				+ " answers differ from a store built from the remaining rows");
+		System.out.println(ok ? "ok" : "FAILED");
+	}
+}
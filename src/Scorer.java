@@ -0,0 +1,101 @@
+/**
+ * Scorer.java:
+ * Categorises single rows with an already trained model, as opposed to FoldEvaluator
+ * which trains and tests a whole fold. Rows use the same layout as the dataset files
+ * (64 feature values followed by the category cell, whose value is ignored), so
+ * rows read from a dataset can be scored directly. Implementations must be safe to
+ * call from several threads at once.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface Scorer {
+
+	/**
+	 * Categorises one row
+	 *
+	 * @param row, the row to categorise (64 feature values and a category cell)
+	 * @return the predicted category (0-9)
+	 */
+	int score(int[] row);
+
+	/**
+	 * Builds a scorer from a training set
+	 *
+	 * @param model, the model to build ("nn" uses the training set, reduced as set by the -Dnn.*
+	 * properties, as the reference set, "mlp" trains an MLP configured from the -Dmlp.* properties
+	 * (or, with -Dmlp.ensemble, a MultilayerPerceptronEnsemble), "cascade" builds a CascadeClassifier
+	 * configured from the -Dcascade.* properties). If preprocessing is set by the -Dprep.* properties
+	 * (see PreprocessingConfig), it is fitted on the training set and applied first, the same as in
+	 * cross-validation. If a projection is set by the -Dprojection.* properties, the model is built
+	 * from projected rows and every row is projected before scoring.
+	 * If -Dcache.size is set, predictions for up to that many distinct rows are cached in a PredictionCache.
+	 * @param trainSet, the rows to build the model from
+	 * @return the trained scorer
+	 */
+	static Scorer forName(String model, int[][] trainSet) {
+		FeaturePreprocessor preprocessor = PreprocessingConfig.fromProperties(System.getProperties()).fit(trainSet);
+		int[][] rows = preprocessor == null ? trainSet : preprocessor.apply(trainSet);
+		if (preprocessor != null)
+			System.err.println("Preprocessing " + preprocessor.summary());
+
+		Projection.Fitted projection = ProjectionConfig.fromProperties(System.getProperties()).fit(rows);
+		if (projection != null)
+			rows = projection.apply(rows);
+		Scorer scorer;
+
+		switch (model) {
+		case "nn":
+			NearestNeighbour nearestNeighbour = new NearestNeighbour(
+					NearestNeighbourConfig.fromProperties(System.getProperties()), rows);
+			if (nearestNeighbour.getReductionSummary() != null)
+				System.err.println(nearestNeighbour.getReductionSummary());
+			scorer = nearestNeighbour;
+			break;
+		case "mlp":
+			MultilayerPerceptronConfig mlpConfig = MultilayerPerceptronConfig.fromProperties(System.getProperties());
+			if (mlpConfig.ensembleSize > 1) {
+				MultilayerPerceptronEnsemble ensemble = new MultilayerPerceptronEnsemble(mlpConfig);
+				ensemble.train(rows);
+				scorer = ensemble;
+			} else {
+				MultilayerPerceptron multilayerPerceptron = new MultilayerPerceptron(mlpConfig);
+				multilayerPerceptron.trainModel(rows);
+				scorer = multilayerPerceptron;
+			}
+			break;
+		case "cascade":
+			CascadeClassifier cascadeClassifier = new CascadeClassifier(
+					CascadeConfig.fromProperties(System.getProperties()));
+			cascadeClassifier.train(rows);
+			scorer = cascadeClassifier;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown model: " + model);
+		}
+
+		/* a row is preprocessed, then projected, then scored */
+		if (projection != null)
+			scorer = projection.wrap(scorer);
+		if (preprocessor != null)
+			scorer = preprocessor.wrap(scorer);
+
+		int cacheSize = Integer.getInteger("cache.size", 0);
+		return cacheSize > 0 ? new PredictionCache(scorer, cacheSize) : scorer;
+	}
+
+	/**
+	 * Categorises a batch of rows. Implementations can override this when scoring
+	 * several rows together is cheaper than scoring them one at a time.
+	 *
+	 * @param rows, the rows to categorise
+	 * @return the predicted category of each row
+	 */
+	default int[] scoreBatch(int[][] rows) {
+		int[] categories = new int[rows.length];
+		for (int pos = 0; pos < rows.length; pos++)
+			categories[pos] = score(rows[pos]);
+		return categories;
+	}
+}
@@ -0,0 +1,289 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ScoringServer.java:
+ * Local HTTP server that categorises single digits with a trained Nearest Neighbour
+ * or MLP model. Each request is handled on its own thread (a virtual thread when the
+ * JVM supports them, Java 21+, otherwise a cached thread pool), and rows from requests
+ * that arrive at the same time are scored together by a MicroBatcher.
+ *
+ * POST /classify with one row per line (64 comma separated feature values, optionally
+ * followed by a category which is ignored) returns one category per line.
+ * GET /stats returns the request count and p50/p99 latency as JSON, and the cache hit rate
+ * if the model is behind a PredictionCache (-Dcache.size).
+ *
+ * The "store" model is a nearest neighbour search over a ReferenceStore, so labelled corrections
+ * can be added while the server is answering queries. POST /append with one labelled row per line
+ * (64 feature values followed by the category) returns the id of each row, one per line, and
+ * POST /delete with ids (separated by commas or new lines) deletes those rows. Each change is
+ * seen by every query that starts after it, and /classify returns -1 while the store is empty. The store is not cached or projected, since its
+ * answers change, and it uses -Dnn.search (linear or pivot) but not the nn reductions.
+ *
+ * Usage: java ScoringServer [nn|mlp|cascade|store] [port] with optional -Dserver.windowMicros
+ * (default 500) and -Dserver.maxBatch (default 256). The model is trained on cw2DataSet1.csv and
+ * cw2DataSet2.csv from the current directory.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ScoringServer {
+
+	private final HttpServer server;
+	private final ExecutorService requestExecutor;
+	private final Scorer scorer;
+	private final ReferenceStore store; /* the scorer, if rows can be appended and deleted; otherwise null */
+	private final MicroBatcher batcher;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Creates a server; call start() to begin accepting requests
+	 *
+	 * @param scorer, the trained model used to categorise rows
+	 * @param port, the port to listen on (0 for any free port)
+	 * @param windowMicros, how long to collect concurrent rows into one batch
+	 * @param maxBatchSize, the largest number of rows in one batch
+	 */
+	public ScoringServer(Scorer scorer, int port, long windowMicros, int maxBatchSize) throws IOException {
+		this.scorer = scorer;
+		this.store = scorer instanceof ReferenceStore ? (ReferenceStore) scorer : null;
+		this.batcher = new MicroBatcher(scorer, windowMicros, maxBatchSize);
+		this.requestExecutor = newRequestExecutor();
+
+		this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		this.server.createContext("/classify", this::handleClassify);
+		this.server.createContext("/stats", this::handleStats);
+		if (store != null) {
+			this.server.createContext("/append", this::handleAppend);
+			this.server.createContext("/delete", this::handleDelete);
+		}
+		this.server.setExecutor(requestExecutor);
+	}
+
+	/**
+	 * Helper function that creates an executor which starts a virtual thread per request if the
+	 * JVM has them (Java 21+). Older JVMs fall back to a cached pool of platform threads.
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		batcher.close();
+		requestExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return the port the server is listening on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Helper function that handles POST /classify; parses each line of the body as a row,
+	 * submits every row to the batcher and writes back the categories in the same order
+	 */
+	private void handleClassify(HttpExchange exchange) throws IOException {
+		long startTime = System.nanoTime();
+
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				respond(exchange, 405, "POST rows to /classify\n");
+				return;
+			}
+
+			List<CompletableFuture<Integer>> results = new ArrayList<>();
+			for (String line : readLines(exchange))
+				results.add(batcher.submit(parseRow(line)));
+
+			StringBuilder response = new StringBuilder();
+			for (CompletableFuture<Integer> result : results)
+				response.append(result.get(10, TimeUnit.SECONDS)).append('\n');
+
+			respond(exchange, 200, response.toString());
+			latency.record(System.nanoTime() - startTime);
+
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+		} catch (Exception e) {
+			respond(exchange, 500, e.toString() + "\n");
+		}
+	}
+
+	/**
+	 * Helper function that handles POST /append; every row in the body is appended in one change,
+	 * or none of them if any row is malformed
+	 */
+	private void handleAppend(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				respond(exchange, 405, "POST labelled rows to /append\n");
+				return;
+			}
+
+			List<int[]> rows = new ArrayList<>();
+			for (String line : readLines(exchange))
+				rows.add(parseLabelledRow(line));
+
+			StringBuilder response = new StringBuilder();
+			for (long id : store.append(rows.toArray(new int[0][])))
+				response.append(id).append('\n');
+			respond(exchange, 200, response.toString());
+
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+		}
+	}
+
+	/**
+	 * Helper function that handles POST /delete; ids that are not in the store are ignored
+	 */
+	private void handleDelete(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				respond(exchange, 405, "POST row ids to /delete\n");
+				return;
+			}
+
+			List<Long> ids = new ArrayList<>();
+			for (String line : readLines(exchange))
+				for (String id : line.split(","))
+					if (!id.trim().isEmpty())
+						ids.add(Long.parseLong(id.trim()));
+
+			long[] deletedIds = new long[ids.size()];
+			for (int pos = 0; pos < deletedIds.length; pos++)
+				deletedIds[pos] = ids.get(pos);
+			int numDeleted = store.delete(deletedIds);
+
+			ReferenceStore.Snapshot snapshot = store.snapshot();
+			respond(exchange, 200, "{\"deleted\":" + numDeleted + ",\"size\":" + snapshot.size() + ",\"version\":"
+					+ snapshot.version() + "}\n");
+
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+		}
+	}
+
+	/**
+	 * Helper function that reads the non-empty lines of a request body
+	 */
+	private static List<String> readLines(HttpExchange exchange) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				if (!line.trim().isEmpty())
+					lines.add(line);
+		}
+		return lines;
+	}
+
+	/**
+	 * Helper function that handles GET /stats
+	 */
+	private void handleStats(HttpExchange exchange) throws IOException {
+		respond(exchange, 200,
+				"{\"requests\":" + latency.count() + ",\"p50Micros\":" + latency.percentile(50) / 1000
+						+ ",\"p99Micros\":" + latency.percentile(99) / 1000 + ",\"meanMicros\":"
+						+ Math.round(latency.mean() / 1000) + ",\"batches\":" + batcher.batchCount()
+						+ ",\"meanBatchSize\":" + Math.round(batcher.meanBatchSize() * 100.0) / 100.0
+						+ (scorer instanceof PredictionCache ? "," + ((PredictionCache) scorer).statsJson() : "")
+						+ (store != null ? ",\"storeSize\":" + store.size() + ",\"storeVersion\":" + store.version() : "")
+						+ "}\n");
+	}
+
+	/**
+	 * Parses one line of comma separated values into a row. If there are only 64 feature values,
+	 * an empty category cell is added so that the row has the same layout as the dataset.
+	 *
+	 * @param line, the line to parse
+	 * @return the row
+	 */
+	static int[] parseRow(String line) {
+		String[] values = line.split(",");
+		if (values.length != MultilayerPerceptron.NUM_FEATURE_VALS
+				&& values.length != MultilayerPerceptron.NUM_FEATURE_VALS + 1)
+			throw new IllegalArgumentException("Expected 64 feature values but got " + values.length);
+
+		int[] row = new int[MultilayerPerceptron.NUM_FEATURE_VALS + 1];
+		for (int pos = 0; pos < values.length; pos++)
+			row[pos] = Integer.parseInt(values[pos].trim());
+		return row;
+	}
+
+	/**
+	 * Parses one line of a labelled row: 64 comma separated feature values followed by the category
+	 *
+	 * @param line, the line to parse
+	 * @return the row
+	 */
+	static int[] parseLabelledRow(String line) {
+		if (line.split(",").length != MultilayerPerceptron.NUM_FEATURE_VALS + 1)
+			throw new IllegalArgumentException("Expected 64 feature values and a category: " + line);
+
+		int[] row = parseRow(line);
+		int category = row[row.length - 1];
+		if (category < 0 || category >= MultilayerPerceptron.NUM_OUTPUT)
+			throw new IllegalArgumentException("Category out of range: " + category);
+		return row;
+	}
+
+	/**
+	 * Helper function that sends a plain text response
+	 */
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String model = args.length > 0 ? args[0] : "nn";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+
+		/* the model is built from both datasets combined */
+		int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+		int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+		if (dataset1.length == 0 || dataset2.length == 0)
+			return;
+
+		int[][] trainSet = Utility.combineDatasets(dataset1, dataset2);
+		Scorer scorer = model.equals("store")
+				? new ReferenceStore(NearestNeighbourConfig.fromProperties(System.getProperties()), trainSet)
+				: Scorer.forName(model, trainSet);
+
+		ScoringServer server = new ScoringServer(scorer, port, Long.getLong("server.windowMicros", 500),
+				Integer.getInteger("server.maxBatch", 256));
+		server.start();
+		System.out.println("Scoring server (" + model + ") listening on http://localhost:" + server.getPort());
+	}
+}
@@ -0,0 +1,119 @@
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * SeedingComparison.java:
+ * Compares how quickly the GA converges from each initial population seeding strategy
+ * (see SeedingStrategy). Every strategy runs the two fold test a number of times with the same
+ * seeds, and for every fold the generation at which the best gene first reached the target
+ * training fitness is recorded, along with the best fitness of the first population and the
+ * test accuracy. The table shows the mean of each over all runs, so seeded populations can be
+ * compared against random initialisation ("random").
+ *
+ * Usage: java SeedingComparison, with optional -Dseeding.strategies (default random,mean,median,exemplar),
+ * -Dseeding.target (% of the max training fitness, default 65), -Dseeding.repetitions (default 3),
+ * -Dseeding.seed and any -Dga.* property (e.g. -Dga.seedFraction, default 0.5 here, or -Dga.packed=true)
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class SeedingComparison {
+
+	private final Properties baseProperties; /* the -Dga.* properties shared by every run */
+	private final int[][] dataset1, dataset2;
+	private final double targetPercent; /* target training fitness, as a % of the max fitness */
+	private final int repetitions;
+	private final long seed;
+
+	public SeedingComparison(Properties baseProperties, int[][] dataset1, int[][] dataset2, double targetPercent,
+			int repetitions, long seed) {
+		this.baseProperties = baseProperties;
+		this.dataset1 = dataset1;
+		this.dataset2 = dataset2;
+		this.targetPercent = targetPercent;
+		this.repetitions = repetitions;
+		this.seed = seed;
+	}
+
+	/**
+	 * Runs the two fold test repeatedly with one seeding strategy
+	 *
+	 * @param strategy, the name of the seeding strategy
+	 * @return a one line summary: mean generations to the target, how many runs reached it,
+	 *         the mean best fitness of the first population and the mean test accuracy
+	 */
+	public String compare(String strategy) {
+		int numRuns = 0, numReached = 0;
+		long generationsSum = 0, firstBestSum = 0, correctSum = 0, testRowsSum = 0;
+
+		for (int repetition = 0; repetition < repetitions; repetition++) {
+			Properties props = new Properties();
+			props.putAll(baseProperties);
+			props.setProperty("ga.seeding", strategy);
+			if (strategy.equals("random"))
+				props.setProperty("ga.seedFraction", "0"); /* the baseline is the unseeded population */
+			props.setProperty("ga.seed", Long.toString(seed + repetition)); /* every strategy gets the same seeds */
+			GeneticAlgorithmConfig config = GeneticAlgorithmConfig.fromProperties(props);
+
+			for (int fold = 0; fold < 2; fold++) {
+				int[][] trainSet = fold == 0 ? dataset1 : dataset2, testSet = fold == 0 ? dataset2 : dataset1;
+				int targetFitness = (int) Math.ceil(10 * ((trainSet.length + 9) / 10) * targetPercent / 100.0);
+
+				ConvergenceMonitor monitor;
+				if (config.packed) {
+					PackedGeneticAlgorithm geneticAlgorithm = new PackedGeneticAlgorithm(config);
+					correctSum += geneticAlgorithm.trainAndTest(trainSet, testSet);
+					monitor = geneticAlgorithm.monitor;
+				} else {
+					GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm(config);
+					correctSum += geneticAlgorithm.trainAndTest(trainSet, testSet);
+					monitor = geneticAlgorithm.monitor;
+				}
+
+				numRuns++;
+				testRowsSum += testSet.length;
+				firstBestSum += monitor.getBestFitness()[0];
+				int generation = monitor.generationReaching(targetFitness);
+				if (generation >= 0) {
+					numReached++;
+					generationsSum += generation;
+				}
+			}
+		}
+
+		String generations = numReached == 0 ? "-" : String.format("%.1f", (double) generationsSum / numReached);
+		return String.format(
+				"%-10s generations to %.0f%%: %7s (reached in %d/%d runs), first population best = %.1f, accuracy = %.2f%%",
+				strategy, targetPercent, generations, numReached, numRuns, (double) firstBestSum / numRuns,
+				100.0 * correctSum / testRowsSum);
+	}
+
+	public static void main(String[] args) {
+
+		/* the datasets are read from the current directory, the same as Main */
+		int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+		int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+		if (dataset1.length == 0 || dataset2.length == 0)
+			return;
+
+		Properties props = new Properties();
+		props.putAll(System.getProperties());
+		if (props.getProperty("ga.seedFraction") == null)
+			props.setProperty("ga.seedFraction", "0.5");
+
+		String[] strategies = System.getProperty("seeding.strategies", "random,mean,median,exemplar").split(",");
+		double targetPercent = Double.parseDouble(System.getProperty("seeding.target", "65"));
+		SeedingComparison comparison = new SeedingComparison(props, dataset1, dataset2, targetPercent,
+				Integer.getInteger("seeding.repetitions", 3), Long.getLong("seeding.seed", System.nanoTime()));
+
+		/* the header shows the shared GA parameters; the seeding is shown on each line of the table */
+		Properties shared = new Properties();
+		shared.putAll(props);
+		shared.setProperty("ga.seedFraction", "0");
+		System.out.println("GA: " + GeneticAlgorithmConfig.fromProperties(shared) + ", seedFraction="
+				+ props.getProperty("ga.seedFraction") + ", seedNoise=" + props.getProperty("ga.seedNoise", "2"));
+		for (String strategy : strategies)
+			System.out.println(comparison.compare(strategy));
+	}
+}
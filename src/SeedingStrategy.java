@@ -0,0 +1,247 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SeedingStrategy.java:
+ * Initial population seeding for the genetic algorithm. Rather than starting every gene
+ * from uniform random values, part (or all) of the population can start from prototypes
+ * built from the training fold: each section of a seeded gene is the mean or median row of
+ * its category, or a training row of that category chosen at random (an exemplar). Every
+ * seeded gene but the first is perturbed, so the seeded genes are not all the same.
+ * Genes that are not seeded are random, exactly as before.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface SeedingStrategy {
+
+	int NUM_CATEGORIES = 10; /* one section of the gene for each category */
+	int ROW_LENGTH = 64; /* length of each section, the same as a row without its category */
+	int GENE_LENGTH = NUM_CATEGORIES * ROW_LENGTH;
+
+	/**
+	 * Builds seeded genes from a training set
+	 *
+	 * @param trainSet, the training fold
+	 * @param numGenes, the number of genes needed
+	 * @param random, the random number generator for this run
+	 * @return numGenes genes of 640 values (0-16 each), before perturbation
+	 */
+	int[][] seed(int[][] trainSet, int numGenes, Random random);
+
+	/**
+	 * Returns the seeding strategy with the given name
+	 *
+	 * @param name, the name of the strategy ("random", "mean", "median" or "exemplar")
+	 * @return the seeding strategy
+	 */
+	static SeedingStrategy forName(String name) {
+		switch (name) {
+		case "random":
+			return new RandomValues();
+		case "mean":
+			return new ClassMean();
+		case "median":
+			return new ClassMedian();
+		case "exemplar":
+			return new Exemplar();
+		default:
+			throw new IllegalArgumentException("Unknown seeding strategy: " + name);
+		}
+	}
+
+	/**
+	 * Generates the initial population for a run: the first seedFraction of the population is
+	 * seeded by the configured strategy and the rest is random. With no seeding, the random
+	 * values are drawn in the same order as before, so a seed gives the same population.
+	 *
+	 * @param config, the GA configuration (population size, seeding strategy, fraction and noise)
+	 * @param trainSet, the training fold
+	 * @param random, the random number generator for this run
+	 * @return the genes of the initial population
+	 */
+	static int[][] initialPopulation(GeneticAlgorithmConfig config, int[][] trainSet, Random random) {
+		int[][] population = new int[config.populationSize][];
+		int numSeeded = (int) Math.round(config.populationSize * config.seedFraction);
+
+		if (numSeeded > 0) {
+			int[][] seeded = config.seeding.seed(trainSet, numSeeded, random);
+			for (int pos = 0; pos < numSeeded; pos++) {
+				/* the first gene is kept exactly as seeded */
+				if (pos > 0)
+					perturb(seeded[pos], config.seedNoise, random);
+				population[pos] = seeded[pos];
+			}
+		}
+
+		for (int currentGene = numSeeded; currentGene < population.length; currentGene++)
+			population[currentGene] = randomGene(random);
+		return population;
+	}
+
+	/**
+	 * Helper function that generates a gene with a random number between 0 and 16 at every position
+	 */
+	static int[] randomGene(Random random) {
+		int[] gene = new int[GENE_LENGTH];
+		for (int pos = 0; pos < gene.length; pos++)
+			gene[pos] = random.nextInt(MutationStrategy.FEATURE_VALUE_MAX + 1);
+		return gene;
+	}
+
+	/**
+	 * Adds a random amount between -noise and noise to every value of a gene, keeping the values between 0 and 16
+	 *
+	 * @param gene, the gene to perturb
+	 * @param noise, the largest change to a value
+	 * @param random, the random number generator for this run
+	 */
+	static void perturb(int[] gene, int noise, Random random) {
+		if (noise == 0)
+			return;
+		for (int pos = 0; pos < gene.length; pos++) {
+			int value = gene[pos] + random.nextInt(2 * noise + 1) - noise;
+			gene[pos] = Math.max(0, Math.min(MutationStrategy.FEATURE_VALUE_MAX, value));
+		}
+	}
+
+	/**
+	 * Helper function that splits a training set into the rows of each category
+	 */
+	static int[][][] rowsByCategory(int[][] trainSet) {
+		int lastIndex = trainSet[0].length - 1;
+		int[] counts = new int[NUM_CATEGORIES];
+		for (int[] row : trainSet)
+			counts[row[lastIndex]]++;
+
+		int[][][] byCategory = new int[NUM_CATEGORIES][][];
+		for (int category = 0; category < NUM_CATEGORIES; category++)
+			byCategory[category] = new int[counts[category]][];
+
+		Arrays.fill(counts, 0);
+		for (int[] row : trainSet)
+			byCategory[row[lastIndex]][counts[row[lastIndex]]++] = row;
+		return byCategory;
+	}
+
+	/**
+	 * Helper function that makes numGenes copies of a prototype gene; a category with no
+	 * training rows has random values in its section, the same in every copy
+	 *
+	 * @param sections, the prototype row for each category, null for a category with no rows
+	 */
+	static int[][] copies(int[][] sections, int numGenes, Random random) {
+		int[] prototype = new int[GENE_LENGTH];
+		for (int category = 0; category < NUM_CATEGORIES; category++)
+			for (int pos = 0; pos < ROW_LENGTH; pos++)
+				prototype[category * ROW_LENGTH + pos] = sections[category] != null ? sections[category][pos]
+						: random.nextInt(MutationStrategy.FEATURE_VALUE_MAX + 1);
+
+		int[][] genes = new int[numGenes][];
+		for (int pos = 0; pos < numGenes; pos++)
+			genes[pos] = prototype.clone();
+		return genes;
+	}
+
+	/**
+	 * No seeding; every gene is random, as if no genes were seeded
+	 */
+	class RandomValues implements SeedingStrategy {
+
+		@Override
+		public int[][] seed(int[][] trainSet, int numGenes, Random random) {
+			int[][] genes = new int[numGenes][];
+			for (int pos = 0; pos < numGenes; pos++)
+				genes[pos] = randomGene(random);
+			return genes;
+		}
+	}
+
+	/**
+	 * Each section is the mean row of its category, rounded to the nearest whole value
+	 */
+	class ClassMean implements SeedingStrategy {
+
+		@Override
+		public int[][] seed(int[][] trainSet, int numGenes, Random random) {
+			int[][][] byCategory = rowsByCategory(trainSet);
+			int[][] sections = new int[NUM_CATEGORIES][];
+
+			for (int category = 0; category < NUM_CATEGORIES; category++) {
+				int[][] rows = byCategory[category];
+				if (rows.length == 0)
+					continue;
+
+				sections[category] = new int[ROW_LENGTH];
+				for (int pos = 0; pos < ROW_LENGTH; pos++) {
+					long sum = 0;
+					for (int[] row : rows)
+						sum += row[pos];
+					sections[category][pos] = (int) Math.round((double) sum / rows.length);
+				}
+			}
+			return copies(sections, numGenes, random);
+		}
+	}
+
+	/**
+	 * Each section is the median row of its category (the median of each feature value on its
+	 * own), which is less affected by unusual rows than the mean
+	 */
+	class ClassMedian implements SeedingStrategy {
+
+		@Override
+		public int[][] seed(int[][] trainSet, int numGenes, Random random) {
+			int[][][] byCategory = rowsByCategory(trainSet);
+			int[][] sections = new int[NUM_CATEGORIES][];
+
+			for (int category = 0; category < NUM_CATEGORIES; category++) {
+				int[][] rows = byCategory[category];
+				if (rows.length == 0)
+					continue;
+
+				/* feature values are 0-16, so a count of each value finds the median without sorting */
+				sections[category] = new int[ROW_LENGTH];
+				int[] counts = new int[MutationStrategy.FEATURE_VALUE_MAX + 1];
+				for (int pos = 0; pos < ROW_LENGTH; pos++) {
+					Arrays.fill(counts, 0);
+					for (int[] row : rows)
+						counts[row[pos]]++;
+
+					int value = 0, seen = counts[0];
+					while (2 * seen < rows.length)
+						seen += counts[++value];
+					sections[category][pos] = value;
+				}
+			}
+			return copies(sections, numGenes, random);
+		}
+	}
+
+	/**
+	 * Each section is a training row of its category chosen at random, so every seeded gene is
+	 * made of different real rows
+	 */
+	class Exemplar implements SeedingStrategy {
+
+		@Override
+		public int[][] seed(int[][] trainSet, int numGenes, Random random) {
+			int[][][] byCategory = rowsByCategory(trainSet);
+			int[][] genes = new int[numGenes][];
+
+			for (int geneNum = 0; geneNum < numGenes; geneNum++) {
+				int[] gene = new int[GENE_LENGTH];
+				for (int category = 0; category < NUM_CATEGORIES; category++) {
+					int[][] rows = byCategory[category];
+					int[] exemplar = rows.length == 0 ? null : rows[random.nextInt(rows.length)];
+					for (int pos = 0; pos < ROW_LENGTH; pos++)
+						gene[category * ROW_LENGTH + pos] = exemplar != null ? exemplar[pos]
+								: random.nextInt(MutationStrategy.FEATURE_VALUE_MAX + 1);
+				}
+				genes[geneNum] = gene;
+			}
+			return genes;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+import java.util.Random;
+
+/**
+ * SelectionStrategy.java:
+ * Parent gene selection for the genetic algorithm. A selection strategy fills
+ * an array of parents from the current population, using the fitness values that
+ * have already been calculated for each gene (so selection never re-evaluates fitness).
+ * Parents are taken in pairs; parents[0] and parents[1] are crossed over, then
+ * parents[2] and parents[3] and so on.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public interface SelectionStrategy {
+
+	/**
+	 * Selects parent genes from the population
+	 *
+	 * @param population, the current population
+	 * @param fitnesses, the fitness of each gene in the population (same order as the population)
+	 * @param parents, array to be filled with the selected parents (its length is the number of parents needed)
+	 * @param random, the random number generator for this run
+	 */
+	void select(int[][] population, int[] fitnesses, int[][] parents, Random random);
+
+	/**
+	 * Returns the selection strategy with the given name
+	 *
+	 * @param name, the name of the strategy ("best" or "tournament")
+	 * @param tournamentSize, the number of contestants in each tournament (only used by "tournament")
+	 * @return the selection strategy
+	 */
+	static SelectionStrategy forName(String name, int tournamentSize) {
+		switch (name) {
+		case "best":
+			return new BestGenes();
+		case "tournament":
+			return new Tournament(tournamentSize);
+		default:
+			throw new IllegalArgumentException("Unknown selection strategy: " + name);
+		}
+	}
+
+	/**
+	 * Helper function that retrieves the two genes with the highest fitness out of
+	 * the first numCandidates positions given in candidates
+	 *
+	 * @param fitnesses, fitness of every gene in the population
+	 * @param candidates, positions in the population to choose from
+	 * @param numCandidates, the number of positions in candidates to consider
+	 * @return an array containing the positions of the best and second best genes
+	 */
+	static int[] findTwoBestGenes(int[] fitnesses, int[] candidates, int numCandidates) {
+		int bestFitness = -1, secondBestFitness = -1;
+		int bestPos = candidates[0], secondBestPos = candidates[numCandidates > 1 ? 1 : 0];
+
+		for (int pos = 0; pos < numCandidates; pos++) {
+			int currentFitness = fitnesses[candidates[pos]];
+
+			/* if the current fitness is more than the best fitness, set best fitness
+			   to current, and set second best fitness to previous best */
+			if (currentFitness >= bestFitness) {
+				secondBestFitness = bestFitness;
+				secondBestPos = bestPos;
+
+				bestFitness = currentFitness;
+				bestPos = candidates[pos];
+			} else if (currentFitness >= secondBestFitness) {
+				secondBestFitness = currentFitness;
+				secondBestPos = candidates[pos];
+			}
+		}
+
+		return new int[] { bestPos, secondBestPos };
+	}
+
+	/**
+	 * Retrieves the two genes in the population with the highest fitness. This is
+	 * a very simple selection function, but because of this simplicity it has proven
+	 * particularly effective in generating populations with a high average fitness quickly
+	 */
+	class BestGenes implements SelectionStrategy {
+
+		@Override
+		public void select(int[][] population, int[] fitnesses, int[][] parents, Random random) {
+
+			int[] allGenes = new int[population.length];
+			for (int pos = 0; pos < allGenes.length; pos++)
+				allGenes[pos] = pos;
+
+			/* find the positions of the two best genes in the population */
+			int[] bestGenes = findTwoBestGenes(fitnesses, allGenes, allGenes.length);
+
+			/* every pair of parents is made up of the two best genes */
+			for (int parentPos = 0; parentPos < parents.length; parentPos++)
+				parents[parentPos] = population[bestGenes[parentPos % 2]];
+		}
+	}
+
+	/**
+	 * Tournament selection method for selecting parent genes. For each pair of parents,
+	 * a random set of genes is chosen from the population and the two best genes from
+	 * that set become the parents
+	 */
+	class Tournament implements SelectionStrategy {
+
+		static final int DEFAULT_CONTESTANTS = 10; /* 10 genes are in each tournament by default */
+
+		private final int numContestants;
+
+		Tournament(int numContestants) {
+			if (numContestants < 2)
+				throw new IllegalArgumentException("A tournament needs at least 2 contestants");
+			this.numContestants = numContestants;
+		}
+
+		@Override
+		public void select(int[][] population, int[] fitnesses, int[][] parents, Random random) {
+
+			int contestants = Math.min(numContestants, population.length);
+			int[] genePositions = new int[population.length];
+			for (int pos = 0; pos < genePositions.length; pos++)
+				genePositions[pos] = pos;
+
+			/* loop through every pair of parents */
+			for (int parentPos = 0; parentPos + 1 < parents.length; parentPos += 2) {
+
+				/* partial Fisher-Yates shuffle; the first 'contestants' positions become the tournament */
+				for (int pos = 0; pos < contestants; pos++) {
+					int randomIndex = pos + random.nextInt(genePositions.length - pos);
+					int temp = genePositions[randomIndex];
+					genePositions[randomIndex] = genePositions[pos];
+					genePositions[pos] = temp;
+				}
+
+				int[] bestGenes = findTwoBestGenes(fitnesses, genePositions, contestants);
+
+				/* the two best genes from the tournament become the next pair of parents */
+				parents[parentPos] = population[bestGenes[0]];
+				parents[parentPos + 1] = population[bestGenes[1]];
+			}
+		}
+	}
+}
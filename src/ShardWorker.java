@@ -0,0 +1,189 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ShardWorker.java:
+ * One shard of a sharded nearest neighbour search (see ShardedNearestNeighbour). The worker
+ * holds every numShards-th row of the reference file, starting at row shard, and answers
+ * batches of query rows sent by a coordinator over a socket with the nearest of its own rows
+ * to each query: the distance, the category and the row's position in the whole reference
+ * file, so the coordinator can merge the shards and break ties the way a linear search would.
+ *
+ * Protocol (DataInput/DataOutput, big-endian): on connecting, the worker sends MAGIC, its shard
+ * number and its number of rows. The coordinator then sends QUERY, the number of rows, the row
+ * length and the values of each row, and the worker replies with a distance (double), category (int)
+ * and reference position (int) for each row; or it sends CLOSE to end the connection.
+ *
+ * Usage: java ShardWorker [reference csv] [shard] [number of shards] [port, 0 for any free port]
+ * Once the shard is loaded, the worker prints "ShardWorker listening on port N" on stdout.
+ * With -Dshard.exitWithParent=true the worker exits when its stdin is closed, so workers
+ * started by a coordinator do not outlive it. The worker listens on localhost only, unless
+ * -Dshard.bind gives another address to listen on.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ShardWorker {
+
+	static final int MAGIC = 0x55434953; /* "UCIS" */
+	static final int QUERY = 1, CLOSE = 0;
+	static final String READY_MESSAGE = "ShardWorker listening on port ";
+
+	private final int shard;
+	private final int[][] rows; /* this shard's reference rows */
+	private final int[] positions; /* position of each row in the whole reference file */
+
+	/**
+	 * Loads a shard of a reference file
+	 *
+	 * @param referenceFile, the CSV file holding the whole reference set
+	 * @param shard, the number of this shard (0 to numShards - 1)
+	 * @param numShards, the number of shards the reference set is split into
+	 */
+	public ShardWorker(String referenceFile, int shard, int numShards) throws IOException {
+		if (numShards < 1 || shard < 0 || shard >= numShards)
+			throw new IllegalArgumentException("Shard must be between 0 and " + (numShards - 1) + ": " + shard);
+
+		this.shard = shard;
+		int rowLength = MultilayerPerceptron.NUM_FEATURE_VALS + 1;
+		List<int[]> shardRows = new ArrayList<>();
+		List<Integer> shardPositions = new ArrayList<>();
+
+		/* read the file in blocks, keeping only this shard's rows */
+		try (CsvRowReader reader = new CsvRowReader(new BufferedInputStream(new FileInputStream(referenceFile)),
+				rowLength)) {
+			int[][] block = new int[4096][rowLength];
+			int position = 0;
+			for (int numRows; (numRows = reader.read(block)) > 0;)
+				for (int pos = 0; pos < numRows; pos++, position++)
+					if (position % numShards == shard) {
+						shardRows.add(block[pos].clone());
+						shardPositions.add(position);
+					}
+		}
+
+		this.rows = shardRows.toArray(new int[0][]);
+		this.positions = shardPositions.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Finds the nearest row of this shard to every query row. As in NearestNeighbour.scoreBatch, the
+	 * reference rows are the outer loop so each one is read from memory once for the whole batch.
+	 *
+	 * @param queries, the rows to categorise
+	 * @param distances, filled with the distance to the nearest row for each query
+	 * @param categories, filled with the category of the nearest row for each query
+	 * @param nearestPositions, filled with the reference file position of the nearest row for each query (-1 if the shard is empty)
+	 */
+	void nearest(int[][] queries, double[] distances, int[] categories, int[] nearestPositions) {
+		Arrays.fill(distances, Double.MAX_VALUE);
+		Arrays.fill(nearestPositions, -1);
+
+		for (int pos = 0; pos < rows.length; pos++) {
+			int[] referenceRow = rows[pos];
+			for (int query = 0; query < queries.length; query++) {
+				double currentDist = Utility.euclideanDistance(queries[query], referenceRow);
+				if (currentDist < distances[query]) {
+					distances[query] = currentDist;
+					categories[query] = referenceRow[referenceRow.length - 1];
+					nearestPositions[query] = positions[pos];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Serves one coordinator connection until it sends CLOSE or disconnects
+	 */
+	private void serve(Socket socket) throws IOException {
+		try (Socket connection = socket;
+				DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+			connection.setTcpNoDelay(true);
+
+			output.writeInt(MAGIC);
+			output.writeInt(shard);
+			output.writeInt(rows.length);
+			output.flush();
+
+			while (input.readInt() == QUERY) {
+				int numQueries = input.readInt(), rowLength = input.readInt();
+				int[][] queries = new int[numQueries][rowLength];
+				for (int[] query : queries)
+					for (int pos = 0; pos < rowLength; pos++)
+						query[pos] = input.readInt();
+
+				double[] distances = new double[numQueries];
+				int[] categories = new int[numQueries], nearestPositions = new int[numQueries];
+				nearest(queries, distances, categories, nearestPositions);
+
+				for (int query = 0; query < numQueries; query++) {
+					output.writeDouble(distances[query]);
+					output.writeInt(categories[query]);
+					output.writeInt(nearestPositions[query]);
+				}
+				output.flush();
+			}
+		} catch (EOFException e) {
+			/* the coordinator went away without sending CLOSE */
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.out.println("Usage: java ShardWorker [reference csv] [shard] [number of shards] [port]");
+			return;
+		}
+
+		ShardWorker worker = new ShardWorker(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+
+		if (Boolean.getBoolean("shard.exitWithParent")) {
+			Thread watcher = new Thread(() -> {
+				try {
+					while (System.in.read() != -1)
+						;
+				} catch (IOException e) {
+					/* treat a broken stdin the same as a closed one */
+				}
+				System.exit(0);
+			}, "parent-watcher");
+			watcher.setDaemon(true);
+			watcher.start();
+		}
+
+		/* only local coordinators can connect unless another address is given with -Dshard.bind */
+		String bindAddress = System.getProperty("shard.bind");
+		try (ServerSocket serverSocket = new ServerSocket(Integer.parseInt(args[3]), 50,
+				bindAddress == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bindAddress))) {
+			System.out.println(READY_MESSAGE + serverSocket.getLocalPort());
+			System.out.flush();
+			System.err.println("Shard " + args[1] + " of " + args[2] + " holds " + worker.rows.length + " rows");
+
+			/* each coordinator connection is served on its own thread */
+			while (true) {
+				Socket socket = serverSocket.accept();
+				Thread connectionThread = new Thread(() -> {
+					try {
+						worker.serve(socket);
+					} catch (IOException e) {
+						System.err.println("Connection failed: " + e.getMessage());
+					}
+				}, "shard-connection");
+				connectionThread.setDaemon(true);
+				connectionThread.start();
+			}
+		}
+	}
+}
@@ -0,0 +1,245 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardedNearestNeighbour.java:
+ * Nearest neighbour search with the reference set split across several worker processes
+ * (see ShardWorker), so the search is no longer limited by the memory and cores of one JVM.
+ * This class is the coordinator: it sends every batch of query rows to all shards, each shard
+ * finds its own nearest row to each query in parallel, and the answers are merged by keeping
+ * the smallest distance. Equal distances go to the row that comes first in the reference file,
+ * so the result is the same as a linear search over the whole reference set.
+ *
+ * The coordinator is a Scorer like any other model, so it can be used by the streaming
+ * classifier or the scoring server unchanged. Workers can be started on this machine by
+ * launchLocal, or started separately (e.g. on other machines) and connected to by address.
+ *
+ * Usage: java ShardedNearestNeighbour [reference csv] [number of shards] [input file or -] [output file or -]
+ * starts the shards as local JVMs and categorises the input with the StreamingClassifier
+ * (-Dstream.chunkSize, default 1024). With -Dshard.hosts=host:port,host:port,... the coordinator
+ * connects to workers that are already running instead, and the number of shards is ignored.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class ShardedNearestNeighbour implements Scorer, Closeable {
+
+	/**
+	 * A connection to one worker
+	 */
+	private static class Shard {
+		final Socket socket;
+		final DataInputStream input;
+		final DataOutputStream output;
+		final int shard;
+		final int numRows;
+
+		Shard(InetSocketAddress address) throws IOException {
+			this.socket = new Socket();
+			socket.connect(address, 10000);
+			socket.setTcpNoDelay(true);
+			this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			if (input.readInt() != ShardWorker.MAGIC)
+				throw new IOException(address + " is not a shard worker");
+			this.shard = input.readInt();
+			this.numRows = input.readInt();
+		}
+	}
+
+	private final List<Shard> shards = new ArrayList<>();
+	private final List<Process> processes = new ArrayList<>(); /* workers started by launchLocal, if any */
+
+	/**
+	 * Connects to workers that are already running
+	 *
+	 * @param addresses, the address of each worker
+	 */
+	public ShardedNearestNeighbour(List<InetSocketAddress> addresses) throws IOException {
+		this(addresses, new ArrayList<>());
+	}
+
+	private ShardedNearestNeighbour(List<InetSocketAddress> addresses, List<Process> processes) throws IOException {
+		if (addresses.isEmpty())
+			throw new IllegalArgumentException("At least one shard is needed");
+
+		this.processes.addAll(processes);
+		try {
+			for (InetSocketAddress address : addresses)
+				shards.add(new Shard(address));
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Starts a worker JVM for each shard on this machine and connects to them. The workers
+	 * use the same java and classpath as this JVM, and exit when the coordinator does.
+	 *
+	 * @param referenceFile, the CSV file holding the whole reference set
+	 * @param numShards, the number of workers to start
+	 * @return the coordinator, which stops the workers when it is closed
+	 */
+	public static ShardedNearestNeighbour launchLocal(String referenceFile, int numShards) throws IOException {
+		if (numShards < 1)
+			throw new IllegalArgumentException("Number of shards must be at least 1: " + numShards);
+
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> processes = new ArrayList<>();
+		List<InetSocketAddress> addresses = new ArrayList<>();
+
+		try {
+			/* start every worker before waiting for any, so they load their shards at the same time */
+			for (int shard = 0; shard < numShards; shard++) {
+				ProcessBuilder builder = new ProcessBuilder(java, "-Dshard.exitWithParent=true", "-cp",
+						System.getProperty("java.class.path"), "ShardWorker", referenceFile, "" + shard, "" + numShards, "0");
+				builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+				processes.add(builder.start());
+			}
+
+			for (Process process : processes) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+				String line = reader.readLine();
+				if (line == null || !line.startsWith(ShardWorker.READY_MESSAGE))
+					throw new IOException("Shard worker failed to start: " + line);
+				addresses.add(new InetSocketAddress("localhost",
+						Integer.parseInt(line.substring(ShardWorker.READY_MESSAGE.length()).trim())));
+			}
+			return new ShardedNearestNeighbour(addresses, processes);
+		} catch (IOException e) {
+			for (Process process : processes)
+				process.destroy();
+			throw e;
+		}
+	}
+
+	@Override
+	public int score(int[] row) {
+		return scoreBatch(new int[][] { row })[0];
+	}
+
+	/**
+	 * Sends the batch to every shard and merges their answers. The whole batch is sent to all
+	 * shards before any answer is read, so the shards search at the same time. Batches are sent
+	 * one at a time over the shared connections, so calls from several threads take turns.
+	 */
+	@Override
+	public synchronized int[] scoreBatch(int[][] rows) {
+		int[] categories = new int[rows.length];
+		if (rows.length == 0)
+			return categories;
+
+		double[] min = new double[rows.length];
+		int[] minPositions = new int[rows.length];
+
+		try {
+			for (Shard shard : shards) {
+				shard.output.writeInt(ShardWorker.QUERY);
+				shard.output.writeInt(rows.length);
+				shard.output.writeInt(rows[0].length);
+				for (int[] row : rows)
+					for (int value : row)
+						shard.output.writeInt(value);
+				shard.output.flush();
+			}
+
+			for (int shardPos = 0; shardPos < shards.size(); shardPos++) {
+				DataInputStream input = shards.get(shardPos).input;
+				for (int pos = 0; pos < rows.length; pos++) {
+					double distance = input.readDouble();
+					int category = input.readInt(), position = input.readInt();
+
+					/* on a tie keep the row that comes first in the reference file, as a linear search would */
+					if (shardPos == 0 || (position >= 0
+							&& (distance < min[pos] || (distance == min[pos] && position < minPositions[pos])))) {
+						min[pos] = distance;
+						minPositions[pos] = position;
+						categories[pos] = category;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Shard connection failed", e);
+		}
+		return categories;
+	}
+
+	/**
+	 * @return the number of reference rows held by each shard
+	 */
+	public String summary() {
+		StringBuilder summary = new StringBuilder(shards.size() + " shard(s):");
+		for (Shard shard : shards)
+			summary.append(" ").append(shard.shard).append("=").append(shard.numRows).append(" rows");
+		return summary.toString();
+	}
+
+	/**
+	 * Closes the connections and stops any workers started by launchLocal
+	 */
+	@Override
+	public synchronized void close() {
+		for (Shard shard : shards) {
+			try {
+				shard.output.writeInt(ShardWorker.CLOSE);
+				shard.output.flush();
+				shard.socket.close();
+			} catch (IOException e) {
+				/* the worker has already gone */
+			}
+		}
+		shards.clear();
+
+		for (Process process : processes)
+			process.destroy();
+		processes.clear();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println(
+					"Usage: java ShardedNearestNeighbour [reference csv] [number of shards] [input|-] [output|-]");
+			return;
+		}
+
+		String inputPath = args.length > 2 ? args[2] : "-";
+		String outputPath = args.length > 3 ? args[3] : "-";
+
+		long startTime = System.nanoTime();
+		ShardedNearestNeighbour scorer;
+		if (System.getProperty("shard.hosts") != null) {
+			List<InetSocketAddress> addresses = new ArrayList<>();
+			for (String host : System.getProperty("shard.hosts").split(",")) {
+				int colon = host.lastIndexOf(':');
+				addresses.add(new InetSocketAddress(host.substring(0, colon), Integer.parseInt(host.substring(colon + 1))));
+			}
+			scorer = new ShardedNearestNeighbour(addresses);
+		} else
+			scorer = launchLocal(args[0], Integer.parseInt(args[1]));
+
+		try {
+			System.err.println(scorer.summary() + ", ready in "
+					+ Math.round((System.nanoTime() - startTime) / 1e7) / 100.0 + "s");
+			StreamingClassifier.runFiles(scorer, Integer.getInteger("stream.chunkSize", 1024), inputPath, outputPath, "");
+		} finally {
+			scorer.close();
+		}
+	}
+}
@@ -0,0 +1,220 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * StreamingClassifier.java:
+ * Categorises an unbounded stream of rows (a file, a pipe or stdin) without loading
+ * it into memory. Rows are parsed in chunks on one thread, categorised on another and
+ * written out on a third, so parsing the next chunk overlaps with categorising the
+ * current one. The stages are joined by small bounded queues; if a later stage falls
+ * behind, the earlier stage blocks (backpressure), so memory use stays at a few chunks
+ * however large the input is.
+ *
+ * Each output line is the predicted category, or "predicted,actual" when the input
+ * row includes a category, so labelled and unlabelled rows can be mixed in one input.
+ *
+ * Usage: java StreamingClassifier [nn|mlp|cascade] [input file or - for stdin] [output file or - for stdout]
+ * with optional -Dstream.chunkSize (rows per chunk, default 1024). The model is built from
+ * cw2DataSet1.csv and cw2DataSet2.csv in the current directory.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class StreamingClassifier {
+
+	private static final int QUEUE_CAPACITY = 2; /* chunks waiting between two stages */
+
+	/**
+	 * A chunk of parsed rows and, once categorised, their categories. A chunk with no rows marks the end of the stream.
+	 */
+	static class Chunk {
+		final int[][] rows;
+		final int numRows;
+		final boolean[] hasCategory; /* true for each input row that included a category */
+		int[] categories;
+
+		Chunk(int[][] rows, int numRows, boolean[] hasCategory) {
+			this.rows = rows;
+			this.numRows = numRows;
+			this.hasCategory = hasCategory;
+		}
+	}
+
+	private static final Chunk END = new Chunk(new int[0][], 0, new boolean[0]);
+
+	private final Scorer scorer;
+	private final int chunkSize;
+
+	private long rowsProcessed = 0;
+
+	/**
+	 * @param scorer, the trained model used to categorise rows
+	 * @param chunkSize, the number of rows in each chunk
+	 */
+	public StreamingClassifier(Scorer scorer, int chunkSize) {
+		this.scorer = scorer;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Categorises every row of the input and writes the results to the output. Returns when
+	 * the input has been fully read and every result has been written.
+	 *
+	 * @param input, the stream of comma separated rows
+	 * @param output, the stream to write categories to
+	 * @return the number of rows categorised
+	 */
+	public long run(InputStream input, OutputStream output) throws IOException, InterruptedException {
+		BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		BlockingQueue<Chunk> categorised = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		/* stage 1: parse chunks of rows from the input */
+		Thread parser = new Thread(() -> {
+			try {
+				parse(input, parsed);
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				putQuietly(parsed, END);
+			}
+		}, "stream-parser");
+
+		/* stage 2: categorise each chunk */
+		Thread classifier = new Thread(() -> {
+			try {
+				for (Chunk chunk; (chunk = parsed.take()) != END;) {
+					int[][] rows = chunk.numRows == chunk.rows.length ? chunk.rows
+							: Arrays.copyOf(chunk.rows, chunk.numRows);
+					chunk.categories = scorer.scoreBatch(rows);
+					categorised.put(chunk);
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				putQuietly(categorised, END);
+			}
+		}, "stream-classifier");
+
+		parser.start();
+		classifier.start();
+
+		/* stage 3 (this thread): write results with a buffered writer over an NIO channel */
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Channels.newOutputStream(Channels.newChannel(output)), StandardCharsets.UTF_8),
+				1 << 16)) {
+
+			for (Chunk chunk; (chunk = categorised.take()) != END;) {
+				for (int pos = 0; pos < chunk.numRows; pos++) {
+					writer.write(Integer.toString(chunk.categories[pos]));
+					if (chunk.hasCategory[pos]) {
+						writer.write(',');
+						writer.write(Integer.toString(chunk.rows[pos][chunk.rows[pos].length - 1]));
+					}
+					writer.write('\n');
+				}
+				rowsProcessed += chunk.numRows;
+			}
+		} finally {
+			/* if the writer failed, stop the other stages so they do not block forever */
+			parser.interrupt();
+			classifier.interrupt();
+		}
+
+		parser.join();
+		classifier.join();
+
+		if (failure.get() != null)
+			throw new IOException("Streaming failed", failure.get());
+		return rowsProcessed;
+	}
+
+	/**
+	 * Helper function that parses the input into chunks (see CsvRowReader)
+	 */
+	private void parse(InputStream input, BlockingQueue<Chunk> parsed) throws IOException, InterruptedException {
+		CsvRowReader reader = new CsvRowReader(input, MultilayerPerceptron.NUM_FEATURE_VALS + 1);
+
+		while (true) {
+			int[][] rows = new int[chunkSize][MultilayerPerceptron.NUM_FEATURE_VALS + 1];
+			boolean[] hasCategory = new boolean[chunkSize];
+			int numRows = reader.read(rows, hasCategory);
+			if (numRows == 0)
+				break;
+			parsed.put(new Chunk(rows, numRows, hasCategory));
+		}
+	}
+
+	/**
+	 * Helper function that puts the end marker in a queue, even if the thread has been interrupted
+	 */
+	private static void putQuietly(BlockingQueue<Chunk> queue, Chunk chunk) {
+		while (true) {
+			try {
+				queue.put(chunk);
+				return;
+			} catch (InterruptedException e) {
+				/* an interrupted stage still needs to tell the next stage that it has finished */
+				if (queue.remainingCapacity() == 0)
+					queue.poll();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String model = args.length > 0 ? args[0] : "nn";
+		String inputPath = args.length > 1 ? args[1] : "-";
+		String outputPath = args.length > 2 ? args[2] : "-";
+
+		int[][] dataset1 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet1.csv");
+		int[][] dataset2 = Utility.readFile(System.getProperty("user.dir") + File.separator + "cw2DataSet2.csv");
+		if (dataset1.length == 0 || dataset2.length == 0)
+			return;
+
+		Scorer scorer = Scorer.forName(model, Utility.combineDatasets(dataset1, dataset2));
+		runFiles(scorer, Integer.getInteger("stream.chunkSize", 1024), inputPath, outputPath, "");
+	}
+
+	/**
+	 * Categorises a file (or stdin) into a file (or stdout) and prints the number of rows and
+	 * rows per second to stderr; the command line tools that stream rows all finish with this
+	 *
+	 * @param scorer, the trained model used to categorise rows
+	 * @param chunkSize, the number of rows in each chunk
+	 * @param inputPath, the file to read, or "-" for stdin
+	 * @param outputPath, the file to write, or "-" for stdout
+	 * @param description, added to the summary after the number of rows (e.g. " against reference.bin"), or ""
+	 * @return the number of rows categorised
+	 */
+	static long runFiles(Scorer scorer, int chunkSize, String inputPath, String outputPath, String description)
+			throws IOException, InterruptedException {
+		StreamingClassifier streamingClassifier = new StreamingClassifier(scorer, chunkSize);
+
+		long startTime = System.nanoTime();
+		try (InputStream input = inputPath.equals("-") ? System.in : new FileInputStream(inputPath);
+				OutputStream output = outputPath.equals("-") ? System.out
+						: Files.newOutputStream(Paths.get(outputPath))) {
+			long numRows = streamingClassifier.run(input, output);
+
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			System.err.println("Categorised " + numRows + " rows" + description + " in "
+					+ Math.round(seconds * 100.0) / 100.0 + "s (" + Math.round(numRows / seconds) + " rows/s)");
+			return numRows;
+		}
+	}
+}
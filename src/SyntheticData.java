@@ -0,0 +1,64 @@
+import java.util.Random;
+
+/**
+ * SyntheticData.java:
+ * Generates datasets with the same shape as the UCI digits data (64 feature values
+ * between 0 and 16, followed by the category 0-9). Each category has a random
+ * prototype row (the same for every dataset), and every generated row is its prototype
+ * plus random noise, so the data can be categorised but is not trivially separable.
+ * Used by the benchmarks and validation tools so that they can run without the real dataset files.
+ *
+ * @author Samuel C. Donovan
+ * @created 18/10/26
+ * @updated 18/10/26
+ */
+public class SyntheticData {
+
+	static final int NUM_FEATURES = 64; /* feature values in each row, not including the category */
+	static final int NUM_CATEGORIES = 10; /* categories 0-9 */
+	static final int FEATURE_VALUE_MAX = 16; /* the largest number that a feature value can be */
+	static final long PROTOTYPE_SEED = 64; /* fixed so that every generated dataset has the same prototypes */
+
+	/**
+	 * Generates a dataset; categories are assigned in turn (0, 1, ..., 9, 0, 1, ...) like the UCI files
+	 *
+	 * @param numRows, the number of rows to generate
+	 * @param noise, the maximum amount that each feature value can differ from its prototype
+	 * @param seed, seed for the noise; different seeds give different rows from the same categories
+	 * @return 2D array containing the rows of data, with the category in the last cell of each row
+	 */
+	public static int[][] generate(int numRows, int noise, long seed) {
+		Random random = new Random(PROTOTYPE_SEED);
+
+		/* create a random prototype row for each category */
+		int[][] prototypes = new int[NUM_CATEGORIES][NUM_FEATURES];
+		for (int category = 0; category < NUM_CATEGORIES; category++)
+			for (int feature = 0; feature < NUM_FEATURES; feature++)
+				prototypes[category][feature] = random.nextInt(FEATURE_VALUE_MAX + 1);
+
+		random = new Random(seed);
+		int[][] dataset = new int[numRows][NUM_FEATURES + 1];
+		for (int row = 0; row < numRows; row++) {
+			int category = row % NUM_CATEGORIES;
+
+			/* each feature value is the prototype plus noise, kept between 0 and 16 */
+			for (int feature = 0; feature < NUM_FEATURES; feature++) {
+				int value = prototypes[category][feature] + random.nextInt(2 * noise + 1) - noise;
+				dataset[row][feature] = Math.max(0, Math.min(FEATURE_VALUE_MAX, value));
+			}
+			dataset[row][NUM_FEATURES] = category;
+		}
+		return dataset;
+	}
+
+	/**
+	 * Generates a dataset with the default amount of noise
+	 *
+	 * @param numRows, the number of rows to generate
+	 * @param seed, seed for the random number generator
+	 * @return 2D array containing the rows of data
+	 */
+	public static int[][] generate(int numRows, long seed) {
+		return generate(numRows, 6, seed);
+	}
+}
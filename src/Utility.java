@@ -2,6 +2,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Utility.java: 
@@ -9,7 +13,7 @@ import java.io.IOException;
  * 
  * @author Samuel C. Donovan
  * @created 01/03/22
- * @updated 03/03/22
+ * @updated 18/10/26
  */
 public class Utility {
 
@@ -17,6 +21,9 @@ public class Utility {
 	public static final boolean GA_PARAMATER_TESTING = false;
 	public static final boolean MLP_PARAMATER_TESTING = false;
 
+	/* number of values added to a distance between checks against the limit in squaredDistanceWithin */
+	static final int ABANDON_BLOCK = 8;
+
 	/**
 	 * Reads data from file path and puts it into a 2D int array
 	 * 
@@ -33,6 +40,7 @@ public class Utility {
 		int lineCount = 0;
 		int[][] dataset = new int[lineCount][];
 
+		Metrics.Scope scope = Metrics.begin(Metrics.Phase.READ_FILE);
 		try {
 
 			/* create new file reader and buffer reader to parse data from data files */
@@ -63,6 +71,8 @@ public class Utility {
 		} catch (IOException fileNotFound) { /* if file is not found, stop the program */
 			System.out.println("File not found at " + filePath);
 			return dataset;
+		} finally {
+			scope.end(lineCount);
 		}
 		return dataset;
 	}
@@ -86,6 +96,20 @@ public class Utility {
 		return newArray; /* return new array */
 	}
 
+	/**
+	 * Combines two datasets into one, with the rows of the first dataset followed by the second
+	 * 
+	 * @param dataset1, the first dataset
+	 * @param dataset2, the second dataset
+	 * @return a dataset containing every row of both datasets
+	 */
+	public static int[][] combineDatasets(int[][] dataset1, int[][] dataset2) {
+		int[][] combined = new int[dataset1.length + dataset2.length][];
+		System.arraycopy(dataset1, 0, combined, 0, dataset1.length);
+		System.arraycopy(dataset2, 0, combined, dataset1.length, dataset2.length);
+		return combined;
+	}
+
 	/**
 	 * Euclidean distance calculator, calculates distance between two arrays  
 	 * 
@@ -95,6 +119,9 @@ public class Utility {
 	 */
 	public static double euclideanDistance(int[] firstArray, int[] secondArray) {
 
+		if (Metrics.ENABLED)
+			Metrics.DISTANCES.increment();
+
 		int sum = 0;
 
 		/* sums the distance between each point in both arrays */
@@ -104,6 +131,35 @@ public class Utility {
 		return Math.sqrt(sum);
 	}
 
+	/**
+	 * Squared Euclidean distance that stops early once it reaches a limit, for searches that only
+	 * need to know whether a row is nearer than the nearest one so far. The sum is checked after
+	 * every block of ABANDON_BLOCK values, so the loop inside each block stays simple enough for
+	 * the JIT to vectorise. Compares the same values as euclideanDistance (all but the last).
+	 * 
+	 * @param firstArray, the first array to compare
+	 * @param secondArray, the second array to compare against
+	 * @param limit, the squared distance at which to stop
+	 * @return the squared distance if it is less than the limit, otherwise some value >= the limit
+	 */
+	public static int squaredDistanceWithin(int[] firstArray, int[] secondArray, int limit) {
+
+		if (Metrics.ENABLED)
+			Metrics.DISTANCES.increment();
+
+		int sum = 0;
+		int length = firstArray.length - 1;
+
+		for (int blockStart = 0; blockStart < length; blockStart += ABANDON_BLOCK) {
+			int blockEnd = Math.min(blockStart + ABANDON_BLOCK, length);
+			for (int pos = blockStart; pos < blockEnd; pos++)
+				sum += (firstArray[pos] - secondArray[pos]) * (firstArray[pos] - secondArray[pos]);
+			if (sum >= limit)
+				return sum;
+		}
+		return sum;
+	}
+
 	/**
 	 * Calculates the percentage of correct categorisations, rounds it to 2 d.p and
 	 * then prints these values to the console.
@@ -137,10 +193,39 @@ public class Utility {
 		return percentageCorrect;
 	}
 
+	/**
+	 * Calculates the percentage of correct categorisations over any number of folds,
+	 * rounds it to 2 d.p and then prints these values to the console.
+	 * 
+	 * @param foldTotals, the total correct categorisations from each fold
+	 * @param foldLengths, the length of the test set in each fold
+	 * @return the percentage of correct categorisations over all folds
+	 */
+	public static double calculatePercentage(int[] foldTotals, int[] foldLengths) {
+
+		int totalCorrect = 0, totalDatasetLength = 0;
+
+		/* print the total correct categorisations from each fold and add them together */
+		for (int fold = 0; fold < foldTotals.length; fold++) {
+			System.out.println("Fold " + (fold + 1) + " : " + foldTotals[fold] + "/" + foldLengths[fold]);
+			totalCorrect += foldTotals[fold];
+			totalDatasetLength += foldLengths[fold];
+		}
+
+		double percentageCorrect = ((double) totalCorrect / (double) totalDatasetLength) * 100.0;
+		double percentageRounded = Math.round(percentageCorrect * 100.0) / 100.0;
+
+		System.out.println("Total correct: " + totalCorrect + "/" + totalDatasetLength + " = " + percentageRounded
+				+ "% (" + percentageCorrect + "%)");
+
+		return percentageCorrect;
+	}
+
 	/**
 	 * Calculates the average accuracy after running two fold tests for a specified 
 	 * number of iterations. Used for parameter experimenting (see report), can test
-	 * either the GA or the MLP.
+	 * either the GA or the MLP. The iterations run in parallel through ParameterSweep;
+	 * use ParameterSweep directly to compare several parameter values in one run.
 	 * 
 	 * @param dataset1, the first dataset to run the algorithms for
 	 * @param dataset2, the second dataset to run the algorithms for
@@ -151,30 +236,31 @@ public class Utility {
 		 * becomes too long for larger numbers, and this still provides an insight into the effectiveness
 		 * of different parameters */
 		int numIterations = 20;
-		double totalPercentage = 0.0;
-
-		double currentPercentage = 0.0;
 
-		GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm();
-		MultilayerPerceptron multilayerPerceptron = new MultilayerPerceptron();
-
-		/* loops for the specified number of iterations */
-		for (int currentIteration = 0; currentIteration < numIterations; currentIteration++) {
-
-			if (GA_PARAMATER_TESTING)
-				/* get total correct categorisations for both folds of the GA */
-				currentPercentage = geneticAlgorithm.twoFold(dataset1, dataset2);
+		String algorithm;
+		if (GA_PARAMATER_TESTING)
+			algorithm = "ga";
+		else if (MLP_PARAMATER_TESTING)
+			algorithm = "mlp";
+		else
+			return;
+
+		/* run every iteration of the current -Dga.* / -Dmlp.* configuration as a single sweep trial; with
+		 * -Dsweep.seed the iterations get the same seeds every time, so a restarted run with checkpoints
+		 * (-Dga.checkpoint / -Dmlp.checkpoint) skips the iterations that finished and resumes the others */
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			ParameterSweep sweep = new ParameterSweep(algorithm, new ArrayList<>(), System.getProperties(), dataset1,
+					dataset2, executor, Long.getLong("sweep.seed", System.nanoTime()));
+			ParameterSweep.Trial trial = sweep.run(sweep.gridTrials(), numIterations).get(0);
 
-			else if (MLP_PARAMATER_TESTING)
-				/* get total correct categorisations for both folds of the MLP */
-				currentPercentage = multilayerPerceptron.twoFold(dataset1, dataset2);
+			System.out.println("After " + numIterations + " iterations, avg. accuracy = " + trial.meanAccuracy()
+					+ " (variance " + trial.accuracyVariance() + ", " + trial.meanRuntimeMillis() + " ms per iteration)");
 
-			/* calculate the percentage for this iteration and add to sum */
-			totalPercentage += currentPercentage;
+		} catch (InterruptedException | ExecutionException e) {
+			System.out.println("Parameter testing failed: " + e);
+		} finally {
+			executor.shutdownNow();
 		}
-
-		/* get the average accuracy by dividing the summed accuracy by the number of iterations */
-		double averageAccuracy = totalPercentage / numIterations;
-		System.out.println("After " + numIterations + " iterations, avg. accuracy = " + averageAccuracy);
 	}
 }